@@ -0,0 +1,72 @@
+package org.nervos.indexer;
+
+import com.google.gson.Gson;
+import org.nervos.ckb.service.GsonFactory;
+import org.nervos.indexer.model.resp.CellsResponse;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the generated adapters with Gson's reflection, decoding a {@code get_cells} page of
+ * {@code cells} cells.
+ *
+ * <pre>
+ * ./gradlew :ckb-indexer:jmhJar
+ * java -jar ckb-indexer/build/libs/ckb-indexer-*-jmh.jar GetCellsBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GetCellsBenchmark {
+  private static final String CELL = "{\"block_number\":\"0x5b0bab\","
+      + "\"out_point\":{\"index\":\"0x1\","
+      + "\"tx_hash\":\"0x5a4b1e1ac4a3a7f21b3fbb3e3d1e9bbe3d6e3a3f1e1b4a7c0f4c2e2e1b5d6a7c\"},"
+      + "\"output\":{\"capacity\":\"0x34e62ce00\","
+      + "\"lock\":{\"args\":\"0x36c329ed630d6ce750712a477543672adab57f4c\","
+      + "\"code_hash\":\"0x9bd7e06f3ecf4be0f2fcd2188b23f1b9fcc88e5d4b65a8637b17723bbda3cce8\","
+      + "\"hash_type\":\"type\"},"
+      + "\"type\":{\"args\":\"0x32e555f3ff8e135cece1351a6a2971518392c1e30375c1e006ad0ce8eac07947\","
+      + "\"code_hash\":\"0xc5e5dcf215925f7ef4dfaf5f4b4f105bc321c02776d6e7d52a1db3fcd9d011a4\","
+      + "\"hash_type\":\"type\"}},"
+      + "\"output_data\":\"0x40420f00000000000000000000000000\","
+      + "\"tx_index\":\"0x3\"}";
+
+  @Param({"100"})
+  public int cells;
+
+  private String json;
+  private Gson generated;
+  private Gson reflective;
+
+  static class CellsPage {
+    CellsResponse result;
+  }
+
+  @Setup
+  public void setUp() {
+    StringBuilder objects = new StringBuilder();
+    for (int i = 0; i < cells; i++) {
+      objects.append(i == 0 ? "" : ",").append(CELL);
+    }
+    json = "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":{"
+        + "\"last_cursor\":\"0x409bd7e06f3ecf4be0f2fcd2188b23f1b9fcc88e5d4b65a8637b17723bbda3cce801\","
+        + "\"objects\":[" + objects + "]}}";
+    generated = GsonFactory.create();
+    reflective = GsonFactory.create(false);
+  }
+
+  @Benchmark
+  public CellsResponse decodeGenerated() {
+    return generated.fromJson(json, CellsPage.class).result;
+  }
+
+  @Benchmark
+  public CellsResponse decodeReflective() {
+    return reflective.fromJson(json, CellsPage.class).result;
+  }
+}
@@ -0,0 +1,173 @@
+package org.nervos.indexer;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.nervos.ckb.service.RpcService;
+import org.nervos.ckb.service.SocketRpcTransport;
+import org.nervos.ckb.service.VirtualThreads;
+import org.nervos.ckb.utils.Hex;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@code scans} {@link InputIterator} scans at once, each on its own thread from
+ * {@link VirtualThreads#newExecutor(String)}, against an in-process node that answers
+ * {@code get_cells} with {@code pages} pages of {@code cells} cells over one TCP connection.
+ *
+ * <p>On Java 21 the scans run on virtual threads that park while they wait for their pages, so
+ * the peak number of platform threads printed after each iteration stays near the number of
+ * carrier threads instead of growing with {@code scans}, as {@code VirtualThreadScanTest} checks.
+ * Before Java 21 every scan takes a platform thread.
+ *
+ * <pre>
+ * ./gradlew :ckb-indexer:jmhJar
+ * java -jar ckb-indexer/build/libs/ckb-indexer-*-jmh.jar VirtualThreadScanBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VirtualThreadScanBenchmark {
+  private static final String ADDRESS = "ckt1qyqgrfqrklscqeutp3tlqhlcd8xrculgufqspwdp7m";
+  private static final String CELL = "{\"block_number\":\"0x5b0bab\","
+      + "\"out_point\":{\"index\":\"0x1\","
+      + "\"tx_hash\":\"0x5a4b1e1ac4a3a7f21b3fbb3e3d1e9bbe3d6e3a3f1e1b4a7c0f4c2e2e1b5d6a7c\"},"
+      + "\"output\":{\"capacity\":\"0x34e62ce00\","
+      + "\"lock\":{\"args\":\"0x36c329ed630d6ce750712a477543672adab57f4c\","
+      + "\"code_hash\":\"0x9bd7e06f3ecf4be0f2fcd2188b23f1b9fcc88e5d4b65a8637b17723bbda3cce8\","
+      + "\"hash_type\":\"type\"}},"
+      + "\"output_data\":\"0x\","
+      + "\"tx_index\":\"0x3\"}";
+
+  @Param({"10000"})
+  public int scans;
+
+  @Param({"2"})
+  public int pages;
+
+  @Param({"10"})
+  public int cells;
+
+  private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+  private String[] pageJson;
+  private ServerSocket server;
+  private RpcService rpcService;
+  private ExecutorService executor;
+
+  @Setup
+  public void setUp() throws IOException {
+    StringBuilder objects = new StringBuilder();
+    for (int i = 0; i < cells; i++) {
+      objects.append(i == 0 ? "" : ",").append(CELL);
+    }
+    // page i is asked for with the cursor of page i - 1, the page after the last one is empty
+    pageJson = new String[pages + 1];
+    for (int i = 0; i < pages; i++) {
+      pageJson[i] = "{\"last_cursor\":\"" + Hex.encode(new byte[] {(byte) (i + 1)})
+          + "\",\"objects\":[" + objects + "]}";
+    }
+    pageJson[pages] = "{\"last_cursor\":\"0x\",\"objects\":[]}";
+
+    server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    Thread node = new Thread(this::serve, "stub-node");
+    node.setDaemon(true);
+    node.start();
+    rpcService = new RpcService(new SocketRpcTransport("127.0.0.1", server.getLocalPort()));
+    executor = VirtualThreads.newExecutor("scan");
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    executor.shutdownNow();
+    rpcService.getTransport().close();
+    server.close();
+  }
+
+  @Setup(Level.Iteration)
+  public void resetPeakThreadCount() {
+    threads.resetPeakThreadCount();
+  }
+
+  @TearDown(Level.Iteration)
+  public void printPeakThreadCount() {
+    System.out.println("peak platform threads: " + threads.getPeakThreadCount()
+                           + (VirtualThreads.isSupported() ? " (virtual threads)" : ""));
+  }
+
+  @Benchmark
+  public int scan() throws Exception {
+    CkbIndexerApi api = new DefaultIndexerApi(rpcService);
+    List<Future<Integer>> futures = new ArrayList<>(scans);
+    for (int i = 0; i < scans; i++) {
+      futures.add(executor.submit(() -> {
+        InputIterator iterator = new InputIterator(api).addSearchKey(ADDRESS);
+        int inputs = 0;
+        while (iterator.hasNext()) {
+          iterator.next();
+          inputs++;
+        }
+        return inputs;
+      }));
+    }
+    int inputs = 0;
+    for (Future<Integer> future : futures) {
+      inputs += future.get();
+    }
+    return inputs;
+  }
+
+  private void serve() {
+    while (!server.isClosed()) {
+      Socket socket;
+      try {
+        socket = server.accept();
+      } catch (IOException e) {
+        return;
+      }
+      Thread connection = new Thread(() -> answer(socket), "stub-node-connection");
+      connection.setDaemon(true);
+      connection.start();
+    }
+  }
+
+  private void answer(Socket socket) {
+    try (BufferedReader in = new BufferedReader(
+        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+         Writer out = new BufferedWriter(
+             new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = in.readLine()) != null) {
+        JsonObject request = JsonParser.parseString(line).getAsJsonObject();
+        JsonArray params = request.getAsJsonArray("params");
+        JsonElement cursor = params.size() > 3 ? params.get(3) : JsonNull.INSTANCE;
+        int page = cursor.isJsonNull() ? 0 : Hex.decode(cursor.getAsString())[0];
+        out.write("{\"jsonrpc\":\"2.0\",\"id\":" + request.get("id") + ",\"result\":"
+                      + pageJson[page] + "}\n");
+        // answer pipelined requests in one write
+        if (!in.ready()) {
+          out.flush();
+        }
+      }
+    } catch (IOException e) {
+      // the benchmark closed the connection
+    }
+  }
+}
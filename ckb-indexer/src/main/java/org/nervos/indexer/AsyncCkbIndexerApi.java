@@ -0,0 +1,26 @@
+package org.nervos.indexer;
+
+import org.nervos.indexer.model.Order;
+import org.nervos.indexer.model.SearchKey;
+import org.nervos.indexer.model.resp.*;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link CkbIndexerApi}. Returned futures complete exceptionally on
+ * request or RPC errors, and cancelling a future aborts its HTTP call.
+ */
+public interface AsyncCkbIndexerApi {
+  CompletableFuture<TipResponse> getTip();
+
+  CompletableFuture<CellsResponse> getCells(
+      SearchKey searchKey, Order order, int limit, byte[] afterCursor);
+
+  CompletableFuture<TxsWithCell> getTransactions(
+      SearchKey searchKey, Order order, int limit, byte[] afterCursor);
+
+  CompletableFuture<TxsWithCells> getTransactionsGrouped(
+      SearchKey searchKey, Order order, int limit, byte[] afterCursor);
+
+  CompletableFuture<CellCapacityResponse> getCellsCapacity(SearchKey searchKey);
+}
@@ -0,0 +1,203 @@
+package org.nervos.indexer;
+
+import org.nervos.ckb.service.Deadline;
+import org.nervos.ckb.service.VirtualThreads;
+import org.nervos.indexer.model.Order;
+import org.nervos.indexer.model.SearchKey;
+import org.nervos.indexer.model.resp.CellsResponse;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fetches the pages of {@code get_cells} ahead of the caller. While the caller consumes page N,
+ * pages N+1 to N+depth are asked for in the background, each with the {@code last_cursor} of the
+ * page before it.
+ *
+ * <p>{@link #getCells(SearchKey, Order, int, byte[])} serves a page from the background fetch when
+ * it is the one the fetch is at, and otherwise cancels the fetch and starts a new one at the asked
+ * cursor, so the caller can move its cursor freely. {@link #cancel()} stops the background fetch
+ * and drops the pages not taken yet; the next call starts over from its cursor. It does not wait
+ * for the page in flight, so another thread can cancel while the caller waits; the caller then
+ * asks for its page itself. A background fetch nobody takes pages from for a minute stops by
+ * itself.
+ */
+public class CellsPrefetcher {
+  private static final ExecutorService EXECUTOR = VirtualThreads.newExecutor("ckb-cells-prefetch");
+  private static final long IDLE_TIMEOUT_SECONDS = 60;
+  private static final Page STOPPED = new Page(null, null);
+
+  private final CellsSource source;
+  private final int depth;
+  // serializes the callers of getCells, but is not held while they wait for a page
+  private final ReentrantLock lock = new ReentrantLock();
+  private final AtomicReference<Fetch> fetch = new AtomicReference<>();
+
+  /**
+   * @param depth how many pages to fetch ahead of the caller, at least 1
+   */
+  public CellsPrefetcher(CellsSource source, int depth) {
+    if (depth < 1) {
+      throw new IllegalArgumentException("Prefetch depth must be positive");
+    }
+    this.source = source;
+    this.depth = depth;
+  }
+
+  public int getDepth() {
+    return depth;
+  }
+
+  /**
+   * @return the page after {@code afterCursor}, as {@link CellsSource#getCells} does
+   */
+  public CellsResponse getCells(SearchKey searchKey, Order order, int limit, byte[] afterCursor)
+      throws IOException {
+    Fetch current;
+    lock.lock();
+    try {
+      current = fetch.get();
+      if (current == null || !current.isAt(searchKey, order, limit, afterCursor)) {
+        current = new Fetch(searchKey, order, limit, afterCursor);
+        Fetch previous = fetch.getAndSet(current);
+        if (previous != null) {
+          previous.cancel();
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+
+    Page page = current.take();
+    if (page == STOPPED || page.error != null || page.response.objects == null
+        || page.response.objects.isEmpty()) {
+      fetch.compareAndSet(current, null);
+    } else {
+      current.cursor = page.response.lastCursor;
+    }
+    if (page == STOPPED) {
+      // the background fetch went idle or was cancelled, ask for the page here
+      return source.getCells(searchKey, order, limit, afterCursor);
+    }
+    if (page.error != null) {
+      throw page.error;
+    }
+    return page.response;
+  }
+
+  /**
+   * Stops the background fetch, for example when the caller has all the cells it needs. It can be
+   * called from any thread and does not wait for the page in flight.
+   */
+  public void cancel() {
+    Fetch current = fetch.getAndSet(null);
+    if (current != null) {
+      current.cancel();
+    }
+  }
+
+  private static class Page {
+    final CellsResponse response;
+    final IOException error;
+
+    Page(CellsResponse response, IOException error) {
+      this.response = response;
+      this.error = error;
+    }
+  }
+
+  private class Fetch {
+    final SearchKey searchKey;
+    final Order order;
+    final int limit;
+    final BlockingQueue<Page> pages = new LinkedBlockingQueue<>();
+    // a permit for every page that may be fetched but not yet taken
+    final Semaphore permits = new Semaphore(depth);
+    final Future<?> task;
+    volatile boolean cancelled;
+    // the cursor of the next page to take
+    volatile byte[] cursor;
+
+    Fetch(SearchKey searchKey, Order order, int limit, byte[] afterCursor) {
+      this.searchKey = searchKey;
+      this.order = order;
+      this.limit = limit;
+      this.cursor = afterCursor;
+      Deadline deadline = Deadline.current();
+      task = EXECUTOR.submit(() -> {
+        if (deadline == null) {
+          run(afterCursor);
+        } else {
+          deadline.run(() -> run(afterCursor));
+        }
+      });
+    }
+
+    boolean isAt(SearchKey searchKey, Order order, int limit, byte[] afterCursor) {
+      return this.searchKey == searchKey && this.order == order && this.limit == limit
+          && Arrays.equals(cursor, afterCursor);
+    }
+
+    void run(byte[] afterCursor) {
+      boolean finished = false;
+      try {
+        while (!cancelled) {
+          if (!permits.tryAcquire(IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            return;
+          }
+          Page page;
+          try {
+            page = new Page(source.getCells(searchKey, order, limit, afterCursor), null);
+          } catch (IOException e) {
+            page = new Page(null, e);
+          } catch (RuntimeException e) {
+            page = new Page(null, new IOException(e));
+          }
+          if (cancelled) {
+            return;
+          }
+          pages.add(page);
+          if (page.error != null || page.response.objects == null
+              || page.response.objects.isEmpty()) {
+            finished = true;
+            return;
+          }
+          afterCursor = page.response.lastCursor;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        if (!finished) {
+          pages.add(STOPPED);
+        }
+      }
+    }
+
+    Page take() throws IOException {
+      try {
+        Page page = pages.take();
+        permits.release();
+        return page;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for cells");
+      }
+    }
+
+    void cancel() {
+      cancelled = true;
+      task.cancel(true);
+      // the task may not have started, and then never stops; wake a caller waiting for a page
+      pages.add(STOPPED);
+    }
+  }
+}
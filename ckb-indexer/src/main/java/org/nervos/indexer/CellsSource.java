@@ -0,0 +1,15 @@
+package org.nervos.indexer;
+
+import org.nervos.indexer.model.Order;
+import org.nervos.indexer.model.SearchKey;
+import org.nervos.indexer.model.resp.CellsResponse;
+
+import java.io.IOException;
+
+/**
+ * A {@code get_cells} call, such as {@link CkbIndexerApi#getCells}.
+ */
+public interface CellsSource {
+  CellsResponse getCells(SearchKey searchKey, Order order, int limit, byte[] afterCursor)
+      throws IOException;
+}
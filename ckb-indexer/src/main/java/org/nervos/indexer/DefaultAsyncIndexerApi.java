@@ -0,0 +1,73 @@
+package org.nervos.indexer;
+
+import org.nervos.ckb.service.RpcService;
+import org.nervos.indexer.model.Order;
+import org.nervos.indexer.model.SearchKey;
+import org.nervos.indexer.model.resp.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+public class DefaultAsyncIndexerApi implements AsyncCkbIndexerApi {
+
+  protected RpcService rpcService;
+
+  public DefaultAsyncIndexerApi(String indexerUrl, boolean isDebug) {
+    this.rpcService = new RpcService(indexerUrl, isDebug);
+  }
+
+  public DefaultAsyncIndexerApi(RpcService rpcService) {
+    this.rpcService = rpcService;
+  }
+
+  @Override
+  public CompletableFuture<TipResponse> getTip() {
+    IndexerType type = Configuration.getInstance().getIndexerType();
+    String method;
+    switch(type) {
+      case StandAlone: method = CkbIndexerRpcMethods.GET_TIP; break;
+      case CkbModule: method =CkbIndexerRpcMethods.GET_INDEXER_TIP; break;
+      default:
+        throw new IllegalStateException("Unsupported index type:"+ type);
+    }
+    return this.rpcService.postAsync(method, Collections.emptyList(), TipResponse.class);
+  }
+
+  @Override
+  public CompletableFuture<CellsResponse> getCells(
+      SearchKey searchKey, Order order, int limit, byte[] afterCursor) {
+    return this.rpcService.postAsync(
+        CkbIndexerRpcMethods.GET_CELLS,
+        Arrays.asList(searchKey, order, limit, afterCursor),
+        CellsResponse.class);
+  }
+
+  @Override
+  public CompletableFuture<TxsWithCell> getTransactions(
+      SearchKey searchKey, Order order, int limit, byte[] afterCursor) {
+    searchKey.groupByTransaction = false;
+    return this.rpcService.postAsync(
+        CkbIndexerRpcMethods.GET_TRANSACTIONS,
+        Arrays.asList(searchKey, order, limit, afterCursor),
+        TxsWithCell.class);
+  }
+
+  @Override
+  public CompletableFuture<TxsWithCells> getTransactionsGrouped(
+      SearchKey searchKey, Order order, int limit, byte[] afterCursor) {
+    searchKey.groupByTransaction = true;
+    return this.rpcService.postAsync(
+        CkbIndexerRpcMethods.GET_TRANSACTIONS,
+        Arrays.asList(searchKey, order, limit, afterCursor),
+        TxsWithCells.class);
+  }
+
+  @Override
+  public CompletableFuture<CellCapacityResponse> getCellsCapacity(SearchKey searchKey) {
+    return this.rpcService.postAsync(
+        CkbIndexerRpcMethods.GET_CELLS_CAPACITY,
+        Arrays.asList(searchKey),
+        CellCapacityResponse.class);
+  }
+}
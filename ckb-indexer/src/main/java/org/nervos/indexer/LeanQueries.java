@@ -0,0 +1,59 @@
+package org.nervos.indexer;
+
+import org.nervos.ckb.type.ScriptType;
+import org.nervos.indexer.model.Filter;
+import org.nervos.indexer.model.SearchKey;
+
+import java.util.Arrays;
+
+/**
+ * Narrows {@code get_cells} queries for plain CKB cells on the server side. A plain search key
+ * looks for cells by lock without a type script filter, and is what transaction builders pay fees
+ * and capacity from. They only take cells without a type script and never read the data of the
+ * inputs, so the node can leave out the other cells and the data of all cells.
+ */
+public final class LeanQueries {
+  private LeanQueries() {
+  }
+
+  /**
+   * @return whether {@code searchKey} looks for cells by lock only, and has not asked for the data
+   *     of the cells explicitly
+   */
+  public static boolean isPlain(SearchKey searchKey) {
+    return searchKey.scriptType == ScriptType.LOCK && searchKey.withData == null
+        && (searchKey.filter == null || searchKey.filter.script == null);
+  }
+
+  /**
+   * @param minCapacity the least capacity of the cells to return, 0 for any
+   * @return a copy of a plain {@code searchKey} that only matches cells without a type script of
+   *     at least {@code minCapacity} shannons, and returns them without their data. Other search
+   *     keys are returned as they are.
+   */
+  public static SearchKey apply(SearchKey searchKey, long minCapacity) {
+    if (!isPlain(searchKey)) {
+      return searchKey;
+    }
+    SearchKey lean = new SearchKey();
+    lean.script = searchKey.script;
+    lean.scriptType = searchKey.scriptType;
+    lean.scriptSearchMode = searchKey.scriptSearchMode;
+    lean.groupByTransaction = searchKey.groupByTransaction;
+    lean.withData = false;
+    lean.filter = new Filter();
+    if (searchKey.filter != null) {
+      lean.filter.outputDataLenRange = searchKey.filter.outputDataLenRange;
+      lean.filter.outputCapacityRange = searchKey.filter.outputCapacityRange;
+      lean.filter.blockRange = searchKey.filter.blockRange;
+      lean.filter.scriptLenRange = searchKey.filter.scriptLenRange;
+    }
+    if (lean.filter.scriptLenRange == null) {
+      lean.filter.scriptLenRange = Arrays.asList(0, 1);
+    }
+    if (minCapacity > 0 && lean.filter.outputCapacityRange == null) {
+      lean.filter.outputCapacityRange = Arrays.asList(minCapacity, Long.MAX_VALUE);
+    }
+    return lean;
+  }
+}
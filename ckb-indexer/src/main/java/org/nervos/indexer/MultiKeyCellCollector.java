@@ -0,0 +1,378 @@
+package org.nervos.indexer;
+
+import org.nervos.ckb.service.Deadline;
+import org.nervos.ckb.service.VirtualThreads;
+import org.nervos.indexer.model.Order;
+import org.nervos.indexer.model.SearchKey;
+import org.nervos.indexer.model.resp.CellResponse;
+import org.nervos.indexer.model.resp.CellsResponse;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collects the live cells of many search keys at once. The first pages of all search keys are
+ * asked for together, up to {@code parallelism} {@code get_cells} calls at a time, and every
+ * search key fetches its next page while its current one is consumed. The cells are merged into
+ * one stream under a {@link MergePolicy}.
+ *
+ * <p>{@link #getCursors()} tells where every search key is, and a collector created with those
+ * cursors goes on from there. {@link #cancel()} stops the fetches in flight, also from another
+ * thread; the collector fetches again when it runs out of cells, and a caller waiting for cells
+ * asks for them again at once.
+ *
+ * <p>Like the input iterators, the collector throws a {@link RuntimeException} with the
+ * {@link IOException} of a failed call as its cause. The call is retried on the next
+ * {@link #hasNext()}.
+ */
+public class MultiKeyCellCollector implements Iterator<CellResponse> {
+  private static final ExecutorService EXECUTOR = VirtualThreads.newExecutor("ckb-cells-collector");
+
+  private final CellsSource source;
+  private final Order order;
+  private final int limit;
+  private final int parallelism;
+  private final MergePolicy policy;
+  private final List<Key> keys = new ArrayList<>();
+  private final ArrayDeque<Key> waiting = new ArrayDeque<>();
+  // a lock rather than a monitor, so virtual threads waiting for pages release their carrier
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition changed = lock.newCondition();
+  private int running;
+  // the key the next round robin cell is taken from
+  private int nextKey;
+  // the key of the cell peek() returned
+  private Key head;
+  private Deadline deadline;
+
+  /**
+   * How the cells of the search keys are merged.
+   */
+  public enum MergePolicy {
+    /**
+     * All cells of the first search key, then those of the second one, and so on, like the input
+     * iterators without concurrency.
+     */
+    KEY_ORDER,
+    /**
+     * One cell of every search key in turn.
+     */
+    ROUND_ROBIN,
+    /**
+     * The next cell of the search key whose next cell has the largest capacity. The cells of one
+     * search key keep the order of the indexer.
+     */
+    LARGEST_CAPACITY_FIRST
+  }
+
+  /**
+   * Where a search key is: the cells after the first {@code skip} cells of the page
+   * {@code afterCursor} points to are not taken yet.
+   */
+  public static class KeyCursor {
+    public final SearchKey searchKey;
+    public final byte[] afterCursor;
+    public final int skip;
+    public final boolean finished;
+
+    public KeyCursor(SearchKey searchKey, byte[] afterCursor, int skip, boolean finished) {
+      this.searchKey = searchKey;
+      this.afterCursor = afterCursor;
+      this.skip = skip;
+      this.finished = finished;
+    }
+
+    /**
+     * @return the cursor before the first cell of {@code searchKey}
+     */
+    public static KeyCursor startOf(SearchKey searchKey) {
+      return new KeyCursor(searchKey, null, 0, false);
+    }
+  }
+
+  /**
+   * @param cursors     where to start every search key, {@link KeyCursor#startOf} for the start
+   * @param parallelism how many {@code get_cells} calls to run at a time, at least 1
+   */
+  public MultiKeyCellCollector(CellsSource source, List<KeyCursor> cursors, Order order, int limit,
+                               int parallelism, MergePolicy policy) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be positive");
+    }
+    this.source = source;
+    this.order = order;
+    this.limit = limit;
+    this.parallelism = parallelism;
+    this.policy = policy;
+    for (KeyCursor cursor : cursors) {
+      keys.add(new Key(keys.size(), cursor));
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    return peek() != null;
+  }
+
+  @Override
+  public CellResponse next() {
+    lock.lock();
+    try {
+      CellResponse cell = peek();
+      if (cell == null) {
+        throw new NoSuchElementException();
+      }
+      head.taken++;
+      nextKey = head.index + 1;
+      head = null;
+      return cell;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return the next cell without taking it, or null if all search keys are finished
+   */
+  public CellResponse peek() {
+    lock.lock();
+    try {
+      if (head == null) {
+        deadline = Deadline.current();
+        try {
+          head = chooseKey();
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      }
+      return head == null ? null : head.cells.get(head.taken);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return where every search key is, in the order of the search keys
+   */
+  public List<KeyCursor> getCursors() {
+    lock.lock();
+    try {
+      List<KeyCursor> cursors = new ArrayList<>(keys.size());
+      for (Key key : keys) {
+        cursors.add(key.cursor());
+      }
+      return cursors;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Stops the {@code get_cells} calls in flight. The pages already fetched are kept, and a caller
+   * waiting for a page asks for it again.
+   */
+  public void cancel() {
+    lock.lock();
+    try {
+      for (Key key : keys) {
+        if (key.task != null) {
+          key.task.cancel(true);
+          key.task = null;
+        }
+        key.fetching = false;
+        key.queued = false;
+        key.generation++;
+      }
+      waiting.clear();
+      running = 0;
+      // the cancelled fetches will not signal, wake the callers waiting for them
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private Key chooseKey() throws IOException {
+    while (true) {
+      boolean wait = false;
+      Key chosen = null;
+      for (int i = 0; i < keys.size(); i++) {
+        Key key = keys.get(policy == MergePolicy.ROUND_ROBIN ? (nextKey + i) % keys.size() : i);
+        if (key.error != null) {
+          IOException error = key.error;
+          key.error = null;
+          throw error;
+        }
+        key.promote();
+        if (key.isFinished()) {
+          continue;
+        }
+        if (!key.hasCell()) {
+          // the order of the cells depends on this key
+          wait = true;
+          break;
+        }
+        if (policy != MergePolicy.LARGEST_CAPACITY_FIRST) {
+          chosen = key;
+          break;
+        }
+        if (chosen == null || key.headCapacity() > chosen.headCapacity()) {
+          chosen = key;
+        }
+      }
+      schedule();
+      if (!wait) {
+        return chosen;
+      }
+      try {
+        // woken by a fetched page or by cancel(), which the next round schedules again
+        changed.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for cells");
+      }
+    }
+  }
+
+  /**
+   * Starts the fetches of the keys without a page ahead, in the order of the keys.
+   */
+  private void schedule() {
+    for (Key key : keys) {
+      if (key.needsFetch()) {
+        key.queued = true;
+        waiting.add(key);
+      }
+    }
+    while (running < parallelism && !waiting.isEmpty()) {
+      Key key = waiting.poll();
+      key.queued = false;
+      key.fetching = true;
+      running++;
+      byte[] cursor = key.fetchCursor;
+      long generation = key.generation;
+      Deadline deadline = this.deadline;
+      key.task = EXECUTOR.submit(() -> {
+        CellsResponse response = null;
+        IOException error = null;
+        try {
+          response = deadline == null
+              ? source.getCells(key.searchKey, order, limit, cursor)
+              : deadline.call(() -> source.getCells(key.searchKey, order, limit, cursor));
+        } catch (IOException e) {
+          error = e;
+        } catch (RuntimeException e) {
+          error = new IOException(e);
+        }
+        fetched(key, generation, cursor, response, error);
+      });
+    }
+  }
+
+  private void fetched(Key key, long generation, byte[] cursor,
+                       CellsResponse response, IOException error) {
+    lock.lock();
+    try {
+      if (key.generation != generation) {
+        // cancelled
+        return;
+      }
+      key.fetching = false;
+      key.task = null;
+      running--;
+      if (error != null) {
+        key.error = error;
+      } else if (response.objects == null || response.objects.isEmpty()) {
+        key.exhausted = true;
+      } else {
+        key.ahead = response.objects;
+        key.aheadCursor = cursor;
+        key.aheadSkip = key.fetchSkip;
+        key.fetchSkip = 0;
+        key.fetchCursor = response.lastCursor;
+      }
+      schedule();
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private class Key {
+    final int index;
+    final SearchKey searchKey;
+    // the page the cells are taken from, the cursor it was asked with and how many are taken
+    List<CellResponse> cells = Collections.emptyList();
+    byte[] cellsCursor;
+    int taken;
+    // the page fetched ahead
+    List<CellResponse> ahead;
+    byte[] aheadCursor;
+    int aheadSkip;
+    // the cursor of the next page to fetch, and the cells of it taken before a resume
+    byte[] fetchCursor;
+    int fetchSkip;
+    boolean exhausted;
+    boolean fetching;
+    boolean queued;
+    long generation;
+    Future<?> task;
+    IOException error;
+
+    Key(int index, KeyCursor cursor) {
+      this.index = index;
+      this.searchKey = cursor.searchKey;
+      this.fetchCursor = cursor.afterCursor;
+      this.fetchSkip = cursor.skip;
+      this.exhausted = cursor.finished;
+    }
+
+    boolean hasCell() {
+      return taken < cells.size();
+    }
+
+    long headCapacity() {
+      return cells.get(taken).output.capacity;
+    }
+
+    /**
+     * Moves on to the page fetched ahead once the current page is used up.
+     */
+    void promote() {
+      while (!hasCell() && ahead != null) {
+        cells = ahead;
+        cellsCursor = aheadCursor;
+        taken = aheadSkip;
+        ahead = null;
+      }
+    }
+
+    boolean isFinished() {
+      return !hasCell() && ahead == null && exhausted;
+    }
+
+    boolean needsFetch() {
+      return ahead == null && !exhausted && !fetching && !queued && error == null;
+    }
+
+    KeyCursor cursor() {
+      if (hasCell()) {
+        return new KeyCursor(searchKey, cellsCursor, taken, false);
+      } else if (ahead != null) {
+        return new KeyCursor(searchKey, aheadCursor, aheadSkip, false);
+      } else {
+        return new KeyCursor(searchKey, fetchCursor, fetchSkip, exhausted);
+      }
+    }
+  }
+}
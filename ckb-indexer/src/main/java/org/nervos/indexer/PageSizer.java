@@ -0,0 +1,100 @@
+package org.nervos.indexer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses the {@code limit} of paged calls such as {@code get_cells} and {@code get_transactions}.
+ * The first page is small, for callers that only need a few items, such as a transaction builder
+ * paying a fee. Every full page doubles the next one, since a caller asking for another page is
+ * likely to go on, so a scan of many items takes few round trips. A page never gets larger than
+ * {@code maxLimit}, nor than the node answers within {@code targetLatency}, as told by the cost per
+ * item of its last page. The round trip of a call is not a cost per item, so the fastest page seen
+ * is taken as the round trip and not counted; when the round trip alone takes longer than
+ * {@code targetLatency}, only {@code maxLimit} bounds a page.
+ *
+ * <p>Ask {@link #getLimit()} before a call and report its result with
+ * {@link #onPage(int, int, long)}. A sizer is thread safe, so pages fetched in the background can
+ * share it, and is not tied to a particular call:
+ *
+ * <pre>{@code
+ * PageSizer sizer = new PageSizer();
+ * byte[] cursor = null;
+ * while (true) {
+ *   int limit = sizer.getLimit();
+ *   long start = System.nanoTime();
+ *   TxsWithCell page = api.getTransactions(searchKey, Order.ASC, limit, cursor);
+ *   sizer.onPage(limit, page.objects.size(), System.nanoTime() - start);
+ *   if (page.objects.isEmpty()) {
+ *     break;
+ *   }
+ *   cursor = page.lastCursor;
+ * }
+ * }</pre>
+ */
+public class PageSizer {
+  public static final int DEFAULT_INITIAL_LIMIT = 8;
+  public static final int DEFAULT_MAX_LIMIT = 2000;
+  public static final long DEFAULT_TARGET_LATENCY_MILLIS = 1000;
+
+  private final int initialLimit;
+  private final int maxLimit;
+  private final long targetLatencyNanos;
+  private int limit;
+  // the fastest call, taken as the round trip
+  private long roundTripNanos = Long.MAX_VALUE;
+
+  public PageSizer() {
+    this(DEFAULT_INITIAL_LIMIT, DEFAULT_MAX_LIMIT, DEFAULT_TARGET_LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @param initialLimit  the limit of the first page, and the least limit of any page
+   * @param maxLimit      the largest limit of any page
+   * @param targetLatency how long a page may take at most, as far as the pages before it tell
+   */
+  public PageSizer(int initialLimit, int maxLimit, long targetLatency, TimeUnit unit) {
+    if (initialLimit < 1 || maxLimit < initialLimit) {
+      throw new IllegalArgumentException("Limits must be positive and the initial one at most the max one");
+    }
+    this.initialLimit = initialLimit;
+    this.maxLimit = maxLimit;
+    this.targetLatencyNanos = unit.toNanos(targetLatency);
+    this.limit = initialLimit;
+  }
+
+  /**
+   * @return the limit of the next page
+   */
+  public synchronized int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Adapts the limit of the next page to a page that was asked for.
+   *
+   * @param limit        the limit the page was asked with
+   * @param items        how many items the page had
+   * @param elapsedNanos how long the call took
+   */
+  public synchronized void onPage(int limit, int items, long elapsedNanos) {
+    long next = this.limit;
+    if (items >= limit) {
+      // a page short of its limit is the last one, there is nothing to grow for
+      next = Math.max(next, 2L * limit);
+    }
+    if (elapsedNanos > 0) {
+      roundTripNanos = Math.min(roundTripNanos, elapsedNanos);
+    }
+    if (items > 0 && elapsedNanos > roundTripNanos && targetLatencyNanos > roundTripNanos) {
+      next = Math.min(next, (targetLatencyNanos - roundTripNanos) * items / (elapsedNanos - roundTripNanos));
+    }
+    this.limit = (int) Math.max(initialLimit, Math.min(maxLimit, next));
+  }
+
+  /**
+   * Starts over at the initial limit, for example for another caller. The round trip is kept.
+   */
+  public synchronized void reset() {
+    limit = initialLimit;
+  }
+}
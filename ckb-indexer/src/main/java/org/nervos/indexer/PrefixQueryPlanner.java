@@ -0,0 +1,259 @@
+package org.nervos.indexer;
+
+import org.nervos.ckb.type.Script;
+import org.nervos.ckb.type.ScriptType;
+import org.nervos.indexer.model.Order;
+import org.nervos.indexer.model.ScriptSearchMode;
+import org.nervos.indexer.model.SearchKey;
+import org.nervos.indexer.model.resp.CellResponse;
+import org.nervos.indexer.model.resp.CellsResponse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
+
+/**
+ * Scans the live cells of many search keys with few {@code get_cells} streams. Search keys whose
+ * scripts share a code hash and hash type, such as the locks of many sighash addresses, are merged
+ * into one prefix scan on the longest common prefix of their args. The cells of the scan are handed
+ * back to the search keys they match, looked up by their args.
+ *
+ * <p>A prefix scan also returns the cells of scripts nobody asked for. When less than
+ * {@code minHitRate} of the cells of its first full page match a search key, the prefix is taken as
+ * too broad and the search keys of the scan are scanned one by one instead, at the cost of that
+ * page. A low rate trades fewer round trips for many more cells sent over the wire.
+ *
+ * <p>Search keys with a filter or grouped by transaction, and groups smaller than
+ * {@code minGroupSize}, are always scanned one by one.
+ */
+public class PrefixQueryPlanner {
+  public static final int DEFAULT_MIN_GROUP_SIZE = 2;
+  public static final double DEFAULT_MIN_HIT_RATE = 0.1;
+
+  private final CellsSource source;
+  private Order order = Order.ASC;
+  private int limit = 100;
+  private int minGroupSize = DEFAULT_MIN_GROUP_SIZE;
+  private double minHitRate = DEFAULT_MIN_HIT_RATE;
+
+  public PrefixQueryPlanner(CellsSource source) {
+    this.source = source;
+  }
+
+  public PrefixQueryPlanner setOrder(Order order) {
+    this.order = order;
+    return this;
+  }
+
+  public PrefixQueryPlanner setLimit(int limit) {
+    this.limit = limit;
+    return this;
+  }
+
+  /**
+   * @param minGroupSize how many search keys a prefix scan must serve at least
+   */
+  public PrefixQueryPlanner setMinGroupSize(int minGroupSize) {
+    this.minGroupSize = minGroupSize;
+    return this;
+  }
+
+  /**
+   * @param minHitRate the least share of the cells of a prefix scan that must match a search key,
+   *                   0 to never fall back to scanning the search keys one by one
+   */
+  public PrefixQueryPlanner setMinHitRate(double minHitRate) {
+    this.minHitRate = minHitRate;
+    return this;
+  }
+
+  /**
+   * A {@code get_cells} stream and the search keys it serves.
+   */
+  public static class Scan {
+    public final SearchKey query;
+    public final List<SearchKey> searchKeys;
+    // the search keys by the args they match, as long as the args of the search key
+    private final Map<ByteBuffer, List<SearchKey>> prefixKeys = new HashMap<>();
+    private final Map<ByteBuffer, List<SearchKey>> exactKeys = new HashMap<>();
+    private final TreeSet<Integer> prefixLengths = new TreeSet<>();
+
+    Scan(SearchKey query, List<SearchKey> searchKeys) {
+      this.query = query;
+      this.searchKeys = Collections.unmodifiableList(searchKeys);
+      if (!isMerged()) {
+        return;
+      }
+      for (SearchKey searchKey : searchKeys) {
+        byte[] args = searchKey.script.args;
+        if (searchKey.scriptSearchMode == ScriptSearchMode.Exact) {
+          exactKeys.computeIfAbsent(ByteBuffer.wrap(args), k -> new ArrayList<>()).add(searchKey);
+        } else {
+          prefixKeys.computeIfAbsent(ByteBuffer.wrap(args), k -> new ArrayList<>()).add(searchKey);
+          prefixLengths.add(args.length);
+        }
+      }
+    }
+
+    /**
+     * @return whether the scan serves several search keys with a prefix query of its own
+     */
+    public boolean isMerged() {
+      return searchKeys.size() > 1 || query != searchKeys.get(0);
+    }
+
+    /**
+     * @return the search keys {@code cell} belongs to
+     */
+    List<SearchKey> match(CellResponse cell) {
+      if (!isMerged()) {
+        return searchKeys;
+      }
+      Script script = query.scriptType == ScriptType.TYPE ? cell.output.type : cell.output.lock;
+      if (script == null) {
+        return Collections.emptyList();
+      }
+      byte[] args = script.args;
+      List<SearchKey> matched = null;
+      for (int length : prefixLengths.headSet(args.length, true)) {
+        matched = addAll(matched, prefixKeys.get(ByteBuffer.wrap(args, 0, length)));
+      }
+      matched = addAll(matched, exactKeys.get(ByteBuffer.wrap(args)));
+      return matched == null ? Collections.emptyList() : matched;
+    }
+
+    private static List<SearchKey> addAll(List<SearchKey> matched, List<SearchKey> searchKeys) {
+      if (searchKeys == null) {
+        return matched;
+      }
+      if (matched == null) {
+        return searchKeys;
+      }
+      List<SearchKey> all = new ArrayList<>(matched);
+      all.addAll(searchKeys);
+      return all;
+    }
+  }
+
+  /**
+   * @return a prefix scan for every group of {@code searchKeys} that is merged, and a scan of its
+   *     own for every other search key. A prefix scan may still fall back when it runs.
+   */
+  public List<Scan> plan(List<SearchKey> searchKeys) {
+    Map<List<Object>, List<SearchKey>> groups = new LinkedHashMap<>();
+    List<Scan> single = new ArrayList<>();
+    for (SearchKey searchKey : searchKeys) {
+      if (searchKey.script == null || searchKey.filter != null || searchKey.groupByTransaction) {
+        single.add(new Scan(searchKey, Collections.singletonList(searchKey)));
+        continue;
+      }
+      Script script = searchKey.script;
+      List<Object> group = Arrays.asList(
+          new Script(script.codeHash, new byte[0], script.hashType), searchKey.scriptType,
+          searchKey.withData);
+      groups.computeIfAbsent(group, k -> new ArrayList<>()).add(searchKey);
+    }
+
+    List<Scan> scans = new ArrayList<>();
+    for (List<SearchKey> group : groups.values()) {
+      if (group.size() < Math.max(minGroupSize, 2)) {
+        for (SearchKey searchKey : group) {
+          scans.add(new Scan(searchKey, Collections.singletonList(searchKey)));
+        }
+        continue;
+      }
+      SearchKey first = group.get(0);
+      SearchKey query = new SearchKey();
+      query.script = new Script(first.script.codeHash, commonPrefix(group), first.script.hashType);
+      query.scriptType = first.scriptType;
+      query.scriptSearchMode = ScriptSearchMode.Prefix;
+      query.withData = first.withData;
+      scans.add(new Scan(query, group));
+    }
+    scans.addAll(single);
+    return scans;
+  }
+
+  /**
+   * Hands every live cell of {@code searchKeys} to {@code consumer} with the search key it belongs
+   * to, once for each search key a cell matches. The cells of one search key keep the order of the
+   * indexer.
+   */
+  public void scan(List<SearchKey> searchKeys, BiConsumer<SearchKey, CellResponse> consumer)
+      throws IOException {
+    for (Scan scan : plan(searchKeys)) {
+      run(scan, consumer);
+    }
+  }
+
+  /**
+   * @return the live cells of every search key, in the order of {@code searchKeys}
+   */
+  public Map<SearchKey, List<CellResponse>> getCells(List<SearchKey> searchKeys) throws IOException {
+    // SearchKey compares by identity, so equal search keys get a list each
+    Map<SearchKey, List<CellResponse>> cells = new LinkedHashMap<>();
+    for (SearchKey searchKey : searchKeys) {
+      cells.put(searchKey, new ArrayList<>());
+    }
+    scan(searchKeys, (searchKey, cell) -> cells.get(searchKey).add(cell));
+    return cells;
+  }
+
+  private void run(Scan scan, BiConsumer<SearchKey, CellResponse> consumer) throws IOException {
+    boolean probed = !scan.isMerged();
+    byte[] afterCursor = null;
+    while (true) {
+      CellsResponse response = source.getCells(scan.query, order, limit, afterCursor);
+      if (response.objects == null || response.objects.isEmpty()) {
+        return;
+      }
+      List<List<SearchKey>> matches = new ArrayList<>(response.objects.size());
+      int hits = 0;
+      for (CellResponse cell : response.objects) {
+        List<SearchKey> matched = scan.match(cell);
+        matches.add(matched);
+        hits += matched.isEmpty() ? 0 : 1;
+      }
+      if (!probed) {
+        probed = true;
+        if (response.objects.size() >= limit && hits < minHitRate * response.objects.size()) {
+          // the prefix is too broad
+          for (SearchKey searchKey : scan.searchKeys) {
+            run(new Scan(searchKey, Collections.singletonList(searchKey)), consumer);
+          }
+          return;
+        }
+      }
+      for (int i = 0; i < matches.size(); i++) {
+        for (SearchKey searchKey : matches.get(i)) {
+          consumer.accept(searchKey, response.objects.get(i));
+        }
+      }
+      afterCursor = response.lastCursor;
+    }
+  }
+
+  private static byte[] commonPrefix(List<SearchKey> searchKeys) {
+    byte[] prefix = searchKeys.get(0).script.args;
+    int length = prefix.length;
+    for (SearchKey searchKey : searchKeys) {
+      byte[] args = searchKey.script.args;
+      length = Math.min(length, args.length);
+      for (int i = 0; i < length; i++) {
+        if (args[i] != prefix[i]) {
+          length = i;
+          break;
+        }
+      }
+    }
+    return Arrays.copyOf(prefix, length);
+  }
+}
@@ -6,6 +6,11 @@ import java.util.List;
 
 public class Filter {
   public Script script;
+  /**
+   * Range of the length of the other script, the type script when searching by lock, as
+   * [inclusive, exclusive]. [0, 1] only matches cells without it.
+   */
+  public List<Integer> scriptLenRange;
   public List<Integer> outputDataLenRange;
   public List<Long> outputCapacityRange;
   public List<Integer> blockRange;
@@ -29,6 +29,14 @@ public class SearchKeyBuilder {
     return this;
   }
 
+  public SearchKeyBuilder filterScriptLenRange(int inclusive, int exclusive) {
+    initFilter();
+    this.filter.scriptLenRange = new ArrayList<>(2);
+    this.filter.scriptLenRange.add(inclusive);
+    this.filter.scriptLenRange.add(exclusive);
+    return this;
+  }
+
   public SearchKeyBuilder filterOutputDataLenRange(int inclusive, int exclusive) {
     initFilter();
     this.filter.outputDataLenRange = new ArrayList<>(2);
@@ -0,0 +1,7 @@
+/**
+ * Responses of the CKB indexer RPC.
+ */
+@GenerateTypeAdapters
+package org.nervos.indexer.model.resp;
+
+import org.nervos.ckb.codegen.GenerateTypeAdapters;
@@ -0,0 +1,146 @@
+package indexer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.nervos.ckb.type.CellOutput;
+import org.nervos.ckb.type.OutPoint;
+import org.nervos.ckb.type.Script;
+import org.nervos.ckb.type.ScriptType;
+import org.nervos.indexer.CellsSource;
+import org.nervos.indexer.PrefixQueryPlanner;
+import org.nervos.indexer.model.Filter;
+import org.nervos.indexer.model.Order;
+import org.nervos.indexer.model.ScriptSearchMode;
+import org.nervos.indexer.model.SearchKey;
+import org.nervos.indexer.model.resp.CellResponse;
+import org.nervos.indexer.model.resp.CellsResponse;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+class PrefixQueryPlannerTest {
+  @Test
+  void testMergedScan() throws Exception {
+    // 3 cells for every lock 0..99, the watched locks are 0..49
+    ChainCells chain = new ChainCells(100, 3);
+    List<SearchKey> searchKeys = new ArrayList<>();
+    for (int lock = 0; lock < 50; lock++) {
+      searchKeys.add(searchKey(lock, lock % 2 == 0 ? null : ScriptSearchMode.Exact));
+    }
+    PrefixQueryPlanner planner = new PrefixQueryPlanner(chain).setLimit(100);
+    List<PrefixQueryPlanner.Scan> scans = planner.plan(searchKeys);
+    Assertions.assertEquals(1, scans.size());
+    Assertions.assertTrue(scans.get(0).isMerged());
+    Assertions.assertEquals(ScriptSearchMode.Prefix, scans.get(0).query.scriptSearchMode);
+    Assertions.assertArrayEquals(new byte[19], scans.get(0).query.script.args);
+
+    Map<SearchKey, List<CellResponse>> cells = planner.getCells(searchKeys);
+    for (int lock = 0; lock < 50; lock++) {
+      List<CellResponse> keyCells = cells.get(searchKeys.get(lock));
+      Assertions.assertEquals(3, keyCells.size());
+      for (CellResponse cell : keyCells) {
+        Assertions.assertEquals(lock, cell.output.lock.args[19]);
+      }
+    }
+    // 300 cells in pages of 100 and the empty page, instead of 2 pages for each of 50 keys
+    Assertions.assertEquals(4, chain.calls);
+  }
+
+  @Test
+  void testNestedPrefixes() throws Exception {
+    ChainCells chain = new ChainCells(4, 1);
+    SearchKey all = searchKey(0, null);
+    all.script.args = new byte[19];
+    SearchKey one = searchKey(2, null);
+    Map<SearchKey, List<CellResponse>> cells = new PrefixQueryPlanner(chain)
+        .getCells(Arrays.asList(all, one));
+    Assertions.assertEquals(4, cells.get(all).size());
+    Assertions.assertEquals(1, cells.get(one).size());
+    Assertions.assertEquals(2, cells.get(one).get(0).output.lock.args[19]);
+  }
+
+  @Test
+  void testTooBroad() throws Exception {
+    // the watched locks hold 10 of 10000 cells
+    ChainCells chain = new ChainCells(100, 100);
+    List<SearchKey> searchKeys = Arrays.asList(searchKey(7, null), searchKey(42, null));
+    Map<SearchKey, List<CellResponse>> cells = new PrefixQueryPlanner(chain).setLimit(100)
+        .getCells(searchKeys);
+    Assertions.assertEquals(100, cells.get(searchKeys.get(0)).size());
+    Assertions.assertEquals(100, cells.get(searchKeys.get(1)).size());
+    // the probe page, then 2 pages for each key
+    Assertions.assertEquals(5, chain.calls);
+  }
+
+  @Test
+  void testUnmergedKeys() {
+    SearchKey filtered = searchKey(1, null);
+    filtered.filter = new Filter();
+    SearchKey noScript = new SearchKey();
+    SearchKey type = searchKey(2, null);
+    type.scriptType = ScriptType.TYPE;
+    List<PrefixQueryPlanner.Scan> scans = new PrefixQueryPlanner(new ChainCells(0, 0))
+        .plan(Arrays.asList(filtered, noScript, type, searchKey(3, null)));
+    Assertions.assertEquals(4, scans.size());
+    for (PrefixQueryPlanner.Scan scan : scans) {
+      Assertions.assertFalse(scan.isMerged());
+    }
+  }
+
+  private static SearchKey searchKey(int lock, ScriptSearchMode mode) {
+    SearchKey searchKey = new SearchKey();
+    searchKey.script = lock(lock);
+    searchKey.scriptType = ScriptType.LOCK;
+    searchKey.scriptSearchMode = mode;
+    return searchKey;
+  }
+
+  private static Script lock(int lock) {
+    byte[] args = new byte[20];
+    args[19] = (byte) lock;
+    return new Script(Script.SECP256K1_BLAKE160_SIGNHASH_ALL_CODE_HASH, args, Script.HashType.TYPE);
+  }
+
+  /**
+   * The cells of {@code locks} locks, {@code cellsPerLock} each, ordered by out point index
+   * and served as the indexer does for prefix and exact searches.
+   */
+  static class ChainCells implements CellsSource {
+    final List<CellResponse> cells = new ArrayList<>();
+    int calls;
+
+    ChainCells(int locks, int cellsPerLock) {
+      for (int i = 0; i < locks * cellsPerLock; i++) {
+        CellResponse cell = new CellResponse();
+        cell.outPoint = new OutPoint(new byte[32], i);
+        cell.output = new CellOutput(100_000_000_000L, lock(i % locks));
+        cells.add(cell);
+      }
+    }
+
+    @Override
+    public CellsResponse getCells(SearchKey searchKey, Order order, int limit, byte[] afterCursor) {
+      calls++;
+      int position = afterCursor == null ? 0 : ByteBuffer.wrap(afterCursor).getInt();
+      CellsResponse response = new CellsResponse();
+      response.objects = new ArrayList<>();
+      for (; position < cells.size() && response.objects.size() < limit; position++) {
+        CellResponse cell = cells.get(position);
+        byte[] args = cell.output.lock.args;
+        byte[] wanted = searchKey.script.args;
+        boolean matches = searchKey.scriptSearchMode == ScriptSearchMode.Exact
+            ? Arrays.equals(args, wanted)
+            : args.length >= wanted.length
+            && Arrays.equals(Arrays.copyOf(args, wanted.length), wanted);
+        if (matches) {
+          response.objects.add(cell);
+        }
+      }
+      response.lastCursor = ByteBuffer.allocate(4).putInt(position).array();
+      return response;
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package indexer;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.nervos.ckb.service.RpcService;
+import org.nervos.ckb.service.SocketRpcTransport;
+import org.nervos.ckb.service.VirtualThreads;
+import org.nervos.indexer.DefaultIndexerApi;
+import org.nervos.indexer.InputIterator;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+class VirtualThreadScanTest {
+  private static final String ADDRESS = "ckt1qyqgrfqrklscqeutp3tlqhlcd8xrculgufqspwdp7m";
+  private static final int SCANS = 2000;
+
+  @Test
+  void testScansDoNotTakePlatformThreads() throws Exception {
+    Assumptions.assumeTrue(VirtualThreads.isSupported(), "virtual threads need Java 21");
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    ScheduledExecutorService replies = Executors.newSingleThreadScheduledExecutor();
+    try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+      Thread node = new Thread(() -> serve(server, replies), "stub-node");
+      node.setDaemon(true);
+      node.start();
+      RpcService rpcService =
+          new RpcService(new SocketRpcTransport("127.0.0.1", server.getLocalPort()));
+      DefaultIndexerApi api = new DefaultIndexerApi(rpcService);
+      ExecutorService executor = VirtualThreads.newExecutor("scan");
+      threads.resetPeakThreadCount();
+      List<Future<Boolean>> scans = new ArrayList<>(SCANS);
+      for (int i = 0; i < SCANS; i++) {
+        scans.add(executor.submit(() -> new InputIterator(api).addSearchKey(ADDRESS).hasNext()));
+      }
+      for (Future<Boolean> scan : scans) {
+        Assertions.assertFalse(scan.get(30, TimeUnit.SECONDS));
+      }
+      int peak = threads.getPeakThreadCount();
+      executor.shutdownNow();
+      rpcService.getTransport().close();
+      // the scans wait for their pages together, on a few carrier threads
+      Assertions.assertTrue(peak < SCANS / 10, "peak platform threads " + peak);
+    } finally {
+      replies.shutdownNow();
+    }
+  }
+
+  /**
+   * Answers every {@code get_cells} with an empty page after 200 ms, so the scans overlap.
+   */
+  private static void serve(ServerSocket server, ScheduledExecutorService replies) {
+    try (Socket socket = server.accept();
+         BufferedReader in = new BufferedReader(
+             new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+      Writer out = new BufferedWriter(
+          new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+      String line;
+      while ((line = in.readLine()) != null) {
+        JsonObject request = JsonParser.parseString(line).getAsJsonObject();
+        String reply = "{\"jsonrpc\":\"2.0\",\"id\":" + request.get("id")
+            + ",\"result\":{\"last_cursor\":\"0x\",\"objects\":[]}}\n";
+        replies.schedule(() -> {
+          synchronized (out) {
+            out.write(reply);
+            out.flush();
+          }
+          return null;
+        }, 200, TimeUnit.MILLISECONDS);
+      }
+    } catch (IOException e) {
+      // the test closed the connection
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package org.nervos.ckb;
+
+import org.nervos.ckb.service.RpcResponse;
+import org.nervos.ckb.type.*;
+import org.nervos.indexer.model.Order;
+import org.nervos.indexer.model.SearchKey;
+import org.nervos.indexer.model.resp.*;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link CkbRpcApi}.
+ *
+ * <p>Every returned future completes exceptionally with an {@link java.io.IOException} if the
+ * request fails or the node replies with an RPC error. Cancelling a future aborts its HTTP call.
+ */
+public interface AsyncCkbRpcApi {
+  CompletableFuture<Block> getBlock(byte[] blockHash);
+  CompletableFuture<BlockWithCycles> getBlock(byte[] blockHash, boolean with_cycles);
+  CompletableFuture<PackedBlockWithCycles> getPackedBlock(byte[] blockHash, boolean with_cycles);
+
+  CompletableFuture<Block> getBlockByNumber(long blockNumber);
+  CompletableFuture<BlockWithCycles> getBlockByNumber(long blockNumber, boolean with_cycles);
+  CompletableFuture<PackedBlockWithCycles> getPackedBlockByNumber(long blockNumber, boolean with_cycles);
+
+  CompletableFuture<TransactionWithStatus> getTransaction(byte[] transactionHash);
+
+  /**
+   * get transaction with verbosity value is 1
+   * @param transactionHash the transaction hash
+   * @return the RPC does not return the transaction content and the field transaction must be null.
+   */
+  CompletableFuture<TransactionWithStatus> getTransactionStatus(byte[] transactionHash);
+  CompletableFuture<PackedTransactionWithStatus> getPackedTransaction(byte[] transactionHash);
+  CompletableFuture<byte[]> getBlockHash(long blockNumber);
+
+  CompletableFuture<BlockEconomicState> getBlockEconomicState(byte[] blockHash);
+
+  CompletableFuture<Header> getTipHeader();
+  CompletableFuture<PackedHeader> getPackedTipHeader();
+
+  CompletableFuture<CellWithStatus> getLiveCell(OutPoint outPoint, boolean withData);
+
+  CompletableFuture<Long> getTipBlockNumber();
+
+  CompletableFuture<Epoch> getCurrentEpoch();
+
+  CompletableFuture<Epoch> getEpochByNumber(long epochNumber);
+
+  CompletableFuture<Header> getHeader(byte[] blockHash);
+  CompletableFuture<PackedHeader> getPackedHeader(byte[] blockHash);
+
+  CompletableFuture<Header> getHeaderByNumber(long blockNumber);
+  CompletableFuture<PackedHeader> getPackedHeaderByNumber(long blockNumber);
+
+  CompletableFuture<TransactionProof> getTransactionProof(List<byte[]> txHashes);
+
+  CompletableFuture<TransactionProof> getTransactionProof(List<byte[]> txHashes, byte[] blockHash);
+
+  CompletableFuture<List<byte[]>> verifyTransactionProof(TransactionProof transactionProof);
+  CompletableFuture<TransactionAndWitnessProof> getTransactionAndWitnessProof(List<byte[]> txHashes, byte[] blockHash);
+  CompletableFuture<List<byte[]>> verifyTransactionAndWitnessProof(TransactionAndWitnessProof proof);
+  CompletableFuture<Block> getForkBlock(byte[] blockHash);
+  CompletableFuture<PackedBlockWithCycles> getPackedForkBlock(byte[] blockHash);
+
+  CompletableFuture<Consensus> getConsensus();
+
+  CompletableFuture<Long> getBlockMedianTime(byte[] blockHash);
+
+  CompletableFuture<BlockchainInfo> getBlockchainInfo();
+
+  CompletableFuture<TxPoolInfo> txPoolInfo();
+
+  CompletableFuture<Void> clearTxPool();
+
+  CompletableFuture<RawTxPool> getRawTxPool();
+
+  CompletableFuture<RawTxPoolVerbose> getRawTxPoolVerbose();
+
+  CompletableFuture<byte[]> sendTransaction(Transaction transaction);
+
+  CompletableFuture<byte[]> sendTransaction(Transaction transaction, OutputsValidator outputsValidator);
+
+  CompletableFuture<NodeInfo> localNodeInfo();
+
+  CompletableFuture<List<PeerNodeInfo>> getPeers();
+
+  CompletableFuture<SyncState> syncState();
+
+  CompletableFuture<Void> setNetworkActive(boolean state);
+
+  CompletableFuture<Void> addNode(String peerId, String address);
+
+  CompletableFuture<Void> removeNode(String peerId);
+
+  CompletableFuture<Void> setBan(BannedAddress bannedAddress);
+
+  CompletableFuture<List<BannedResultAddress>> getBannedAddresses();
+
+  CompletableFuture<Void> clearBannedAddresses();
+
+  CompletableFuture<Void> pingPeers();
+
+  @Deprecated
+  CompletableFuture<Cycles> dryRunTransaction(Transaction transaction);
+
+  CompletableFuture<Cycles> estimateCycles(Transaction transaction);
+
+  CompletableFuture<TipResponse> getIndexerTip();
+
+  CompletableFuture<CellsResponse> getCells(SearchKey searchKey, Order order, int limit, byte[] afterCursor);
+
+  CompletableFuture<TxsWithCell> getTransactions(
+      SearchKey searchKey, Order order, int limit, byte[] afterCursor);
+
+  CompletableFuture<TxsWithCells> getTransactionsGrouped(
+      SearchKey searchKey, Order order, int limit, byte[] afterCursor);
+
+  CompletableFuture<CellCapacityResponse> getCellsCapacity(SearchKey searchKey);
+
+  CompletableFuture<Long> calculateDaoMaximumWithdraw(OutPoint outPoint, byte[] withdrawBlockHash);
+
+  CompletableFuture<List<RpcResponse>> batchRPC(List<List> requests);
+
+  /**
+   * Get the fee_rate statistics of confirmed blocks on the chain
+   *
+   * @param target Specify the number (1 - 101) of confirmed blocks to be counted.
+   *               If the number is even, automatically add one. If not specified(null), defaults to 21.
+   * @return Returns the fee_rate statistics of confirmed blocks on the chain.
+   */
+  CompletableFuture<FeeRateStatics> getFeeRateStatics(Integer target);
+}
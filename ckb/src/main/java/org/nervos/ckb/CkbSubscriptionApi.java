@@ -0,0 +1,31 @@
+package org.nervos.ckb;
+
+import org.nervos.ckb.service.Subscription;
+import org.nervos.ckb.service.SubscriptionListener;
+import org.nervos.ckb.service.SubscriptionStream;
+import org.nervos.ckb.service.SubscriptionTopic;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Push counterpart of polling {@link CkbRpcApi}: the node publishes new tips and pool events over
+ * a persistent connection.
+ */
+public interface CkbSubscriptionApi extends Closeable {
+  /**
+   * Subscribes {@code listener} to {@code topic}.
+   *
+   * @throws IOException if the node rejects the subscription or cannot be reached
+   */
+  <T> Subscription subscribe(SubscriptionTopic<T> topic, SubscriptionListener<T> listener)
+      throws IOException;
+
+  /**
+   * Subscribes to {@code topic} and buffers up to {@code capacity} events for the consumer of the
+   * returned stream. Once the buffer is full, reading the connection waits for the consumer.
+   *
+   * @throws IOException if the node rejects the subscription or cannot be reached
+   */
+  <T> SubscriptionStream<T> stream(SubscriptionTopic<T> topic, int capacity) throws IOException;
+}
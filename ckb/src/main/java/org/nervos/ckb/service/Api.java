@@ -16,6 +16,7 @@ import java.util.List;
 public class Api implements CkbRpcApi {
 
   private RpcService rpcService;
+  private FetchMode fetchMode = FetchMode.JSON;
 
   public Api(String nodeUrl) {
     this(nodeUrl, false);
@@ -29,13 +30,45 @@ public class Api implements CkbRpcApi {
     this.rpcService = rpcService;
   }
 
+  /**
+   * Sets how blocks, headers and transactions are fetched. With {@link FetchMode#PACKED}, the
+   * block, header, tip header, fork block and transaction queries request the packed variants and
+   * unpack them locally. Defaults to {@link FetchMode#JSON}.
+   */
+  public void setFetchMode(FetchMode fetchMode) {
+    this.fetchMode = fetchMode;
+  }
+
+  public FetchMode getFetchMode() {
+    return fetchMode;
+  }
+
+  private boolean isPacked() {
+    return fetchMode == FetchMode.PACKED;
+  }
+
+  private static Block unpackBlock(PackedBlockWithCycles packed) {
+    return packed == null ? null : packed.unpack().block;
+  }
+
+  private static Header unpackHeader(PackedHeader packed) {
+    return packed == null ? null : packed.unpack();
+  }
+
   @Override
   public Block getBlock(byte[] blockHash) throws IOException {
+    if (isPacked()) {
+      return unpackBlock(getPackedBlock(blockHash, false));
+    }
     return rpcService.post("get_block", Collections.singletonList(blockHash), Block.class);
   }
 
   @Override
   public BlockWithCycles getBlock(byte[] blockHash, boolean with_cycles) throws IOException {
+    if (isPacked()) {
+      PackedBlockWithCycles packed = getPackedBlock(blockHash, with_cycles);
+      return packed == null ? null : packed.unpack();
+    }
     List params = Arrays.asList(blockHash, null, with_cycles);
     if (with_cycles) {
       return rpcService.post("get_block", params, BlockWithCycles.class);
@@ -49,12 +82,19 @@ public class Api implements CkbRpcApi {
 
   @Override
   public Block getBlockByNumber(long blockNumber) throws IOException {
+    if (isPacked()) {
+      return unpackBlock(getPackedBlockByNumber(blockNumber, false));
+    }
     return rpcService.post(
         "get_block_by_number", Collections.singletonList(blockNumber), Block.class);
   }
 
   @Override
   public BlockWithCycles getBlockByNumber(long blockNumber, boolean with_cycles) throws IOException {
+    if (isPacked()) {
+      PackedBlockWithCycles packed = getPackedBlockByNumber(blockNumber, with_cycles);
+      return packed == null ? null : packed.unpack();
+    }
     List params = Arrays.asList(blockNumber, null, with_cycles);
     if (with_cycles) {
       return rpcService.post("get_block_by_number", params, BlockWithCycles.class);
@@ -96,6 +136,10 @@ public class Api implements CkbRpcApi {
 
   @Override
   public TransactionWithStatus getTransaction(byte[] transactionHash) throws IOException {
+    if (isPacked()) {
+      PackedTransactionWithStatus packed = getPackedTransaction(transactionHash);
+      return packed == null ? null : packed.unpack();
+    }
     return rpcService.post(
         "get_transaction", Collections.singletonList(transactionHash), TransactionWithStatus.class);
   }
@@ -123,6 +167,9 @@ public class Api implements CkbRpcApi {
 
   @Override
   public Header getTipHeader() throws IOException {
+    if (isPacked()) {
+      return unpackHeader(getPackedTipHeader());
+    }
     return rpcService.post("get_tip_header", Collections.<String>emptyList(), Header.class);
   }
 
@@ -162,6 +209,9 @@ public class Api implements CkbRpcApi {
 
   @Override
   public Header getHeader(byte[] blockHash) throws IOException {
+    if (isPacked()) {
+      return unpackHeader(getPackedHeader(blockHash));
+    }
     return rpcService.post("get_header", Collections.singletonList(blockHash), Header.class);
   }
 
@@ -176,6 +226,9 @@ public class Api implements CkbRpcApi {
 
   @Override
   public Header getHeaderByNumber(long blockNumber) throws IOException {
+    if (isPacked()) {
+      return unpackHeader(getPackedHeaderByNumber(blockNumber));
+    }
     return rpcService.post(
         "get_header_by_number", Collections.singletonList(blockNumber), Header.class);
   }
@@ -229,6 +282,9 @@ public class Api implements CkbRpcApi {
 
   @Override
   public Block getForkBlock(byte[] blockHash) throws IOException {
+    if (isPacked()) {
+      return unpackBlock(getPackedForkBlock(blockHash));
+    }
     return rpcService.post("get_fork_block", Collections.singletonList(blockHash), Block.class);
   }
 
@@ -423,6 +479,16 @@ public class Api implements CkbRpcApi {
         Long.class);
   }
 
+  /**
+   * Start a typed batch. Calls queued on the returned request are sent together in one HTTP
+   * request when it is executed.
+   *
+   * @return a new empty batch bound to this api's node
+   */
+  public BatchRequest newBatchRequest() {
+    return new BatchRequest(rpcService);
+  }
+
   /**
    * Batch RPC request
    *
@@ -0,0 +1,468 @@
+package org.nervos.ckb.service;
+
+import com.google.gson.reflect.TypeToken;
+import org.nervos.ckb.AsyncCkbRpcApi;
+import org.nervos.ckb.type.*;
+import org.nervos.ckb.utils.Convert;
+import org.nervos.indexer.model.Order;
+import org.nervos.indexer.model.SearchKey;
+import org.nervos.indexer.model.resp.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+public class AsyncApi implements AsyncCkbRpcApi {
+
+  private RpcService rpcService;
+
+  public AsyncApi(String nodeUrl) {
+    this(nodeUrl, false);
+  }
+
+  public AsyncApi(String nodeUrl, boolean isDebug) {
+    rpcService = new RpcService(nodeUrl, isDebug);
+  }
+
+  public AsyncApi(RpcService rpcService) {
+    this.rpcService = rpcService;
+  }
+
+  @Override
+  public CompletableFuture<Block> getBlock(byte[] blockHash) {
+    return rpcService.postAsync("get_block", Collections.singletonList(blockHash), Block.class);
+  }
+
+  @Override
+  public CompletableFuture<BlockWithCycles> getBlock(byte[] blockHash, boolean with_cycles) {
+    List params = Arrays.asList(blockHash, null, with_cycles);
+    if (with_cycles) {
+      return rpcService.postAsync("get_block", params, BlockWithCycles.class);
+    } else {
+      CompletableFuture<Block> future = rpcService.postAsync("get_block", params, Block.class);
+      return map(future, AsyncApi::toBlockWithCycles);
+    }
+  }
+
+  @Override
+  public CompletableFuture<Block> getBlockByNumber(long blockNumber) {
+    return rpcService.postAsync(
+        "get_block_by_number", Collections.singletonList(blockNumber), Block.class);
+  }
+
+  @Override
+  public CompletableFuture<BlockWithCycles> getBlockByNumber(long blockNumber, boolean with_cycles) {
+    List params = Arrays.asList(blockNumber, null, with_cycles);
+    if (with_cycles) {
+      return rpcService.postAsync("get_block_by_number", params, BlockWithCycles.class);
+    } else {
+      CompletableFuture<Block> future =
+          rpcService.postAsync("get_block_by_number", params, Block.class);
+      return map(future, block -> block == null ? null : toBlockWithCycles(block));
+    }
+  }
+
+  @Override
+  public CompletableFuture<PackedBlockWithCycles> getPackedBlock(byte[] blockHash, boolean with_cycles) {
+    if (with_cycles) {
+      return rpcService.postAsync("get_block", Arrays.asList(blockHash, 0, true), PackedBlockWithCycles.class);
+    } else {
+      CompletableFuture<String> future =
+          rpcService.postAsync("get_block", Arrays.asList(blockHash, 0, false), String.class);
+      return map(future, AsyncApi::toPackedBlock);
+    }
+  }
+
+  @Override
+  public CompletableFuture<PackedBlockWithCycles> getPackedBlockByNumber(long blockNumber, boolean with_cycles) {
+    List params = Arrays.asList(blockNumber, 0, with_cycles);
+    if (with_cycles) {
+      return rpcService.postAsync("get_block_by_number", params, PackedBlockWithCycles.class);
+    } else {
+      CompletableFuture<String> future =
+          rpcService.postAsync("get_block_by_number", params, String.class);
+      return map(future, AsyncApi::toPackedBlock);
+    }
+  }
+
+  @Override
+  public CompletableFuture<TransactionWithStatus> getTransaction(byte[] transactionHash) {
+    return rpcService.postAsync(
+        "get_transaction", Collections.singletonList(transactionHash), TransactionWithStatus.class);
+  }
+
+  @Override
+  public CompletableFuture<TransactionWithStatus> getTransactionStatus(byte[] transactionHash) {
+    return rpcService.postAsync("get_transaction", Arrays.asList(transactionHash, 1), TransactionWithStatus.class);
+  }
+
+  @Override
+  public CompletableFuture<PackedTransactionWithStatus> getPackedTransaction(byte[] transactionHash) {
+    return rpcService.postAsync("get_transaction", Arrays.asList(transactionHash, 0), PackedTransactionWithStatus.class);
+  }
+
+  @Override
+  public CompletableFuture<byte[]> getBlockHash(long blockNumber) {
+    return rpcService.postAsync("get_block_hash", Collections.singletonList(blockNumber), byte[].class);
+  }
+
+  @Override
+  public CompletableFuture<BlockEconomicState> getBlockEconomicState(byte[] blockHash) {
+    return rpcService.postAsync(
+        "get_block_economic_state", Collections.singletonList(blockHash), BlockEconomicState.class);
+  }
+
+  @Override
+  public CompletableFuture<Header> getTipHeader() {
+    return rpcService.postAsync("get_tip_header", Collections.<String>emptyList(), Header.class);
+  }
+
+  @Override
+  public CompletableFuture<PackedHeader> getPackedTipHeader() {
+    CompletableFuture<String> future =
+        rpcService.postAsync("get_tip_header", Collections.singletonList(0), String.class);
+    return map(future, AsyncApi::toPackedHeader);
+  }
+
+  @Override
+  public CompletableFuture<CellWithStatus> getLiveCell(OutPoint outPoint, boolean withData) {
+    return rpcService.postAsync(
+        "get_live_cell",
+        Arrays.asList(Convert.parseOutPoint(outPoint), withData),
+        CellWithStatus.class);
+  }
+
+  @Override
+  public CompletableFuture<Long> getTipBlockNumber() {
+    return rpcService.postAsync(
+        "get_tip_block_number", Collections.<String>emptyList(), Long.class);
+  }
+
+  @Override
+  public CompletableFuture<Epoch> getCurrentEpoch() {
+    return rpcService.postAsync("get_current_epoch", Collections.<String>emptyList(), Epoch.class);
+  }
+
+  @Override
+  public CompletableFuture<Epoch> getEpochByNumber(long epochNumber) {
+    return rpcService.postAsync(
+        "get_epoch_by_number", Collections.singletonList(epochNumber), Epoch.class);
+  }
+
+  @Override
+  public CompletableFuture<Header> getHeader(byte[] blockHash) {
+    return rpcService.postAsync("get_header", Collections.singletonList(blockHash), Header.class);
+  }
+
+  @Override
+  public CompletableFuture<PackedHeader> getPackedHeader(byte[] blockHash) {
+    CompletableFuture<String> future =
+        rpcService.postAsync("get_header", Arrays.asList(blockHash, 0), String.class);
+    return map(future, AsyncApi::toPackedHeader);
+  }
+
+  @Override
+  public CompletableFuture<Header> getHeaderByNumber(long blockNumber) {
+    return rpcService.postAsync(
+        "get_header_by_number", Collections.singletonList(blockNumber), Header.class);
+  }
+
+  @Override
+  public CompletableFuture<PackedHeader> getPackedHeaderByNumber(long blockNumber) {
+    CompletableFuture<String> future = rpcService.postAsync(
+        "get_header_by_number", Arrays.asList(blockNumber, 0), String.class);
+    return map(future, AsyncApi::toPackedHeader);
+  }
+
+  @Override
+  public CompletableFuture<TransactionProof> getTransactionProof(List<byte[]> txHashes) {
+    return rpcService.postAsync(
+        "get_transaction_proof", Collections.singletonList(txHashes), TransactionProof.class);
+  }
+
+  @Override
+  public CompletableFuture<TransactionProof> getTransactionProof(List<byte[]> txHashes, byte[] blockHash) {
+    return rpcService.postAsync(
+        "get_transaction_proof", Arrays.asList(txHashes, blockHash), TransactionProof.class);
+  }
+
+  @Override
+  public CompletableFuture<List<byte[]>> verifyTransactionProof(TransactionProof transactionProof) {
+    return rpcService.postAsync(
+        "verify_transaction_proof",
+        Collections.singletonList(transactionProof),
+        new TypeToken<List<byte[]>>() {}.getType());
+  }
+
+  @Override
+  public CompletableFuture<TransactionAndWitnessProof> getTransactionAndWitnessProof(List<byte[]> txHashes, byte[] blockHash) {
+    return rpcService.postAsync(
+        "get_transaction_and_witness_proof",
+        blockHash == null ? Collections.singletonList(txHashes): Arrays.asList(txHashes, blockHash),
+        TransactionAndWitnessProof.class);
+  }
+
+  @Override
+  public CompletableFuture<List<byte[]>> verifyTransactionAndWitnessProof(TransactionAndWitnessProof proof) {
+    return rpcService.postAsync(
+        "verify_transaction_and_witness_proof",
+        Collections.singletonList(proof),
+        new TypeToken<List<byte[]>>() {}.getType());
+  }
+
+  @Override
+  public CompletableFuture<Block> getForkBlock(byte[] blockHash) {
+    return rpcService.postAsync("get_fork_block", Collections.singletonList(blockHash), Block.class);
+  }
+
+  @Override
+  public CompletableFuture<PackedBlockWithCycles> getPackedForkBlock(byte[] blockHash) {
+    CompletableFuture<String> future =
+        rpcService.postAsync("get_fork_block", Arrays.asList(blockHash, 0), String.class);
+    return map(future, AsyncApi::toPackedBlock);
+  }
+
+  @Override
+  public CompletableFuture<Consensus> getConsensus() {
+    return rpcService.postAsync("get_consensus", Collections.emptyList(), Consensus.class);
+  }
+
+  @Override
+  public CompletableFuture<Long> getBlockMedianTime(byte[] blockHash) {
+    return rpcService.postAsync("get_block_median_time", Arrays.asList(blockHash), Long.class);
+  }
+
+  /** Stats RPC */
+  @Override
+  public CompletableFuture<BlockchainInfo> getBlockchainInfo() {
+    return rpcService.postAsync("get_blockchain_info", Collections.emptyList(), BlockchainInfo.class);
+  }
+
+  /** Pool RPC */
+  @Override
+  public CompletableFuture<TxPoolInfo> txPoolInfo() {
+    return rpcService.postAsync("tx_pool_info", Collections.emptyList(), TxPoolInfo.class);
+  }
+
+  @Override
+  public CompletableFuture<Void> clearTxPool() {
+    return toVoid(rpcService.postAsync("clear_tx_pool", Collections.emptyList(), Object.class));
+  }
+
+  @Override
+  public CompletableFuture<RawTxPool> getRawTxPool() {
+    return rpcService.postAsync("get_raw_tx_pool", Collections.emptyList(), RawTxPool.class);
+  }
+
+  @Override
+  public CompletableFuture<RawTxPoolVerbose> getRawTxPoolVerbose() {
+    return rpcService.postAsync(
+        "get_raw_tx_pool", Collections.singletonList(true), RawTxPoolVerbose.class);
+  }
+
+  @Override
+  public CompletableFuture<byte[]> sendTransaction(Transaction transaction) {
+    return rpcService.postAsync(
+        "send_transaction",
+        Arrays.asList(Convert.parseTransaction(transaction), OutputsValidator.PASSTHROUGH),
+        byte[].class);
+  }
+
+  @Override
+  public CompletableFuture<byte[]> sendTransaction(Transaction transaction, OutputsValidator outputsValidator) {
+    return rpcService.postAsync(
+        "send_transaction",
+        Arrays.asList(Convert.parseTransaction(transaction), outputsValidator),
+        byte[].class);
+  }
+
+  /** Net RPC */
+  @Override
+  public CompletableFuture<NodeInfo> localNodeInfo() {
+    return rpcService.postAsync("local_node_info", Collections.emptyList(), NodeInfo.class);
+  }
+
+  @Override
+  public CompletableFuture<List<PeerNodeInfo>> getPeers() {
+    return rpcService.postAsync(
+        "get_peers", Collections.emptyList(), new TypeToken<List<PeerNodeInfo>>() {}.getType());
+  }
+
+  @Override
+  public CompletableFuture<SyncState> syncState() {
+    return rpcService.postAsync("sync_state", Collections.emptyList(), SyncState.class);
+  }
+
+  @Override
+  public CompletableFuture<Void> setNetworkActive(boolean state) {
+    return toVoid(
+        rpcService.postAsync("set_network_active", Collections.singletonList(state), Object.class));
+  }
+
+  @Override
+  public CompletableFuture<Void> addNode(String peerId, String address) {
+    return toVoid(rpcService.postAsync("add_node", Arrays.asList(peerId, address), Object.class));
+  }
+
+  @Override
+  public CompletableFuture<Void> removeNode(String peerId) {
+    return toVoid(
+        rpcService.postAsync("remove_node", Collections.singletonList(peerId), Object.class));
+  }
+
+  @Override
+  public CompletableFuture<Void> setBan(BannedAddress bannedAddress) {
+    return toVoid(rpcService.postAsync(
+        "set_ban",
+        Arrays.asList(
+            bannedAddress.address,
+            bannedAddress.command,
+            bannedAddress.banTime,
+            bannedAddress.absolute,
+            bannedAddress.reason),
+        Object.class));
+  }
+
+  @Override
+  public CompletableFuture<List<BannedResultAddress>> getBannedAddresses() {
+    return rpcService.postAsync(
+        "get_banned_addresses",
+        Collections.emptyList(),
+        new TypeToken<List<BannedResultAddress>>() {}.getType());
+  }
+
+  @Override
+  public CompletableFuture<Void> clearBannedAddresses() {
+    return toVoid(
+        rpcService.postAsync("clear_banned_addresses", Collections.emptyList(), Object.class));
+  }
+
+  @Override
+  public CompletableFuture<Void> pingPeers() {
+    return toVoid(rpcService.postAsync("ping_peers", Collections.emptyList(), Object.class));
+  }
+
+  /** Experiment RPC */
+  @Deprecated
+  @Override
+  public CompletableFuture<Cycles> dryRunTransaction(Transaction transaction) {
+    return rpcService.postAsync(
+        "dry_run_transaction",
+        Collections.singletonList(Convert.parseTransaction(transaction)),
+        Cycles.class);
+  }
+
+  @Override
+  public CompletableFuture<Cycles> estimateCycles(Transaction transaction) {
+    return rpcService.postAsync(
+        "estimate_cycles",
+        Collections.singletonList(Convert.parseTransaction(transaction)),
+        Cycles.class);
+  }
+
+  @Override
+  public CompletableFuture<TipResponse> getIndexerTip() {
+    return this.rpcService.postAsync("get_indexer_tip", Collections.emptyList(), TipResponse.class);
+  }
+
+  @Override
+  public CompletableFuture<CellsResponse> getCells(
+      SearchKey searchKey, Order order, int limit, byte[] afterCursor) {
+    return this.rpcService.postAsync("get_cells",
+                                     Arrays.asList(searchKey, order, limit, afterCursor),
+                                     CellsResponse.class);
+  }
+
+  @Override
+  public CompletableFuture<TxsWithCell> getTransactions(
+      SearchKey searchKey, Order order, int limit, byte[] afterCursor) {
+    searchKey.groupByTransaction = false;
+    return this.rpcService.postAsync("get_transactions",
+                                     Arrays.asList(searchKey, order, limit, afterCursor),
+                                     TxsWithCell.class);
+  }
+
+  @Override
+  public CompletableFuture<TxsWithCells> getTransactionsGrouped(
+      SearchKey searchKey, Order order, int limit, byte[] afterCursor) {
+    searchKey.groupByTransaction = true;
+    return this.rpcService.postAsync("get_transactions",
+                                     Arrays.asList(searchKey, order, limit, afterCursor),
+                                     TxsWithCells.class);
+  }
+
+  @Override
+  public CompletableFuture<CellCapacityResponse> getCellsCapacity(SearchKey searchKey) {
+    return this.rpcService.postAsync("get_cells_capacity",
+                                     Arrays.asList(searchKey),
+                                     CellCapacityResponse.class);
+  }
+
+  @Override
+  public CompletableFuture<Long> calculateDaoMaximumWithdraw(OutPoint outPoint, byte[] withdrawBlockHash) {
+    return rpcService.postAsync(
+        "calculate_dao_maximum_withdraw",
+        Arrays.asList(outPoint, withdrawBlockHash),
+        Long.class);
+  }
+
+  /**
+   * Batch RPC request
+   *
+   * @param requests A list of rpc method and parameters and the first element of each list must be
+   *                 rpc method. Example: [["get_block_hash", "0x200"],["get_block_by_number", "0x300"]]
+   * @return A future of the list of rpc response
+   */
+  @Override
+  public CompletableFuture<List<RpcResponse>> batchRPC(List<List> requests) {
+    return rpcService.batchPostAsync(requests);
+  }
+
+  @Override
+  public CompletableFuture<FeeRateStatics> getFeeRateStatics(Integer target) {
+    return rpcService.postAsync(
+        "get_fee_rate_statics",
+        target == null ? Collections.emptyList() : Collections.singletonList(target),
+        FeeRateStatics.class);
+  }
+
+  private static BlockWithCycles toBlockWithCycles(Block block) {
+    BlockWithCycles ret = new BlockWithCycles();
+    ret.block = block;
+    return ret;
+  }
+
+  private static PackedBlockWithCycles toPackedBlock(String s) {
+    if (s == null) return null;
+    PackedBlockWithCycles ret = new PackedBlockWithCycles();
+    ret.block = s;
+    return ret;
+  }
+
+  private static PackedHeader toPackedHeader(String s) {
+    if (s == null) return null;
+    PackedHeader ret = new PackedHeader();
+    ret.header = s;
+    return ret;
+  }
+
+  private static CompletableFuture<Void> toVoid(CompletableFuture<Object> future) {
+    return map(future, result -> null);
+  }
+
+  /**
+   * Maps the result of an RPC future while keeping cancellation working: cancelling the mapped
+   * future also cancels the source future and thereby aborts the HTTP call.
+   */
+  private static <T, R> CompletableFuture<R> map(CompletableFuture<T> future, Function<T, R> fn) {
+    CompletableFuture<R> mapped = future.thenApply(fn);
+    mapped.whenComplete((result, e) -> {
+      if (mapped.isCancelled()) {
+        future.cancel(true);
+      }
+    });
+    return mapped;
+  }
+}
@@ -0,0 +1,261 @@
+package org.nervos.ckb.service;
+
+import com.google.gson.reflect.TypeToken;
+import org.nervos.ckb.type.*;
+import org.nervos.ckb.utils.Convert;
+import org.nervos.indexer.model.Order;
+import org.nervos.indexer.model.SearchKey;
+import org.nervos.indexer.model.resp.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Typed JSON-RPC batch for the CKB node RPCs.
+ *
+ * <p>Every method queues the same request as its counterpart in {@link Api} and returns a handle
+ * that is filled with the decoded result once {@link #execute()} has sent the whole batch in a
+ * single HTTP request. Errors are reported per handle.
+ *
+ * <pre>{@code
+ * BatchRequest batch = api.newBatchRequest();
+ * List<RpcBatch.Handle<Header>> headers = new ArrayList<>();
+ * for (long n = from; n < to; n++) {
+ *   headers.add(batch.getHeaderByNumber(n));
+ * }
+ * batch.execute();
+ * Header first = headers.get(0).get();
+ * }</pre>
+ */
+public class BatchRequest extends RpcBatch {
+
+  public BatchRequest(RpcService rpcService) {
+    super(rpcService);
+  }
+
+  public Handle<Block> getBlock(byte[] blockHash) {
+    return add("get_block", Collections.singletonList(blockHash), Block.class);
+  }
+
+  public Handle<BlockWithCycles> getBlock(byte[] blockHash, boolean with_cycles) {
+    List params = Arrays.asList(blockHash, null, with_cycles);
+    if (with_cycles) {
+      return add("get_block", params, BlockWithCycles.class);
+    } else {
+      return this.<Block>add("get_block", params, Block.class).map(BatchRequest::toBlockWithCycles);
+    }
+  }
+
+  public Handle<PackedBlockWithCycles> getPackedBlock(byte[] blockHash, boolean with_cycles) {
+    if (with_cycles) {
+      return add("get_block", Arrays.asList(blockHash, 0, true), PackedBlockWithCycles.class);
+    } else {
+      return this.<String>add("get_block", Arrays.asList(blockHash, 0, false), String.class)
+          .map(BatchRequest::toPackedBlock);
+    }
+  }
+
+  public Handle<Block> getBlockByNumber(long blockNumber) {
+    return add("get_block_by_number", Collections.singletonList(blockNumber), Block.class);
+  }
+
+  public Handle<BlockWithCycles> getBlockByNumber(long blockNumber, boolean with_cycles) {
+    List params = Arrays.asList(blockNumber, null, with_cycles);
+    if (with_cycles) {
+      return add("get_block_by_number", params, BlockWithCycles.class);
+    } else {
+      return this.<Block>add("get_block_by_number", params, Block.class)
+          .map(block -> block == null ? null : toBlockWithCycles(block));
+    }
+  }
+
+  public Handle<PackedBlockWithCycles> getPackedBlockByNumber(long blockNumber, boolean with_cycles) {
+    List params = Arrays.asList(blockNumber, 0, with_cycles);
+    if (with_cycles) {
+      return add("get_block_by_number", params, PackedBlockWithCycles.class);
+    } else {
+      return this.<String>add("get_block_by_number", params, String.class)
+          .map(BatchRequest::toPackedBlock);
+    }
+  }
+
+  public Handle<TransactionWithStatus> getTransaction(byte[] transactionHash) {
+    return add(
+        "get_transaction", Collections.singletonList(transactionHash), TransactionWithStatus.class);
+  }
+
+  public Handle<TransactionWithStatus> getTransactionStatus(byte[] transactionHash) {
+    return add("get_transaction", Arrays.asList(transactionHash, 1), TransactionWithStatus.class);
+  }
+
+  public Handle<PackedTransactionWithStatus> getPackedTransaction(byte[] transactionHash) {
+    return add("get_transaction", Arrays.asList(transactionHash, 0), PackedTransactionWithStatus.class);
+  }
+
+  public Handle<byte[]> getBlockHash(long blockNumber) {
+    return add("get_block_hash", Collections.singletonList(blockNumber), byte[].class);
+  }
+
+  public Handle<BlockEconomicState> getBlockEconomicState(byte[] blockHash) {
+    return add(
+        "get_block_economic_state", Collections.singletonList(blockHash), BlockEconomicState.class);
+  }
+
+  public Handle<Header> getTipHeader() {
+    return add("get_tip_header", Collections.<String>emptyList(), Header.class);
+  }
+
+  public Handle<PackedHeader> getPackedTipHeader() {
+    return this.<String>add("get_tip_header", Collections.singletonList(0), String.class)
+        .map(BatchRequest::toPackedHeader);
+  }
+
+  public Handle<CellWithStatus> getLiveCell(OutPoint outPoint, boolean withData) {
+    return add(
+        "get_live_cell",
+        Arrays.asList(Convert.parseOutPoint(outPoint), withData),
+        CellWithStatus.class);
+  }
+
+  public Handle<Long> getTipBlockNumber() {
+    return add("get_tip_block_number", Collections.<String>emptyList(), Long.class);
+  }
+
+  public Handle<Epoch> getCurrentEpoch() {
+    return add("get_current_epoch", Collections.<String>emptyList(), Epoch.class);
+  }
+
+  public Handle<Epoch> getEpochByNumber(long epochNumber) {
+    return add("get_epoch_by_number", Collections.singletonList(epochNumber), Epoch.class);
+  }
+
+  public Handle<Header> getHeader(byte[] blockHash) {
+    return add("get_header", Collections.singletonList(blockHash), Header.class);
+  }
+
+  public Handle<PackedHeader> getPackedHeader(byte[] blockHash) {
+    return this.<String>add("get_header", Arrays.asList(blockHash, 0), String.class)
+        .map(BatchRequest::toPackedHeader);
+  }
+
+  public Handle<Header> getHeaderByNumber(long blockNumber) {
+    return add("get_header_by_number", Collections.singletonList(blockNumber), Header.class);
+  }
+
+  public Handle<PackedHeader> getPackedHeaderByNumber(long blockNumber) {
+    return this.<String>add("get_header_by_number", Arrays.asList(blockNumber, 0), String.class)
+        .map(BatchRequest::toPackedHeader);
+  }
+
+  public Handle<TransactionProof> getTransactionProof(List<byte[]> txHashes) {
+    return add("get_transaction_proof", Collections.singletonList(txHashes), TransactionProof.class);
+  }
+
+  public Handle<TransactionProof> getTransactionProof(List<byte[]> txHashes, byte[] blockHash) {
+    return add("get_transaction_proof", Arrays.asList(txHashes, blockHash), TransactionProof.class);
+  }
+
+  public Handle<List<byte[]>> verifyTransactionProof(TransactionProof transactionProof) {
+    return add(
+        "verify_transaction_proof",
+        Collections.singletonList(transactionProof),
+        new TypeToken<List<byte[]>>() {}.getType());
+  }
+
+  public Handle<Block> getForkBlock(byte[] blockHash) {
+    return add("get_fork_block", Collections.singletonList(blockHash), Block.class);
+  }
+
+  public Handle<Consensus> getConsensus() {
+    return add("get_consensus", Collections.emptyList(), Consensus.class);
+  }
+
+  public Handle<Long> getBlockMedianTime(byte[] blockHash) {
+    return add("get_block_median_time", Collections.singletonList(blockHash), Long.class);
+  }
+
+  public Handle<BlockchainInfo> getBlockchainInfo() {
+    return add("get_blockchain_info", Collections.emptyList(), BlockchainInfo.class);
+  }
+
+  public Handle<TxPoolInfo> txPoolInfo() {
+    return add("tx_pool_info", Collections.emptyList(), TxPoolInfo.class);
+  }
+
+  public Handle<byte[]> sendTransaction(Transaction transaction) {
+    return sendTransaction(transaction, OutputsValidator.PASSTHROUGH);
+  }
+
+  public Handle<byte[]> sendTransaction(Transaction transaction, OutputsValidator outputsValidator) {
+    return add(
+        "send_transaction",
+        Arrays.asList(Convert.parseTransaction(transaction), outputsValidator),
+        byte[].class);
+  }
+
+  public Handle<Cycles> estimateCycles(Transaction transaction) {
+    return add(
+        "estimate_cycles",
+        Collections.singletonList(Convert.parseTransaction(transaction)),
+        Cycles.class);
+  }
+
+  public Handle<TipResponse> getIndexerTip() {
+    return add("get_indexer_tip", Collections.emptyList(), TipResponse.class);
+  }
+
+  public Handle<CellsResponse> getCells(SearchKey searchKey, Order order, int limit, byte[] afterCursor) {
+    return add("get_cells", Arrays.asList(searchKey, order, limit, afterCursor), CellsResponse.class);
+  }
+
+  public Handle<TxsWithCell> getTransactions(
+      SearchKey searchKey, Order order, int limit, byte[] afterCursor) {
+    searchKey.groupByTransaction = false;
+    return add("get_transactions", Arrays.asList(searchKey, order, limit, afterCursor), TxsWithCell.class);
+  }
+
+  public Handle<TxsWithCells> getTransactionsGrouped(
+      SearchKey searchKey, Order order, int limit, byte[] afterCursor) {
+    searchKey.groupByTransaction = true;
+    return add("get_transactions", Arrays.asList(searchKey, order, limit, afterCursor), TxsWithCells.class);
+  }
+
+  public Handle<CellCapacityResponse> getCellsCapacity(SearchKey searchKey) {
+    return add("get_cells_capacity", Collections.singletonList(searchKey), CellCapacityResponse.class);
+  }
+
+  public Handle<Long> calculateDaoMaximumWithdraw(OutPoint outPoint, byte[] withdrawBlockHash) {
+    return add(
+        "calculate_dao_maximum_withdraw",
+        Arrays.asList(outPoint, withdrawBlockHash),
+        Long.class);
+  }
+
+  public Handle<FeeRateStatics> getFeeRateStatics(Integer target) {
+    return add(
+        "get_fee_rate_statics",
+        target == null ? Collections.emptyList() : Collections.singletonList(target),
+        FeeRateStatics.class);
+  }
+
+  private static BlockWithCycles toBlockWithCycles(Block block) {
+    BlockWithCycles ret = new BlockWithCycles();
+    ret.block = block;
+    return ret;
+  }
+
+  private static PackedBlockWithCycles toPackedBlock(String s) {
+    if (s == null) return null;
+    PackedBlockWithCycles ret = new PackedBlockWithCycles();
+    ret.block = s;
+    return ret;
+  }
+
+  private static PackedHeader toPackedHeader(String s) {
+    if (s == null) return null;
+    PackedHeader ret = new PackedHeader();
+    ret.header = s;
+    return ret;
+  }
+}
@@ -0,0 +1,209 @@
+package org.nervos.ckb.service;
+
+import org.nervos.ckb.AsyncCkbRpcApi;
+import org.nervos.ckb.type.Block;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads the blocks of the heights {@code [from, to)} with several requests in flight and
+ * returns them strictly in height order.
+ *
+ * <p>At most {@link #setWindow(int) window} blocks are requested ahead of the consumer, counting
+ * both the requests in flight and the blocks waiting to be consumed, so a slow consumer stops the
+ * downloads instead of buffering the range. A failed block, or one the node does not have yet, is
+ * requested again up to {@link #setMaxAttempts(int) maxAttempts} times with an exponential
+ * backoff. Once a block runs out of attempts, {@link #next()} throws a {@link RuntimeException}
+ * wrapping the {@link IOException} and the fetcher is closed. Blocks are requested, and retried,
+ * under the {@link Deadline} of the thread calling {@link #next()}, and a block is not retried
+ * when its backoff would outlast the deadline.
+ *
+ * <p>The requests go through {@link AsyncCkbRpcApi#getBlockByNumber(long)}, so they can share
+ * HTTP requests with {@link RpcService#enableBatching(long, int)}.
+ *
+ * <pre>{@code
+ * try (BlockRangeFetcher fetcher = new BlockRangeFetcher(new AsyncApi(rpcService), 0, 10000)) {
+ *   fetcher.forEachRemaining(block -> ...);
+ * }
+ * }</pre>
+ */
+public class BlockRangeFetcher implements Iterator<Block>, AutoCloseable {
+  private static final ScheduledExecutorService RETRY_SCHEDULER =
+      Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ckb-block-range-retry");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  private final AsyncCkbRpcApi api;
+  private final long to;
+  private final ArrayDeque<CompletableFuture<Block>> pending = new ArrayDeque<>();
+  private long nextNumber;
+  private long requestedNumber;
+  private int window = 16;
+  private int maxAttempts = 3;
+  private long retryDelayMillis = 100;
+  private volatile boolean closed;
+
+  public BlockRangeFetcher(AsyncCkbRpcApi api, long from, long to) {
+    if (from < 0 || from > to) {
+      throw new IllegalArgumentException("Invalid block range [" + from + ", " + to + ")");
+    }
+    this.api = api;
+    this.to = to;
+    this.nextNumber = from;
+    this.requestedNumber = from;
+  }
+
+  /**
+   * Sets how many blocks are requested ahead of the consumer. Defaults to 16.
+   */
+  public BlockRangeFetcher setWindow(int window) {
+    if (window < 1) {
+      throw new IllegalArgumentException("window must be positive");
+    }
+    this.window = window;
+    return this;
+  }
+
+  public int getWindow() {
+    return window;
+  }
+
+  /**
+   * Sets how many times a block is requested before giving up, including the first request.
+   * Defaults to 3.
+   */
+  public BlockRangeFetcher setMaxAttempts(int maxAttempts) {
+    if (maxAttempts < 1) {
+      throw new IllegalArgumentException("maxAttempts must be positive");
+    }
+    this.maxAttempts = maxAttempts;
+    return this;
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  /**
+   * Sets the delay before the first retry of a block, doubled for each further retry. Defaults
+   * to 100 ms.
+   */
+  public BlockRangeFetcher setRetryDelayMillis(long retryDelayMillis) {
+    this.retryDelayMillis = retryDelayMillis;
+    return this;
+  }
+
+  public long getRetryDelayMillis() {
+    return retryDelayMillis;
+  }
+
+  /**
+   * @return the height of the block {@link #next()} returns
+   */
+  public long getNextNumber() {
+    return nextNumber;
+  }
+
+  @Override
+  public boolean hasNext() {
+    return !closed && nextNumber < to;
+  }
+
+  /**
+   * Waits for the block at {@link #getNextNumber()}.
+   */
+  @Override
+  public Block next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    fill();
+    CompletableFuture<Block> future = pending.poll();
+    long number = nextNumber++;
+    // keep the window full while the consumer handles this block
+    fill();
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      close();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      close();
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw new RuntimeException(cause);
+      }
+      throw new RuntimeException(new IOException("Failed to fetch block " + number, cause));
+    }
+  }
+
+  /**
+   * Cancels the requests in flight and discards the blocks not consumed yet.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    for (CompletableFuture<Block> future : pending) {
+      future.cancel(true);
+    }
+    pending.clear();
+  }
+
+  private void fill() {
+    Deadline deadline = Deadline.current();
+    while (!closed && pending.size() < window && requestedNumber < to) {
+      CompletableFuture<Block> result = new CompletableFuture<>();
+      fetch(requestedNumber++, 1, result, deadline);
+      pending.add(result);
+    }
+  }
+
+  private void fetch(long number, int attempt, CompletableFuture<Block> result, Deadline deadline) {
+    CompletableFuture<Block> call = deadline == null
+        ? api.getBlockByNumber(number) : deadline.call(() -> api.getBlockByNumber(number));
+    result.whenComplete((block, e) -> {
+      if (result.isCancelled()) {
+        call.cancel(true);
+      }
+    });
+    call.whenComplete((block, e) -> {
+      if (result.isDone()) {
+        return;
+      }
+      if (e == null && block != null) {
+        result.complete(block);
+        return;
+      }
+      Throwable cause = e == null
+          ? new IOException("Block " + number + " not found")
+          : e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+      if (attempt >= maxAttempts || closed) {
+        result.completeExceptionally(cause);
+        return;
+      }
+      long delay = retryDelayMillis << Math.min(attempt - 1, 16);
+      if (deadline != null && deadline.remaining(TimeUnit.MILLISECONDS) <= delay) {
+        // the retry could not finish in time
+        result.completeExceptionally(cause);
+        return;
+      }
+      RETRY_SCHEDULER.schedule(() -> {
+        if (!result.isDone()) {
+          fetch(number, attempt + 1, result, deadline);
+        }
+      }, delay, TimeUnit.MILLISECONDS);
+    });
+  }
+}
@@ -0,0 +1,17 @@
+package org.nervos.ckb.service;
+
+/**
+ * How {@link Api} fetches blocks, headers and transactions.
+ */
+public enum FetchMode {
+  /**
+   * Requests JSON and decodes it with Gson.
+   */
+  JSON,
+  /**
+   * Requests the molecule packed hex the node returns with verbosity 0 and unpacks it locally,
+   * through the molecule classes of the serialization module, computing the hashes. Smaller on
+   * the wire than JSON, but it takes more CPU and memory to decode.
+   */
+  PACKED
+}
@@ -0,0 +1,44 @@
+package org.nervos.ckb.service;
+
+import java.io.Closeable;
+
+/**
+ * A subscription of a {@link SubscriptionApi}. It is renewed after the connection is lost, until
+ * it is closed.
+ */
+public class Subscription implements Closeable {
+  final SubscriptionApi api;
+  final SubscriptionTopic<?> topic;
+  final SubscriptionListener<?> listener;
+  volatile String id;
+  volatile boolean closed;
+
+  Subscription(SubscriptionApi api, SubscriptionTopic<?> topic, SubscriptionListener<?> listener) {
+    this.api = api;
+    this.topic = topic;
+    this.listener = listener;
+  }
+
+  public SubscriptionTopic<?> getTopic() {
+    return topic;
+  }
+
+  /**
+   * @return the id the node assigned to the subscription, or null while it is being renewed
+   */
+  public String getId() {
+    return id;
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Unsubscribes. Events already being delivered may still reach the listener.
+   */
+  @Override
+  public void close() {
+    api.unsubscribe(this);
+  }
+}
@@ -0,0 +1,282 @@
+package org.nervos.ckb.service;
+
+import com.google.gson.*;
+import org.nervos.ckb.CkbSubscriptionApi;
+import org.nervos.ckb.type.PoolTransactionEntry;
+import org.nervos.ckb.type.PoolTransactionReject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Subscribes to the topics of a node over a {@link SocketRpcTransport} or
+ * {@link WebSocketRpcTransport}.
+ *
+ * <p>When the connection is lost, the listeners are told through
+ * {@link SubscriptionListener#onError(IOException)} and the subscriptions are renewed on a new
+ * connection, retrying with an exponential backoff until the node answers.
+ *
+ * <pre>{@code
+ * SubscriptionApi api = new SubscriptionApi(new SocketRpcTransport("127.0.0.1", 18114));
+ * api.subscribe(SubscriptionTopic.NEW_TIP_HEADER, header -> ...);
+ * }</pre>
+ */
+public class SubscriptionApi implements CkbSubscriptionApi, PipelinedRpcTransport.MessageListener {
+  private static final ScheduledExecutorService SCHEDULER =
+      Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ckb-rpc-resubscribe");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  private final PipelinedRpcTransport transport;
+  private final RpcService rpcService;
+  private final Gson gson = GsonFactory.create();
+  private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+  private final Map<String, Subscription> subscriptionsById = new ConcurrentHashMap<>();
+  // guards the ids, the early notifications and the count of subscribe calls in flight
+  private final ReentrantLock registering = new ReentrantLock();
+  // notifications of ids not mapped yet, kept while a subscribe call is in flight
+  private final Map<String, List<JsonObject>> earlyNotifications = new HashMap<>();
+  private int registrations;
+  private long reconnectDelayMillis = 100;
+  private long maxReconnectDelayMillis = 30_000;
+  private int reconnectAttempts;
+  private boolean reconnectScheduled;
+  private volatile boolean closed;
+
+  public SubscriptionApi(PipelinedRpcTransport transport) {
+    this.transport = transport;
+    this.rpcService = new RpcService(transport);
+    transport.setMessageListener(this);
+  }
+
+  /**
+   * Sets the delay before the first attempt to renew the subscriptions after the connection is
+   * lost, doubled after each failed attempt up to {@code maxReconnectDelayMillis}. Defaults to
+   * 100 ms and 30 seconds.
+   */
+  public void setReconnectDelayMillis(long reconnectDelayMillis, long maxReconnectDelayMillis) {
+    this.reconnectDelayMillis = reconnectDelayMillis;
+    this.maxReconnectDelayMillis = maxReconnectDelayMillis;
+  }
+
+  public List<Subscription> getSubscriptions() {
+    return Collections.unmodifiableList(subscriptions);
+  }
+
+  @Override
+  public <T> Subscription subscribe(SubscriptionTopic<T> topic, SubscriptionListener<T> listener)
+      throws IOException {
+    if (closed) {
+      throw new IOException("SubscriptionApi is closed");
+    }
+    Subscription subscription = new Subscription(this, topic, listener);
+    // listed before it is registered, so a connection lost right after the reply renews it
+    subscriptions.add(subscription);
+    try {
+      register(subscription).get();
+    } catch (InterruptedException e) {
+      unsubscribe(subscription);
+      Thread.currentThread().interrupt();
+      throw new IOException("Subscribing to " + topic + " interrupted", e);
+    } catch (ExecutionException e) {
+      unsubscribe(subscription);
+      Throwable cause = e.getCause();
+      throw cause instanceof IOException
+          ? (IOException) cause : new IOException("Failed to subscribe to " + topic, cause);
+    }
+    return subscription;
+  }
+
+  @Override
+  public <T> SubscriptionStream<T> stream(SubscriptionTopic<T> topic, int capacity)
+      throws IOException {
+    SubscriptionStream<T> stream = new SubscriptionStream<>(capacity);
+    stream.setSubscription(subscribe(topic, stream.listener()));
+    return stream;
+  }
+
+  /**
+   * Closes the connection, which ends every subscription.
+   */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    for (Subscription subscription : subscriptions) {
+      subscription.closed = true;
+    }
+    subscriptions.clear();
+    subscriptionsById.clear();
+    transport.close();
+  }
+
+  void unsubscribe(Subscription subscription) {
+    subscription.closed = true;
+    subscriptions.remove(subscription);
+    String id = subscription.id;
+    if (id != null && subscriptionsById.remove(id, subscription) && !closed) {
+      rpcService.postAsync("unsubscribe", Collections.singletonList(id), Boolean.class);
+    }
+  }
+
+  /**
+   * Sends {@code subscribe} and maps the returned id to the subscription.
+   *
+   * <p>The node may publish the first notifications of the subscription before its reply is
+   * handled, for example when the reply is decoded on another thread. Until every subscribe call
+   * in flight has its id mapped, notifications of unknown ids are kept and then handed to the
+   * subscription they belong to, ahead of any later one.
+   */
+  private CompletableFuture<String> register(Subscription subscription) {
+    registering.lock();
+    try {
+      registrations++;
+    } finally {
+      registering.unlock();
+    }
+    CompletableFuture<String> future = rpcService.postAsync(
+        "subscribe", Collections.singletonList(subscription.topic.getName()), String.class);
+    return future.whenComplete((id, e) -> {
+      registering.lock();
+      try {
+        if (e == null) {
+          subscription.id = id;
+          subscriptionsById.put(id, subscription);
+          // delivered with the lock held, so onMessage cannot pass them
+          List<JsonObject> early = earlyNotifications.remove(id);
+          if (early != null) {
+            for (JsonObject params : early) {
+              deliver(subscription, params);
+            }
+          }
+        }
+        if (--registrations == 0) {
+          earlyNotifications.clear();
+        }
+      } finally {
+        registering.unlock();
+      }
+      if (e == null && subscription.closed) {
+        unsubscribe(subscription);
+      }
+    });
+  }
+
+  @Override
+  public void onMessage(String message) {
+    JsonObject params;
+    String id;
+    try {
+      JsonObject object = JsonParser.parseString(message).getAsJsonObject();
+      if (!object.has("method") || !object.get("method").getAsString().equals("subscribe")) {
+        return;
+      }
+      params = object.getAsJsonObject("params");
+      id = params.get("subscription").getAsString();
+    } catch (RuntimeException e) {
+      return;
+    }
+    Subscription subscription;
+    registering.lock();
+    try {
+      subscription = subscriptionsById.get(id);
+      if (subscription == null && registrations > 0) {
+        earlyNotifications.computeIfAbsent(id, key -> new ArrayList<>()).add(params);
+        return;
+      }
+    } finally {
+      registering.unlock();
+    }
+    if (subscription != null) {
+      deliver(subscription, params);
+    }
+  }
+
+  private void deliver(Subscription subscription, JsonObject params) {
+    if (subscription.closed) {
+      return;
+    }
+    Object event;
+    try {
+      event = decode(subscription.topic, params.get("result"));
+    } catch (RuntimeException e) {
+      listener(subscription).onError(
+          new IOException("Malformed " + subscription.topic + " notification", e));
+      return;
+    }
+    listener(subscription).onEvent(event);
+  }
+
+  @Override
+  public void onConnectionLost(IOException e) {
+    subscriptionsById.clear();
+    for (Subscription subscription : subscriptions) {
+      subscription.id = null;
+      listener(subscription).onError(e);
+    }
+    scheduleResubscribe();
+  }
+
+  private Object decode(SubscriptionTopic<?> topic, JsonElement result) {
+    // the node sends the event serialized as a string
+    if (result.isJsonPrimitive() && result.getAsJsonPrimitive().isString()) {
+      result = JsonParser.parseString(result.getAsString());
+    }
+    if (topic == SubscriptionTopic.REJECTED_TRANSACTION && result.isJsonArray()) {
+      // a tuple of the entry and the reason
+      JsonArray tuple = result.getAsJsonArray();
+      PoolTransactionReject reject = new PoolTransactionReject();
+      reject.entry = gson.fromJson(tuple.get(0), PoolTransactionEntry.class);
+      reject.reason = gson.fromJson(tuple.get(1), PoolTransactionReject.Reason.class);
+      return reject;
+    }
+    return gson.fromJson(result, topic.getEventType());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static SubscriptionListener<Object> listener(Subscription subscription) {
+    return (SubscriptionListener<Object>) subscription.listener;
+  }
+
+  private synchronized void scheduleResubscribe() {
+    if (closed || reconnectScheduled || subscriptions.isEmpty()) {
+      return;
+    }
+    reconnectScheduled = true;
+    long delay = Math.min(maxReconnectDelayMillis,
+                          reconnectDelayMillis << Math.min(reconnectAttempts, 20));
+    reconnectAttempts++;
+    SCHEDULER.schedule(this::resubscribe, delay, TimeUnit.MILLISECONDS);
+  }
+
+  private void resubscribe() {
+    synchronized (this) {
+      reconnectScheduled = false;
+    }
+    for (Subscription subscription : subscriptions) {
+      if (subscription.closed || subscription.id != null) {
+        continue;
+      }
+      register(subscription).whenComplete((id, e) -> {
+        if (e == null) {
+          synchronized (this) {
+            reconnectAttempts = 0;
+          }
+          return;
+        }
+        Throwable cause = e instanceof CompletionException && e.getCause() != null
+            ? e.getCause() : e;
+        listener(subscription).onError(
+            cause instanceof IOException ? (IOException) cause : new IOException(cause));
+        scheduleResubscribe();
+      });
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package org.nervos.ckb.service;
+
+import java.io.IOException;
+
+/**
+ * Receives the events of a subscription, on the thread reading the connection. A listener that
+ * blocks holds back the events of every subscription of the connection.
+ */
+public interface SubscriptionListener<T> {
+  void onEvent(T event);
+
+  /**
+   * Called when the connection is lost or the subscription cannot be renewed. The subscription is
+   * renewed automatically, and events published in between are missed.
+   */
+  default void onError(IOException e) {
+  }
+}
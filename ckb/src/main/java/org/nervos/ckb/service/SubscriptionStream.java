@@ -0,0 +1,102 @@
+package org.nervos.ckb.service;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The events of a subscription as a blocking iterator over a bounded buffer.
+ *
+ * <p>When the buffer is full, the thread reading the connection waits for the consumer, so a slow
+ * consumer slows down the connection instead of exhausting memory. Every subscription of the same
+ * {@link SubscriptionApi} waits with it. {@link #hasNext()} waits for the next event and returns
+ * false once the stream is closed.
+ */
+public class SubscriptionStream<T> implements Iterator<T>, AutoCloseable {
+  private static final long CLOSE_CHECK_MILLIS = 100;
+
+  private final BlockingQueue<T> queue;
+  private Subscription subscription;
+  private volatile boolean closed;
+  private T nextEvent;
+
+  SubscriptionStream(int capacity) {
+    this.queue = new ArrayBlockingQueue<>(capacity);
+  }
+
+  void setSubscription(Subscription subscription) {
+    this.subscription = subscription;
+  }
+
+  SubscriptionListener<T> listener() {
+    return event -> {
+      try {
+        while (!closed && !queue.offer(event, CLOSE_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+          // wait for the consumer
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    };
+  }
+
+  public Subscription getSubscription() {
+    return subscription;
+  }
+
+  /**
+   * @return the number of events waiting for the consumer
+   */
+  public int size() {
+    return queue.size();
+  }
+
+  @Override
+  public boolean hasNext() {
+    try {
+      while (nextEvent == null && !closed) {
+        nextEvent = queue.poll(CLOSE_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+    return nextEvent != null;
+  }
+
+  @Override
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    T event = nextEvent;
+    nextEvent = null;
+    return event;
+  }
+
+  /**
+   * @return the next event, or null if none arrives within {@code timeout} or the stream is closed
+   */
+  public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+    if (nextEvent != null) {
+      T event = nextEvent;
+      nextEvent = null;
+      return event;
+    }
+    return closed ? null : queue.poll(timeout, unit);
+  }
+
+  /**
+   * Unsubscribes and discards the events not consumed yet.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    if (subscription != null) {
+      subscription.close();
+    }
+    queue.clear();
+  }
+}
@@ -0,0 +1,58 @@
+package org.nervos.ckb.service;
+
+import org.nervos.ckb.type.Block;
+import org.nervos.ckb.type.Header;
+import org.nervos.ckb.type.PoolTransactionEntry;
+import org.nervos.ckb.type.PoolTransactionReject;
+
+/**
+ * A topic of the node's {@code subscribe} RPC, and the type of its events.
+ */
+public final class SubscriptionTopic<T> {
+  /**
+   * The header of each new tip block. Blocks skipped by a reorg are not published.
+   */
+  public static final SubscriptionTopic<Header> NEW_TIP_HEADER =
+      new SubscriptionTopic<>("new_tip_header", Header.class);
+  /**
+   * Each new tip block.
+   */
+  public static final SubscriptionTopic<Block> NEW_TIP_BLOCK =
+      new SubscriptionTopic<>("new_tip_block", Block.class);
+  /**
+   * Each transaction entering the pool.
+   */
+  public static final SubscriptionTopic<PoolTransactionEntry> NEW_TRANSACTION =
+      new SubscriptionTopic<>("new_transaction", PoolTransactionEntry.class);
+  /**
+   * Each transaction of the pool that is proposed.
+   */
+  public static final SubscriptionTopic<PoolTransactionEntry> PROPOSED_TRANSACTION =
+      new SubscriptionTopic<>("proposed_transaction", PoolTransactionEntry.class);
+  /**
+   * Each transaction rejected by the pool, with the reason.
+   */
+  public static final SubscriptionTopic<PoolTransactionReject> REJECTED_TRANSACTION =
+      new SubscriptionTopic<>("rejected_transaction", PoolTransactionReject.class);
+
+  private final String name;
+  private final Class<T> eventType;
+
+  private SubscriptionTopic(String name, Class<T> eventType) {
+    this.name = name;
+    this.eventType = eventType;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public Class<T> getEventType() {
+    return eventType;
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
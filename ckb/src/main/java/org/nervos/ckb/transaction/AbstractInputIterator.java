@@ -1,11 +1,19 @@
 package org.nervos.ckb.transaction;
 
 import org.nervos.ckb.Network;
+import org.nervos.ckb.jfr.InputFetchEvent;
 import org.nervos.ckb.type.CellInput;
 import org.nervos.ckb.type.Script;
 import org.nervos.ckb.type.ScriptType;
 import org.nervos.ckb.type.TransactionInput;
+import org.nervos.ckb.utils.Numeric;
 import org.nervos.ckb.utils.address.Address;
+import org.nervos.indexer.CellsPrefetcher;
+import org.nervos.indexer.LeanQueries;
+import org.nervos.indexer.MultiKeyCellCollector;
+import org.nervos.indexer.MultiKeyCellCollector.KeyCursor;
+import org.nervos.indexer.MultiKeyCellCollector.MergePolicy;
+import org.nervos.indexer.PageSizer;
 import org.nervos.indexer.model.Filter;
 import org.nervos.indexer.model.Order;
 import org.nervos.indexer.model.SearchKey;
@@ -28,6 +36,17 @@ public abstract class AbstractInputIterator implements Iterator<TransactionInput
   protected List<SearchKey> searchKeys = new ArrayList<>();
   protected Order order = Order.ASC;
   protected Integer limit = 100;
+  protected PageSizer pageSizer;
+  protected int prefetchDepth = 0;
+  private CellsPrefetcher prefetcher;
+  protected int searchKeyParallelism = 0;
+  protected MergePolicy mergePolicy = MergePolicy.KEY_ORDER;
+  private List<KeyCursor> searchKeyCursors;
+  protected boolean leanQueries = false;
+  protected long minCapacity = 0;
+  private MultiKeyCellCollector collector;
+  // the inputIndex when the current input was peeked from the collector
+  private int collectedIndex;
 
   public List<TransactionInput> getTransactionInputs() {
     return transactionInputs;
@@ -93,6 +112,152 @@ public abstract class AbstractInputIterator implements Iterator<TransactionInput
     this.limit = limit;
   }
 
+  public PageSizer getPageSizer() {
+    return pageSizer;
+  }
+
+  /**
+   * Sizes the pages of {@code get_cells} with {@code pageSizer} instead of the fixed limit: small
+   * at first, for builders that only need a few cells, and larger while the iterator keeps going.
+   * Null, the default, uses the fixed limit.
+   */
+  public AbstractInputIterator setPageSizer(PageSizer pageSizer) {
+    this.pageSizer = pageSizer;
+    return this;
+  }
+
+  public int getPrefetchDepth() {
+    return prefetchDepth;
+  }
+
+  /**
+   * Fetches up to {@code prefetchDepth} pages of cells in the background while the current page
+   * is consumed, instead of only once it is used up. 0, the default, turns prefetching off.
+   *
+   * @see #cancelPrefetch()
+   */
+  public AbstractInputIterator setPrefetchDepth(int prefetchDepth) {
+    if (prefetchDepth < 0) {
+      throw new IllegalArgumentException("Prefetch depth must not be negative");
+    }
+    cancelPrefetch();
+    this.prefetchDepth = prefetchDepth;
+    this.prefetcher = prefetchDepth > 0 ? new CellsPrefetcher(this::fetchLiveCells, prefetchDepth) : null;
+    return this;
+  }
+
+  /**
+   * Stops fetching pages in the background and drops the pages fetched ahead. The iterator stays
+   * usable and fetches the next page when the current one is used up. Transaction builders call it
+   * once they have enough inputs.
+   */
+  public void cancelPrefetch() {
+    if (prefetcher != null) {
+      prefetcher.cancel();
+    }
+    if (collector != null) {
+      collector.cancel();
+    }
+  }
+
+  public boolean isLeanQueries() {
+    return leanQueries;
+  }
+
+  /**
+   * Lets the node filter the cells of plain search keys, those by lock without a type script
+   * filter: only cells without a type script are returned, and without their data, so the
+   * {@code outputData} of their inputs is null. This is all that {@link CkbTransactionBuilder}
+   * takes, so pages only hold cells it can use. Search keys with a type script filter, such as
+   * those of {@link #addSudtSearchKey(String, byte[])}, are sent as they are.
+   *
+   * @see LeanQueries
+   */
+  public AbstractInputIterator setLeanQueries(boolean leanQueries) {
+    this.leanQueries = leanQueries;
+    return this;
+  }
+
+  public long getMinCapacity() {
+    return minCapacity;
+  }
+
+  /**
+   * With lean queries, skips the cells of plain search keys with less than {@code minCapacity}
+   * shannons on the node, for example dust cells that add more fee than capacity. 0, the default,
+   * takes cells of any capacity.
+   */
+  public AbstractInputIterator setMinCapacity(long minCapacity) {
+    this.minCapacity = minCapacity;
+    return this;
+  }
+
+  public int getSearchKeyParallelism() {
+    return searchKeyParallelism;
+  }
+
+  public MergePolicy getMergePolicy() {
+    return mergePolicy;
+  }
+
+  /**
+   * Queries all search keys at once, with up to {@code parallelism} {@code get_cells} calls at a
+   * time, and merges their cells under {@code policy}, instead of using up the search keys one
+   * after another. Every search key fetches its next page while its current one is consumed, so
+   * the prefetch depth does not apply. 0 turns it off.
+   *
+   * @see #getSearchKeyCursors()
+   */
+  public AbstractInputIterator setConcurrentSearchKeys(int parallelism, MergePolicy policy) {
+    if (parallelism < 0) {
+      throw new IllegalArgumentException("Parallelism must not be negative");
+    }
+    cancelPrefetch();
+    this.searchKeyParallelism = parallelism;
+    this.mergePolicy = policy;
+    this.collector = null;
+    return this;
+  }
+
+  /**
+   * @return where every search key is when they are queried concurrently, to go on from there
+   *     later with {@link #setSearchKeyCursors(List)}
+   */
+  public List<KeyCursor> getSearchKeyCursors() {
+    if (searchKeyParallelism == 0) {
+      throw new IllegalStateException("Search keys are not queried concurrently");
+    }
+    if (collector != null) {
+      return collector.getCursors();
+    }
+    if (searchKeyCursors != null) {
+      return new ArrayList<>(searchKeyCursors);
+    }
+    List<KeyCursor> cursors = new ArrayList<>(searchKeys.size());
+    for (SearchKey searchKey : searchKeys) {
+      cursors.add(KeyCursor.startOf(searchKey));
+    }
+    return cursors;
+  }
+
+  /**
+   * Replaces the search keys with those of {@code cursors}, to go on where
+   * {@link #getSearchKeyCursors()} of an earlier iterator left off.
+   */
+  public AbstractInputIterator setSearchKeyCursors(List<KeyCursor> cursors) {
+    if (searchKeyParallelism == 0) {
+      throw new IllegalStateException("Search keys are not queried concurrently");
+    }
+    cancelPrefetch();
+    searchKeys = new ArrayList<>(cursors.size());
+    for (KeyCursor cursor : cursors) {
+      searchKeys.add(cursor.searchKey);
+    }
+    searchKeyCursors = new ArrayList<>(cursors);
+    collector = null;
+    return this;
+  }
+
   public AbstractInputIterator addSearchKey(String address) {
     return addSearchKey(address, null);
   }
@@ -148,6 +313,10 @@ public abstract class AbstractInputIterator implements Iterator<TransactionInput
   }
 
   protected void updateCurrent() {
+    if (searchKeyParallelism > 0) {
+      collectCurrent();
+      return;
+    }
     if (inputIndex < transactionInputs.size()) {
       current = transactionInputs.get(inputIndex);
     } else {
@@ -171,8 +340,27 @@ public abstract class AbstractInputIterator implements Iterator<TransactionInput
     }
   }
 
+  private void collectCurrent() {
+    if (collector == null) {
+      collector = new MultiKeyCellCollector(
+          this::fetchLiveCells, getSearchKeyCursors(), order, limit, searchKeyParallelism,
+          mergePolicy);
+      collectedIndex = inputIndex;
+    }
+    if (inputIndex > collectedIndex) {
+      // next() took the current input
+      collector.next();
+      collectedIndex = inputIndex;
+    }
+    CellResponse liveCell = collector.peek();
+    current = liveCell == null ? null
+        : new TransactionInput(new CellInput(liveCell.outPoint), liveCell.output, liveCell.outputData);
+  }
+
   protected void fetchTransactionInputs(SearchKey searchKey) throws IOException {
-    CellsResponse response = getLiveCells(searchKey, order, limit, afterCursor);
+    CellsResponse response = prefetcher != null
+        ? prefetcher.getCells(searchKey, order, limit, afterCursor)
+        : fetchLiveCells(searchKey, order, limit, afterCursor);
     List<TransactionInput> newTransactionInputs = new ArrayList<>();
     for (CellResponse liveCell: response.objects) {
       CellInput cellInput = new CellInput(liveCell.outPoint);
@@ -182,5 +370,30 @@ public abstract class AbstractInputIterator implements Iterator<TransactionInput
     afterCursor = response.lastCursor;
   }
 
+  private CellsResponse fetchLiveCells(SearchKey searchKey, Order order, int limit, byte[] afterCursor)
+      throws IOException {
+    PageSizer pageSizer = this.pageSizer;
+    if (pageSizer != null) {
+      limit = pageSizer.getLimit();
+    }
+    InputFetchEvent event = new InputFetchEvent();
+    event.begin();
+    long start = System.nanoTime();
+    CellsResponse response = getLiveCells(
+        leanQueries ? LeanQueries.apply(searchKey, minCapacity) : searchKey, order, limit, afterCursor);
+    int cells = response.objects == null ? 0 : response.objects.size();
+    if (pageSizer != null) {
+      pageSizer.onPage(limit, cells, System.nanoTime() - start);
+    }
+    event.end();
+    if (event.shouldCommit()) {
+      event.limit = limit;
+      event.cells = cells;
+      event.cursor = afterCursor == null ? null : Numeric.toHexString(afterCursor);
+      event.commit();
+    }
+    return response;
+  }
+
   public abstract CellsResponse getLiveCells(SearchKey searchKey, Order order, int limit, byte[] afterCursor) throws IOException;
 }
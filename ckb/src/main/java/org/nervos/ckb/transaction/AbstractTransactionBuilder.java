@@ -100,6 +100,18 @@ public abstract class AbstractTransactionBuilder {
     return Calculator.calculateTransactionFee(transaction, feeRate);
   }
 
+  /**
+   * Stops the background page fetching of the available inputs, once the builder has taken the
+   * inputs it needs.
+   */
+  protected void cancelPrefetch() {
+    if (availableInputs instanceof AbstractInputIterator) {
+      ((AbstractInputIterator) availableInputs).cancelPrefetch();
+    } else if (availableInputs instanceof org.nervos.indexer.InputIterator) {
+      ((org.nervos.indexer.InputIterator) availableInputs).cancelPrefetch();
+    }
+  }
+
   /**
    * Builds the transaction with a default context for script handlers.
    *
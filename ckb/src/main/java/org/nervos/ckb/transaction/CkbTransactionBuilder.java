@@ -1,5 +1,6 @@
 package org.nervos.ckb.transaction;
 
+import org.nervos.ckb.jfr.TransactionBuildEvent;
 import org.nervos.ckb.sign.ScriptGroup;
 import org.nervos.ckb.sign.TransactionWithScriptGroups;
 import org.nervos.ckb.transaction.handler.DaoScriptHandler;
@@ -72,6 +73,9 @@ public class CkbTransactionBuilder extends AbstractTransactionBuilder {
 
   @Override
   public TransactionWithScriptGroups build(Object... contexts) {
+    TransactionBuildEvent event = new TransactionBuildEvent();
+    event.begin();
+    int feeCalculations = 0;
     Map<Script, ScriptGroup> scriptGroupMap = new HashMap<>();
     long outputsCapacity = 0L;
     for (int i = 0; i < tx.outputs.size(); i++) {
@@ -142,6 +146,7 @@ public class CkbTransactionBuilder extends AbstractTransactionBuilder {
       inputsCapacity += input.output.capacity;
       // check if there is enough capacity for output capacity and change
       long fee = calculateTxFee(tx, configuration.getFeeRate());
+      feeCalculations++;
       long changeCapacity = inputsCapacity - outputsCapacity - fee + reward;
       CellOutput changeOutput = tx.outputs.get(changeOutputIndex);
       byte[] changeOutputData = tx.outputsData.get(changeOutputIndex);
@@ -151,7 +156,16 @@ public class CkbTransactionBuilder extends AbstractTransactionBuilder {
         break;
       }
     }
-
+    cancelPrefetch();
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.inputsScanned = inputIndex + 1;
+      event.feeCalculations = feeCalculations;
+      event.outputs = tx.outputs.size();
+      event.scriptGroups = scriptGroupMap.size();
+      event.commit();
+    }
     if (!enoughCapacity) {
       throw new IllegalStateException("No enough capacity");
     }
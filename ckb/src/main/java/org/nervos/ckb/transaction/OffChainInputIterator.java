@@ -31,6 +31,13 @@ public class OffChainInputIterator extends AbstractInputIterator {
     this.searchKeys = iterator.searchKeys;
     this.order = iterator.order;
     this.limit = iterator.limit;
+    this.pageSizer = iterator.pageSizer;
+    setPrefetchDepth(iterator.prefetchDepth);
+    this.leanQueries = iterator.leanQueries;
+    this.minCapacity = iterator.minCapacity;
+    if (iterator.searchKeyParallelism > 0) {
+      setConcurrentSearchKeys(iterator.searchKeyParallelism, iterator.mergePolicy);
+    }
   }
 
   public OffChainInputIterator(AbstractInputIterator iterator, OffChainInputCollector offChainInputCollector) {
@@ -230,6 +230,7 @@ public class SudtTransactionBuilder extends AbstractTransactionBuilder {
         break;
       }
     }
+    cancelPrefetch();
 
     if (!enoughCapacity) {
       throw new IllegalStateException("No enough capacity or SUDT amount");
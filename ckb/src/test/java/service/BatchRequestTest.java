@@ -0,0 +1,165 @@
+package service;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.nervos.ckb.service.Api;
+import org.nervos.ckb.service.BatchRequest;
+import org.nervos.ckb.service.RpcBatch;
+import org.nervos.ckb.type.Header;
+import org.nervos.ckb.type.Script;
+import org.nervos.ckb.type.ScriptType;
+import org.nervos.ckb.utils.Numeric;
+import org.nervos.indexer.model.Order;
+import org.nervos.indexer.model.SearchKey;
+import org.nervos.indexer.model.SearchKeyBuilder;
+import org.nervos.indexer.model.resp.TxsWithCell;
+import org.nervos.indexer.model.resp.TxsWithCells;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class BatchRequestTest {
+  private static final String HEADER = "{"
+      + "\"compact_target\":\"0x1e015555\","
+      + "\"dao\":\"0x7a063f88f10fa22ec7758d0b1f8723008670b170d23100000004a174a800ff06\","
+      + "\"epoch\":\"0x1f40018000001\","
+      + "\"extra_hash\":\"0x0000000000000000000000000000000000000000000000000000000000000000\","
+      + "\"hash\":\"0x741813929fdb2bc59713995b0e402997dfe5f51f94193940fc6866c63a89d27e\","
+      + "\"nonce\":\"0xb0a65130f06c64071d3c47901a375d10\","
+      + "\"number\":\"0x400\","
+      + "\"parent_hash\":\"0xdc48626c5c978044c5055f316d395e74d0209b427091e4f5dd506ac849d23f26\","
+      + "\"proposals_hash\":\"0x0000000000000000000000000000000000000000000000000000000000000000\","
+      + "\"timestamp\":\"0x1723beb2a4c\","
+      + "\"transactions_root\":\"0x82988b971735834ea0c2766764647822ce0229cd16c0e7fb0b17248a445ec3b0\","
+      + "\"version\":\"0x0\"}";
+
+  private HttpServer server;
+  private Api api;
+  private final List<JsonElement> groupByTransaction = new CopyOnWriteArrayList<>();
+
+  static {
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+  }
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", this::handle);
+    server.start();
+    api = new Api("http://127.0.0.1:" + server.getAddress().getPort(), false);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testDecodesTypedResults() throws IOException {
+    BatchRequest batch = api.newBatchRequest();
+    RpcBatch.Handle<Long> tip = batch.getTipBlockNumber();
+    RpcBatch.Handle<Header> header = batch.getHeaderByNumber(0x400);
+    Assertions.assertFalse(tip.isDone());
+    batch.execute();
+
+    Assertions.assertEquals(0x10, tip.get());
+    Assertions.assertEquals(0x400, header.get().number);
+    Assertions.assertEquals(0x1e015555, header.get().compactTarget);
+    Assertions.assertArrayEquals(
+        Numeric.hexStringToByteArray(
+            "0x741813929fdb2bc59713995b0e402997dfe5f51f94193940fc6866c63a89d27e"),
+        header.get().hash);
+  }
+
+  @Test
+  public void testReportsErrorsPerCall() throws IOException {
+    BatchRequest batch = api.newBatchRequest();
+    RpcBatch.Handle<Header> missing = batch.getHeaderByNumber(1);
+    RpcBatch.Handle<Long> tip = batch.getTipBlockNumber();
+    batch.execute();
+
+    Assertions.assertFalse(missing.isSuccess());
+    Assertions.assertNotNull(missing.getError());
+    IOException e = Assertions.assertThrows(IOException.class, missing::get);
+    Assertions.assertTrue(e.getMessage().contains("Invalid params"), e.getMessage());
+    Assertions.assertTrue(tip.isSuccess());
+    Assertions.assertNull(tip.getError());
+    Assertions.assertEquals(0x10, tip.get());
+  }
+
+  @Test
+  public void testKeepsParamsOfEarlierCalls() throws IOException {
+    SearchKey key = new SearchKeyBuilder()
+        .script(new Script(
+            Numeric.hexStringToByteArray(
+                "0x58c5f491aba6d61678b7cf7edf4910b1f5e00ec0cde2f42e0abb4fd9aff25a63"),
+            Numeric.hexStringToByteArray("0xe53f35ccf63bb37a3bb0ac3b7f89808077a78eae"),
+            Script.HashType.TYPE))
+        .scriptType(ScriptType.LOCK)
+        .build();
+    BatchRequest batch = api.newBatchRequest();
+    RpcBatch.Handle<TxsWithCell> ungrouped = batch.getTransactions(key, Order.ASC, 10, null);
+    RpcBatch.Handle<TxsWithCells> grouped = batch.getTransactionsGrouped(key, Order.ASC, 10, null);
+    batch.execute();
+
+    Assertions.assertTrue(ungrouped.get().objects.isEmpty());
+    Assertions.assertTrue(grouped.get().objects.isEmpty());
+    Assertions.assertEquals(2, groupByTransaction.size());
+    Assertions.assertFalse(groupByTransaction.get(0).getAsBoolean());
+    Assertions.assertTrue(groupByTransaction.get(1).getAsBoolean());
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    JsonArray requests = JsonParser.parseReader(
+        new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)).getAsJsonArray();
+    JsonArray responses = new JsonArray();
+    for (JsonElement element : requests) {
+      JsonObject request = element.getAsJsonObject();
+      JsonArray params = request.getAsJsonArray("params");
+      JsonObject response = new JsonObject();
+      response.addProperty("jsonrpc", "2.0");
+      response.add("id", request.get("id"));
+      switch (request.get("method").getAsString()) {
+        case "get_tip_block_number":
+          response.addProperty("result", "0x10");
+          break;
+        case "get_header_by_number":
+          if ("0x400".equals(params.get(0).getAsString())) {
+            response.add("result", JsonParser.parseString(HEADER));
+          } else {
+            JsonObject error = new JsonObject();
+            error.addProperty("code", -32602);
+            error.addProperty("message", "Invalid params");
+            response.add("error", error);
+          }
+          break;
+        case "get_transactions":
+          groupByTransaction.add(params.get(0).getAsJsonObject().get("group_by_transaction"));
+          response.add("result", JsonParser.parseString("{\"last_cursor\":\"0x\",\"objects\":[]}"));
+          break;
+        default:
+          throw new IOException("unexpected method " + request.get("method"));
+      }
+      responses.add(response);
+    }
+    byte[] body = responses.toString().getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(200, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+}
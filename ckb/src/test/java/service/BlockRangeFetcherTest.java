@@ -0,0 +1,171 @@
+package service;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.nervos.ckb.service.AsyncApi;
+import org.nervos.ckb.service.BlockRangeFetcher;
+import org.nervos.ckb.service.RpcService;
+import org.nervos.ckb.type.Block;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BlockRangeFetcherTest {
+  private static final long DELAY_MILLIS = 20;
+
+  private HttpServer server;
+  private ExecutorService executor;
+  private AsyncApi api;
+  private final AtomicInteger requests = new AtomicInteger();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+  private final Map<Long, AtomicInteger> failures = new ConcurrentHashMap<>();
+  private volatile long tip = Long.MAX_VALUE;
+
+  static {
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+  }
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    executor = Executors.newCachedThreadPool();
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", this::handle);
+    server.setExecutor(executor);
+    server.start();
+    api = new AsyncApi(new RpcService("http://127.0.0.1:" + server.getAddress().getPort(), false));
+  }
+
+  @AfterEach
+  public void tearDown() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testDeliversInOrderWithRequestsInFlight() {
+    int count = 200;
+    long start = System.nanoTime();
+    try (BlockRangeFetcher fetcher = new BlockRangeFetcher(api, 100, 100 + count).setWindow(8)) {
+      for (long number = 100; number < 100 + count; number++) {
+        Assertions.assertTrue(fetcher.hasNext());
+        Assertions.assertEquals(number, fetcher.next().header.number);
+      }
+      Assertions.assertFalse(fetcher.hasNext());
+    }
+    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+    Assertions.assertEquals(count, requests.get());
+    Assertions.assertTrue(maxInFlight.get() > 1 && maxInFlight.get() <= 8,
+                          "max in flight " + maxInFlight.get());
+    // one request at a time would take count * DELAY_MILLIS
+    Assertions.assertTrue(elapsedMillis < count * DELAY_MILLIS / 2, elapsedMillis + " ms");
+  }
+
+  @Test
+  public void testStopsRequestingWhenConsumerFallsBehind() throws InterruptedException {
+    try (BlockRangeFetcher fetcher = new BlockRangeFetcher(api, 0, 1000).setWindow(4)) {
+      Assertions.assertEquals(0, fetcher.next().header.number);
+      Thread.sleep(10 * DELAY_MILLIS);
+      Assertions.assertEquals(5, requests.get());
+      Assertions.assertEquals(1, fetcher.next().header.number);
+      Thread.sleep(10 * DELAY_MILLIS);
+      Assertions.assertEquals(6, requests.get());
+    }
+  }
+
+  @Test
+  public void testRetriesFailedBlocks() {
+    failures.put(3L, new AtomicInteger(2));
+    try (BlockRangeFetcher fetcher = new BlockRangeFetcher(api, 0, 6).setRetryDelayMillis(1)) {
+      for (long number = 0; number < 6; number++) {
+        Assertions.assertEquals(number, fetcher.next().header.number);
+      }
+    }
+    Assertions.assertEquals(8, requests.get());
+  }
+
+  @Test
+  public void testFailsAfterMaxAttempts() {
+    failures.put(2L, new AtomicInteger(Integer.MAX_VALUE));
+    tip = 5;
+    BlockRangeFetcher fetcher =
+        new BlockRangeFetcher(api, 0, 10).setMaxAttempts(2).setRetryDelayMillis(1);
+    Assertions.assertEquals(0, fetcher.next().header.number);
+    Assertions.assertEquals(1, fetcher.next().header.number);
+    RuntimeException e = Assertions.assertThrows(RuntimeException.class, fetcher::next);
+    Assertions.assertTrue(e.getCause() instanceof IOException);
+    Assertions.assertFalse(fetcher.hasNext());
+
+    // blocks above the tip are not found
+    fetcher = new BlockRangeFetcher(api, 4, 10).setMaxAttempts(2).setRetryDelayMillis(1);
+    Assertions.assertEquals(4, fetcher.next().header.number);
+    e = Assertions.assertThrows(RuntimeException.class, fetcher::next);
+    Assertions.assertEquals("Block 5 not found", e.getCause().getMessage());
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    requests.incrementAndGet();
+    int current = inFlight.incrementAndGet();
+    maxInFlight.accumulateAndGet(current, Math::max);
+    try {
+      JsonObject request = JsonParser.parseReader(
+          new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)).getAsJsonObject();
+      String hex = request.getAsJsonArray("params").get(0).getAsString();
+      long number = Long.parseLong(hex.substring(2), 16);
+      Thread.sleep(DELAY_MILLIS);
+
+      JsonObject response = new JsonObject();
+      response.addProperty("jsonrpc", "2.0");
+      response.add("id", request.get("id"));
+      AtomicInteger failuresLeft = failures.get(number);
+      if (failuresLeft != null && failuresLeft.getAndDecrement() > 0) {
+        JsonObject error = new JsonObject();
+        error.addProperty("code", -1);
+        error.addProperty("message", "injected failure");
+        response.add("error", error);
+      } else if (number >= tip) {
+        response.add("result", null);
+      } else {
+        response.add("result", block(number));
+      }
+      byte[] body = response.toString().getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      inFlight.decrementAndGet();
+      exchange.close();
+    }
+  }
+
+  private static JsonObject block(long number) {
+    JsonObject header = new JsonObject();
+    header.addProperty("number", "0x" + Long.toHexString(number));
+    header.addProperty("hash", String.format("0x%064x", number));
+    JsonObject block = new JsonObject();
+    block.add("header", header);
+    block.add("transactions", new JsonArray());
+    block.add("proposals", new JsonArray());
+    block.add("uncles", new JsonArray());
+    return block;
+  }
+}
@@ -0,0 +1,326 @@
+package service;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.nervos.ckb.service.*;
+import org.nervos.ckb.type.Header;
+import org.nervos.ckb.type.PoolTransactionReject;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SubscriptionApiTest {
+  private FakePublisher publisher;
+  private SubscriptionApi api;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    publisher = new FakePublisher();
+    api = new SubscriptionApi(new SocketRpcTransport("127.0.0.1", publisher.port()));
+    api.setReconnectDelayMillis(10, 100);
+  }
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    api.close();
+    publisher.close();
+  }
+
+  @Test
+  public void testDeliversEventsToListener() throws Exception {
+    BlockingQueue<Header> headers = new LinkedBlockingQueue<>();
+    Subscription subscription = api.subscribe(SubscriptionTopic.NEW_TIP_HEADER, headers::add);
+    Assertions.assertNotNull(subscription.getId());
+
+    for (long number = 1; number <= 3; number++) {
+      publisher.publish("new_tip_header", "{\"number\":\"0x" + Long.toHexString(number) + "\"}");
+    }
+    for (long number = 1; number <= 3; number++) {
+      Assertions.assertEquals(number, headers.poll(5, TimeUnit.SECONDS).number);
+    }
+
+    subscription.close();
+    Assertions.assertTrue(subscription.isClosed());
+    publisher.awaitUnsubscribe(subscription.getId());
+    publisher.publish("new_tip_header", "{\"number\":\"0x4\"}");
+    Assertions.assertNull(headers.poll(100, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testKeepsNotificationsAheadOfTheReply() throws Exception {
+    BlockingQueue<Header> headers = new LinkedBlockingQueue<>();
+    publisher.holdReplies = new CountDownLatch(1);
+    CompletableFuture<Subscription> subscribing = CompletableFuture.supplyAsync(() -> {
+      try {
+        return api.subscribe(SubscriptionTopic.NEW_TIP_HEADER, headers::add);
+      } catch (IOException e) {
+        throw new CompletionException(e);
+      }
+    });
+    publisher.awaitSubscriptions("new_tip_header", 1);
+    // written before the reply to subscribe
+    publisher.publish("new_tip_header", "{\"number\":\"0x1\"}");
+    publisher.holdReplies.countDown();
+    subscribing.get(5, TimeUnit.SECONDS);
+    publisher.publish("new_tip_header", "{\"number\":\"0x2\"}");
+    Assertions.assertEquals(1, headers.poll(5, TimeUnit.SECONDS).number);
+    Assertions.assertEquals(2, headers.poll(5, TimeUnit.SECONDS).number);
+  }
+
+  @Test
+  public void testRenewsSubscriptionLostWhileSubscribing() throws Exception {
+    BlockingQueue<Header> headers = new LinkedBlockingQueue<>();
+    BlockingQueue<Integer> listed = new LinkedBlockingQueue<>();
+    publisher.holdReplies = new CountDownLatch(1);
+    CompletableFuture<Subscription> subscribing = CompletableFuture.supplyAsync(() -> {
+      try {
+        return api.subscribe(SubscriptionTopic.NEW_TIP_HEADER, header -> {
+          if (header.number == 1) {
+            // handed over with the reply, before subscribe returns
+            listed.add(api.getSubscriptions().size());
+            try {
+              publisher.dropConnections();
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          }
+          headers.add(header);
+        });
+      } catch (IOException e) {
+        throw new CompletionException(e);
+      }
+    });
+    publisher.awaitSubscriptions("new_tip_header", 1);
+    publisher.publish("new_tip_header", "{\"number\":\"0x1\"}");
+    publisher.holdReplies.countDown();
+    subscribing.get(5, TimeUnit.SECONDS);
+    Assertions.assertEquals(1, listed.poll(5, TimeUnit.SECONDS));
+
+    publisher.awaitSubscriptions("new_tip_header", 2);
+    publisher.publish("new_tip_header", "{\"number\":\"0x2\"}");
+    Assertions.assertEquals(1, headers.poll(5, TimeUnit.SECONDS).number);
+    Assertions.assertEquals(2, headers.poll(5, TimeUnit.SECONDS).number);
+  }
+
+  @Test
+  public void testStreamWaitsForConsumer() throws Exception {
+    try (SubscriptionStream<Header> stream = api.stream(SubscriptionTopic.NEW_TIP_HEADER, 2)) {
+      for (long number = 0; number < 20; number++) {
+        publisher.publish("new_tip_header", "{\"number\":\"0x" + Long.toHexString(number) + "\"}");
+      }
+      Thread.sleep(100);
+      Assertions.assertEquals(2, stream.size());
+      for (long number = 0; number < 20; number++) {
+        Assertions.assertTrue(stream.hasNext());
+        Assertions.assertEquals(number, stream.next().number);
+      }
+      Assertions.assertNull(stream.poll(50, TimeUnit.MILLISECONDS));
+    }
+  }
+
+  @Test
+  public void testDecodesRejectedTransactions() throws Exception {
+    BlockingQueue<PoolTransactionReject> rejects = new LinkedBlockingQueue<>();
+    api.subscribe(SubscriptionTopic.REJECTED_TRANSACTION, rejects::add);
+    publisher.publish("rejected_transaction", "[{\"transaction\":{\"hash\":\"0x"
+        + "0000000000000000000000000000000000000000000000000000000000000001\"},"
+        + "\"cycles\":\"0x10\",\"size\":\"0x20\",\"fee\":\"0x30\",\"timestamp\":\"0x40\"},"
+        + "{\"type\":\"LowFeeRate\",\"description\":\"fee rate too low\"}]");
+    PoolTransactionReject reject = rejects.poll(5, TimeUnit.SECONDS);
+    Assertions.assertEquals(0x10, reject.entry.cycles);
+    Assertions.assertEquals(1, reject.entry.transaction.hash[31]);
+    Assertions.assertEquals("LowFeeRate", reject.reason.type);
+  }
+
+  @Test
+  public void testResubscribesAfterReconnect() throws Exception {
+    BlockingQueue<Header> headers = new LinkedBlockingQueue<>();
+    AtomicInteger errors = new AtomicInteger();
+    Subscription subscription = api.subscribe(SubscriptionTopic.NEW_TIP_HEADER,
+        new SubscriptionListener<Header>() {
+          @Override
+          public void onEvent(Header event) {
+            headers.add(event);
+          }
+
+          @Override
+          public void onError(IOException e) {
+            errors.incrementAndGet();
+          }
+        });
+    String firstId = subscription.getId();
+
+    publisher.dropConnections();
+    publisher.awaitSubscriptions("new_tip_header", 2);
+    publisher.publish("new_tip_header", "{\"number\":\"0x7\"}");
+    Assertions.assertEquals(7, headers.poll(5, TimeUnit.SECONDS).number);
+    Assertions.assertTrue(errors.get() >= 1);
+    Assertions.assertNotEquals(firstId, subscription.getId());
+  }
+
+  @Test
+  public void testRejectsUnknownTopic() {
+    IOException e = Assertions.assertThrows(IOException.class,
+        () -> api.subscribe(SubscriptionTopic.NEW_TIP_BLOCK, block -> { }));
+    Assertions.assertTrue(e.getMessage().contains("unsupported topic"), e.getMessage());
+    Assertions.assertTrue(api.getSubscriptions().isEmpty());
+  }
+
+  /**
+   * Serves {@code subscribe} and {@code unsubscribe} over newline delimited JSON-RPC and
+   * publishes notifications to the subscribed connections. {@code new_tip_block} is not
+   * supported.
+   */
+  private static class FakePublisher implements Closeable {
+    private final ServerSocket server;
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    // subscription id to topic and connection
+    private final Map<String, String> topics = new ConcurrentHashMap<>();
+    private final Map<String, Writer> writers = new ConcurrentHashMap<>();
+    private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+    private final Map<String, AtomicInteger> subscribeCounts = new ConcurrentHashMap<>();
+    private final Map<String, CountDownLatch> unsubscribed = new ConcurrentHashMap<>();
+    // the replies to subscribe wait for it, when set
+    volatile CountDownLatch holdReplies;
+
+    FakePublisher() throws IOException {
+      server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+      Thread acceptor = new Thread(() -> {
+        while (!server.isClosed()) {
+          try {
+            Socket socket = server.accept();
+            sockets.add(socket);
+            Thread handler = new Thread(() -> serve(socket));
+            handler.setDaemon(true);
+            handler.start();
+          } catch (IOException e) {
+            return;
+          }
+        }
+      });
+      acceptor.setDaemon(true);
+      acceptor.start();
+    }
+
+    int port() {
+      return server.getLocalPort();
+    }
+
+    void publish(String topic, String event) throws IOException {
+      for (Map.Entry<String, String> entry : topics.entrySet()) {
+        if (!entry.getValue().equals(topic)) {
+          continue;
+        }
+        JsonObject params = new JsonObject();
+        params.addProperty("result", event);
+        params.addProperty("subscription", entry.getKey());
+        JsonObject notification = new JsonObject();
+        notification.addProperty("jsonrpc", "2.0");
+        notification.addProperty("method", "subscribe");
+        notification.add("params", params);
+        write(writers.get(entry.getKey()), notification);
+      }
+    }
+
+    void dropConnections() throws IOException {
+      topics.clear();
+      for (Socket socket : sockets) {
+        socket.close();
+      }
+    }
+
+    void awaitSubscriptions(String topic, int count) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + 5000;
+      while (subscribeCounts.computeIfAbsent(topic, t -> new AtomicInteger()).get() < count
+          || !topics.containsValue(topic)) {
+        Assertions.assertTrue(System.currentTimeMillis() < deadline, "not resubscribed");
+        Thread.sleep(10);
+      }
+    }
+
+    void awaitUnsubscribe(String id) throws InterruptedException {
+      Assertions.assertTrue(latch(id).await(5, TimeUnit.SECONDS));
+    }
+
+    private CountDownLatch latch(String id) {
+      return unsubscribed.computeIfAbsent(id, key -> new CountDownLatch(1));
+    }
+
+    @Override
+    public void close() {
+      try {
+        server.close();
+        dropConnections();
+      } catch (IOException e) {
+        // closing
+      }
+    }
+
+    private void serve(Socket socket) {
+      try (Socket s = socket;
+           BufferedReader in = new BufferedReader(
+               new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8))) {
+        Writer out = new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8);
+        String line;
+        while ((line = in.readLine()) != null) {
+          JsonObject request = JsonParser.parseString(line).getAsJsonObject();
+          String param = request.getAsJsonArray("params").get(0).getAsString();
+          JsonObject reply = new JsonObject();
+          reply.addProperty("jsonrpc", "2.0");
+          if (request.get("method").getAsString().equals("subscribe")) {
+            if (param.equals("new_tip_block")) {
+              JsonObject error = new JsonObject();
+              error.addProperty("code", -32602);
+              error.addProperty("message", "unsupported topic");
+              reply.add("error", error);
+              reply.add("id", request.get("id"));
+              write(out, reply);
+              continue;
+            }
+            String id = "0x" + Integer.toHexString(nextId.getAndIncrement());
+            writers.put(id, out);
+            topics.put(id, param);
+            subscribeCounts.computeIfAbsent(param, t -> new AtomicInteger()).incrementAndGet();
+            CountDownLatch hold = holdReplies;
+            if (hold != null) {
+              try {
+                hold.await();
+              } catch (InterruptedException e) {
+                return;
+              }
+            }
+            reply.addProperty("result", id);
+            reply.add("id", request.get("id"));
+            write(out, reply);
+          } else {
+            reply.addProperty("result", topics.remove(param) != null);
+            reply.add("id", request.get("id"));
+            write(out, reply);
+            latch(param).countDown();
+          }
+        }
+      } catch (IOException e) {
+        // connection closed
+      }
+    }
+
+    private static void write(Writer out, JsonObject message) throws IOException {
+      synchronized (out) {
+        out.write(message.toString());
+        out.write('\n');
+        out.flush();
+      }
+    }
+  }
+}
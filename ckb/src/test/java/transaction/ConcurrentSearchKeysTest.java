@@ -0,0 +1,121 @@
+package transaction;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.nervos.ckb.transaction.AbstractInputIterator;
+import org.nervos.indexer.MultiKeyCellCollector.KeyCursor;
+import org.nervos.indexer.MultiKeyCellCollector.MergePolicy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+class ConcurrentSearchKeysTest {
+  @Test
+  void testKeyOrder() {
+    FakeInputIterator serial = keyed(5, 3, 4);
+    FakeInputIterator concurrent = keyed(5, 3, 4);
+    concurrent.delayMillis = 20;
+    concurrent.setConcurrentSearchKeys(3, MergePolicy.KEY_ORDER);
+    List<Integer> cells = drain(serial);
+    Assertions.assertEquals(60, cells.size());
+    Assertions.assertEquals(cells, drain(concurrent));
+    Assertions.assertTrue(concurrent.maxInFlight.get() > 1, concurrent.maxInFlight + " in flight");
+    Assertions.assertTrue(concurrent.maxInFlight.get() <= 3, concurrent.maxInFlight + " in flight");
+  }
+
+  @Test
+  void testRoundRobin() {
+    FakeInputIterator iterator = keyed(4, 2, 3);
+    iterator.setConcurrentSearchKeys(8, MergePolicy.ROUND_ROBIN);
+    List<Integer> cells = drain(iterator);
+    Assertions.assertEquals(24, cells.size());
+    // key * 1000 + position of the cell in the key
+    for (int i = 0; i < 24; i++) {
+      Assertions.assertEquals((i % 4) * 1000 + i / 4, cells.get(i));
+    }
+  }
+
+  @Test
+  void testLargestCapacityFirst() {
+    FakeInputIterator iterator = keyed(3, 2, 2);
+    iterator.setConcurrentSearchKeys(2, MergePolicy.LARGEST_CAPACITY_FIRST);
+    List<Long> capacities = new ArrayList<>();
+    while (iterator.hasNext()) {
+      capacities.add(iterator.next().output.capacity);
+    }
+    Assertions.assertEquals(12, capacities.size());
+    for (int i = 1; i < capacities.size(); i++) {
+      Assertions.assertTrue(capacities.get(i - 1) >= capacities.get(i), capacities.toString());
+    }
+  }
+
+  @Test
+  void testResume() {
+    FakeInputIterator iterator = keyed(3, 3, 4);
+    iterator.setConcurrentSearchKeys(3, MergePolicy.ROUND_ROBIN);
+    Set<Integer> cells = new HashSet<>();
+    for (int i = 0; i < 17; i++) {
+      Assertions.assertTrue(cells.add(iterator.next().input.previousOutput.index));
+    }
+    // a peeked cell is not taken
+    Assertions.assertTrue(iterator.hasNext());
+    List<KeyCursor> cursors = iterator.getSearchKeyCursors();
+    iterator.cancelPrefetch();
+
+    FakeInputIterator resumed = keyed(3, 3, 4);
+    resumed.setConcurrentSearchKeys(3, MergePolicy.ROUND_ROBIN);
+    resumed.setSearchKeyCursors(cursors);
+    for (int cell : drain(resumed)) {
+      Assertions.assertTrue(cells.add(cell), "taken twice: " + cell);
+    }
+    Assertions.assertEquals(36, cells.size());
+  }
+
+  @Test
+  void testRetryAfterError() {
+    FakeInputIterator iterator = keyed(3, 2, 2);
+    iterator.failures.set(1);
+    iterator.setConcurrentSearchKeys(3, MergePolicy.KEY_ORDER);
+    List<Integer> cells = new ArrayList<>();
+    RuntimeException e = Assertions.assertThrows(RuntimeException.class, () -> {
+      while (iterator.hasNext()) {
+        cells.add(iterator.next().input.previousOutput.index);
+      }
+    });
+    Assertions.assertTrue(e.getCause() instanceof IOException);
+    cells.addAll(drain(iterator));
+    Assertions.assertEquals(drain(keyed(3, 2, 2)), cells);
+  }
+
+  @Test
+  void testCancelWhileWaiting() throws Exception {
+    FakeInputIterator iterator = keyed(2, 1, 2);
+    iterator.delayMillis = 60_000;
+    iterator.setConcurrentSearchKeys(2, MergePolicy.KEY_ORDER);
+    CompletableFuture<List<Integer>> cells = CompletableFuture.supplyAsync(() -> drain(iterator));
+    // the consumer waits in hasNext() for the first pages
+    while (iterator.inFlight.get() < 2) {
+      Thread.sleep(10);
+    }
+    iterator.delayMillis = 0;
+    iterator.cancelPrefetch();
+    Assertions.assertEquals(drain(keyed(2, 1, 2)), cells.get(5, TimeUnit.SECONDS));
+  }
+
+  private static FakeInputIterator keyed(int keys, int pages, int pageSize) {
+    return new FakeInputIterator(pages * pageSize).setPageSize(pageSize).addKeys(keys);
+  }
+
+  private static List<Integer> drain(AbstractInputIterator iterator) {
+    List<Integer> cells = new ArrayList<>();
+    while (iterator.hasNext()) {
+      cells.add(iterator.next().input.previousOutput.index);
+    }
+    return cells;
+  }
+}
@@ -0,0 +1,108 @@
+package transaction;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.nervos.ckb.Network;
+import org.nervos.ckb.service.Api;
+import org.nervos.ckb.service.Deadline;
+import org.nervos.ckb.transaction.DaoTransactionBuilder;
+import org.nervos.ckb.transaction.TransactionBuilderConfiguration;
+import org.nervos.ckb.type.OutPoint;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+class DaoTransactionBuilderTest {
+  private static final long DELAY_MILLIS = 150;
+  // a deposit cell, so the builder goes on with get_transaction and get_header
+  private static final String LIVE_CELL = "{\"cell\":{\"output\":{\"capacity\":\"0x174876e800\","
+      + "\"lock\":{\"code_hash\":\"0x9bd7e06f3ecf4be0f2fcd2188b23f1b9fcc88e5d4b65a8637b17723bbda3cce8\","
+      + "\"hash_type\":\"type\",\"args\":\"0x\"},"
+      + "\"type\":{\"code_hash\":\"0x82d76d1b75fe2fd9a27dfbaa65a039221a380d76c926f378d3f81cf3e7e13f2e\","
+      + "\"hash_type\":\"type\",\"args\":\"0x\"}},"
+      + "\"data\":{\"content\":\"0x0000000000000000\",\"hash\":\"0x\"}},\"status\":\"live\"}";
+
+  private HttpServer server;
+  private ExecutorService executor;
+  private final List<String> methods = new CopyOnWriteArrayList<>();
+
+  static {
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+  }
+
+  @BeforeEach
+  void setUp() throws IOException {
+    executor = Executors.newCachedThreadPool();
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", this::handle);
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  @Test
+  void testDeadlineBoundsConstructor() throws IOException {
+    Api api = new Api("http://127.0.0.1:" + server.getAddress().getPort(), false);
+    // warm up the client, so the deadline is not spent loading classes
+    api.getHeader(new byte[32]);
+    methods.clear();
+    TransactionBuilderConfiguration configuration =
+        new TransactionBuilderConfiguration(Network.TESTNET);
+    OutPoint outPoint = new OutPoint(new byte[32], 0);
+    long start = System.nanoTime();
+    // time for get_live_cell, not for get_transaction after it
+    Assertions.assertThrows(InterruptedIOException.class, () -> Deadline.afterMillis(250).call(
+        () -> new DaoTransactionBuilder(configuration, Collections.emptyIterator(), outPoint, api)));
+    Assertions.assertTrue(
+        System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(DELAY_MILLIS * 2 + 50));
+    Assertions.assertEquals("get_live_cell", methods.get(0));
+    // get_header is never sent
+    Assertions.assertEquals(2, methods.size());
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    JsonObject request;
+    try (InputStreamReader in =
+             new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+      request = JsonParser.parseReader(in).getAsJsonObject();
+    }
+    String method = request.get("method").getAsString();
+    methods.add(method);
+    try {
+      Thread.sleep(DELAY_MILLIS);
+    } catch (InterruptedException e) {
+      return;
+    }
+    JsonObject reply = new JsonObject();
+    reply.addProperty("jsonrpc", "2.0");
+    reply.add("id", request.get("id"));
+    reply.add("result", method.equals("get_live_cell") ? JsonParser.parseString(LIVE_CELL) : null);
+    byte[] body = reply.toString().getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(200, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package transaction;
+
+import org.nervos.ckb.transaction.AbstractInputIterator;
+import org.nervos.ckb.type.CellOutput;
+import org.nervos.ckb.type.OutPoint;
+import org.nervos.ckb.type.Script;
+import org.nervos.ckb.type.ScriptType;
+import org.nervos.indexer.model.Order;
+import org.nervos.indexer.model.SearchKey;
+import org.nervos.indexer.model.resp.CellResponse;
+import org.nervos.indexer.model.resp.CellsResponse;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An input iterator over {@code cellsPerKey} fake live cells of every search key, paged like the
+ * indexer. The cells of key k, {@link #addKeys(int) added} with args {k} and 0 for other search
+ * keys, have a capacity of (k + 1) * 100 CKB and the out point index k * 1000 + their position.
+ * The cursor of a page is the position after its last cell.
+ *
+ * <p>It records the search keys and limits it is asked with, and can delay and fail calls.
+ */
+class FakeInputIterator extends AbstractInputIterator {
+  static final String SENDER = "ckt1qzda0cr08m85hc8jlnfp3zer7xulejywt49kt2rr0vthywaa50xwsq2qf8keemy2p5uu0g0gn8cd4ju23s5269qk8rg4r";
+
+  final int cellsPerKey;
+  final List<SearchKey> queries = Collections.synchronizedList(new ArrayList<>());
+  final List<Integer> limits = Collections.synchronizedList(new ArrayList<>());
+  final AtomicInteger calls = new AtomicInteger();
+  final AtomicInteger inFlight = new AtomicInteger();
+  final AtomicInteger maxInFlight = new AtomicInteger();
+  // how many of the next calls fail
+  final AtomicInteger failures = new AtomicInteger();
+  volatile int pageSize = Integer.MAX_VALUE;
+  volatile long delayMillis;
+  // the position of the pages that always fail
+  volatile int failingPosition = -1;
+
+  FakeInputIterator(int cellsPerKey) {
+    this.cellsPerKey = cellsPerKey;
+  }
+
+  /**
+   * Serves at most {@code pageSize} cells per page, whatever the limit.
+   */
+  FakeInputIterator setPageSize(int pageSize) {
+    this.pageSize = pageSize;
+    return this;
+  }
+
+  /**
+   * Adds search keys 0 to {@code keys} - 1 by lock.
+   */
+  FakeInputIterator addKeys(int keys) {
+    for (int key = 0; key < keys; key++) {
+      SearchKey searchKey = new SearchKey();
+      searchKey.scriptType = ScriptType.LOCK;
+      searchKey.script = new Script(Script.SECP256K1_BLAKE160_SIGNHASH_ALL_CODE_HASH,
+                                    new byte[] {(byte) key}, Script.HashType.TYPE);
+      searchKeys.add(searchKey);
+    }
+    return this;
+  }
+
+  @Override
+  public CellsResponse getLiveCells(SearchKey searchKey, Order order, int limit, byte[] afterCursor)
+      throws IOException {
+    queries.add(searchKey);
+    limits.add(limit);
+    calls.incrementAndGet();
+    int running = inFlight.incrementAndGet();
+    maxInFlight.accumulateAndGet(running, Math::max);
+    try {
+      Thread.sleep(delayMillis);
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException();
+    } finally {
+      inFlight.decrementAndGet();
+    }
+    int position = afterCursor == null ? 0 : ByteBuffer.wrap(afterCursor).getInt();
+    if (failures.getAndUpdate(n -> Math.max(0, n - 1)) > 0 || position == failingPosition) {
+      throw new IOException("injected failure at " + position);
+    }
+    int key = searchKey.script.args.length == 1 ? searchKey.script.args[0] : 0;
+    CellsResponse response = new CellsResponse();
+    response.objects = new ArrayList<>();
+    int size = Math.min(limit, pageSize);
+    for (; position < cellsPerKey && response.objects.size() < size; position++) {
+      CellResponse cell = new CellResponse();
+      cell.outPoint = new OutPoint(new byte[32], key * 1000 + position);
+      cell.output = new CellOutput((key + 1) * 100_00000000L, searchKey.script);
+      cell.outputData = new byte[0];
+      response.objects.add(cell);
+    }
+    response.lastCursor = ByteBuffer.allocate(4).putInt(position).array();
+    return response;
+  }
+}
@@ -0,0 +1,116 @@
+package transaction;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.nervos.ckb.Network;
+import org.nervos.ckb.transaction.CkbTransactionBuilder;
+import org.nervos.ckb.transaction.TransactionBuilderConfiguration;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static transaction.FakeInputIterator.SENDER;
+
+class InputIteratorPrefetchTest {
+  @Test
+  void testPrefetchKeepsOrder() {
+    FakeInputIterator iterator = new FakeInputIterator(30).setPageSize(10);
+    iterator.setPrefetchDepth(2);
+    iterator.addSearchKey(SENDER);
+    List<Integer> indices = new ArrayList<>();
+    while (iterator.hasNext()) {
+      indices.add(iterator.next().input.previousOutput.index);
+    }
+    Assertions.assertEquals(30, indices.size());
+    for (int i = 0; i < 30; i++) {
+      Assertions.assertEquals(i, indices.get(i));
+    }
+    // the empty page after the last one ends the search key
+    Assertions.assertEquals(4, iterator.calls.get());
+  }
+
+  @Test
+  void testPrefetchDepth() throws InterruptedException {
+    FakeInputIterator iterator = new FakeInputIterator(200).setPageSize(10);
+    iterator.setPrefetchDepth(3);
+    iterator.addSearchKey(SENDER);
+    iterator.next();
+    // the page taken and 3 pages ahead of it
+    waitFor(() -> iterator.calls.get() == 4);
+    Thread.sleep(100);
+    Assertions.assertEquals(4, iterator.calls.get());
+    for (int i = 1; i < 15; i++) {
+      iterator.next();
+    }
+    waitFor(() -> iterator.calls.get() == 5);
+    iterator.cancelPrefetch();
+  }
+
+  @Test
+  void testBuilderCancelsPrefetch() throws InterruptedException {
+    FakeInputIterator iterator = new FakeInputIterator(1000).setPageSize(1);
+    iterator.setPrefetchDepth(4);
+    iterator.addSearchKey(SENDER);
+    iterator.delayMillis = 10;
+    TransactionBuilderConfiguration configuration = new TransactionBuilderConfiguration(Network.TESTNET);
+    new CkbTransactionBuilder(configuration, iterator)
+        .addOutput(SENDER, 250_00000000L)
+        .setChangeOutput(SENDER)
+        .build();
+    int calls = iterator.calls.get();
+    Thread.sleep(200);
+    Assertions.assertTrue(iterator.calls.get() <= calls + 1, iterator.calls + " calls");
+    Assertions.assertTrue(iterator.calls.get() < 10, iterator.calls + " calls");
+
+    // 4 inputs cover the output and the change, the iterator goes on from the next one
+    Assertions.assertEquals(4, iterator.next().input.previousOutput.index);
+  }
+
+  @Test
+  void testPrefetchError() {
+    FakeInputIterator iterator = new FakeInputIterator(30).setPageSize(10);
+    iterator.setPrefetchDepth(2);
+    iterator.addSearchKey(SENDER);
+    iterator.failingPosition = 10;
+    for (int i = 0; i < 10; i++) {
+      iterator.next();
+    }
+    RuntimeException e = Assertions.assertThrows(RuntimeException.class, iterator::hasNext);
+    Assertions.assertTrue(e.getCause() instanceof IOException);
+  }
+
+  @Test
+  void testCancelWhileWaiting() throws Exception {
+    FakeInputIterator iterator = new FakeInputIterator(20).setPageSize(10);
+    iterator.setPrefetchDepth(1);
+    iterator.addSearchKey(SENDER);
+    iterator.delayMillis = 60_000;
+    CompletableFuture<Integer> cells = CompletableFuture.supplyAsync(() -> {
+      int count = 0;
+      while (iterator.hasNext()) {
+        iterator.next();
+        count++;
+      }
+      return count;
+    });
+    // the consumer waits in hasNext() for the first page
+    waitFor(() -> iterator.calls.get() == 1);
+    iterator.delayMillis = 0;
+    long start = System.nanoTime();
+    iterator.cancelPrefetch();
+    Assertions.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+    Assertions.assertEquals(20, cells.get(5, TimeUnit.SECONDS));
+  }
+
+  private static void waitFor(java.util.function.BooleanSupplier condition)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!condition.getAsBoolean()) {
+      Assertions.assertTrue(System.nanoTime() < deadline, "timed out");
+      Thread.sleep(5);
+    }
+  }
+}
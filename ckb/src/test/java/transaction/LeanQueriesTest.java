@@ -0,0 +1,55 @@
+package transaction;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.nervos.ckb.service.GsonFactory;
+import org.nervos.indexer.LeanQueries;
+import org.nervos.indexer.model.SearchKey;
+
+import java.util.Arrays;
+
+import static transaction.FakeInputIterator.SENDER;
+
+class LeanQueriesTest {
+  @Test
+  void testPlainSearchKey() {
+    FakeInputIterator iterator = new FakeInputIterator(0);
+    iterator.setLeanQueries(true).setMinCapacity(6100000000L);
+    iterator.addSearchKey(SENDER);
+    Assertions.assertFalse(iterator.hasNext());
+
+    SearchKey searchKey = iterator.queries.get(0);
+    Assertions.assertNotSame(iterator.getSearchKeys().get(0), searchKey);
+    Assertions.assertNull(iterator.getSearchKeys().get(0).filter);
+    Assertions.assertEquals(Boolean.FALSE, searchKey.withData);
+    Assertions.assertEquals(Arrays.asList(0, 1), searchKey.filter.scriptLenRange);
+    Assertions.assertEquals(Arrays.asList(6100000000L, Long.MAX_VALUE),
+                            searchKey.filter.outputCapacityRange);
+
+    Gson gson = GsonFactory.create();
+    JsonObject json = gson.toJsonTree(searchKey).getAsJsonObject();
+    Assertions.assertEquals("[\"0x0\",\"0x1\"]",
+                            json.getAsJsonObject("filter").get("script_len_range").toString());
+    Assertions.assertFalse(json.get("with_data").getAsBoolean());
+  }
+
+  @Test
+  void testTypedSearchKey() {
+    FakeInputIterator iterator = new FakeInputIterator(0);
+    iterator.setLeanQueries(true);
+    iterator.addSudtSearchKey(SENDER, new byte[32]);
+    Assertions.assertFalse(iterator.hasNext());
+    Assertions.assertSame(iterator.getSearchKeys().get(0), iterator.queries.get(0));
+    Assertions.assertFalse(LeanQueries.isPlain(iterator.queries.get(0)));
+  }
+
+  @Test
+  void testLeanQueriesOff() {
+    FakeInputIterator iterator = new FakeInputIterator(0);
+    iterator.addSearchKey(SENDER);
+    Assertions.assertFalse(iterator.hasNext());
+    Assertions.assertSame(iterator.getSearchKeys().get(0), iterator.queries.get(0));
+  }
+}
@@ -0,0 +1,83 @@
+package transaction;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.nervos.indexer.PageSizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static transaction.FakeInputIterator.SENDER;
+
+class PageSizerTest {
+  @Test
+  void testGrowth() {
+    PageSizer sizer = new PageSizer(8, 100, 1, TimeUnit.SECONDS);
+    List<Integer> limits = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      int limit = sizer.getLimit();
+      limits.add(limit);
+      sizer.onPage(limit, limit, TimeUnit.MILLISECONDS.toNanos(10));
+    }
+    Assertions.assertEquals(Arrays.asList(8, 16, 32, 64, 100, 100), limits);
+
+    // the last page of a stream
+    sizer.reset();
+    sizer.onPage(8, 3, TimeUnit.MILLISECONDS.toNanos(10));
+    Assertions.assertEquals(8, sizer.getLimit());
+  }
+
+  @Test
+  void testLatencyCap() {
+    PageSizer sizer = new PageSizer(8, 1000, 1, TimeUnit.SECONDS);
+    sizer.onPage(8, 8, TimeUnit.MILLISECONDS.toNanos(100));
+    Assertions.assertEquals(16, sizer.getLimit());
+    // 5ms per item past the round trip, the 900ms left of a second take 180 items
+    sizer.onPage(400, 400, TimeUnit.MILLISECONDS.toNanos(2100));
+    Assertions.assertEquals(180, sizer.getLimit());
+    // never below the initial limit
+    sizer.onPage(180, 180, TimeUnit.SECONDS.toNanos(100));
+    Assertions.assertEquals(8, sizer.getLimit());
+  }
+
+  @Test
+  void testRoundTripIsNotPerItemCost() {
+    // a link with a 900ms round trip and 0.1ms per item, a second takes about 1000 items
+    PageSizer sizer = new PageSizer(8, 2000, 1, TimeUnit.SECONDS);
+    for (int i = 0; i < 12; i++) {
+      int limit = sizer.getLimit();
+      sizer.onPage(limit, limit, TimeUnit.MILLISECONDS.toNanos(900) + limit * 100_000L);
+    }
+    int limit = sizer.getLimit();
+    Assertions.assertTrue(limit > 900 && limit <= 1000, "limit " + limit);
+
+    // a round trip longer than the target latency leaves only the max limit
+    sizer = new PageSizer(8, 2000, 1, TimeUnit.SECONDS);
+    for (int i = 0; i < 12; i++) {
+      limit = sizer.getLimit();
+      sizer.onPage(limit, limit, TimeUnit.MILLISECONDS.toNanos(1500) + limit * 100_000L);
+    }
+    Assertions.assertEquals(2000, sizer.getLimit());
+  }
+
+  @Test
+  void testInputIterator() {
+    FakeInputIterator iterator = new FakeInputIterator(1000);
+    iterator.setPageSizer(new PageSizer());
+    iterator.addSearchKey(SENDER);
+    // a builder that needs one cell
+    iterator.next();
+    Assertions.assertEquals(Arrays.asList(PageSizer.DEFAULT_INITIAL_LIMIT), iterator.limits);
+
+    int cells = 1;
+    while (iterator.hasNext()) {
+      iterator.next();
+      cells++;
+    }
+    Assertions.assertEquals(1000, cells);
+    // 8 + 16 + ... + 256, the last 496 cells and an empty page, instead of 11 pages of 100
+    Assertions.assertEquals(Arrays.asList(8, 16, 32, 64, 128, 256, 512, 512), iterator.limits);
+  }
+}
@@ -0,0 +1,21 @@
+package org.nervos.ckb.codegen;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates Gson {@code TypeAdapter}s for the classes of the annotated package, put on its
+ * {@code package-info.java}.
+ *
+ * <p>The adapters are served by a {@code GeneratedTypeAdapterFactory} in the same package, listed
+ * in {@code META-INF/services/com.google.gson.TypeAdapterFactory}. They bind fields the way Gson's
+ * reflection does with {@code FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES}, so classes they
+ * cannot handle are simply left to reflection. See {@link TypeAdapterProcessor} for which classes
+ * are covered.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.PACKAGE)
+public @interface GenerateTypeAdapters {
+}
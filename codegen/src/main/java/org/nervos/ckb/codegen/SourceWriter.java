@@ -0,0 +1,211 @@
+package org.nervos.ckb.codegen;
+
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import java.io.PrintWriter;
+import java.util.List;
+
+/**
+ * Writes the source of one package's {@code GeneratedTypeAdapterFactory}.
+ */
+class SourceWriter {
+  private final PrintWriter out;
+  private final PackageElement pkg;
+  private final List<TypeAdapterProcessor.Model> models;
+
+  SourceWriter(PrintWriter out, PackageElement pkg, List<TypeAdapterProcessor.Model> models) {
+    this.out = out;
+    this.pkg = pkg;
+    this.models = models;
+  }
+
+  void write() {
+    out.println("// Generated by " + TypeAdapterProcessor.class.getName() + ". Do not edit.");
+    if (!pkg.isUnnamed()) {
+      out.println("package " + pkg.getQualifiedName() + ";");
+      out.println();
+    }
+    out.println("import com.google.gson.FieldNamingPolicy;");
+    out.println("import com.google.gson.Gson;");
+    out.println("import com.google.gson.JsonSyntaxException;");
+    out.println("import com.google.gson.TypeAdapter;");
+    out.println("import com.google.gson.TypeAdapterFactory;");
+    out.println("import com.google.gson.reflect.TypeToken;");
+    out.println("import com.google.gson.stream.JsonReader;");
+    out.println("import com.google.gson.stream.JsonToken;");
+    out.println("import com.google.gson.stream.JsonWriter;");
+    out.println();
+    out.println("import java.io.IOException;");
+    out.println();
+    out.println("@SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+    out.println("public final class " + TypeAdapterProcessor.FACTORY_NAME
+                    + " implements TypeAdapterFactory {");
+    writeCreate();
+    out.println();
+    out.println("  private static <T> void writeRuntimeType(Gson gson, TypeAdapter<T> adapter,");
+    out.println("      Class<?> declared, JsonWriter out, T value) throws IOException {");
+    out.println("    if (value != null && value.getClass() != declared) {");
+    out.println("      ((TypeAdapter<Object>) gson.getAdapter(value.getClass())).write(out, value);");
+    out.println("    } else {");
+    out.println("      adapter.write(out, value);");
+    out.println("    }");
+    out.println("  }");
+    for (TypeAdapterProcessor.Model model : models) {
+      out.println();
+      writeAdapter(model);
+    }
+    out.println("}");
+  }
+
+  private void writeCreate() {
+    out.println("  @Override");
+    out.println("  public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {");
+    out.println("    if (gson.fieldNamingStrategy() != FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES) {");
+    out.println("      return null;");
+    out.println("    }");
+    out.println("    switch (type.getRawType().getName()) {");
+    for (TypeAdapterProcessor.Model model : models) {
+      out.println("      case \"" + binaryName(model.type) + "\":");
+      out.println("        return (TypeAdapter<T>) (TypeAdapter<?>) new " + model.adapterName + "(gson);");
+    }
+    out.println("      default:");
+    out.println("        return null;");
+    out.println("    }");
+    out.println("  }");
+  }
+
+  private void writeAdapter(TypeAdapterProcessor.Model model) {
+    String type = model.typeName;
+    out.println("  static final class " + model.adapterName + " extends TypeAdapter<" + type + "> {");
+    out.println("    private final Gson gson;");
+    for (TypeAdapterProcessor.Property property : model.properties) {
+      out.println("    private final TypeAdapter<" + boxed(property) + "> "
+                      + property.adapterField() + ";");
+    }
+    out.println();
+    out.println("    " + model.adapterName + "(Gson gson) {");
+    out.println("      this.gson = gson;");
+    for (TypeAdapterProcessor.Property property : model.properties) {
+      out.println("      " + property.adapterField() + " = gson.getAdapter(" + token(property) + ");");
+    }
+    out.println("    }");
+    out.println();
+
+    out.println("    @Override");
+    out.println("    public void write(JsonWriter out, " + type + " value) throws IOException {");
+    out.println("      if (value == null) {");
+    out.println("        out.nullValue();");
+    out.println("        return;");
+    out.println("      }");
+    out.println("      out.beginObject();");
+    for (TypeAdapterProcessor.Property property : model.properties) {
+      out.println("      out.name(\"" + property.jsonNames.get(0) + "\");");
+      if (isRuntimeTyped(property.type)) {
+        out.println("      writeRuntimeType(gson, " + property.adapterField() + ", "
+                        + property.typeSource + ".class, out, value." + property.javaName + ");");
+      } else {
+        out.println("      " + property.adapterField() + ".write(out, value." + property.javaName + ");");
+      }
+    }
+    out.println("      out.endObject();");
+    out.println("    }");
+    out.println();
+
+    out.println("    @Override");
+    out.println("    public " + type + " read(JsonReader in) throws IOException {");
+    out.println("      if (in.peek() == JsonToken.NULL) {");
+    out.println("        in.nextNull();");
+    out.println("        return null;");
+    out.println("      }");
+    out.println("      " + type + " value = new " + type + "();");
+    out.println("      try {");
+    out.println("        in.beginObject();");
+    out.println("        while (in.hasNext()) {");
+    out.println("          switch (in.nextName()) {");
+    for (TypeAdapterProcessor.Property property : model.properties) {
+      for (String name : property.jsonNames) {
+        out.println("            case \"" + name + "\":");
+      }
+      if (property.type.getKind().isPrimitive()) {
+        out.println("            {");
+        out.println("              " + boxed(property) + " read = "
+                        + property.adapterField() + ".read(in);");
+        out.println("              if (read != null) {");
+        out.println("                value." + property.javaName + " = read;");
+        out.println("              }");
+        out.println("              break;");
+        out.println("            }");
+      } else {
+        out.println("              value." + property.javaName + " = "
+                        + property.adapterField() + ".read(in);");
+        out.println("              break;");
+      }
+    }
+    out.println("            default:");
+    out.println("              in.skipValue();");
+    out.println("          }");
+    out.println("        }");
+    out.println("        in.endObject();");
+    out.println("      } catch (IllegalStateException e) {");
+    out.println("        throw new JsonSyntaxException(e);");
+    out.println("      }");
+    out.println("      return value;");
+    out.println("    }");
+    out.println("  }");
+  }
+
+  private static String binaryName(TypeElement type) {
+    if (type.getEnclosingElement() instanceof TypeElement) {
+      return binaryName((TypeElement) type.getEnclosingElement()) + "$" + type.getSimpleName();
+    }
+    return type.getQualifiedName().toString();
+  }
+
+  private static String boxed(TypeAdapterProcessor.Property property) {
+    switch (property.type.getKind()) {
+      case BOOLEAN:
+        return "java.lang.Boolean";
+      case BYTE:
+        return "java.lang.Byte";
+      case SHORT:
+        return "java.lang.Short";
+      case INT:
+        return "java.lang.Integer";
+      case LONG:
+        return "java.lang.Long";
+      case CHAR:
+        return "java.lang.Character";
+      case FLOAT:
+        return "java.lang.Float";
+      case DOUBLE:
+        return "java.lang.Double";
+      default:
+        return property.typeSource;
+    }
+  }
+
+  private static String token(TypeAdapterProcessor.Property property) {
+    if (property.typeSource.indexOf('<') >= 0) {
+      return "new TypeToken<" + property.typeSource + ">() {}";
+    }
+    return property.typeSource + ".class";
+  }
+
+  /**
+   * Like Gson's reflection, a value whose declared type is a non-final class is written with the
+   * adapter of its runtime class.
+   */
+  private static boolean isRuntimeTyped(TypeMirror type) {
+    if (type.getKind() != TypeKind.DECLARED || !((DeclaredType) type).getTypeArguments().isEmpty()) {
+      return false;
+    }
+    TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+    return (element.getKind() == ElementKind.CLASS || element.getKind() == ElementKind.INTERFACE)
+        && !element.getModifiers().contains(Modifier.FINAL);
+  }
+}
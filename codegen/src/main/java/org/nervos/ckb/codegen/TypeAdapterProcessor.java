@@ -0,0 +1,334 @@
+package org.nervos.ckb.codegen;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Generates a {@code GeneratedTypeAdapterFactory} for every package annotated with
+ * {@link GenerateTypeAdapters}, and lists the factories in
+ * {@code META-INF/services/com.google.gson.TypeAdapterFactory}.
+ *
+ * <p>An adapter is generated for each concrete, non-generic, top level or static nested class
+ * that has a non-private no-arg constructor and whose serialized fields, including inherited
+ * ones, are all accessible from the package and neither private nor final. Field names follow
+ * {@code @SerializedName} or else {@code LOWER_CASE_WITH_UNDERSCORES}. Enums, classes or fields
+ * annotated with {@code @JsonAdapter} and every other class are left to Gson's reflection.
+ */
+@SupportedAnnotationTypes("org.nervos.ckb.codegen.GenerateTypeAdapters")
+public class TypeAdapterProcessor extends AbstractProcessor {
+  static final String FACTORY_NAME = "GeneratedTypeAdapterFactory";
+  private static final String SERVICE_FILE =
+      "META-INF/services/com.google.gson.TypeAdapterFactory";
+  private static final String JSON_ADAPTER = "com.google.gson.annotations.JsonAdapter";
+  private static final String SERIALIZED_NAME = "com.google.gson.annotations.SerializedName";
+
+  private final Set<String> factories = new TreeSet<>();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    for (Element element : roundEnv.getElementsAnnotatedWith(GenerateTypeAdapters.class)) {
+      PackageElement pkg = (PackageElement) element;
+      try {
+        generate(pkg);
+      } catch (IOException e) {
+        error(pkg, "Failed to generate type adapters: " + e.getMessage());
+      }
+    }
+    if (roundEnv.processingOver() && !factories.isEmpty()) {
+      try {
+        writeServiceFile();
+      } catch (IOException e) {
+        error(null, "Failed to write " + SERVICE_FILE + ": " + e.getMessage());
+      }
+    }
+    return false;
+  }
+
+  private void error(Element element, String message) {
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+  }
+
+  private void generate(PackageElement pkg) throws IOException {
+    List<Model> models = new ArrayList<>();
+    for (TypeElement type : ElementFilter.typesIn(pkg.getEnclosedElements())) {
+      collect(type, pkg, models);
+    }
+    if (models.isEmpty()) {
+      return;
+    }
+    models.sort(Comparator.comparing(model -> model.typeName));
+    String factory = pkg.getQualifiedName() + "." + FACTORY_NAME;
+    List<Element> origins = new ArrayList<>();
+    origins.add(pkg);
+    for (Model model : models) {
+      origins.add(model.type);
+    }
+    FileObject file = processingEnv.getFiler()
+        .createSourceFile(factory, origins.toArray(new Element[0]));
+    try (PrintWriter out = new PrintWriter(file.openWriter())) {
+      new SourceWriter(out, pkg, models).write();
+    }
+    factories.add(factory);
+  }
+
+  private void writeServiceFile() throws IOException {
+    FileObject file = processingEnv.getFiler()
+        .createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+    try (Writer out = file.openWriter()) {
+      for (String factory : factories) {
+        out.write(factory);
+        out.write('\n');
+      }
+    }
+  }
+
+  private void collect(TypeElement type, PackageElement pkg, List<Model> models) {
+    if (type.getModifiers().contains(Modifier.PRIVATE)) {
+      return;
+    }
+    Model model = model(type, pkg);
+    if (model != null) {
+      models.add(model);
+    }
+    for (TypeElement member : ElementFilter.typesIn(type.getEnclosedElements())) {
+      collect(member, pkg, models);
+    }
+  }
+
+  /**
+   * @return the model of {@code type}, or null if its binding is left to reflection
+   */
+  private Model model(TypeElement type, PackageElement pkg) {
+    Set<Modifier> modifiers = type.getModifiers();
+    if (type.getKind() != ElementKind.CLASS
+        || modifiers.contains(Modifier.ABSTRACT)
+        || (type.getNestingKind() == NestingKind.MEMBER && !modifiers.contains(Modifier.STATIC))
+        || !type.getTypeParameters().isEmpty()
+        || hasAnnotation(type, JSON_ADAPTER)
+        || !hasNoArgConstructor(type)) {
+      return null;
+    }
+    DeclaredType declared = (DeclaredType) type.asType();
+    List<Property> properties = new ArrayList<>();
+    Set<String> javaNames = new HashSet<>();
+    Set<String> jsonNames = new HashSet<>();
+    for (TypeElement current = type; current != null; current = superclass(current)) {
+      for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+        Set<Modifier> fieldModifiers = field.getModifiers();
+        if (fieldModifiers.contains(Modifier.STATIC) || fieldModifiers.contains(Modifier.TRANSIENT)) {
+          continue;
+        }
+        if (fieldModifiers.contains(Modifier.PRIVATE) || fieldModifiers.contains(Modifier.FINAL)
+            || hasAnnotation(field, JSON_ADAPTER)
+            || !(fieldModifiers.contains(Modifier.PUBLIC) || samePackage(current, pkg))) {
+          return null;
+        }
+        TypeMirror fieldType = processingEnv.getTypeUtils().asMemberOf(declared, field);
+        String source = typeSource(fieldType, pkg);
+        if (source == null) {
+          return null;
+        }
+        Property property = new Property(field.getSimpleName().toString(), fieldType, source);
+        readSerializedName(field, property);
+        if (!javaNames.add(property.javaName)) {
+          return null;
+        }
+        for (String name : property.jsonNames) {
+          if (!jsonNames.add(name)) {
+            return null;
+          }
+        }
+        properties.add(property);
+      }
+    }
+    if (properties.isEmpty()) {
+      return null;
+    }
+    return new Model(type, pkg, properties);
+  }
+
+  private boolean hasNoArgConstructor(TypeElement type) {
+    for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+      if (constructor.getParameters().isEmpty()
+          && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private TypeElement superclass(TypeElement type) {
+    TypeMirror superclass = type.getSuperclass();
+    if (superclass.getKind() != TypeKind.DECLARED) {
+      return null;
+    }
+    TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+    return element.getQualifiedName().contentEquals("java.lang.Object") ? null : element;
+  }
+
+  private boolean samePackage(Element element, PackageElement pkg) {
+    return processingEnv.getElementUtils().getPackageOf(element).equals(pkg);
+  }
+
+  private boolean isAccessible(TypeElement type, PackageElement pkg) {
+    for (Element current = type; current instanceof TypeElement;
+         current = current.getEnclosingElement()) {
+      TypeElement element = (TypeElement) current;
+      if (element.getNestingKind() == NestingKind.LOCAL
+          || element.getNestingKind() == NestingKind.ANONYMOUS
+          || element.getModifiers().contains(Modifier.PRIVATE)
+          || !(element.getModifiers().contains(Modifier.PUBLIC) || samePackage(element, pkg))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the type as Java source, or null if it cannot be named from the package
+   */
+  private String typeSource(TypeMirror type, PackageElement pkg) {
+    if (type.getKind().isPrimitive()) {
+      return type.getKind().name().toLowerCase(Locale.ROOT);
+    }
+    switch (type.getKind()) {
+      case ARRAY: {
+        String component = typeSource(((ArrayType) type).getComponentType(), pkg);
+        return component == null ? null : component + "[]";
+      }
+      case DECLARED: {
+        DeclaredType declared = (DeclaredType) type;
+        TypeElement element = (TypeElement) declared.asElement();
+        if (!isAccessible(element, pkg)) {
+          return null;
+        }
+        StringBuilder source = new StringBuilder(element.getQualifiedName());
+        List<? extends TypeMirror> arguments = declared.getTypeArguments();
+        if (!arguments.isEmpty()) {
+          source.append('<');
+          for (int i = 0; i < arguments.size(); i++) {
+            String argument = typeSource(arguments.get(i), pkg);
+            if (argument == null) {
+              return null;
+            }
+            source.append(i == 0 ? "" : ", ").append(argument);
+          }
+          source.append('>');
+        }
+        return source.toString();
+      }
+      case WILDCARD: {
+        WildcardType wildcard = (WildcardType) type;
+        if (wildcard.getExtendsBound() != null) {
+          String bound = typeSource(wildcard.getExtendsBound(), pkg);
+          return bound == null ? null : "? extends " + bound;
+        }
+        if (wildcard.getSuperBound() != null) {
+          String bound = typeSource(wildcard.getSuperBound(), pkg);
+          return bound == null ? null : "? super " + bound;
+        }
+        return "?";
+      }
+      default:
+        return null;
+    }
+  }
+
+  private static boolean hasAnnotation(Element element, String annotation) {
+    for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+      if (((TypeElement) mirror.getAnnotationType().asElement())
+          .getQualifiedName().contentEquals(annotation)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void readSerializedName(VariableElement field, Property property) {
+    for (AnnotationMirror mirror : field.getAnnotationMirrors()) {
+      if (!((TypeElement) mirror.getAnnotationType().asElement())
+          .getQualifiedName().contentEquals(SERIALIZED_NAME)) {
+        continue;
+      }
+      property.jsonNames.clear();
+      for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+          : mirror.getElementValues().entrySet()) {
+        String key = entry.getKey().getSimpleName().toString();
+        Object value = entry.getValue().getValue();
+        if ("value".equals(key)) {
+          property.jsonNames.add(0, (String) value);
+        } else if ("alternate".equals(key)) {
+          for (Object alternate : (List<?>) value) {
+            property.jsonNames.add((String) ((AnnotationValue) alternate).getValue());
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Gson's {@code FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES}.
+   */
+  static String lowerCaseWithUnderscores(String name) {
+    StringBuilder translation = new StringBuilder();
+    for (int i = 0; i < name.length(); i++) {
+      char character = name.charAt(i);
+      if (Character.isUpperCase(character) && translation.length() != 0) {
+        translation.append('_');
+      }
+      translation.append(character);
+    }
+    return translation.toString().toLowerCase(Locale.ENGLISH);
+  }
+
+  static class Model {
+    final TypeElement type;
+    final String typeName;
+    final String adapterName;
+    final List<Property> properties;
+
+    Model(TypeElement type, PackageElement pkg, List<Property> properties) {
+      this.type = type;
+      this.typeName = type.getQualifiedName().toString();
+      String relative = pkg.isUnnamed()
+          ? typeName : typeName.substring(pkg.getQualifiedName().length() + 1);
+      this.adapterName = relative.replace('.', '_') + "Adapter";
+      this.properties = properties;
+    }
+  }
+
+  static class Property {
+    final String javaName;
+    final TypeMirror type;
+    final String typeSource;
+    final List<String> jsonNames = new ArrayList<>();
+
+    Property(String javaName, TypeMirror type, String typeSource) {
+      this.javaName = javaName;
+      this.type = type;
+      this.typeSource = typeSource;
+      jsonNames.add(lowerCaseWithUnderscores(javaName));
+    }
+
+    String adapterField() {
+      return javaName + "Adapter";
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package org.nervos.ckb.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.nervos.ckb.type.Block;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the generated adapters with Gson's reflection, decoding and encoding a
+ * {@code get_block} response with {@code transactions} transactions.
+ *
+ * <p>The block is built from the header of the testnet genesis block in the light client
+ * fixtures and copies of a two input, two output transfer.
+ *
+ * <pre>
+ * ./gradlew :core:jmhJar
+ * java -jar core/build/libs/core-*-jmh.jar GeneratedAdapterBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeneratedAdapterBenchmark {
+  private static final String TRANSACTION = "{\"cell_deps\":[{\"dep_type\":\"dep_group\",\"out_point\":{"
+      + "\"index\":\"0x0\",\"tx_hash\":\"0xf8de3bb47d055cdf460d93a2a6e1b05f7432f9777c8c474abf4eec1d4aee5d37\"}}],"
+      + "\"hash\":\"0x8f8c79eb6671709633fe6a46de93c0fedc9c1b8a6527a18d3983879542635c9f\",\"header_deps\":[],"
+      + "\"inputs\":["
+      + "{\"previous_output\":{\"index\":\"0x1\","
+      + "\"tx_hash\":\"0x8ad0468383d0085e26d9c3b9b648623e4194efc53a03b7cd1a79e92700687f1e\"},\"since\":\"0x0\"},"
+      + "{\"previous_output\":{\"index\":\"0x0\","
+      + "\"tx_hash\":\"0x10639e0895502b5688a6be8cf69460d76541bfa4821629d86d62ba0aae3f9606\"},\"since\":\"0x0\"}],"
+      + "\"outputs\":["
+      + "{\"capacity\":\"0x174876e800\",\"lock\":{\"args\":\"0x36c329ed630d6ce750712a477543672adab57f4c\","
+      + "\"code_hash\":\"0x9bd7e06f3ecf4be0f2fcd2188b23f1b9fcc88e5d4b65a8637b17723bbda3cce8\",\"hash_type\":\"type\"},"
+      + "\"type\":null},"
+      + "{\"capacity\":\"0x2b95fd500\",\"lock\":{\"args\":\"0x7e00660b8ab122bcc2a2c6e7a7a0d7d45ae7e5b4\","
+      + "\"code_hash\":\"0x9bd7e06f3ecf4be0f2fcd2188b23f1b9fcc88e5d4b65a8637b17723bbda3cce8\",\"hash_type\":\"type\"},"
+      + "\"type\":null}],"
+      + "\"outputs_data\":[\"0x\",\"0x\"],\"version\":\"0x0\","
+      + "\"witnesses\":[\"0x5500000010000000550000005500000041000000ffb2f6ba08c1b5e6d2c0a8f4b6f1e0a7d5c3b2a1908f7e6d5c4b3a29"
+      + "18076f5e4d3c2b1a09f8e7d6c5b4a3928170f6e5d4c3b2a1908f7e6d5c4b3a291807\"]}";
+
+  @Param({"../light-client/src/test/resources/lightclient/genesis.json"})
+  public String headerJson;
+
+  @Param({"1000"})
+  public int transactions;
+
+  String json;
+  private Block block;
+  private Gson generated;
+  private Gson reflective;
+
+  static class BlockResponse {
+    Block result;
+  }
+
+  @Setup
+  public void setUp() throws IOException {
+    String genesis = new String(Files.readAllBytes(Paths.get(headerJson)), StandardCharsets.UTF_8);
+    JsonObject response = JsonParser.parseString(genesis).getAsJsonObject();
+    JsonObject result = response.getAsJsonObject("result");
+    JsonArray txs = new JsonArray();
+    JsonObject transaction = JsonParser.parseString(TRANSACTION).getAsJsonObject();
+    for (int i = 0; i < transactions; i++) {
+      txs.add(transaction);
+    }
+    result.add("transactions", txs);
+    json = response.toString();
+    generated = GsonFactory.create();
+    reflective = GsonFactory.create(false);
+    block = generated.fromJson(json, BlockResponse.class).result;
+  }
+
+  @Benchmark
+  public Block decodeGenerated() {
+    return generated.fromJson(json, BlockResponse.class).result;
+  }
+
+  @Benchmark
+  public Block decodeReflective() {
+    return reflective.fromJson(json, BlockResponse.class).result;
+  }
+
+  @Benchmark
+  public String encodeGenerated() {
+    return generated.toJson(block);
+  }
+
+  @Benchmark
+  public String encodeReflective() {
+    return reflective.toJson(block);
+  }
+}
@@ -0,0 +1,70 @@
+package org.nervos.ckb.service;
+
+import com.google.gson.Gson;
+import org.nervos.ckb.type.Block;
+import org.nervos.ckb.type.PackedBlockWithCycles;
+import org.nervos.ckb.utils.Numeric;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding a {@code get_block} response with {@code transactions} transactions from
+ * JSON with unpacking the same block from its molecule packed hex, as returned with verbosity 0.
+ *
+ * <pre>
+ * ./gradlew :core:jmhJar
+ * java -jar core/build/libs/core-*-jmh.jar PackedBlockBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PackedBlockBenchmark {
+  @Param({"../light-client/src/test/resources/lightclient/genesis.json"})
+  public String headerJson;
+
+  @Param({"1000"})
+  public int transactions;
+
+  private String json;
+  private String packedJson;
+  private Gson gson;
+
+  static class BlockResponse {
+    Block result;
+  }
+
+  static class PackedBlockResponse {
+    String result;
+  }
+
+  @Setup
+  public void setUp() throws IOException {
+    GeneratedAdapterBenchmark source = new GeneratedAdapterBenchmark();
+    source.headerJson = headerJson;
+    source.transactions = transactions;
+    source.setUp();
+    json = source.json;
+    gson = GsonFactory.create();
+    Block block = gson.fromJson(json, BlockResponse.class).result;
+    packedJson = "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":\""
+        + Numeric.toHexString(block.pack().toByteArray()) + "\"}";
+  }
+
+  @Benchmark
+  public Block decodeJson() {
+    return gson.fromJson(json, BlockResponse.class).result;
+  }
+
+  @Benchmark
+  public Block decodePacked() {
+    PackedBlockWithCycles packed = new PackedBlockWithCycles();
+    packed.block = gson.fromJson(packedJson, PackedBlockResponse.class).result;
+    return packed.unpack().block;
+  }
+}
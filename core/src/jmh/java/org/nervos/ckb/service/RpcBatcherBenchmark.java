@@ -0,0 +1,106 @@
+package org.nervos.ckb.service;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of 32 threads calling a node that takes {@code delayMillis} for every
+ * HTTP request and serves 4 at a time, with and without micro-batching.
+ *
+ * <pre>
+ * ./gradlew :core:jmhJar
+ * java -jar core/build/libs/core-*-jmh.jar RpcBatcherBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class RpcBatcherBenchmark {
+  @Param({"false", "true"})
+  public boolean batching;
+
+  @Param({"10"})
+  public long delayMillis;
+
+  private HttpServer server;
+  private ExecutorService serverExecutor;
+  private RpcService rpcService;
+
+  @Setup
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/", exchange -> {
+      JsonElement request;
+      try (InputStreamReader in =
+               new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+        request = JsonParser.parseReader(in);
+      }
+      try {
+        Thread.sleep(delayMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      byte[] body = reply(request).toString().getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    serverExecutor = Executors.newFixedThreadPool(4);
+    server.setExecutor(serverExecutor);
+    server.start();
+    rpcService = new RpcService(
+        "http://127.0.0.1:" + server.getAddress().getPort(), false);
+    if (batching) {
+      rpcService.enableBatching(2, 64);
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    rpcService.close();
+    server.stop(0);
+    serverExecutor.shutdownNow();
+  }
+
+  @Benchmark
+  public Long getBlockHash() throws IOException {
+    return rpcService.post("get_block_hash", Collections.singletonList(7), Long.class);
+  }
+
+  private static JsonElement reply(JsonElement request) {
+    if (request.isJsonArray()) {
+      JsonArray replies = new JsonArray();
+      for (JsonElement element : request.getAsJsonArray()) {
+        replies.add(reply(element));
+      }
+      return replies;
+    }
+    JsonObject call = request.getAsJsonObject();
+    JsonObject reply = new JsonObject();
+    reply.addProperty("jsonrpc", "2.0");
+    reply.add("result", call.getAsJsonArray("params").get(0));
+    reply.add("id", call.get("id"));
+    return reply;
+  }
+}
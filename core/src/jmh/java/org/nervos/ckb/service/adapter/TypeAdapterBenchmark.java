@@ -0,0 +1,159 @@
+package org.nervos.ckb.service.adapter;
+
+import com.google.gson.*;
+import org.nervos.ckb.service.GsonFactory;
+import org.nervos.ckb.type.Block;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the streaming adapters with the tree based adapters they replaced, decoding and
+ * encoding a full {@code get_block} response.
+ *
+ * <p>The default block is the testnet genesis block from the light client fixtures. To measure a
+ * mainnet block, save a {@code get_block} response and pass its path:
+ *
+ * <pre>
+ * ./gradlew :core:jmhJar
+ * java -jar core/build/libs/core-*-jmh.jar TypeAdapterBenchmark -p blockJson=/path/to/block.json
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TypeAdapterBenchmark {
+  @Param({"../light-client/src/test/resources/lightclient/genesis.json"})
+  public String blockJson;
+
+  private String json;
+  private Block block;
+  private Gson streaming;
+  private Gson legacy;
+
+  static class BlockResponse {
+    Block result;
+  }
+
+  @Setup
+  public void setUp() throws IOException {
+    json = new String(Files.readAllBytes(Paths.get(blockJson)), StandardCharsets.UTF_8);
+    streaming = GsonFactory.create();
+    legacy = new GsonBuilder()
+        .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+        .setObjectToNumberStrategy(ToNumberPolicy.LONG_OR_DOUBLE)
+        .registerTypeAdapterFactory(new CheckedEnumTypeAdapterFactory())
+        .registerTypeAdapter(byte[].class, new LegacyByteArrayAdapter())
+        .registerTypeAdapter(int.class, new LegacyIntegerAdapter())
+        .registerTypeAdapter(Integer.class, new LegacyIntegerAdapter())
+        .registerTypeAdapter(long.class, new LegacyLongAdapter())
+        .registerTypeAdapter(Long.class, new LegacyLongAdapter())
+        .registerTypeAdapter(BigInteger.class, new LegacyBigIntegerAdapter())
+        .create();
+    block = streaming.fromJson(json, BlockResponse.class).result;
+  }
+
+  @Benchmark
+  public Block decodeStreaming() {
+    return streaming.fromJson(json, BlockResponse.class).result;
+  }
+
+  @Benchmark
+  public Block decodeLegacy() {
+    return legacy.fromJson(json, BlockResponse.class).result;
+  }
+
+  @Benchmark
+  public String encodeStreaming() {
+    return streaming.toJson(block);
+  }
+
+  @Benchmark
+  public String encodeLegacy() {
+    return legacy.toJson(block);
+  }
+
+  // The adapters below are the implementations replaced by the streaming adapters.
+
+  static class LegacyByteArrayAdapter implements JsonSerializer<byte[]>, JsonDeserializer<byte[]> {
+    @Override
+    public JsonElement serialize(byte[] src, Type typeOfSrc, JsonSerializationContext context) {
+      StringBuilder builder = new StringBuilder("0x");
+      for (byte b : src) {
+        builder.append(String.format("%02x", b & 0xFF));
+      }
+      return new JsonPrimitive(builder.toString());
+    }
+
+    @Override
+    public byte[] deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) {
+      String input = json.getAsString();
+      String clean = input.startsWith("0x") ? input.substring(2) : input;
+      int len = clean.length();
+      byte[] data = new byte[(len + 1) / 2];
+      int start = 0;
+      if (len % 2 != 0) {
+        data[0] = (byte) Character.digit(clean.charAt(0), 16);
+        start = 1;
+      }
+      for (int i = start; i < len; i += 2) {
+        data[(i + 1) / 2] = (byte) ((Character.digit(clean.charAt(i), 16) << 4)
+            + Character.digit(clean.charAt(i + 1), 16));
+      }
+      return data;
+    }
+  }
+
+  static class LegacyLongAdapter implements JsonSerializer<Long>, JsonDeserializer<Long> {
+    @Override
+    public JsonElement serialize(Long src, Type typeOfSrc, JsonSerializationContext context) {
+      return new JsonPrimitive("0x" + Long.toHexString(src));
+    }
+
+    @Override
+    public Long deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) {
+      if (json.getAsJsonPrimitive().isNumber()) {
+        return json.getAsLong();
+      }
+      return Long.parseUnsignedLong(json.getAsString().substring(2), 16);
+    }
+  }
+
+  static class LegacyIntegerAdapter implements JsonSerializer<Integer>, JsonDeserializer<Integer> {
+    @Override
+    public JsonElement serialize(Integer src, Type typeOfSrc, JsonSerializationContext context) {
+      return new JsonPrimitive("0x" + Integer.toHexString(src));
+    }
+
+    @Override
+    public Integer deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) {
+      if (json.getAsJsonPrimitive().isNumber()) {
+        return json.getAsInt();
+      }
+      return Integer.parseUnsignedInt(json.getAsString().substring(2), 16);
+    }
+  }
+
+  static class LegacyBigIntegerAdapter
+      implements JsonSerializer<BigInteger>, JsonDeserializer<BigInteger> {
+    @Override
+    public JsonElement serialize(BigInteger src, Type typeOfSrc, JsonSerializationContext context) {
+      return new JsonPrimitive("0x" + src.toString(16));
+    }
+
+    @Override
+    public BigInteger deserialize(
+        JsonElement json, Type typeOfT, JsonDeserializationContext context) {
+      return new BigInteger(json.getAsString().substring(2), 16);
+    }
+  }
+}
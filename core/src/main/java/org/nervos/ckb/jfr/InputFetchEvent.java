@@ -0,0 +1,10 @@
+package org.nervos.ckb.jfr;
+
+/**
+ * A page of live cells fetched by an input iterator.
+ */
+public class InputFetchEvent extends JfrEvent {
+  public int limit;
+  public int cells;
+  public String cursor;
+}
@@ -0,0 +1,23 @@
+package org.nervos.ckb.jfr;
+
+/**
+ * The methods of {@code jdk.jfr.Event} the SDK calls, as no-ops for Java 8.
+ */
+abstract class JfrEvent {
+  public void begin() {
+  }
+
+  public void end() {
+  }
+
+  public void commit() {
+  }
+
+  public boolean isEnabled() {
+    return false;
+  }
+
+  public boolean shouldCommit() {
+    return false;
+  }
+}
@@ -0,0 +1,14 @@
+package org.nervos.ckb.jfr;
+
+/**
+ * A request sent by an {@code RpcService}, from the end of its serialization until its reply is
+ * decoded.
+ */
+public class RpcEvent extends JfrEvent {
+  public String method;
+  public int calls;
+  public String endpoint;
+  public long requestBytes;
+  public long responseBytes;
+  public String outcome;
+}
@@ -0,0 +1,11 @@
+package org.nervos.ckb.jfr;
+
+/**
+ * A transaction built by a transaction builder.
+ */
+public class TransactionBuildEvent extends JfrEvent {
+  public int inputsScanned;
+  public int feeCalculations;
+  public int outputs;
+  public int scriptGroups;
+}
@@ -0,0 +1,9 @@
+package org.nervos.ckb.jfr;
+
+/**
+ * A transaction signed by a {@code TransactionSigner}.
+ */
+public class TransactionSignEvent extends JfrEvent {
+  public int groups;
+  public int signatures;
+}
@@ -0,0 +1,9 @@
+/**
+ * JDK Flight Recorder events of the SDK.
+ *
+ * <p>The classes in this package do nothing on Java 8. On Java 11 and later the multi-release jar
+ * replaces them with subclasses of {@code jdk.jfr.Event}, recorded when a recording enables them,
+ * for example with {@code -XX:StartFlightRecording}. Their fields are only filled in when
+ * {@code shouldCommit()} returns true, so they cost next to nothing while not recorded.
+ */
+package org.nervos.ckb.jfr;
@@ -0,0 +1,308 @@
+package org.nervos.ckb.service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Limits the HTTP calls an {@link RpcService} has in flight to each endpoint, and queues the rest
+ * by {@link RpcPriority}.
+ *
+ * <p>The limit of an endpoint adapts to its latency. It grows by one for every limit's worth of
+ * calls that answer within {@link #setLatencyTolerance(double) a tolerance} of the fastest recent
+ * latency of their priority, and is cut by {@link #setBackoffRatio(double) a ratio}, at most once
+ * per round trip, when a call is slower than that, times out or is rejected with HTTP 429 or 503.
+ * When a call finishes, the oldest waiting call of the most urgent priority is sent next, so
+ * submissions and interactive queries never queue behind bulk scans.
+ *
+ * <pre>{@code
+ * rpcService.setConcurrencyLimiter(new ConcurrencyLimiter().setLimits(8, 1, 64));
+ * }</pre>
+ */
+public class ConcurrencyLimiter {
+  private static final Map<String, RpcPriority> DEFAULT_PRIORITIES = new HashMap<>();
+  // how far a baseline latency moves toward a slower sample, so it recovers when a node slows down
+  private static final double BASELINE_DRIFT = 0.01;
+
+  static {
+    DEFAULT_PRIORITIES.put("send_transaction", RpcPriority.SUBMIT);
+    DEFAULT_PRIORITIES.put("send_test_transaction", RpcPriority.SUBMIT);
+    DEFAULT_PRIORITIES.put("get_cells", RpcPriority.BULK);
+    DEFAULT_PRIORITIES.put("get_transactions", RpcPriority.BULK);
+    DEFAULT_PRIORITIES.put("get_cells_capacity", RpcPriority.BULK);
+  }
+
+  private final Map<String, RpcPriority> priorities = new ConcurrentHashMap<>(DEFAULT_PRIORITIES);
+  private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+  private int initialLimit = 16;
+  private int minLimit = 1;
+  private int maxLimit = 128;
+  private double latencyTolerance = 2;
+  private double backoffRatio = 0.9;
+
+  /**
+   * Sets the priority of {@code method}. {@code send_transaction} and {@code send_test_transaction}
+   * are submissions, {@code get_cells}, {@code get_transactions} and {@code get_cells_capacity} are
+   * bulk, and every other method is interactive.
+   */
+  public ConcurrencyLimiter setPriority(String method, RpcPriority priority) {
+    priorities.put(method, priority);
+    return this;
+  }
+
+  public RpcPriority getPriority(String method) {
+    return priorities.getOrDefault(method, RpcPriority.INTERACTIVE);
+  }
+
+  /**
+   * Sets the limit each endpoint starts with and the bounds it adapts within. Defaults to 16, 1
+   * and 128.
+   */
+  public ConcurrencyLimiter setLimits(int initialLimit, int minLimit, int maxLimit) {
+    if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+      throw new IllegalArgumentException("Invalid concurrency limits");
+    }
+    this.initialLimit = initialLimit;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    return this;
+  }
+
+  public int getMaxLimit() {
+    return maxLimit;
+  }
+
+  /**
+   * Sets how many times slower than the baseline latency a call may answer before the limit is
+   * cut. Defaults to 2.
+   */
+  public ConcurrencyLimiter setLatencyTolerance(double latencyTolerance) {
+    if (latencyTolerance < 1) {
+      throw new IllegalArgumentException("Latency tolerance must be at least 1");
+    }
+    this.latencyTolerance = latencyTolerance;
+    return this;
+  }
+
+  /**
+   * Sets the factor the limit is multiplied with when an endpoint is overloaded. Defaults to 0.9.
+   */
+  public ConcurrencyLimiter setBackoffRatio(double backoffRatio) {
+    if (backoffRatio <= 0 || backoffRatio >= 1) {
+      throw new IllegalArgumentException("Backoff ratio must be between 0 and 1");
+    }
+    this.backoffRatio = backoffRatio;
+    return this;
+  }
+
+  /**
+   * @return the limit, calls in flight and queue depths of the endpoint with {@code url}, or null
+   *     if no call was sent to it yet
+   */
+  public Metrics getMetrics(String url) {
+    Lane lane = lanes.get(url);
+    return lane == null ? null : lane.metrics();
+  }
+
+  /**
+   * @return the metrics of every endpoint that was called, by url
+   */
+  public Map<String, Metrics> getMetrics() {
+    Map<String, Metrics> metrics = new TreeMap<>();
+    for (Map.Entry<String, Lane> entry : lanes.entrySet()) {
+      metrics.put(entry.getKey(), entry.getValue().metrics());
+    }
+    return metrics;
+  }
+
+  /**
+   * Takes a permit to call the endpoint with {@code url}. The returned future completes when the
+   * call may be sent; cancelling it gives up the place in the queue.
+   */
+  CompletableFuture<Permit> acquire(String url, RpcPriority priority) {
+    return lanes.computeIfAbsent(url, key -> new Lane()).acquire(priority);
+  }
+
+  private class Lane {
+    @SuppressWarnings("unchecked")
+    final ArrayDeque<Waiter>[] queues = new ArrayDeque[RpcPriority.values().length];
+    final double[] baselineNanos = new double[RpcPriority.values().length];
+    double limit = initialLimit;
+    int inFlight;
+    long lastDecreaseNanos = Long.MIN_VALUE;
+
+    Lane() {
+      for (int i = 0; i < queues.length; i++) {
+        queues[i] = new ArrayDeque<>();
+        baselineNanos[i] = Double.NaN;
+      }
+    }
+
+    CompletableFuture<Permit> acquire(RpcPriority priority) {
+      synchronized (this) {
+        if (inFlight < (int) limit) {
+          inFlight++;
+          return CompletableFuture.completedFuture(new Permit(this, priority));
+        }
+        Waiter waiter = new Waiter(this, priority);
+        queues[priority.ordinal()].add(waiter);
+        return waiter;
+      }
+    }
+
+    synchronized void remove(Waiter waiter) {
+      queues[waiter.priority.ordinal()].remove(waiter);
+    }
+
+    void release(Permit permit, long nanos, boolean overloaded) {
+      List<Waiter> granted = new ArrayList<>();
+      synchronized (this) {
+        inFlight--;
+        if (nanos >= 0) {
+          adapt(permit, nanos, overloaded);
+        }
+        while (inFlight < (int) limit) {
+          Waiter next = poll();
+          if (next == null) {
+            break;
+          }
+          inFlight++;
+          granted.add(next);
+        }
+      }
+      // complete outside the lock, the callers send their calls from here
+      for (Waiter waiter : granted) {
+        Permit next = new Permit(this, waiter.priority);
+        if (!waiter.complete(next)) {
+          // cancelled while it was being granted
+          next.release();
+        }
+      }
+    }
+
+    private void adapt(Permit permit, long nanos, boolean overloaded) {
+      int index = permit.priority.ordinal();
+      double baseline = baselineNanos[index];
+      if (Double.isNaN(baseline) || nanos < baseline) {
+        baselineNanos[index] = nanos;
+      } else {
+        baselineNanos[index] = baseline + (nanos - baseline) * BASELINE_DRIFT;
+      }
+      if (overloaded || (!Double.isNaN(baseline) && nanos > baseline * latencyTolerance)) {
+        // calls sent before the last cut saw the old limit, so cut once per round trip
+        if (permit.startNanos > lastDecreaseNanos) {
+          limit = Math.max(minLimit, limit * backoffRatio);
+          lastDecreaseNanos = System.nanoTime();
+        }
+      } else if (inFlight + 1 >= limit / 2) {
+        // only grow when the limit is what holds the calls back
+        limit = Math.min(maxLimit, limit + 1 / limit);
+      }
+    }
+
+    private Waiter poll() {
+      for (ArrayDeque<Waiter> queue : queues) {
+        Waiter waiter = queue.poll();
+        if (waiter != null) {
+          return waiter;
+        }
+      }
+      return null;
+    }
+
+    synchronized Metrics metrics() {
+      int[] queueDepths = new int[queues.length];
+      for (int i = 0; i < queues.length; i++) {
+        queueDepths[i] = queues[i].size();
+      }
+      return new Metrics((int) limit, inFlight, queueDepths);
+    }
+  }
+
+  private static class Waiter extends CompletableFuture<Permit> {
+    final Lane lane;
+    final RpcPriority priority;
+
+    Waiter(Lane lane, RpcPriority priority) {
+      this.lane = lane;
+      this.priority = priority;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      boolean cancelled = super.cancel(mayInterruptIfRunning);
+      if (cancelled) {
+        lane.remove(this);
+      }
+      return cancelled;
+    }
+  }
+
+  /**
+   * The right to have one call in flight to an endpoint. Exactly one of {@link #complete(boolean)}
+   * and {@link #release()} must be called when the call is done.
+   */
+  static class Permit {
+    final Lane lane;
+    final RpcPriority priority;
+    final long startNanos = System.nanoTime();
+
+    private Permit(Lane lane, RpcPriority priority) {
+      this.lane = lane;
+      this.priority = priority;
+    }
+
+    /**
+     * Frees the permit and feeds the latency of the call to the limit.
+     *
+     * @param overloaded whether the endpoint timed out or turned the call away
+     */
+    void complete(boolean overloaded) {
+      lane.release(this, System.nanoTime() - startNanos, overloaded);
+    }
+
+    /**
+     * Frees the permit of a call that says nothing about the load of the endpoint, such as a
+     * cancelled one.
+     */
+    void release() {
+      lane.release(this, -1, false);
+    }
+  }
+
+  /**
+   * A snapshot of the state of one endpoint.
+   */
+  public static class Metrics {
+    public final int limit;
+    public final int inFlight;
+    private final int[] queueDepths;
+
+    Metrics(int limit, int inFlight, int[] queueDepths) {
+      this.limit = limit;
+      this.inFlight = inFlight;
+      this.queueDepths = queueDepths;
+    }
+
+    /**
+     * @return the number of calls waiting for a permit
+     */
+    public int getQueueDepth() {
+      int depth = 0;
+      for (int queueDepth : queueDepths) {
+        depth += queueDepth;
+      }
+      return depth;
+    }
+
+    public int getQueueDepth(RpcPriority priority) {
+      return queueDepths[priority.ordinal()];
+    }
+
+    @Override
+    public String toString() {
+      return "limit " + limit + ", in flight " + inFlight + ", queued "
+          + Arrays.toString(queueDepths);
+    }
+  }
+}
@@ -0,0 +1,259 @@
+package org.nervos.ckb.service;
+
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * A point in time by which a piece of work must finish, which can also be cancelled.
+ *
+ * <p>Entering a deadline binds it to the current thread. Every RPC call an {@link RpcService}
+ * sends from that thread, including the chain of calls of operations such as
+ * {@code DaoTransactionBuilder}, is then given only the time that remains, and fails with an
+ * {@link InterruptedIOException} once the deadline passes or is cancelled. Asynchronous calls keep
+ * the deadline of the thread that started them. Nested deadlines never extend an outer one.
+ *
+ * <pre>{@code
+ * builder = Deadline.after(2, TimeUnit.SECONDS).call(
+ *     () -> new DaoTransactionBuilder(configuration, iterator, outPoint, api));
+ * }</pre>
+ *
+ * <p>{@link #cancel()} aborts the calls in flight under the deadline from any thread. Long loops
+ * can poll {@link #check()} to stop early.
+ */
+public final class Deadline {
+  private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+  private static final ScheduledExecutorService SCHEDULER =
+      Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ckb-rpc-deadline");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  private final long deadlineNanos;
+  // an earlier deadline combined with an outer one is also cancelled with it
+  private final Deadline[] parents;
+  private final List<Runnable> cancelActions = new CopyOnWriteArrayList<>();
+  private volatile boolean cancelled;
+
+  private Deadline(long deadlineNanos, Deadline... parents) {
+    this.deadlineNanos = deadlineNanos;
+    this.parents = parents;
+  }
+
+  public static Deadline after(long duration, TimeUnit unit) {
+    long nanos = unit.toNanos(duration);
+    long now = System.nanoTime();
+    // saturate rather than wrap around for very long durations
+    return new Deadline(nanos > Long.MAX_VALUE / 2 ? now + Long.MAX_VALUE / 2 : now + nanos);
+  }
+
+  public static Deadline afterMillis(long millis) {
+    return after(millis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @return the deadline bound to the current thread, or null if there is none
+   */
+  public static Deadline current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Binds this deadline, or the outer deadline of the thread if that one expires first, to the
+   * current thread until the scope is closed.
+   */
+  public Scope enter() {
+    Deadline previous = CURRENT.get();
+    CURRENT.set(earliest(previous));
+    return new Scope(previous);
+  }
+
+  /**
+   * Runs {@code work} on the current thread with this deadline {@link #enter() entered}.
+   *
+   * @return what {@code work} returns
+   */
+  public <T, E extends Exception> T call(Work<T, E> work) throws E {
+    Scope scope = enter();
+    try {
+      return work.call();
+    } finally {
+      scope.close();
+    }
+  }
+
+  /**
+   * Runs {@code action} on the current thread with this deadline {@link #enter() entered}.
+   */
+  public <E extends Exception> void run(Action<E> action) throws E {
+    Scope scope = enter();
+    try {
+      action.run();
+    } finally {
+      scope.close();
+    }
+  }
+
+  /**
+   * @return a deadline that expires with the earlier of this and {@code other}, and is cancelled
+   *     when either is
+   */
+  public Deadline earliest(Deadline other) {
+    if (other == null || other == this) {
+      return this;
+    }
+    return new Deadline(deadlineNanos - other.deadlineNanos <= 0
+                            ? deadlineNanos : other.deadlineNanos, this, other);
+  }
+
+  public long remaining(TimeUnit unit) {
+    return unit.convert(remainingNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * @return the nanoseconds left, or 0 if the deadline has passed
+   */
+  public long remainingNanos() {
+    return Math.max(0, deadlineNanos - System.nanoTime());
+  }
+
+  /**
+   * @return whether the deadline has passed or was cancelled
+   */
+  public boolean isExpired() {
+    return isCancelled() || deadlineNanos - System.nanoTime() <= 0;
+  }
+
+  public boolean isCancelled() {
+    if (cancelled) {
+      return true;
+    }
+    for (Deadline parent : parents) {
+      if (parent.isCancelled()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Cancels the deadline, and with it the calls in flight under it.
+   */
+  public void cancel() {
+    cancelled = true;
+    for (Runnable action : cancelActions) {
+      action.run();
+    }
+    cancelActions.clear();
+  }
+
+  /**
+   * @throws InterruptedIOException if the deadline has passed or was cancelled
+   */
+  public void check() throws InterruptedIOException {
+    if (isCancelled()) {
+      throw new InterruptedIOException("Deadline cancelled");
+    }
+    if (deadlineNanos - System.nanoTime() <= 0) {
+      throw new InterruptedIOException("Deadline exceeded");
+    }
+  }
+
+  /**
+   * Runs {@code action} when the deadline is cancelled, right away if it already is. The returned
+   * runnable unregisters the action.
+   */
+  Runnable onCancel(Runnable action) {
+    cancelActions.add(action);
+    Runnable[] unregister = new Runnable[parents.length];
+    for (int i = 0; i < parents.length; i++) {
+      unregister[i] = parents[i].onCancel(action);
+    }
+    if (isCancelled()) {
+      // cancelled while registering; actions must tolerate running twice
+      action.run();
+    }
+    return () -> {
+      cancelActions.remove(action);
+      for (Runnable parent : unregister) {
+        parent.run();
+      }
+    };
+  }
+
+  /**
+   * Fails {@code future} with an {@link InterruptedIOException}, and cancels the work behind it,
+   * when the deadline passes or is cancelled first.
+   */
+  <T> CompletableFuture<T> bound(CompletableFuture<T> future) {
+    if (future.isDone()) {
+      return future;
+    }
+    CompletableFuture<T> bounded = new CompletableFuture<T>() {
+      @Override
+      public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        future.cancel(true);
+        return cancelled;
+      }
+    };
+    ScheduledFuture<?> timer = SCHEDULER.schedule(() -> {
+      if (bounded.completeExceptionally(new InterruptedIOException("Deadline exceeded"))) {
+        future.cancel(true);
+      }
+    }, remainingNanos(), TimeUnit.NANOSECONDS);
+    Runnable unregister = onCancel(() -> {
+      if (bounded.completeExceptionally(new InterruptedIOException("Deadline cancelled"))) {
+        future.cancel(true);
+      }
+    });
+    future.whenComplete((result, e) -> {
+      timer.cancel(false);
+      unregister.run();
+      if (e != null) {
+        bounded.completeExceptionally(
+            e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+      } else {
+        bounded.complete(result);
+      }
+    });
+    return bounded;
+  }
+
+  /**
+   * Work run under a deadline by {@link #call(Work)}.
+   */
+  @FunctionalInterface
+  public interface Work<T, E extends Exception> {
+    T call() throws E;
+  }
+
+  /**
+   * An action run under a deadline by {@link #run(Action)}.
+   */
+  @FunctionalInterface
+  public interface Action<E extends Exception> {
+    void run() throws E;
+  }
+
+  /**
+   * Restores the deadline the thread had before {@link #enter()}.
+   */
+  public static class Scope implements AutoCloseable {
+    private final Deadline previous;
+
+    private Scope(Deadline previous) {
+      this.previous = previous;
+    }
+
+    @Override
+    public void close() {
+      if (previous == null) {
+        CURRENT.remove();
+      } else {
+        CURRENT.set(previous);
+      }
+    }
+  }
+}
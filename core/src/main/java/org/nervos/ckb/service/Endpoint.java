@@ -0,0 +1,84 @@
+package org.nervos.ckb.service;
+
+import okhttp3.HttpUrl;
+
+/**
+ * One node of an {@link EndpointPool} together with the statistics used to route requests to it.
+ */
+public class Endpoint {
+  private static final double ALPHA = 0.2;
+
+  private final HttpUrl url;
+  private double latencyMillis = Double.NaN;
+  private double errorRate;
+  private long tipBlockNumber = -1;
+  private volatile boolean lagging;
+
+  Endpoint(String url) {
+    this.url = HttpUrl.get(url);
+  }
+
+  public String getUrl() {
+    return url.toString();
+  }
+
+  static String normalize(String url) {
+    return HttpUrl.get(url).toString();
+  }
+
+  HttpUrl httpUrl() {
+    return url;
+  }
+
+  /**
+   * @return the exponentially weighted moving average of successful request latency, or NaN if no
+   *     request to this endpoint has succeeded yet
+   */
+  public synchronized double getLatencyMillis() {
+    return latencyMillis;
+  }
+
+  /**
+   * @return the exponentially weighted moving average of the request failure rate, from 0 to 1
+   */
+  public synchronized double getErrorRate() {
+    return errorRate;
+  }
+
+  /**
+   * @return the tip block number reported by the last health check, or -1 if unknown
+   */
+  public synchronized long getTipBlockNumber() {
+    return tipBlockNumber;
+  }
+
+  /**
+   * @return true if the last health check found this node too far behind the highest tip
+   */
+  public boolean isLagging() {
+    return lagging;
+  }
+
+  synchronized void recordSuccess(long elapsedNanos) {
+    double millis = elapsedNanos / 1e6;
+    latencyMillis = Double.isNaN(latencyMillis) ? millis : latencyMillis + ALPHA * (millis - latencyMillis);
+    errorRate -= ALPHA * errorRate;
+  }
+
+  synchronized void recordFailure() {
+    errorRate += ALPHA * (1 - errorRate);
+  }
+
+  synchronized void setTipBlockNumber(long tipBlockNumber) {
+    this.tipBlockNumber = tipBlockNumber;
+  }
+
+  void setLagging(boolean lagging) {
+    this.lagging = lagging;
+  }
+
+  @Override
+  public String toString() {
+    return getUrl();
+  }
+}
@@ -0,0 +1,171 @@
+package org.nervos.ckb.service;
+
+import java.util.*;
+
+/**
+ * A set of equivalent nodes that one {@link RpcService} sends its requests to.
+ *
+ * <p>Reads go to the healthy endpoint with the lowest latency and fail over to the next one when a
+ * request cannot be delivered or the node answers with an HTTP error. Writes such as
+ * {@code send_transaction} are pinned to the preferred write endpoint while it is healthy, and are
+ * never retried on another node once sent.
+ *
+ * <p>An endpoint is unhealthy when its error rate exceeds {@link #setMaxErrorRate(double)} or the
+ * last health check found its tip more than {@link #setMaxTipLag(long)} blocks behind the highest
+ * tip of the pool. Unhealthy endpoints are only used when no healthy one is left.
+ *
+ * <pre>{@code
+ * EndpointPool pool = new EndpointPool(Arrays.asList("http://node-a:8114", "http://node-b:8114"));
+ * Api api = new Api(new RpcService(pool, false));
+ * }</pre>
+ */
+public class EndpointPool {
+  private static final Set<String> DEFAULT_WRITE_METHODS = new HashSet<>(Arrays.asList(
+      "send_transaction", "send_alert", "submit_block", "clear_tx_pool", "remove_transaction",
+      "set_network_active", "add_node", "remove_node", "set_ban", "clear_banned_addresses",
+      "ping_peers", "set_scripts"));
+
+  private final List<Endpoint> endpoints;
+  private final Set<String> writeMethods = new HashSet<>(DEFAULT_WRITE_METHODS);
+  private Endpoint writeEndpoint;
+  private long maxTipLag = 10;
+  private double maxErrorRate = 0.5;
+  private long healthCheckIntervalMillis = 10_000;
+
+  public EndpointPool(List<String> urls) {
+    if (urls == null || urls.isEmpty()) {
+      throw new IllegalArgumentException("Endpoint pool needs at least one url");
+    }
+    List<Endpoint> endpoints = new ArrayList<>();
+    for (String url : urls) {
+      endpoints.add(new Endpoint(url));
+    }
+    this.endpoints = Collections.unmodifiableList(endpoints);
+    this.writeEndpoint = endpoints.get(0);
+  }
+
+  public List<Endpoint> getEndpoints() {
+    return endpoints;
+  }
+
+  public Endpoint getWriteEndpoint() {
+    return writeEndpoint;
+  }
+
+  /**
+   * Pins writes to the endpoint with the given url. Defaults to the first url of the pool.
+   */
+  public EndpointPool setWriteEndpoint(String url) {
+    for (Endpoint endpoint : endpoints) {
+      if (endpoint.getUrl().equals(Endpoint.normalize(url))) {
+        writeEndpoint = endpoint;
+        return this;
+      }
+    }
+    throw new IllegalArgumentException("Unknown endpoint " + url);
+  }
+
+  /**
+   * Marks an additional RPC method as a write.
+   */
+  public EndpointPool addWriteMethod(String method) {
+    writeMethods.add(method);
+    return this;
+  }
+
+  public boolean isWrite(String method) {
+    return writeMethods.contains(method);
+  }
+
+  /**
+   * Sets how many blocks an endpoint may be behind the highest tip before it is considered
+   * unhealthy.
+   */
+  public EndpointPool setMaxTipLag(long maxTipLag) {
+    this.maxTipLag = maxTipLag;
+    return this;
+  }
+
+  /**
+   * Sets the error rate, from 0 to 1, above which an endpoint is considered unhealthy.
+   */
+  public EndpointPool setMaxErrorRate(double maxErrorRate) {
+    this.maxErrorRate = maxErrorRate;
+    return this;
+  }
+
+  /**
+   * Sets how often the tips of all endpoints are checked, or 0 to only check them when
+   * {@link RpcService#checkEndpoints()} is called.
+   */
+  public EndpointPool setHealthCheckIntervalMillis(long healthCheckIntervalMillis) {
+    this.healthCheckIntervalMillis = healthCheckIntervalMillis;
+    return this;
+  }
+
+  public long getHealthCheckIntervalMillis() {
+    return healthCheckIntervalMillis;
+  }
+
+  public boolean isHealthy(Endpoint endpoint) {
+    return !endpoint.isLagging() && endpoint.getErrorRate() <= maxErrorRate;
+  }
+
+  /**
+   * @return the endpoints to try for a request, in order
+   */
+  List<Endpoint> route(boolean write) {
+    if (write) {
+      if (isHealthy(writeEndpoint)) {
+        return Collections.singletonList(writeEndpoint);
+      }
+      return Collections.singletonList(rank().get(0));
+    }
+    return rank();
+  }
+
+  /**
+   * @return the endpoints to try for a hedged duplicate of a read, starting with the second best
+   *     endpoint so the duplicate does not queue behind the original on the same node
+   */
+  List<Endpoint> routeHedge() {
+    List<Endpoint> ranked = rank();
+    if (ranked.size() > 1) {
+      Collections.rotate(ranked, -1);
+    }
+    return ranked;
+  }
+
+  private List<Endpoint> rank() {
+    List<Endpoint> healthy = new ArrayList<>();
+    List<Endpoint> unhealthy = new ArrayList<>();
+    for (Endpoint endpoint : endpoints) {
+      (isHealthy(endpoint) ? healthy : unhealthy).add(endpoint);
+    }
+    Comparator<Endpoint> byLatency = Comparator.comparingDouble(EndpointPool::latencyKey);
+    healthy.sort(byLatency);
+    unhealthy.sort(Comparator.comparingDouble(Endpoint::getErrorRate).thenComparing(byLatency));
+    healthy.addAll(unhealthy);
+    return healthy;
+  }
+
+  // endpoints without a measurement yet are tried first so that every node gets measured
+  private static double latencyKey(Endpoint endpoint) {
+    double latency = endpoint.getLatencyMillis();
+    return Double.isNaN(latency) ? -1 : latency;
+  }
+
+  /**
+   * Marks endpoints whose last known tip is too far behind the highest tip as lagging.
+   */
+  void updateLagging() {
+    long highest = -1;
+    for (Endpoint endpoint : endpoints) {
+      highest = Math.max(highest, endpoint.getTipBlockNumber());
+    }
+    for (Endpoint endpoint : endpoints) {
+      long tip = endpoint.getTipBlockNumber();
+      endpoint.setLagging(tip >= 0 && highest - tip > maxTipLag);
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package org.nervos.ckb.service;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sends each request to an endpoint chosen by the {@link EndpointPool}, records its latency and
+ * failures, and fails reads over to the next endpoint.
+ */
+class EndpointRoutingInterceptor implements Interceptor {
+  enum Route {
+    READ, WRITE, HEDGE
+  }
+
+  private final EndpointPool pool;
+
+  EndpointRoutingInterceptor(EndpointPool pool) {
+    this.pool = pool;
+  }
+
+  @NotNull
+  @Override
+  public Response intercept(@NotNull Chain chain) throws IOException {
+    Request request = chain.request();
+    List<Endpoint> candidates;
+    Endpoint pinned = request.tag(Endpoint.class);
+    if (pinned != null) {
+      candidates = Collections.singletonList(pinned);
+    } else {
+      Route route = request.tag(Route.class);
+      candidates = route == Route.HEDGE ? pool.routeHedge() : pool.route(route == Route.WRITE);
+    }
+
+    IOException failure = null;
+    for (int i = 0; i < candidates.size(); i++) {
+      Endpoint endpoint = candidates.get(i);
+      boolean last = i == candidates.size() - 1;
+      long start = System.nanoTime();
+      Response response;
+      try {
+        response = chain.proceed(request.newBuilder().url(endpoint.httpUrl()).build());
+      } catch (IOException e) {
+        if (chain.call().isCanceled()) {
+          throw e;
+        }
+        endpoint.recordFailure();
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+        continue;
+      }
+      if (response.isSuccessful()) {
+        endpoint.recordSuccess(System.nanoTime() - start);
+        return response;
+      }
+      endpoint.recordFailure();
+      if (last) {
+        return response;
+      }
+      response.close();
+    }
+    throw failure;
+  }
+}
@@ -4,14 +4,58 @@ import com.google.gson.FieldNamingPolicy;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.ToNumberPolicy;
+import com.google.gson.TypeAdapterFactory;
 import org.nervos.ckb.service.adapter.*;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
 
 public class GsonFactory {
+  private static final List<TypeAdapterFactory> GENERATED_FACTORIES = loadGeneratedFactories();
+
+  /**
+   * Loads the adapters generated at build time for the SDK types, listed in
+   * {@code META-INF/services/com.google.gson.TypeAdapterFactory}.
+   */
+  private static List<TypeAdapterFactory> loadGeneratedFactories() {
+    List<TypeAdapterFactory> factories = new ArrayList<>();
+    Iterator<TypeAdapterFactory> iterator =
+        ServiceLoader.load(TypeAdapterFactory.class, GsonFactory.class.getClassLoader()).iterator();
+    while (true) {
+      try {
+        if (!iterator.hasNext()) {
+          break;
+        }
+        factories.add(iterator.next());
+      } catch (ServiceConfigurationError e) {
+        // a factory that cannot be loaded leaves its types to reflection
+      }
+    }
+    return Collections.unmodifiableList(factories);
+  }
+
   public static Gson create() {
+    return create(true);
+  }
 
-    return new GsonBuilder()
+  /**
+   * @param generatedAdapters false to bind every type by reflection, e.g. to compare with the
+   *                          generated adapters
+   */
+  public static Gson create(boolean generatedAdapters) {
+    GsonBuilder builder = new GsonBuilder();
+    if (generatedAdapters) {
+      // registered first, so adapters registered below or later through newBuilder() win
+      for (TypeAdapterFactory factory : GENERATED_FACTORIES) {
+        builder.registerTypeAdapterFactory(factory);
+      }
+    }
+    return builder
         .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
         .setObjectToNumberStrategy(ToNumberPolicy.LONG_OR_DOUBLE)
         .registerTypeAdapterFactory(new CheckedEnumTypeAdapterFactory())
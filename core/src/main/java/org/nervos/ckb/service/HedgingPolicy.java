@@ -0,0 +1,310 @@
+package org.nervos.ckb.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Hedges slow read calls of an {@link RpcService}.
+ *
+ * <p>When a call of a hedged method has not answered after a delay taken from a percentile of the
+ * method's recent latencies, a duplicate is sent, to the next best endpoint if the service uses an
+ * {@link EndpointPool}. The first successful response wins and the other call is cancelled. Every
+ * call earns {@link #setBudgetRatio(double) a fraction of a hedge}, which caps the extra load the
+ * duplicates add.
+ *
+ * <p>Only idempotent, read-only methods should be hedged.
+ *
+ * <pre>{@code
+ * rpcService.setHedgingPolicy(new HedgingPolicy().hedgeDefaultReads());
+ * }</pre>
+ */
+public class HedgingPolicy {
+  private static final List<String> DEFAULT_READS = Arrays.asList(
+      "get_block", "get_block_by_number", "get_block_hash", "get_header", "get_header_by_number",
+      "get_transaction", "get_live_cell", "get_cells", "get_transactions", "get_cells_capacity");
+  private static final int WINDOW = 256;
+  private static final int MIN_SAMPLES = 20;
+
+  private static final ScheduledExecutorService SCHEDULER =
+      Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ckb-rpc-hedge");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  private final Map<String, MethodStats> methods = new ConcurrentHashMap<>();
+  private double percentile = 0.95;
+  private long minDelayMillis = 5;
+  private long maxDelayMillis = 1000;
+  private double budgetRatio = 0.05;
+  private double maxBudget = 10;
+  private double budget;
+
+  private final LongAdder calls = new LongAdder();
+  private final LongAdder hedges = new LongAdder();
+  private final LongAdder hedgeWins = new LongAdder();
+  private final LongAdder budgetExhausted = new LongAdder();
+
+  /**
+   * Hedges {@code method} after the policy's percentile delay.
+   */
+  public HedgingPolicy hedge(String method) {
+    methods.put(method, new MethodStats(-1));
+    return this;
+  }
+
+  /**
+   * Hedges {@code method} after a fixed delay instead of the percentile delay.
+   */
+  public HedgingPolicy hedge(String method, long delayMillis) {
+    methods.put(method, new MethodStats(delayMillis));
+    return this;
+  }
+
+  /**
+   * Hedges the block, header, transaction and cell queries of the node and indexer RPCs.
+   */
+  public HedgingPolicy hedgeDefaultReads() {
+    for (String method : DEFAULT_READS) {
+      hedge(method);
+    }
+    return this;
+  }
+
+  /**
+   * Sets the latency percentile, between 0 and 1, after which a call is hedged. Defaults to 0.95.
+   */
+  public HedgingPolicy setPercentile(double percentile) {
+    if (percentile <= 0 || percentile >= 1) {
+      throw new IllegalArgumentException("Percentile must be between 0 and 1");
+    }
+    this.percentile = percentile;
+    return this;
+  }
+
+  /**
+   * Bounds the percentile delay. Until a method has enough samples, the maximum is used.
+   */
+  public HedgingPolicy setDelayBounds(long minDelayMillis, long maxDelayMillis) {
+    if (minDelayMillis < 0 || maxDelayMillis < minDelayMillis) {
+      throw new IllegalArgumentException("Invalid hedging delay bounds");
+    }
+    this.minDelayMillis = minDelayMillis;
+    this.maxDelayMillis = maxDelayMillis;
+    return this;
+  }
+
+  /**
+   * Sets the number of hedges each call earns, which bounds the hedge rate. Defaults to 0.05, so at
+   * most about 5% extra requests are sent.
+   */
+  public HedgingPolicy setBudgetRatio(double budgetRatio) {
+    if (budgetRatio < 0) {
+      throw new IllegalArgumentException("Budget ratio must not be negative");
+    }
+    this.budgetRatio = budgetRatio;
+    return this;
+  }
+
+  public boolean isHedged(String method) {
+    return methods.containsKey(method);
+  }
+
+  public Metrics getMetrics() {
+    return new Metrics(calls.sum(), hedges.sum(), hedgeWins.sum(), budgetExhausted.sum());
+  }
+
+  /**
+   * Runs a call, hedging it if needed. {@code attempt} sends the call once and is applied with
+   * {@code true} for the duplicate.
+   */
+  <T> CompletableFuture<T> execute(String method, Function<Boolean, CompletableFuture<T>> attempt) {
+    MethodStats stats = methods.get(method);
+    calls.increment();
+    earnBudget();
+    HedgedCall<T> call = new HedgedCall<>(stats, attempt);
+    call.start(stats.delayMillis());
+    return call.result;
+  }
+
+  private synchronized void earnBudget() {
+    budget = Math.min(maxBudget, budget + budgetRatio);
+  }
+
+  private synchronized boolean spendBudget() {
+    if (budget < 1) {
+      return false;
+    }
+    budget -= 1;
+    return true;
+  }
+
+  private class HedgedCall<T> {
+    final MethodStats stats;
+    final Function<Boolean, CompletableFuture<T>> attempt;
+    final CompletableFuture<T> result;
+    final AtomicBoolean won = new AtomicBoolean();
+    CompletableFuture<T> primary;
+    CompletableFuture<T> hedge;
+    ScheduledFuture<?> timer;
+    int pending;
+    Throwable firstError;
+
+    HedgedCall(MethodStats stats, Function<Boolean, CompletableFuture<T>> attempt) {
+      this.stats = stats;
+      this.attempt = attempt;
+      this.result = new CompletableFuture<T>() {
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+          boolean cancelled = super.cancel(mayInterruptIfRunning);
+          cancelAll();
+          return cancelled;
+        }
+      };
+    }
+
+    void start(long delayMillis) {
+      synchronized (this) {
+        pending = 1;
+        primary = launch(false);
+        if (!result.isDone()) {
+          timer = SCHEDULER.schedule(this::hedge, delayMillis, TimeUnit.MILLISECONDS);
+        }
+      }
+    }
+
+    private synchronized void hedge() {
+      if (result.isDone() || pending == 0) {
+        return;
+      }
+      if (!spendBudget()) {
+        budgetExhausted.increment();
+        return;
+      }
+      hedges.increment();
+      pending++;
+      hedge = launch(true);
+    }
+
+    // called with the lock held; completion callbacks may run on this thread
+    private CompletableFuture<T> launch(boolean isHedge) {
+      long start = System.nanoTime();
+      CompletableFuture<T> future = attempt.apply(isHedge);
+      future.whenComplete((value, e) -> onComplete(isHedge, start, value, e));
+      return future;
+    }
+
+    private void onComplete(boolean isHedge, long start, T value, Throwable e) {
+      if (e == null) {
+        stats.record(System.nanoTime() - start);
+        if (won.compareAndSet(false, true)) {
+          // count the win before the caller can observe the result
+          if (isHedge) {
+            hedgeWins.increment();
+          }
+          result.complete(value);
+          cancelAll();
+        }
+        return;
+      }
+      synchronized (this) {
+        if (firstError == null) {
+          firstError = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        }
+        // a failed call is not retried here; the hedge only races a call that is still running
+        if (--pending > 0) {
+          return;
+        }
+        if (timer != null) {
+          timer.cancel(false);
+        }
+      }
+      result.completeExceptionally(firstError);
+    }
+
+    private void cancelAll() {
+      CompletableFuture<T> primary;
+      CompletableFuture<T> hedge;
+      synchronized (this) {
+        if (timer != null) {
+          timer.cancel(false);
+        }
+        primary = this.primary;
+        hedge = this.hedge;
+      }
+      if (primary != null) {
+        primary.cancel(true);
+      }
+      if (hedge != null) {
+        hedge.cancel(true);
+      }
+    }
+  }
+
+  private class MethodStats {
+    final long fixedDelayMillis;
+    final long[] samples = new long[WINDOW];
+    int count;
+
+    MethodStats(long fixedDelayMillis) {
+      this.fixedDelayMillis = fixedDelayMillis;
+    }
+
+    synchronized void record(long nanos) {
+      samples[count % WINDOW] = nanos;
+      count++;
+    }
+
+    long delayMillis() {
+      if (fixedDelayMillis >= 0) {
+        return fixedDelayMillis;
+      }
+      long[] sorted;
+      synchronized (this) {
+        if (count < MIN_SAMPLES) {
+          return maxDelayMillis;
+        }
+        sorted = Arrays.copyOf(samples, Math.min(count, WINDOW));
+      }
+      Arrays.sort(sorted);
+      long millis = TimeUnit.NANOSECONDS.toMillis(sorted[(int) (percentile * (sorted.length - 1))]);
+      return Math.max(minDelayMillis, Math.min(maxDelayMillis, millis));
+    }
+  }
+
+  /**
+   * Counters of a hedging policy since it was created.
+   */
+  public static class Metrics {
+    public final long calls;
+    public final long hedges;
+    public final long hedgeWins;
+    public final long budgetExhausted;
+
+    Metrics(long calls, long hedges, long hedgeWins, long budgetExhausted) {
+      this.calls = calls;
+      this.hedges = hedges;
+      this.hedgeWins = hedgeWins;
+      this.budgetExhausted = budgetExhausted;
+    }
+
+    /**
+     * @return the fraction of calls that were hedged
+     */
+    public double getHedgeRate() {
+      return calls == 0 ? 0 : (double) hedges / calls;
+    }
+
+    /**
+     * @return the fraction of hedges whose duplicate answered first
+     */
+    public double getWinRate() {
+      return hedges == 0 ? 0 : (double) hedgeWins / hedges;
+    }
+  }
+}
@@ -0,0 +1,266 @@
+package org.nervos.ckb.service;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.nervos.ckb.utils.Hex;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Base of the transports that keep one persistent connection to the node. Requests are written as
+ * soon as they are sent, without waiting for the replies of earlier requests, and each reply is
+ * matched to its request by id.
+ *
+ * <p>The connection is opened on the first request, and opened again on the next request after it
+ * is lost. Requests written to a connection that is lost before their reply fail with an
+ * {@link IOException}; those already written to the next connection carry on.
+ */
+public abstract class PipelinedRpcTransport implements RpcTransport {
+  private static final ScheduledExecutorService TIMEOUTS =
+      Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ckb-rpc-transport-timeout");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  private final Map<Long, PendingRequest> pending = new ConcurrentHashMap<>();
+  private long timeoutMillis = 180_000;
+  private volatile boolean closed;
+  private volatile MessageListener messageListener;
+
+  /**
+   * Receives what the node sends without being asked, and the loss of the connection.
+   */
+  public interface MessageListener {
+    /**
+     * Called on the thread reading the connection with a message that answers no pending
+     * request, such as a subscription notification. Blocking delays the following messages.
+     */
+    void onMessage(String message);
+
+    /**
+     * Called once for every connection that is lost, after its pending requests failed.
+     */
+    void onConnectionLost(IOException e);
+  }
+
+  public void setMessageListener(MessageListener messageListener) {
+    this.messageListener = messageListener;
+  }
+
+  /**
+   * Sets how long a request waits for its reply, or 0 to wait forever. Defaults to 180 seconds,
+   * the read timeout of the HTTP client of {@link RpcService}.
+   */
+  public void setTimeoutMillis(long timeoutMillis) {
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  public long getTimeoutMillis() {
+    return timeoutMillis;
+  }
+
+  /**
+   * @return the number of requests waiting for their reply
+   */
+  public int getPendingCount() {
+    return pending.size();
+  }
+
+  @Override
+  public CompletableFuture<Reader> send(String json, long[] ids) {
+    PendingRequest future = new PendingRequest(ids);
+    if (ids.length == 0) {
+      future.completeExceptionally(new IOException("RpcTransport request without id"));
+      return future;
+    }
+    for (int i = 0; i < ids.length; i++) {
+      if (pending.putIfAbsent(ids[i], future) != null) {
+        for (int j = 0; j < i; j++) {
+          pending.remove(ids[j], future);
+        }
+        future.completeExceptionally(new IOException("RpcTransport duplicate request id " + ids[i]));
+        return future;
+      }
+    }
+    future.whenComplete((reply, e) -> forget(future));
+    long timeout = timeoutMillis;
+    if (timeout > 0) {
+      ScheduledFuture<?> timer = TIMEOUTS.schedule(
+          () -> future.completeExceptionally(new InterruptedIOException("RpcTransport timeout")),
+          timeout, TimeUnit.MILLISECONDS);
+      future.whenComplete((reply, e) -> timer.cancel(false));
+    }
+    try {
+      if (closed) {
+        throw new IOException("RpcTransport is closed");
+      }
+      write(json).add(future);
+    } catch (IOException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    disconnect();
+    failAll(new IOException("RpcTransport is closed"));
+  }
+
+  /**
+   * Writes a request, connecting first if there is no open connection.
+   *
+   * @return the connection the request was written to
+   */
+  protected abstract Connection write(String json) throws IOException;
+
+  /**
+   * Closes the connection, if any.
+   */
+  protected abstract void disconnect() throws IOException;
+
+  /**
+   * Completes the request the reply answers. Other messages go to the
+   * {@link #setMessageListener(MessageListener) message listener}, or are ignored without one.
+   */
+  protected void onReply(String reply) {
+    PendingRequest future;
+    try {
+      future = findRequest(reply);
+    } catch (IOException | RuntimeException e) {
+      future = null;
+    }
+    if (future != null) {
+      // forget the request before its caller sees the reply
+      forget(future);
+      future.complete(new StringReader(reply));
+      return;
+    }
+    MessageListener listener = messageListener;
+    if (listener != null) {
+      listener.onMessage(reply);
+    }
+  }
+
+  private void forget(PendingRequest future) {
+    for (long id : future.ids) {
+      pending.remove(id, future);
+    }
+  }
+
+  private void failAll(IOException e) {
+    List<PendingRequest> futures = new ArrayList<>(pending.values());
+    for (PendingRequest future : futures) {
+      future.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Reads the ids of the reply until one matches a pending request. The members of a batch reply
+   * may be in any order, and those of invalid requests have a null id.
+   */
+  private PendingRequest findRequest(String reply) throws IOException {
+    JsonReader in = new JsonReader(new StringReader(reply));
+    boolean batch = in.peek() == JsonToken.BEGIN_ARRAY;
+    if (batch) {
+      in.beginArray();
+    }
+    while (in.hasNext()) {
+      in.beginObject();
+      while (in.hasNext()) {
+        if (!in.nextName().equals("id")) {
+          in.skipValue();
+          continue;
+        }
+        PendingRequest future = readId(in);
+        if (future != null) {
+          return future;
+        }
+      }
+      in.endObject();
+      if (!batch) {
+        break;
+      }
+    }
+    return null;
+  }
+
+  private PendingRequest readId(JsonReader in) throws IOException {
+    switch (in.peek()) {
+      case NUMBER:
+        return pending.get(in.nextLong());
+      case STRING: {
+        String id = in.nextString();
+        return pending.get(Hex.hasPrefix(id) ? Hex.parseUnsignedLong(id, 2) : Long.parseLong(id));
+      }
+      default:
+        in.skipValue();
+        return null;
+    }
+  }
+
+  /**
+   * A connection to the node, which fails the requests written to it when it is lost.
+   */
+  protected abstract class Connection {
+    private final Set<PendingRequest> requests = ConcurrentHashMap.newKeySet();
+    // the error the connection was lost with, set once
+    private final AtomicReference<IOException> lostWith = new AtomicReference<>();
+
+    public boolean isLost() {
+      return lostWith.get() != null;
+    }
+
+    /**
+     * Marks the connection as lost, releases it, fails the requests written to it that wait for
+     * a reply and tells the message listener. Only the first call does so.
+     */
+    protected void lose(IOException e) {
+      if (!lostWith.compareAndSet(null, e)) {
+        return;
+      }
+      release();
+      for (PendingRequest future : new ArrayList<>(requests)) {
+        future.completeExceptionally(e);
+      }
+      MessageListener listener = messageListener;
+      if (listener != null && !closed) {
+        listener.onConnectionLost(e);
+      }
+    }
+
+    /**
+     * Closes what the connection holds once it is lost.
+     */
+    protected abstract void release();
+
+    private void add(PendingRequest future) {
+      requests.add(future);
+      future.whenComplete((reply, e) -> requests.remove(future));
+      // lost while the request was written, before lose() could see it
+      IOException e = lostWith.get();
+      if (e != null) {
+        future.completeExceptionally(e);
+      }
+    }
+  }
+
+  private static class PendingRequest extends CompletableFuture<Reader> {
+    final long[] ids;
+
+    PendingRequest(long[] ids) {
+      this.ids = ids;
+    }
+  }
+}
@@ -0,0 +1,407 @@
+package org.nervos.ckb.service;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches results of RPC calls that can never change, such as blocks and headers by hash,
+ * committed transactions and blocks deep enough below the tip.
+ *
+ * <p>Which results are cached is decided by a {@link Policy} registered per method. The default
+ * registry covers the node, indexer and Mercury RPCs. Results that depend on the tip, pending
+ * transactions and null results are never cached. Entries are kept as raw result JSON, copied
+ * from the response of a miss before it is decoded, and evicted in least recently used order once their total
+ * size exceeds {@code maxBytes}.
+ *
+ * <pre>{@code
+ * rpcService.setResponseCache(new ResponseCache(64 * 1024 * 1024));
+ * }</pre>
+ */
+public class ResponseCache {
+  private static final int ENTRY_OVERHEAD = 64;
+
+  private final long maxBytes;
+  private final Map<String, Policy> policies = new ConcurrentHashMap<>();
+  private final LinkedHashMap<String, String> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long bytes;
+  private volatile long finalityDepth = 24;
+  private final AtomicLong tipBlockNumber = new AtomicLong(-1);
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  public ResponseCache(long maxBytes) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("Cache size must be positive");
+    }
+    this.maxBytes = maxBytes;
+    registerDefaultPolicies();
+  }
+
+  private void registerDefaultPolicies() {
+    // node
+    setPolicy("get_block", Policy.NON_NULL);
+    setPolicy("get_header", Policy.NON_NULL);
+    setPolicy("get_block_hash", Policy.finalizedBlockNumber());
+    setPolicy("get_block_by_number", Policy.finalizedBlockNumber());
+    setPolicy("get_header_by_number", Policy.finalizedBlockNumber());
+    setPolicy("get_transaction", Policy.committedTransaction("tx_status", "status"));
+    setPolicy("get_tip_block_number", Policy.observeTip());
+    setPolicy("get_tip_header", Policy.observeTip("number"));
+    // indexer
+    setPolicy("get_indexer_tip", Policy.observeTip("block_number"));
+    setPolicy("get_tip", Policy.observeTip("block_number"));
+    // mercury
+    setPolicy("get_transaction_info", Policy.committedTransaction("status"));
+    setPolicy("get_block_info", Policy.finalizedBlockInfo());
+  }
+
+  /**
+   * Sets the policy of {@code method}, replacing the default one if any.
+   */
+  public ResponseCache setPolicy(String method, Policy policy) {
+    policies.put(method, policy);
+    return this;
+  }
+
+  public ResponseCache removePolicy(String method) {
+    policies.remove(method);
+    return this;
+  }
+
+  /**
+   * Sets how many blocks below the tip a block must be before results looked up by its number are
+   * cached. Defaults to 24.
+   */
+  public ResponseCache setFinalityDepth(long finalityDepth) {
+    this.finalityDepth = finalityDepth;
+    return this;
+  }
+
+  public long getFinalityDepth() {
+    return finalityDepth;
+  }
+
+  /**
+   * @return the highest tip seen in responses passing through the cache, or -1 if none yet
+   */
+  public long getTipBlockNumber() {
+    return tipBlockNumber.get();
+  }
+
+  /**
+   * Records a tip block number learned elsewhere, e.g. from a subscription.
+   */
+  public void updateTipBlockNumber(long number) {
+    tipBlockNumber.accumulateAndGet(number, Math::max);
+  }
+
+  /**
+   * @return true if {@code number} is at least {@link #getFinalityDepth()} blocks below the
+   *     highest known tip
+   */
+  public boolean isFinalized(long number) {
+    long tip = tipBlockNumber.get();
+    return tip >= 0 && number <= tip - finalityDepth;
+  }
+
+  boolean covers(String method) {
+    return policies.containsKey(method);
+  }
+
+  /**
+   * @return the raw result JSON cached for {@code key}, or null
+   */
+  String get(String method, String key) {
+    Policy policy = policies.get(method);
+    if (policy == null || !policy.mayCache()) {
+      return null;
+    }
+    return get(key);
+  }
+
+  private synchronized String get(String key) {
+    String result = entries.get(key);
+    if (result == null) {
+      misses.increment();
+    } else {
+      hits.increment();
+    }
+    return result;
+  }
+
+  /**
+   * @param params the JSON of the call's parameters as sent
+   * @param json   the JSON of the non-null result
+   */
+  void put(String method, String key, String params, String json) {
+    Policy policy = policies.get(method);
+    if (policy == null || json == null || !policy.isCacheable(params, json, this)) {
+      return;
+    }
+    long weight = weigh(key, json);
+    if (weight > maxBytes) {
+      return;
+    }
+    synchronized (this) {
+      String previous = entries.put(key, json);
+      if (previous != null) {
+        bytes -= weigh(key, previous);
+      }
+      bytes += weight;
+      Iterator<Map.Entry<String, String>> iterator = entries.entrySet().iterator();
+      while (bytes > maxBytes && iterator.hasNext()) {
+        Map.Entry<String, String> eldest = iterator.next();
+        bytes -= weigh(eldest.getKey(), eldest.getValue());
+        iterator.remove();
+        evictions.increment();
+      }
+    }
+  }
+
+  private static long weigh(String key, String json) {
+    return ENTRY_OVERHEAD + 2L * (key.length() + json.length());
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+    bytes = 0;
+  }
+
+  public synchronized Metrics getMetrics() {
+    return new Metrics(hits.sum(), misses.sum(), evictions.sum(), entries.size(), bytes);
+  }
+
+  /**
+   * Decides whether the result of one call may be cached.
+   */
+  public interface Policy {
+    /**
+     * @param params the JSON array of the call's parameters as sent
+     * @param result the JSON of the non-null result returned by the node
+     * @param cache  the cache, giving access to the known tip
+     */
+    boolean isCacheable(String params, String result, ResponseCache cache);
+
+    /**
+     * @return false if this policy only inspects results and never caches them, so lookups can
+     *     be skipped
+     */
+    default boolean mayCache() {
+      return true;
+    }
+
+    /** Caches every result. For lookups by hash, whose result can only be null or final. */
+    Policy NON_NULL = (params, result, cache) -> true;
+
+    /** Caches a lookup by block number, taken from the first parameter, once it is finalized. */
+    static Policy finalizedBlockNumber() {
+      return (params, result, cache) -> cache.isFinalized(parseNumber(find(params, "0")));
+    }
+
+    /**
+     * Caches a transaction once the status found at {@code path} in the result is committed.
+     */
+    static Policy committedTransaction(String... path) {
+      return (params, result, cache) -> {
+        return "committed".equalsIgnoreCase(find(result, path));
+      };
+    }
+
+    /** Never caches, but records the tip number found at {@code path} in the result. */
+    static Policy observeTip(String... path) {
+      return new Policy() {
+        @Override
+        public boolean isCacheable(String params, String result, ResponseCache cache) {
+          String number = find(result, path);
+          if (number != null) {
+            cache.updateTipBlockNumber(parseNumber(number));
+          }
+          return false;
+        }
+
+        @Override
+        public boolean mayCache() {
+          return false;
+        }
+      };
+    }
+
+    /** Caches Mercury's block info when looked up by hash or by a finalized number. */
+    static Policy finalizedBlockInfo() {
+      return (params, result, cache) -> {
+        if (find(params, "0", "block_hash") != null) {
+          return true;
+        }
+        String number = find(params, "0", "block_number");
+        return number != null && cache.isFinalized(parseNumber(number));
+      };
+    }
+
+    /**
+     * Reads the string, number or boolean found at {@code path} in {@code json} as text, without
+     * parsing the rest of it. A name in the path that is a number picks an element of an array.
+     *
+     * @return the value, or null if there is none or it is null, an object or an array
+     */
+    static String find(String json, String... path) {
+      try {
+        JsonReader in = new JsonReader(new StringReader(json));
+        in.setLenient(true);
+        for (String name : path) {
+          if (!seek(in, name)) {
+            return null;
+          }
+        }
+        switch (in.peek()) {
+          case STRING:
+          case NUMBER:
+            return in.nextString();
+          case BOOLEAN:
+            return String.valueOf(in.nextBoolean());
+          default:
+            return null;
+        }
+      } catch (IOException | IllegalStateException | NumberFormatException e) {
+        return null;
+      }
+    }
+
+    /**
+     * Moves {@code in} to the member {@code name} of the object, or the element of the array, it
+     * is at.
+     */
+    static boolean seek(JsonReader in, String name) throws IOException {
+      if (in.peek() == JsonToken.BEGIN_OBJECT) {
+        in.beginObject();
+        while (in.hasNext()) {
+          if (in.nextName().equals(name)) {
+            return true;
+          }
+          in.skipValue();
+        }
+        return false;
+      }
+      if (in.peek() == JsonToken.BEGIN_ARRAY) {
+        int index = Integer.parseInt(name);
+        in.beginArray();
+        for (int i = 0; i < index && in.hasNext(); i++) {
+          in.skipValue();
+        }
+        return in.hasNext();
+      }
+      return false;
+    }
+
+    static long parseNumber(String number) {
+      if (number == null) {
+        return Long.MAX_VALUE;
+      }
+      try {
+        return Long.decode(number);
+      } catch (NumberFormatException e) {
+        return Long.MAX_VALUE;
+      }
+    }
+  }
+
+  /**
+   * A result decoded to its type together with its JSON, for results that may be cached. Decode a
+   * call as {@link #type(Type)} instead of its result type.
+   */
+  @JsonAdapter(Captured.AdapterFactory.class)
+  static final class Captured<T> {
+    final T value;
+    final String json;
+
+    Captured(T value, String json) {
+      this.value = value;
+      this.json = json;
+    }
+
+    static Type type(Type valueType) {
+      return TypeToken.getParameterized(Captured.class, valueType).getType();
+    }
+
+    static final class AdapterFactory implements TypeAdapterFactory {
+      @Override
+      public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        // the raw class, when a captured result is written by its runtime type
+        Type valueType = type.getType() instanceof ParameterizedType
+            ? ((ParameterizedType) type.getType()).getActualTypeArguments()[0] : Object.class;
+        TypeAdapter<?> delegate = gson.getAdapter(TypeToken.get(valueType));
+        @SuppressWarnings("unchecked")
+        TypeAdapter<T> adapter = (TypeAdapter<T>) new Adapter<>(delegate);
+        return adapter;
+      }
+    }
+
+    private static final class Adapter<T> extends TypeAdapter<Captured<T>> {
+      private final TypeAdapter<T> delegate;
+
+      Adapter(TypeAdapter<T> delegate) {
+        this.delegate = delegate;
+      }
+
+      @Override
+      public void write(JsonWriter out, Captured<T> value) throws IOException {
+        out.jsonValue(value.json);
+      }
+
+      /**
+       * Copies the result token by token and binds the copy to its type, so the result is read
+       * once from the response and never parsed into a tree.
+       */
+      @Override
+      public Captured<T> read(JsonReader in) throws IOException {
+        StringWriter json = new StringWriter();
+        RpcResponseDecoder.copy(in, new JsonWriter(json));
+        String text = json.toString();
+        return new Captured<>(delegate.fromJson(text), text);
+      }
+    }
+  }
+
+  /**
+   * Counters of a response cache since it was created.
+   */
+  public static class Metrics {
+    public final long hits;
+    public final long misses;
+    public final long evictions;
+    public final int entries;
+    public final long bytes;
+
+    Metrics(long hits, long misses, long evictions, int entries, long bytes) {
+      this.hits = hits;
+      this.misses = misses;
+      this.evictions = evictions;
+      this.entries = entries;
+      this.bytes = bytes;
+    }
+
+    public double getHitRate() {
+      long lookups = hits + misses;
+      return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+  }
+}
@@ -0,0 +1,298 @@
+package org.nervos.ckb.service;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import okio.Buffer;
+import org.nervos.ckb.service.adapter.SinkJsonWriter;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * A list of RPC calls sent to the node as one JSON-RPC batch request.
+ *
+ * <p>Each call added to the batch returns a {@link Handle}. After {@link #execute()} every handle
+ * holds either its decoded result or the error the node reported for that call.
+ */
+public class RpcBatch {
+  private final RpcService rpcService;
+  private static final String ERROR = "RpcService batch error code ";
+
+  private final List<Handle<?>> handles = new ArrayList<>();
+  private boolean executed;
+
+  protected RpcBatch(RpcService rpcService) {
+    this.rpcService = rpcService;
+  }
+
+  public <T> Handle<T> add(String method, List params, Type type) {
+    return add(method, params, type, rpcService.getGson());
+  }
+
+  public <T> Handle<T> add(String method, List params, Type type, Gson gson) {
+    if (executed) {
+      throw new IllegalStateException("Batch has already been executed");
+    }
+    RpcService.RequestParams requestParams = new RpcService.RequestParams(method, params);
+    // serialized now, as the caller may change the params before the batch is sent
+    Handle<T> handle =
+        new Handle<>(requestParams, RpcService.toJson(gson, requestParams), type, gson);
+    handles.add(handle);
+    return handle;
+  }
+
+  public int size() {
+    return handles.size();
+  }
+
+  /**
+   * Sends all calls in a single request and fills their handles.
+   *
+   * @throws IOException if the batch request as a whole fails. Errors of individual calls are
+   *                     reported through their handles instead.
+   */
+  public void execute() throws IOException {
+    Map<Long, Handle<?>> handlesById = new LinkedHashMap<>();
+    Buffer json = prepare(handlesById);
+    if (json == null) {
+      return;
+    }
+    try {
+      rpcService.execute(json, ids(handlesById), methods(handlesById), ERROR,
+                         reply -> dispatch(reply, handlesById));
+    } catch (IOException | RuntimeException e) {
+      failAll(handlesById.values(), e);
+      throw e;
+    }
+  }
+
+  CompletableFuture<Void> executeAsync() {
+    Map<Long, Handle<?>> handlesById = new LinkedHashMap<>();
+    Buffer json;
+    try {
+      json = prepare(handlesById);
+    } catch (IOException | RuntimeException e) {
+      failAll(handlesById.values(), e);
+      CompletableFuture<Void> future = new CompletableFuture<>();
+      future.completeExceptionally(e);
+      return future;
+    }
+    if (json == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    CompletableFuture<Void> future =
+        rpcService.enqueue(json, ids(handlesById), methods(handlesById), ERROR,
+                           reply -> dispatch(reply, handlesById));
+    future.whenComplete((result, e) -> {
+      if (e != null) {
+        failAll(handlesById.values(), e);
+      }
+    });
+    return future;
+  }
+
+  /**
+   * @return the batch request, or null if there is no call to send
+   */
+  private Buffer prepare(Map<Long, Handle<?>> handlesById) throws IOException {
+    if (executed) {
+      throw new IllegalStateException("Batch has already been executed");
+    }
+    executed = true;
+    Buffer body = new Buffer();
+    body.writeByte('[');
+    for (Handle<?> handle : handles) {
+      // skip calls cancelled by their caller before the batch was sent
+      if (handle.future.isDone()) {
+        continue;
+      }
+      if (!handlesById.isEmpty()) {
+        body.writeByte(',');
+      }
+      handlesById.put(handle.requestParams.id, handle);
+      body.writeAll(handle.request);
+    }
+    body.writeByte(']');
+    return handlesById.isEmpty() ? null : body;
+  }
+
+  private static String[] methods(Map<Long, Handle<?>> handlesById) {
+    String[] methods = new String[handlesById.size()];
+    int i = 0;
+    for (Handle<?> handle : handlesById.values()) {
+      methods[i++] = handle.requestParams.method;
+    }
+    return methods;
+  }
+
+  private static long[] ids(Map<Long, Handle<?>> handlesById) {
+    long[] ids = new long[handlesById.size()];
+    int i = 0;
+    for (Long id : handlesById.keySet()) {
+      ids[i++] = id;
+    }
+    return ids;
+  }
+
+  private Void dispatch(Reader reply, Map<Long, Handle<?>> handlesById) throws IOException {
+    Gson gson = rpcService.getGson();
+    JsonReader in = gson.newJsonReader(reply);
+    in.beginArray();
+    while (in.hasNext()) {
+      dispatch(in, handlesById, gson);
+    }
+    in.endArray();
+    failAll(handlesById.values(), new IOException("RpcService batch response is missing the call"));
+    return null;
+  }
+
+  /**
+   * Reads one response of the batch and completes the call it answers. The node writes the id
+   * after the result, so the result is copied as JSON text until the id tells its type, instead
+   * of parsing the whole response into a tree.
+   */
+  private static void dispatch(JsonReader in, Map<Long, Handle<?>> handlesById, Gson gson)
+      throws IOException {
+    Long id = null;
+    Buffer result = null;
+    RpcResponse.Error error = null;
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "id":
+          id = gson.fromJson(in, Long.class);
+          break;
+        case "result":
+          result = new Buffer();
+          try (JsonWriter writer = new SinkJsonWriter(result)) {
+            RpcResponseDecoder.copy(in, writer);
+          }
+          break;
+        case "error":
+          error = gson.fromJson(in, RpcResponse.Error.class);
+          break;
+        default:
+          in.skipValue();
+          break;
+      }
+    }
+    in.endObject();
+    Handle<?> handle = id == null ? null : handlesById.remove(id);
+    if (handle != null) {
+      handle.complete(result, error);
+    }
+  }
+
+  private static void failAll(Collection<Handle<?>> handles, Throwable e) {
+    for (Handle<?> handle : handles) {
+      handle.future.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * The result of one call in a batch.
+   */
+  public static class Handle<T> {
+    final RpcService.RequestParams requestParams;
+    final Buffer request;
+    final Type type;
+    final Gson gson;
+    final CompletableFuture<T> future;
+
+    Handle(RpcService.RequestParams requestParams, Buffer request, Type type, Gson gson) {
+      this.requestParams = requestParams;
+      this.request = request;
+      this.type = type;
+      this.gson = gson;
+      this.future = new CompletableFuture<>();
+    }
+
+    private Handle(CompletableFuture<T> future) {
+      this.requestParams = null;
+      this.request = null;
+      this.type = null;
+      this.gson = null;
+      this.future = future;
+    }
+
+    public boolean isDone() {
+      return future.isDone();
+    }
+
+    public boolean isSuccess() {
+      return future.isDone() && !future.isCompletedExceptionally();
+    }
+
+    /**
+     * @return the decoded result of the call
+     * @throws IOException           if the node returned an error for this call or the batch failed
+     * @throws IllegalStateException if the batch has not been executed yet
+     */
+    public T get() throws IOException {
+      if (!future.isDone()) {
+        throw new IllegalStateException("Batch has not been executed");
+      }
+      try {
+        return future.getNow(null);
+      } catch (CompletionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        } else if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        throw new IOException(cause);
+      }
+    }
+
+    /**
+     * @return the error of this call, or null if it succeeded or has not been executed yet
+     */
+    public Throwable getError() {
+      if (!future.isCompletedExceptionally()) {
+        return null;
+      }
+      try {
+        future.getNow(null);
+        return null;
+      } catch (CompletionException e) {
+        return e.getCause();
+      } catch (RuntimeException e) {
+        return e;
+      }
+    }
+
+    /**
+     * @return a handle whose result is this handle's result converted by {@code fn}
+     */
+    public <R> Handle<R> map(Function<? super T, ? extends R> fn) {
+      return new Handle<>(future.thenApply(fn));
+    }
+
+    CompletableFuture<T> toFuture() {
+      return future;
+    }
+
+    void complete(Buffer result, RpcResponse.Error error) {
+      if (error != null) {
+        future.completeExceptionally(RpcResponseDecoder.error(requestParams.method, error, gson));
+        return;
+      }
+      try {
+        T value = result == null
+            ? null : gson.fromJson(new InputStreamReader(result.inputStream(), StandardCharsets.UTF_8), type);
+        future.complete(value);
+      } catch (RuntimeException e) {
+        future.completeExceptionally(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package org.nervos.ckb.service;
+
+import com.google.gson.Gson;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Coalesces concurrent RPC calls of one {@link RpcService} into JSON-RPC batches.
+ *
+ * <p>Submitted calls are held until either the batching window elapses or {@code maxBatchSize}
+ * calls are pending, then they are sent together as one {@link RpcBatch}. Responses are routed
+ * back to their callers by request id.
+ */
+class RpcBatcher implements AutoCloseable {
+  private final RpcService rpcService;
+  private final long windowNanos;
+  private final int maxBatchSize;
+  private final ScheduledExecutorService scheduler;
+
+  private RpcBatch pending;
+  private ScheduledFuture<?> scheduledFlush;
+
+  RpcBatcher(RpcService rpcService, long windowMillis, int maxBatchSize) {
+    if (windowMillis < 0) {
+      throw new IllegalArgumentException("Batching window must not be negative");
+    }
+    if (maxBatchSize < 1) {
+      throw new IllegalArgumentException("Max batch size must be positive");
+    }
+    this.rpcService = rpcService;
+    this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    this.maxBatchSize = maxBatchSize;
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "ckb-rpc-batcher");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  <T> CompletableFuture<T> submit(String method, List params, Type type, Gson gson) {
+    RpcBatch.Handle<T> handle;
+    RpcBatch ready = null;
+    synchronized (this) {
+      if (pending == null) {
+        pending = new RpcBatch(rpcService);
+        scheduledFlush = scheduler.schedule(this::flush, windowNanos, TimeUnit.NANOSECONDS);
+      }
+      handle = pending.add(method, params, type, gson);
+      if (pending.size() >= maxBatchSize) {
+        ready = drain();
+      }
+    }
+    if (ready != null) {
+      ready.executeAsync();
+    }
+    return handle.toFuture();
+  }
+
+  void flush() {
+    RpcBatch ready;
+    synchronized (this) {
+      ready = drain();
+    }
+    if (ready != null) {
+      ready.executeAsync();
+    }
+  }
+
+  private RpcBatch drain() {
+    RpcBatch ready = pending;
+    pending = null;
+    if (scheduledFlush != null) {
+      scheduledFlush.cancel(false);
+      scheduledFlush = null;
+    }
+    return ready;
+  }
+
+  @Override
+  public void close() {
+    flush();
+    scheduler.shutdown();
+  }
+}
@@ -0,0 +1,53 @@
+package org.nervos.ckb.service;
+
+import org.nervos.ckb.jfr.RpcEvent;
+
+/**
+ * What one request of an {@link RpcService} cost, as reported to its {@link RpcMetricsListener}.
+ *
+ * <p>A batch request is reported once, as the method {@code "batch"} with the number of calls it
+ * carried. Over an {@link RpcTransport} the sizes are counted in characters, which equal the bytes
+ * of the ASCII JSON a node sends.
+ */
+public class RpcCallEvent {
+  public enum Outcome {
+    SUCCESS,
+    /** The node answered with an RPC error, or with a reply that could not be decoded. */
+    RPC_ERROR,
+    /** The node answered with an HTTP error status. */
+    HTTP_ERROR,
+    /** No reply arrived because the connection failed or timed out. */
+    NETWORK_ERROR,
+    CANCELLED
+  }
+
+  public String method;
+  public int calls;
+  /** The url of the endpoint, or the address of the transport. */
+  public String endpoint;
+  public long requestBytes;
+  public long responseBytes;
+  /** The time taken to write the request as JSON, or 0 for a batch. */
+  public long serializeNanos;
+  /** The time from sending the request until the reply started to arrive. */
+  public long networkNanos;
+  /** The time taken to read and decode the reply. */
+  public long decodeNanos;
+  public Outcome outcome;
+  // the Flight Recorder event of the request, if it is recorded
+  RpcEvent recording;
+
+  RpcCallEvent(String[] methods) {
+    this.method = methods.length == 1 ? methods[0] : "batch";
+    this.calls = methods.length;
+  }
+
+  public long getTotalNanos() {
+    return serializeNanos + networkNanos + decodeNanos;
+  }
+
+  @Override
+  public String toString() {
+    return method + " " + endpoint + " " + outcome + " " + getTotalNanos() / 1000 + "us";
+  }
+}
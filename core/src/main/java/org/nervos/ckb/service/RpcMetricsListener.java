@@ -0,0 +1,12 @@
+package org.nervos.ckb.service;
+
+/**
+ * Receives an {@link RpcCallEvent} for every request an {@link RpcService} sends, on the thread
+ * that completed it. Implementations must be fast and thread safe; exceptions they throw are
+ * ignored.
+ *
+ * @see RpcMetricsRecorder
+ */
+public interface RpcMetricsListener {
+  void onCall(RpcCallEvent event);
+}
@@ -0,0 +1,128 @@
+package org.nervos.ckb.service;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregates the {@link RpcCallEvent}s of an {@link RpcService} per method: a histogram of the
+ * total latency, the time spent serializing, on the network and decoding, the bytes sent and
+ * received, and the outcomes.
+ *
+ * <pre>{@code
+ * RpcMetricsRecorder recorder = new RpcMetricsRecorder();
+ * rpcService.setMetricsListener(recorder);
+ * ...
+ * recorder.snapshot().forEach((method, metrics) -> System.out.println(method + " " + metrics));
+ * }</pre>
+ */
+public class RpcMetricsRecorder implements RpcMetricsListener {
+  private final Map<String, MethodRecorder> methods = new ConcurrentHashMap<>();
+
+  @Override
+  public void onCall(RpcCallEvent event) {
+    methods.computeIfAbsent(event.method, method -> new MethodRecorder()).record(event);
+  }
+
+  /**
+   * @return the metrics of every method called since the recorder was created or reset, by method
+   */
+  public Map<String, MethodMetrics> snapshot() {
+    Map<String, MethodMetrics> snapshot = new TreeMap<>();
+    for (Map.Entry<String, MethodRecorder> entry : methods.entrySet()) {
+      snapshot.put(entry.getKey(), entry.getValue().snapshot());
+    }
+    return snapshot;
+  }
+
+  public void reset() {
+    methods.clear();
+  }
+
+  private static class MethodRecorder {
+    final LatencyHistogram latency = new LatencyHistogram();
+    final LongAdder serializeNanos = new LongAdder();
+    final LongAdder networkNanos = new LongAdder();
+    final LongAdder decodeNanos = new LongAdder();
+    final LongAdder requestBytes = new LongAdder();
+    final LongAdder responseBytes = new LongAdder();
+    final LongAdder[] outcomes = new LongAdder[RpcCallEvent.Outcome.values().length];
+
+    MethodRecorder() {
+      for (int i = 0; i < outcomes.length; i++) {
+        outcomes[i] = new LongAdder();
+      }
+    }
+
+    void record(RpcCallEvent event) {
+      latency.record(event.getTotalNanos());
+      serializeNanos.add(event.serializeNanos);
+      networkNanos.add(event.networkNanos);
+      decodeNanos.add(event.decodeNanos);
+      requestBytes.add(event.requestBytes);
+      responseBytes.add(event.responseBytes);
+      outcomes[event.outcome.ordinal()].increment();
+    }
+
+    MethodMetrics snapshot() {
+      long[] outcomeCounts = new long[outcomes.length];
+      for (int i = 0; i < outcomes.length; i++) {
+        outcomeCounts[i] = outcomes[i].sum();
+      }
+      return new MethodMetrics(latency.snapshot(), serializeNanos.sum(), networkNanos.sum(),
+                               decodeNanos.sum(), requestBytes.sum(), responseBytes.sum(),
+                               outcomeCounts);
+    }
+  }
+
+  /**
+   * The totals of one method.
+   */
+  public static class MethodMetrics {
+    public final LatencyHistogram.Snapshot latency;
+    public final long serializeNanos;
+    public final long networkNanos;
+    public final long decodeNanos;
+    public final long requestBytes;
+    public final long responseBytes;
+    private final long[] outcomes;
+
+    MethodMetrics(LatencyHistogram.Snapshot latency, long serializeNanos, long networkNanos,
+                  long decodeNanos, long requestBytes, long responseBytes, long[] outcomes) {
+      this.latency = latency;
+      this.serializeNanos = serializeNanos;
+      this.networkNanos = networkNanos;
+      this.decodeNanos = decodeNanos;
+      this.requestBytes = requestBytes;
+      this.responseBytes = responseBytes;
+      this.outcomes = outcomes;
+    }
+
+    public long getCalls() {
+      return latency.count;
+    }
+
+    public long getCount(RpcCallEvent.Outcome outcome) {
+      return outcomes[outcome.ordinal()];
+    }
+
+    /**
+     * @return the sum of the latencies of all calls, the share of the latency budget this method
+     *     takes
+     */
+    public long getTotalNanos() {
+      return latency.sum;
+    }
+
+    @Override
+    public String toString() {
+      return getCalls() + " calls, p50 " + latency.getValueAtPercentile(50) / 1000 + "us, p99 "
+          + latency.getValueAtPercentile(99) / 1000 + "us, max " + latency.max / 1000
+          + "us, total " + getTotalNanos() / 1_000_000 + "ms (serialize "
+          + serializeNanos / 1_000_000 + "ms, network " + networkNanos / 1_000_000
+          + "ms, decode " + decodeNanos / 1_000_000 + "ms), " + requestBytes + " bytes sent, "
+          + responseBytes + " bytes received";
+    }
+  }
+}
@@ -0,0 +1,14 @@
+package org.nervos.ckb.service;
+
+/**
+ * The order in which a {@link ConcurrencyLimiter} sends the calls waiting for an endpoint, most
+ * urgent first.
+ */
+public enum RpcPriority {
+  /** Submissions such as {@code send_transaction}. */
+  SUBMIT,
+  /** Point queries a user may be waiting for. */
+  INTERACTIVE,
+  /** Scans such as {@code get_cells} pages. */
+  BULK
+}
@@ -0,0 +1,104 @@
+package org.nervos.ckb.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Type;
+
+/**
+ * Decodes a JSON-RPC response envelope in a single pass. The {@code result} member is bound
+ * directly to the target type while the envelope is being read, so the response body is never
+ * buffered as a string or parsed into an intermediate tree.
+ */
+final class RpcResponseDecoder {
+  private RpcResponseDecoder() {
+  }
+
+  static <T> T decode(Reader reader, String method, Type type, Gson gson) throws IOException {
+    return decode(gson.newJsonReader(reader), method, type, gson);
+  }
+
+  static <T> T decode(JsonReader in, String method, Type type, Gson gson) throws IOException {
+    T result = null;
+    RpcResponse.Error error = null;
+    try {
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "result":
+            if (error == null) {
+              result = gson.fromJson(in, type);
+            } else {
+              in.skipValue();
+            }
+            break;
+          case "error":
+            error = gson.fromJson(in, RpcResponse.Error.class);
+            break;
+          default:
+            in.skipValue();
+            break;
+        }
+      }
+      in.endObject();
+    } catch (IllegalStateException e) {
+      throw new JsonSyntaxException("RpcService method " + method + " malformed response", e);
+    }
+
+    if (error != null) {
+      throw error(method, error, gson);
+    }
+    return result;
+  }
+
+  static IOException error(String method, RpcResponse.Error error, Gson gson) {
+    return new IOException("RpcService method " + method + " error " + gson.toJson(error));
+  }
+
+  /**
+   * Copies the next value of {@code in} to {@code out} token by token, for a value that cannot be
+   * bound to its type yet. Numbers keep the digits they were written with.
+   */
+  static void copy(JsonReader in, JsonWriter out) throws IOException {
+    switch (in.peek()) {
+      case BEGIN_ARRAY:
+        in.beginArray();
+        out.beginArray();
+        while (in.hasNext()) {
+          copy(in, out);
+        }
+        in.endArray();
+        out.endArray();
+        break;
+      case BEGIN_OBJECT:
+        in.beginObject();
+        out.beginObject();
+        while (in.hasNext()) {
+          out.name(in.nextName());
+          copy(in, out);
+        }
+        in.endObject();
+        out.endObject();
+        break;
+      case STRING:
+        out.value(in.nextString());
+        break;
+      case NUMBER:
+        out.jsonValue(in.nextString());
+        break;
+      case BOOLEAN:
+        out.value(in.nextBoolean());
+        break;
+      case NULL:
+        in.nextNull();
+        out.nullValue();
+        break;
+      default:
+        throw new JsonSyntaxException("Unexpected " + in.peek() + " at " + in.getPath());
+    }
+  }
+}
@@ -1,48 +1,343 @@
 package org.nervos.ckb.service;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParser;
 import com.google.gson.reflect.TypeToken;
 import okhttp3.*;
 import okhttp3.logging.HttpLoggingInterceptor;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
 import org.jetbrains.annotations.NotNull;
+import org.nervos.ckb.jfr.RpcEvent;
+import org.nervos.ckb.service.adapter.SinkJsonWriter;
 import org.nervos.ckb.utils.Numeric;
 
+import java.io.Closeable;
+import java.io.FilterReader;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
-public class RpcService {
+public class RpcService implements Closeable {
 
   private static final MediaType JSON_MEDIA_TYPE = MediaType.get("application/json; charset=utf-8");
+  // runs the health checks of all services, which only wait for their probes asynchronously
+  private static final ScheduledExecutorService HEALTH_CHECKS =
+      Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ckb-rpc-health-check");
+        thread.setDaemon(true);
+        return thread;
+      });
   private static AtomicLong nextId = new AtomicLong(0);
 
-  private OkHttpClient client;
+  private volatile OkHttpClient client;
   private String url;
   private Gson gson;
+  private EndpointPool endpointPool;
+  private RpcTransport transport;
+  private volatile RpcBatcher batcher;
+  private volatile HedgingPolicy hedgingPolicy;
+  private volatile ResponseCache responseCache;
+  private volatile ConcurrencyLimiter concurrencyLimiter;
+  private volatile RpcMetricsListener metricsListener;
+  private final Map<String, Long> methodTimeouts = new ConcurrentHashMap<>();
+  private volatile long callTimeoutMillis;
+  private volatile ScheduledFuture<?> healthCheck;
+  private volatile boolean closed;
 
   public RpcService(String rpcUrl, boolean isDebug) {
     url = rpcUrl;
+    client = newClientBuilder(isDebug).build();
+    gson = GsonFactory.create();
+  }
+
+  /**
+   * Creates a service that spreads its requests over the endpoints of {@code endpointPool}. If the
+   * pool has a health check interval, the tips of all endpoints are checked periodically on a
+   * daemon thread shared by all services, until the service is closed.
+   */
+  public RpcService(EndpointPool endpointPool, boolean isDebug) {
+    this.endpointPool = endpointPool;
+    url = endpointPool.getEndpoints().get(0).getUrl();
+    OkHttpClient.Builder builder = newClientBuilder(isDebug);
+    builder.interceptors().add(0, new EndpointRoutingInterceptor(endpointPool));
+    client = builder.build();
+    gson = GsonFactory.create();
+    long interval = endpointPool.getHealthCheckIntervalMillis();
+    if (interval > 0) {
+      scheduleHealthCheck(new WeakReference<>(this), interval, 0);
+    }
+  }
+
+  /**
+   * Schedules the next health check of a service {@code delay} milliseconds from now, and the one
+   * after it {@code interval} milliseconds after that check completes. The checks only hold the
+   * service weakly, so a service nobody closes can still be collected.
+   */
+  private static void scheduleHealthCheck(WeakReference<RpcService> reference, long interval,
+                                          long delay) {
+    RpcService service = reference.get();
+    if (service == null || service.closed) {
+      return;
+    }
+    service.healthCheck = HEALTH_CHECKS.schedule(() -> {
+      RpcService checked = reference.get();
+      if (checked == null || checked.closed) {
+        return;
+      }
+      CompletableFuture<Void> check;
+      try {
+        check = checked.checkEndpointsAsync();
+      } catch (RuntimeException e) {
+        // a failed check does not end the checks
+        check = CompletableFuture.completedFuture(null);
+      }
+      check.whenComplete((result, e) -> scheduleHealthCheck(reference, interval, interval));
+    }, delay, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Creates a service that sends its requests over {@code transport} instead of HTTP.
+   */
+  public RpcService(RpcTransport transport) {
+    this.transport = transport;
+    gson = GsonFactory.create();
+  }
+
+  private static OkHttpClient.Builder newClientBuilder(boolean isDebug) {
     if (isDebug) {
       HttpLoggingInterceptor logging = new HttpLoggingInterceptor();
       logging.level(HttpLoggingInterceptor.Level.BODY);
-      client =
-          new OkHttpClient.Builder().addInterceptor(logging).retryOnConnectionFailure(true).build();
+      return new OkHttpClient.Builder().addInterceptor(logging).retryOnConnectionFailure(true);
+    } else {
+      return new OkHttpClient.Builder()
+          .connectTimeout(180, TimeUnit.SECONDS)
+          .readTimeout(180, TimeUnit.SECONDS)
+          .retryOnConnectionFailure(true);
+    }
+  }
+
+  /**
+   * @return the transport of this service, or null if it sends over HTTP
+   */
+  public RpcTransport getTransport() {
+    return transport;
+  }
+
+  /**
+   * @return the endpoint pool of this service, or null if it is bound to a single url
+   */
+  public EndpointPool getEndpointPool() {
+    return endpointPool;
+  }
+
+  /**
+   * Stops the periodic health checks of the endpoint pool, sends the calls still held for
+   * batching and closes the transport, if any. Calls after closing are not supported.
+   */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    ScheduledFuture<?> healthCheck = this.healthCheck;
+    if (healthCheck != null) {
+      healthCheck.cancel(false);
+    }
+    disableBatching();
+    if (transport != null) {
+      transport.close();
+    }
+  }
+
+  /**
+   * Queries {@code get_tip_block_number} on every endpoint of the pool and marks the endpoints
+   * whose tip is too far behind as lagging. Does nothing for a service bound to a single url.
+   */
+  public void checkEndpoints() {
+    checkEndpointsAsync().join();
+  }
+
+  private CompletableFuture<Void> checkEndpointsAsync() {
+    if (endpointPool == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    String method = "get_tip_block_number";
+    List<CompletableFuture<Void>> probes = new ArrayList<>();
+    for (Endpoint endpoint : endpointPool.getEndpoints()) {
+      long start = System.nanoTime();
+      Buffer json = toJson(gson, new RequestParams(method, Collections.emptyList()));
+      Request request = newRequest(json, new String[] {method}, System.nanoTime() - start)
+          .newBuilder().tag(Endpoint.class, endpoint).build();
+      CompletableFuture<Long> tip = enqueue(request, response -> readResult(response, method, Long.class, gson));
+      probes.add(tip.handle((number, e) -> {
+        // nodes that reject the method keep an unknown tip and are never considered lagging
+        if (number != null) {
+          endpoint.setTipBlockNumber(number);
+        }
+        return null;
+      }));
+    }
+    return CompletableFuture.allOf(probes.toArray(new CompletableFuture[0]))
+        .thenRun(endpointPool::updateLagging);
+  }
 
+  /**
+   * Enables automatic micro-batching. Calls to {@code post} and {@code postAsync} are held for up
+   * to {@code windowMillis} milliseconds, or until {@code maxBatchSize} calls are pending, and are
+   * then sent together as one JSON-RPC batch request. Callers observe no difference except the
+   * added latency of the batching window.
+   *
+   * @param windowMillis  the longest time a call is held before its batch is sent
+   * @param maxBatchSize  the number of pending calls that triggers an immediate send
+   */
+  public void enableBatching(long windowMillis, int maxBatchSize) {
+    RpcBatcher previous = batcher;
+    batcher = new RpcBatcher(this, windowMillis, maxBatchSize);
+    if (previous != null) {
+      previous.close();
+    }
+  }
+
+  /** Disables micro-batching, sending any calls that are still pending. */
+  public void disableBatching() {
+    RpcBatcher previous = batcher;
+    batcher = null;
+    if (previous != null) {
+      previous.close();
+    }
+  }
+
+  /**
+   * Sets the policy that hedges slow calls of read-only methods, or null to disable hedging. Calls
+   * that go through automatic batching are not hedged.
+   */
+  public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+    this.hedgingPolicy = hedgingPolicy;
+  }
+
+  public HedgingPolicy getHedgingPolicy() {
+    return hedgingPolicy;
+  }
+
+  /**
+   * Sets the cache consulted before sending calls whose results cannot change, or null to disable
+   * caching. Explicit batches are not cached.
+   */
+  public void setResponseCache(ResponseCache responseCache) {
+    this.responseCache = responseCache;
+  }
+
+  public ResponseCache getResponseCache() {
+    return responseCache;
+  }
+
+  /**
+   * Sets the limiter that bounds the HTTP calls in flight to each endpoint and orders the waiting
+   * ones by priority, or null to send every call at once. Calls sent over an {@link RpcTransport}
+   * are not limited.
+   */
+  public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+    if (concurrencyLimiter != null && client != null) {
+      // the limiter queues by priority, so the dispatcher must not queue first
+      int endpoints = endpointPool == null ? 1 : endpointPool.getEndpoints().size();
+      int maxRequests = concurrencyLimiter.getMaxLimit() * endpoints;
+      Dispatcher dispatcher = client.dispatcher();
+      dispatcher.setMaxRequests(Math.max(dispatcher.getMaxRequests(), maxRequests));
+      dispatcher.setMaxRequestsPerHost(Math.max(dispatcher.getMaxRequestsPerHost(), maxRequests));
+    }
+    this.concurrencyLimiter = concurrencyLimiter;
+  }
+
+  public ConcurrencyLimiter getConcurrencyLimiter() {
+    return concurrencyLimiter;
+  }
+
+  /**
+   * Sets the executor the HTTP client runs asynchronous calls and their callbacks on, such as
+   * {@link VirtualThreads#newExecutor(String)}. Blocking calls run on the calling thread either
+   * way. Has no effect on a service that sends over an {@link RpcTransport}.
+   */
+  public void setDispatcherExecutor(ExecutorService executorService) {
+    if (client == null) {
+      return;
+    }
+    Dispatcher previous = client.dispatcher();
+    Dispatcher dispatcher = new Dispatcher(executorService);
+    dispatcher.setMaxRequests(previous.getMaxRequests());
+    dispatcher.setMaxRequestsPerHost(previous.getMaxRequestsPerHost());
+    client = client.newBuilder().dispatcher(dispatcher).build();
+  }
+
+  /**
+   * Sets the listener told about the size, timing and outcome of every request, or null to stop
+   * measuring. Calls answered from the {@link ResponseCache} are not requests and are not reported.
+   */
+  public void setMetricsListener(RpcMetricsListener metricsListener) {
+    this.metricsListener = metricsListener;
+  }
+
+  public RpcMetricsListener getMetricsListener() {
+    return metricsListener;
+  }
+
+  /**
+   * Sets the time every call may take, including the wait for a permit of the
+   * {@link ConcurrencyLimiter} and the hedges of the {@link HedgingPolicy}, or 0 to bound calls
+   * only by the {@link Deadline} of the calling thread. A call fails with an
+   * {@link InterruptedIOException} when it runs out of time.
+   */
+  public void setCallTimeout(long timeoutMillis) {
+    this.callTimeoutMillis = Math.max(0, timeoutMillis);
+  }
+
+  public long getCallTimeout() {
+    return callTimeoutMillis;
+  }
+
+  /**
+   * Sets the time calls of {@code method} may take instead of the {@link #setCallTimeout(long)
+   * call timeout}, or 0 to use the call timeout again. A batch request may take the longest time
+   * of its calls. Either way a call never outlives the {@link Deadline} of the calling thread.
+   */
+  public void setMethodTimeout(String method, long timeoutMillis) {
+    if (timeoutMillis > 0) {
+      methodTimeouts.put(method, timeoutMillis);
     } else {
-      client =
-          new OkHttpClient.Builder()
-              .connectTimeout(180, TimeUnit.SECONDS)
-              .readTimeout(180, TimeUnit.SECONDS)
-              .retryOnConnectionFailure(true)
-              .build();
+      methodTimeouts.remove(method);
     }
-    gson = GsonFactory.create();
+  }
+
+  public long getMethodTimeout(String method) {
+    return methodTimeouts.getOrDefault(method, callTimeoutMillis);
+  }
+
+  /**
+   * @return the deadline of a request of {@code methods} sent now from this thread, or null if it
+   *     has none
+   */
+  Deadline deadlineFor(String... methods) {
+    Deadline current = Deadline.current();
+    long timeoutMillis = 0;
+    for (String method : methods) {
+      long methodTimeout = getMethodTimeout(method);
+      if (methodTimeout <= 0) {
+        // a call without a timeout leaves the request unbounded
+        return current;
+      }
+      timeoutMillis = Math.max(timeoutMillis, methodTimeout);
+    }
+    return timeoutMillis > 0 ? Deadline.afterMillis(timeoutMillis).earliest(current) : current;
   }
 
   public <T> T post(@NotNull String method, List params, Type cls) throws IOException {
@@ -50,72 +345,356 @@ public class RpcService {
   }
 
   public <T> T post(@NotNull String method, List params, Type cls, Gson gson) throws IOException {
-    RequestParams requestParams = new RequestParams(method, params);
-    String gson_params = gson.toJson(requestParams);
-    RequestBody body = RequestBody.create(gson_params, JSON_MEDIA_TYPE);
-    Request request = new Request.Builder().url(url).post(body).build();
-    Response response = client.newCall(request).execute();
-    String responseBody = Objects.requireNonNull(response.body()).string();
-    if (response.isSuccessful()) {
-      RpcResponse rpcResponse =
-          gson.fromJson(responseBody, new TypeToken<RpcResponse>() {}.getType());
-
-      if (rpcResponse.error != null) {
-        throw new IOException(
-            "RpcService method " + method + " error " + gson.toJson(rpcResponse.error));
-      }
-
-      JsonElement jsonElement =
-          JsonParser.parseString(responseBody).getAsJsonObject().get("result");
-      if (jsonElement.isJsonObject()) {
-        return gson.fromJson(jsonElement.getAsJsonObject(), cls);
-      }
-      return gson.fromJson(jsonElement, cls);
-    } else {
-      throw new IOException("RpcService method " + method + " error code " + response.code());
+    ResponseCache cache = this.responseCache;
+    if (cache != null && cache.covers(method)) {
+      String jsonParams = toJsonParams(params, gson);
+      String key = method + jsonParams;
+      String cached = cache.get(method, key);
+      if (cached != null) {
+        // a fresh copy for every caller, the decoded types are mutable
+        return gson.fromJson(cached, cls);
+      }
+      ResponseCache.Captured<T> result =
+          send(method, params, ResponseCache.Captured.type(cls), gson);
+      if (result == null) {
+        return null;
+      }
+      cache.put(method, key, jsonParams, result.json);
+      return result.value;
+    }
+    return send(method, params, cls, gson);
+  }
+
+  private <T> T send(String method, List params, Type cls, Gson gson) throws IOException {
+    Deadline deadline = deadlineFor(method);
+    if (deadline == null) {
+      return send(method, params, cls, gson, null);
+    }
+    deadline.check();
+    return deadline.call(() -> send(method, params, cls, gson, deadline));
+  }
+
+  private <T> T send(String method, List params, Type cls, Gson gson, Deadline deadline)
+      throws IOException {
+    RpcBatcher batcher = this.batcher;
+    if (batcher != null) {
+      return await(bound(batcher.submit(method, params, cls, gson), deadline));
+    }
+    if (transport != null) {
+      return await(bound(sendOverTransport(method, params, cls, gson), deadline));
+    }
+    HedgingPolicy hedgingPolicy = this.hedgingPolicy;
+    if (hedgingPolicy != null && isHedged(hedgingPolicy, method)) {
+      return await(bound(postHedged(hedgingPolicy, method, params, cls, gson), deadline));
+    }
+    Request request = newRequest(method, params, gson);
+    return execute(request, response -> readResult(response, method, cls, gson));
+  }
+
+  /**
+   * Posts an RPC request without blocking the calling thread.
+   *
+   * <p>The returned future completes exceptionally with an {@link IOException} when the request
+   * fails or the node replies with an RPC error. Cancelling the future aborts the underlying
+   * HTTP call.
+   */
+  public <T> CompletableFuture<T> postAsync(@NotNull String method, List params, @NotNull Type cls) {
+    return postAsync(method, params, cls, gson);
+  }
+
+  public <T> CompletableFuture<T> postAsync(
+      @NotNull String method, List params, @NotNull Type cls, Gson gson) {
+    ResponseCache cache = this.responseCache;
+    if (cache != null && cache.covers(method)) {
+      String jsonParams = toJsonParams(params, gson);
+      String key = method + jsonParams;
+      String cached = cache.get(method, key);
+      if (cached != null) {
+        return CompletableFuture.completedFuture(gson.fromJson(cached, cls));
+      }
+      CompletableFuture<ResponseCache.Captured<T>> future =
+          sendAsync(method, params, ResponseCache.Captured.type(cls), gson);
+      CompletableFuture<T> mapped = future.thenApply(result -> {
+        if (result == null) {
+          return null;
+        }
+        cache.put(method, key, jsonParams, result.json);
+        return result.value;
+      });
+      mapped.whenComplete((result, e) -> {
+        if (mapped.isCancelled()) {
+          future.cancel(true);
+        }
+      });
+      return mapped;
+    }
+    return sendAsync(method, params, cls, gson);
+  }
+
+  private static String toJsonParams(List params, Gson gson) {
+    return params == null ? "[]" : gson.toJson(params);
+  }
+
+  private <T> CompletableFuture<T> sendAsync(String method, List params, Type cls, Gson gson) {
+    Deadline deadline = deadlineFor(method);
+    if (deadline == null) {
+      return dispatchAsync(method, params, cls, gson);
+    }
+    if (deadline.isExpired()) {
+      return expired(deadline);
+    }
+    return deadline.call(() -> deadline.bound(dispatchAsync(method, params, cls, gson)));
+  }
+
+  private <T> CompletableFuture<T> dispatchAsync(String method, List params, Type cls, Gson gson) {
+    RpcBatcher batcher = this.batcher;
+    if (batcher != null) {
+      return batcher.submit(method, params, cls, gson);
     }
+    if (transport != null) {
+      return sendOverTransport(method, params, cls, gson);
+    }
+    HedgingPolicy hedgingPolicy = this.hedgingPolicy;
+    if (hedgingPolicy != null && isHedged(hedgingPolicy, method)) {
+      return postHedged(hedgingPolicy, method, params, cls, gson);
+    }
+    Request request = newRequest(method, params, gson);
+    return enqueue(request, response -> readResult(response, method, cls, gson));
+  }
+
+  private <T> CompletableFuture<T> sendOverTransport(
+      String method, List params, Type cls, Gson gson) {
+    RequestParams requestParams = new RequestParams(method, params);
+    long start = System.nanoTime();
+    Buffer json = toJson(gson, requestParams);
+    RpcCallEvent event = newEvent(new String[] {method}, System.nanoTime() - start, json.size());
+    return sendOverTransport(json, new long[] {requestParams.id}, event,
+                             reply -> RpcResponseDecoder.decode(reply, method, cls, gson));
+  }
+
+  private <T> CompletableFuture<T> sendOverTransport(
+      Buffer json, long[] ids, RpcCallEvent event, ReplyReader<T> reader) {
+    long start = System.nanoTime();
+    CompletableFuture<Reader> call = transport.send(json.readUtf8(), ids);
+    CompletableFuture<T> future =
+        new CompletableFuture<T>() {
+          @Override
+          public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            call.cancel(true);
+            return cancelled;
+          }
+        };
+    call.whenComplete((reply, e) -> {
+      if (event != null) {
+        event.networkNanos = System.nanoTime() - start;
+        event.endpoint = transport.toString();
+      }
+      if (e != null) {
+        if (event != null) {
+          report(event, call.isCancelled()
+              ? RpcCallEvent.Outcome.CANCELLED : RpcCallEvent.Outcome.NETWORK_ERROR);
+        }
+        future.completeExceptionally(
+            e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+        return;
+      }
+      long decodeStart = System.nanoTime();
+      T result = null;
+      Throwable failure = null;
+      try (Reader in = event == null ? reply : new CountingReader(reply, event)) {
+        result = reader.read(in);
+      } catch (IOException | RuntimeException ex) {
+        failure = ex;
+      }
+      // report before the caller can observe the result
+      if (event != null) {
+        event.decodeNanos = System.nanoTime() - decodeStart;
+        report(event, failure == null
+            ? RpcCallEvent.Outcome.SUCCESS : RpcCallEvent.Outcome.RPC_ERROR);
+      }
+      if (failure == null) {
+        future.complete(result);
+      } else {
+        future.completeExceptionally(failure);
+      }
+    });
+    return future;
+  }
+
+  private boolean isHedged(HedgingPolicy hedgingPolicy, String method) {
+    return hedgingPolicy.isHedged(method) && !isWrite(method);
+  }
+
+  private <T> CompletableFuture<T> postHedged(
+      HedgingPolicy hedgingPolicy, String method, List params, Type cls, Gson gson) {
+    long start = System.nanoTime();
+    Buffer json = toJson(gson, new RequestParams(method, params));
+    long serializeNanos = System.nanoTime() - start;
+    return hedgingPolicy.execute(method, hedge -> {
+      Request request = newRequest(json, new String[] {method}, serializeNanos);
+      if (hedge) {
+        request = request.newBuilder()
+            .tag(EndpointRoutingInterceptor.Route.class, EndpointRoutingInterceptor.Route.HEDGE)
+            .build();
+      }
+      return enqueue(request, response -> readResult(response, method, cls, gson));
+    });
   }
 
   public <T> void postAsync(
       @NotNull String method, List params, @NotNull Type cls, @NotNull RpcCallback<T> callback) {
-    RequestParams requestParams = new RequestParams(method, params);
-    RequestBody body = RequestBody.create(gson.toJson(requestParams), JSON_MEDIA_TYPE);
-    Request request = new Request.Builder().url(url).post(body).build();
-    client
-        .newCall(request)
-        .enqueue(
-            new Callback() {
-              @Override
-              public void onFailure(@NotNull Call call, @NotNull IOException e) {
+    this.<T>postAsync(method, params, cls)
+        .whenComplete(
+            (result, e) -> {
+              if (e != null) {
                 callback.onFailure(e.getMessage());
-              }
-
-              @Override
-              public void onResponse(@NotNull Call call, @NotNull Response response)
-                  throws IOException {
-                String responseBody = Objects.requireNonNull(response.body()).string();
-                if (response.isSuccessful()) {
-                  RpcResponse<T> rpcResponse =
-                      gson.fromJson(responseBody, new TypeToken<RpcResponse<T>>() {}.getType());
-                  if (rpcResponse.error != null) {
-                    throw new IOException(
-                        "RpcService method " + method + " error " + gson.toJson(rpcResponse.error));
-                  }
-                  JsonElement jsonElement =
-                      JsonParser.parseString(responseBody).getAsJsonObject().get("result");
-                  if (jsonElement.isJsonObject()) {
-                    callback.onResponse(gson.fromJson(jsonElement.getAsJsonObject(), cls));
-                  }
-                  callback.onResponse(gson.fromJson(jsonElement, cls));
-                } else {
-                  throw new IOException(
-                      "RpcService method " + method + " error code " + response.code());
-                }
+              } else {
+                callback.onResponse(result);
               }
             });
   }
 
+  /**
+   * Creates an empty batch. Calls added to it are sent together in one HTTP request when the batch
+   * is executed, independently of automatic batching.
+   */
+  public RpcBatch newBatch() {
+    return new RpcBatch(this);
+  }
+
   public List<RpcResponse> batchPost(List<List> requests) throws IOException {
+    List<RequestParams> paramsList = toBatchParams(requests);
+    return execute(toJson(gson, paramsList), ids(paramsList), methods(paramsList),
+                   "RpcService error code ", this::readBatchReply);
+  }
+
+  public CompletableFuture<List<RpcResponse>> batchPostAsync(List<List> requests) {
+    List<RequestParams> paramsList;
+    try {
+      paramsList = toBatchParams(requests);
+    } catch (IOException e) {
+      CompletableFuture<List<RpcResponse>> future = new CompletableFuture<>();
+      future.completeExceptionally(e);
+      return future;
+    }
+    return enqueue(toJson(gson, paramsList), ids(paramsList), methods(paramsList),
+                   "RpcService error code ", this::readBatchReply);
+  }
+
+  Gson getGson() {
+    return gson;
+  }
+
+  private Request newRequest(String method, List params, Gson gson) {
+    RequestParams requestParams = new RequestParams(method, params);
+    long start = System.nanoTime();
+    Buffer json = toJson(gson, requestParams);
+    return newRequest(json, new String[] {method}, System.nanoTime() - start);
+  }
+
+  /**
+   * Serializes {@code value} straight into a buffer, with byte arrays written as hex without
+   * intermediate strings.
+   */
+  static Buffer toJson(Gson gson, Object value) {
+    Buffer json = new Buffer();
+    gson.toJson(value, value.getClass(), new SinkJsonWriter(json));
+    return json;
+  }
+
+  boolean isWrite(String method) {
+    return endpointPool != null && endpointPool.isWrite(method);
+  }
+
+  /**
+   * @return the priority of the most urgent of {@code methods}
+   */
+  RpcPriority priorityOf(String... methods) {
+    ConcurrencyLimiter limiter = this.concurrencyLimiter;
+    RpcPriority priority = RpcPriority.BULK;
+    for (String method : methods) {
+      RpcPriority methodPriority =
+          limiter == null ? RpcPriority.INTERACTIVE : limiter.getPriority(method);
+      if (methodPriority.compareTo(priority) < 0) {
+        priority = methodPriority;
+      }
+    }
+    return priority;
+  }
+
+  /**
+   * Sends a serialized request, or batch request, over the transport of this service.
+   *
+   * @param methods the methods of the calls in the request
+   * @param error   the message of the {@link IOException} thrown for an HTTP error, followed by
+   *                the status code
+   */
+  <T> T execute(Buffer json, long[] ids, String[] methods, String error, ReplyReader<T> reader)
+      throws IOException {
+    Deadline deadline = deadlineFor(methods);
+    Deadline.Work<T, IOException> work = () -> {
+      if (transport != null) {
+        return await(bound(sendOverTransport(json, ids, newEvent(methods, 0, json.size()), reader),
+                           deadline));
+      }
+      return execute(newRequest(json, methods, 0), response -> readReply(response, error, reader));
+    };
+    if (deadline == null) {
+      return work.call();
+    }
+    deadline.check();
+    return deadline.call(work);
+  }
+
+  <T> CompletableFuture<T> enqueue(
+      Buffer json, long[] ids, String[] methods, String error, ReplyReader<T> reader) {
+    Deadline deadline = deadlineFor(methods);
+    if (deadline != null && deadline.isExpired()) {
+      return expired(deadline);
+    }
+    CompletableFuture<T> future;
+    if (transport != null) {
+      future = sendOverTransport(json, ids, newEvent(methods, 0, json.size()), reader);
+    } else {
+      future = enqueue(newRequest(json, methods, 0), response -> readReply(response, error, reader));
+    }
+    return bound(future, deadline);
+  }
+
+  private static <T> CompletableFuture<T> bound(CompletableFuture<T> future, Deadline deadline) {
+    return deadline == null ? future : deadline.bound(future);
+  }
+
+  private static <T> CompletableFuture<T> expired(Deadline deadline) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    try {
+      deadline.check();
+    } catch (InterruptedIOException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  /**
+   * @param json           the request, which may be sent again, e.g. by the hedges of a call
+   * @param methods        the methods of the calls in the request
+   * @param serializeNanos the time it took to write {@code json}, reported to the metrics listener
+   */
+  Request newRequest(Buffer json, String[] methods, long serializeNanos) {
+    RequestBody body = new JsonRequestBody(json);
+    boolean write = isWrite(methods);
+    return new Request.Builder()
+        .url(url)
+        .post(body)
+        .tag(EndpointRoutingInterceptor.Route.class,
+             write ? EndpointRoutingInterceptor.Route.WRITE : EndpointRoutingInterceptor.Route.READ)
+        .tag(RpcPriority.class, priorityOf(methods))
+        .tag(RpcCallEvent.class, newEvent(methods, serializeNanos, json.size()))
+        .build();
+  }
+
+  private List<RequestParams> toBatchParams(List<List> requests) throws IOException {
     List<RequestParams> paramsList = new ArrayList<>();
     for (List request : requests) {
       if (request.size() == 0 || !(request.get(0) instanceof String)) {
@@ -129,17 +708,428 @@ public class RpcService {
       paramsList.add(
           new RequestParams(request.get(0).toString(), request.subList(1, request.size())));
     }
-    RequestBody body = RequestBody.create(gson.toJson(paramsList), JSON_MEDIA_TYPE);
-    Request request = new Request.Builder().url(url).post(body).build();
-    Response response = client.newCall(request).execute();
-    String responseBody = Objects.requireNonNull(response.body()).string();
-    if (response.isSuccessful()) {
-      return gson.fromJson(responseBody, new TypeToken<List<RpcResponse>>() {}.getType());
-    } else {
-      throw new IOException("RpcService error code " + response.code());
+    return paramsList;
+  }
+
+  private boolean isWrite(String[] methods) {
+    for (String method : methods) {
+      if (isWrite(method)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String[] methods(List<RequestParams> paramsList) {
+    String[] methods = new String[paramsList.size()];
+    for (int i = 0; i < methods.length; i++) {
+      methods[i] = paramsList.get(i).method;
+    }
+    return methods;
+  }
+
+  private static long[] ids(List<RequestParams> paramsList) {
+    long[] ids = new long[paramsList.size()];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = paramsList.get(i).id;
+    }
+    return ids;
+  }
+
+  private <T> T readResult(Response response, String method, Type cls, Gson gson)
+      throws IOException {
+    return readReply(response, "RpcService method " + method + " error code ",
+                     reply -> RpcResponseDecoder.decode(reply, method, cls, gson));
+  }
+
+  private static <T> T readReply(Response response, String error, ReplyReader<T> reader)
+      throws IOException {
+    try (ResponseBody responseBody = Objects.requireNonNull(response.body())) {
+      if (response.isSuccessful()) {
+        return reader.read(responseBody.charStream());
+      } else {
+        throw new IOException(error + response.code());
+      }
+    }
+  }
+
+  private List<RpcResponse> readBatchReply(Reader reply) {
+    return gson.fromJson(reply, new TypeToken<List<RpcResponse>>() {}.getType());
+  }
+
+  private static <T> T await(CompletableFuture<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("RpcService call interrupted");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  private <T> T execute(Request request, ResponseReader<T> reader) throws IOException {
+    Deadline deadline = Deadline.current();
+    ConcurrencyLimiter limiter = this.concurrencyLimiter;
+    ConcurrencyLimiter.Permit permit = limiter == null ? null : acquire(limiter, request, deadline);
+    Call call = client.newCall(request);
+    Runnable unregister = null;
+    if (deadline != null) {
+      try {
+        deadline.check();
+      } catch (InterruptedIOException e) {
+        if (permit != null) {
+          permit.release();
+        }
+        throw e;
+      }
+      // the call timeout covers connecting, writing, reading and the redirects and retries of OkHttp
+      call.timeout().timeout(deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+      unregister = deadline.onCancel(call::cancel);
+    }
+    long start = System.nanoTime();
+    try {
+      Response response;
+      try {
+        response = call.execute();
+      } catch (IOException | RuntimeException e) {
+        failed(call, permit, start, e);
+        throw e;
+      }
+      return readResponse(call, response, permit, start, reader);
+    } catch (IOException e) {
+      if (deadline != null && call.isCanceled() && deadline.isExpired()) {
+        InterruptedIOException expired = new InterruptedIOException(
+            deadline.isCancelled() ? "Deadline cancelled" : "Deadline exceeded");
+        expired.initCause(e);
+        throw expired;
+      }
+      throw e;
+    } finally {
+      if (unregister != null) {
+        unregister.run();
+      }
+    }
+  }
+
+  private ConcurrencyLimiter.Permit acquire(
+      ConcurrencyLimiter limiter, Request request, Deadline deadline) throws IOException {
+    CompletableFuture<ConcurrencyLimiter.Permit> permit =
+        limiter.acquire(endpointOf(request), request.tag(RpcPriority.class));
+    if (deadline == null) {
+      return await(permit);
+    }
+    try {
+      return await(deadline.bound(permit));
+    } catch (IOException e) {
+      if (!permit.cancel(true) && !permit.isCompletedExceptionally()) {
+        // granted as the deadline passed
+        permit.join().release();
+      }
+      throw e;
+    }
+  }
+
+  <T> CompletableFuture<T> enqueue(Request request, ResponseReader<T> reader) {
+    ConcurrencyLimiter limiter = this.concurrencyLimiter;
+    if (limiter == null) {
+      return enqueue(client.newCall(request), null, reader);
+    }
+    CompletableFuture<ConcurrencyLimiter.Permit> permit =
+        limiter.acquire(endpointOf(request), request.tag(RpcPriority.class));
+    AtomicReference<CompletableFuture<T>> sent = new AtomicReference<>();
+    CompletableFuture<T> future =
+        new CompletableFuture<T>() {
+          @Override
+          public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            permit.cancel(true);
+            CompletableFuture<T> call = sent.get();
+            if (call != null) {
+              call.cancel(true);
+            }
+            return cancelled;
+          }
+        };
+    permit.whenComplete((granted, e) -> {
+      if (e != null) {
+        future.completeExceptionally(e);
+        return;
+      }
+      if (future.isDone()) {
+        granted.release();
+        return;
+      }
+      CompletableFuture<T> call = enqueue(client.newCall(request), granted, reader);
+      sent.set(call);
+      if (future.isDone()) {
+        call.cancel(true);
+      }
+      call.whenComplete((result, ex) -> {
+        if (ex != null) {
+          future.completeExceptionally(ex);
+        } else {
+          future.complete(result);
+        }
+      });
+    });
+    return future;
+  }
+
+  /**
+   * @return the url of the endpoint {@code request} is sent to first
+   */
+  private String endpointOf(Request request) {
+    Endpoint pinned = request.tag(Endpoint.class);
+    if (pinned != null) {
+      return pinned.getUrl();
+    }
+    if (endpointPool == null) {
+      return url;
+    }
+    EndpointRoutingInterceptor.Route route = request.tag(EndpointRoutingInterceptor.Route.class);
+    List<Endpoint> candidates = route == EndpointRoutingInterceptor.Route.HEDGE
+        ? endpointPool.routeHedge()
+        : endpointPool.route(route == EndpointRoutingInterceptor.Route.WRITE);
+    return candidates.get(0).getUrl();
+  }
+
+  private static boolean isOverloaded(Response response) {
+    return response.code() == 429 || response.code() == 503;
+  }
+
+  /**
+   * @return the url of the endpoint that answered {@code response}
+   */
+  private String endpointOf(Request request, Response response) {
+    if (endpointPool != null) {
+      HttpUrl answered = response.request().url();
+      for (Endpoint endpoint : endpointPool.getEndpoints()) {
+        if (endpoint.httpUrl().equals(answered)) {
+          return endpoint.getUrl();
+        }
+      }
+    }
+    return endpointOf(request);
+  }
+
+  /**
+   * Reads the response of a call and reports it to the limiter and the metrics listener.
+   */
+  private <T> T readResponse(Call call, Response response, ConcurrencyLimiter.Permit permit,
+                             long start, ResponseReader<T> reader) throws IOException {
+    RpcCallEvent event = call.request().tag(RpcCallEvent.class);
+    if (event != null) {
+      event.networkNanos = System.nanoTime() - start;
+      event.endpoint = endpointOf(call.request(), response);
+      response = countResponseBytes(response, event);
+    }
+    long decodeStart = System.nanoTime();
+    RpcCallEvent.Outcome outcome = RpcCallEvent.Outcome.SUCCESS;
+    try {
+      return reader.read(response);
+    } catch (IOException | RuntimeException e) {
+      outcome = response.isSuccessful()
+          ? RpcCallEvent.Outcome.RPC_ERROR : RpcCallEvent.Outcome.HTTP_ERROR;
+      throw e;
+    } finally {
+      if (permit != null) {
+        permit.complete(isOverloaded(response));
+      }
+      if (event != null) {
+        event.decodeNanos = System.nanoTime() - decodeStart;
+        report(event, outcome);
+      }
+    }
+  }
+
+  private void failed(Call call, ConcurrencyLimiter.Permit permit, long start, Throwable e) {
+    if (permit != null) {
+      if (e instanceof InterruptedIOException && !call.isCanceled()) {
+        // timed out
+        permit.complete(true);
+      } else {
+        permit.release();
+      }
+    }
+    RpcCallEvent event = call.request().tag(RpcCallEvent.class);
+    if (event != null) {
+      event.networkNanos = System.nanoTime() - start;
+      event.endpoint = endpointOf(call.request());
+      report(event, call.isCanceled()
+          ? RpcCallEvent.Outcome.CANCELLED : RpcCallEvent.Outcome.NETWORK_ERROR);
+    }
+  }
+
+  private static Response countResponseBytes(Response response, RpcCallEvent event) {
+    ResponseBody body = response.body();
+    if (body == null) {
+      return response;
+    }
+    BufferedSource source = Okio.buffer(new ForwardingSource(body.source()) {
+      @Override
+      public long read(@NotNull Buffer sink, long byteCount) throws IOException {
+        long read = super.read(sink, byteCount);
+        if (read > 0) {
+          event.responseBytes += read;
+        }
+        return read;
+      }
+    });
+    return response.newBuilder()
+        .body(ResponseBody.create(source, body.contentType(), body.contentLength()))
+        .build();
+  }
+
+  /**
+   * @return the event to fill in while the request is sent, or null if neither the metrics
+   *     listener nor Flight Recorder wants it
+   */
+  private RpcCallEvent newEvent(String[] methods, long serializeNanos, long requestBytes) {
+    RpcEvent recording = new RpcEvent();
+    if (metricsListener == null && !recording.isEnabled()) {
+      return null;
+    }
+    RpcCallEvent event = new RpcCallEvent(methods);
+    event.serializeNanos = serializeNanos;
+    event.requestBytes = requestBytes;
+    if (recording.isEnabled()) {
+      recording.begin();
+      event.recording = recording;
+    }
+    return event;
+  }
+
+  private void report(RpcCallEvent event, RpcCallEvent.Outcome outcome) {
+    event.outcome = outcome;
+    RpcEvent recording = event.recording;
+    if (recording != null) {
+      recording.end();
+      if (recording.shouldCommit()) {
+        recording.method = event.method;
+        recording.calls = event.calls;
+        recording.endpoint = event.endpoint;
+        recording.requestBytes = event.requestBytes;
+        recording.responseBytes = event.responseBytes;
+        recording.outcome = outcome.name();
+        recording.commit();
+      }
+    }
+    RpcMetricsListener listener = this.metricsListener;
+    if (listener == null) {
+      return;
+    }
+    try {
+      listener.onCall(event);
+    } catch (RuntimeException e) {
+      // metrics must not fail the call
     }
   }
 
+  private <T> CompletableFuture<T> enqueue(
+      Call call, ConcurrencyLimiter.Permit permit, ResponseReader<T> reader) {
+    CompletableFuture<T> future =
+        new CompletableFuture<T>() {
+          @Override
+          public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            call.cancel();
+            return cancelled;
+          }
+        };
+    long start = System.nanoTime();
+    call.enqueue(
+        new Callback() {
+          @Override
+          public void onFailure(@NotNull Call call, @NotNull IOException e) {
+            failed(call, permit, start, e);
+            future.completeExceptionally(e);
+          }
+
+          @Override
+          public void onResponse(@NotNull Call call, @NotNull Response response) {
+            try {
+              future.complete(readResponse(call, response, permit, start, reader));
+            } catch (IOException | RuntimeException e) {
+              future.completeExceptionally(e);
+            }
+          }
+        });
+    return future;
+  }
+
+  /**
+   * Sends a serialized request without copying it: every write shares the segments of the buffer.
+   */
+  private static class JsonRequestBody extends RequestBody {
+    private final Buffer json;
+
+    JsonRequestBody(Buffer json) {
+      this.json = json;
+    }
+
+    @Override
+    public MediaType contentType() {
+      return JSON_MEDIA_TYPE;
+    }
+
+    @Override
+    public long contentLength() {
+      return json.size();
+    }
+
+    @Override
+    public void writeTo(@NotNull BufferedSink sink) throws IOException {
+      // hedges of a call may write the same body at once
+      synchronized (json) {
+        json.copyTo(sink.getBuffer(), 0, json.size());
+      }
+      sink.emitCompleteSegments();
+    }
+  }
+
+  private static class CountingReader extends FilterReader {
+    private final RpcCallEvent event;
+
+    CountingReader(Reader in, RpcCallEvent event) {
+      super(in);
+      this.event = event;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int c = super.read();
+      if (c >= 0) {
+        event.responseBytes++;
+      }
+      return c;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+      int read = super.read(buffer, offset, length);
+      if (read > 0) {
+        event.responseBytes += read;
+      }
+      return read;
+    }
+  }
+
+  interface ResponseReader<T> {
+    T read(Response response) throws IOException;
+  }
+
+  interface ReplyReader<T> {
+    T read(Reader reply) throws IOException;
+  }
+
   static class RequestParams {
     String jsonrpc = "2.0";
     String method;
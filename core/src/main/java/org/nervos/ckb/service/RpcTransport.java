@@ -0,0 +1,28 @@
+package org.nervos.ckb.service;
+
+import java.io.Closeable;
+import java.io.Reader;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Carries serialized JSON-RPC requests to a node and their replies back to an
+ * {@link RpcService}.
+ *
+ * <p>{@link RpcService} sends over HTTP with its own OkHttp client unless it is created with a
+ * transport. Endpoint pools and hedging depend on that HTTP client and are not available with
+ * other transports.
+ *
+ * @see SocketRpcTransport
+ * @see WebSocketRpcTransport
+ */
+public interface RpcTransport extends Closeable {
+  /**
+   * Sends a request or a batch request.
+   *
+   * @param json the request, or the array of requests of a batch
+   * @param ids  the ids of the requests in {@code json}, which the reply carries back
+   * @return a future of the reply, a response object or an array of them for a batch. The caller
+   * closes the reader. Cancelling the future abandons the reply.
+   */
+  CompletableFuture<Reader> send(String json, long[] ids);
+}
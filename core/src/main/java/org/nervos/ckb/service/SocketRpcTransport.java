@@ -0,0 +1,132 @@
+package org.nervos.ckb.service;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sends JSON-RPC requests over one persistent TCP connection, one request or reply per line, as
+ * served by the {@code tcp_listen_address} of a CKB node.
+ *
+ * <pre>{@code
+ * RpcService rpcService = new RpcService(new SocketRpcTransport("127.0.0.1", 18114));
+ * }</pre>
+ */
+public class SocketRpcTransport extends PipelinedRpcTransport {
+  private final InetSocketAddress address;
+  // a lock rather than a monitor, so virtual threads blocked writing do not pin their carrier
+  private final ReentrantLock lock = new ReentrantLock();
+  private int connectTimeoutMillis = 180_000;
+  private Connection connection;
+
+  public SocketRpcTransport(String host, int port) {
+    this.address = InetSocketAddress.createUnresolved(host, port);
+  }
+
+  /**
+   * Sets the timeout of opening the connection. Defaults to 180 seconds, like the HTTP client of
+   * {@link RpcService}.
+   */
+  public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+    this.connectTimeoutMillis = connectTimeoutMillis;
+  }
+
+  public int getConnectTimeoutMillis() {
+    return connectTimeoutMillis;
+  }
+
+  @Override
+  protected Connection write(String json) throws IOException {
+    lock.lock();
+    try {
+      Connection current = connection;
+      if (current == null || current.isLost()) {
+        current = connect();
+        connection = current;
+      }
+      try {
+        current.writer.write(json);
+        current.writer.write('\n');
+        current.writer.flush();
+      } catch (IOException e) {
+        current.lose(e);
+        throw e;
+      }
+      return current;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  protected void disconnect() {
+    lock.lock();
+    try {
+      if (connection != null) {
+        connection.lose(new IOException("RpcTransport is closed"));
+        connection = null;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private Connection connect() throws IOException {
+    Socket socket = new Socket();
+    try {
+      socket.setTcpNoDelay(true);
+      socket.connect(new InetSocketAddress(address.getHostString(), address.getPort()),
+                     connectTimeoutMillis);
+    } catch (IOException e) {
+      socket.close();
+      throw e;
+    }
+    Connection connection = new Connection(socket);
+    Thread reader = new Thread(connection::read, "ckb-rpc-socket-" + address.getPort());
+    reader.setDaemon(true);
+    reader.start();
+    return connection;
+  }
+
+  @Override
+  public String toString() {
+    return "tcp://" + address.getHostString() + ":" + address.getPort();
+  }
+
+  private class Connection extends PipelinedRpcTransport.Connection {
+    final Socket socket;
+    final Writer writer;
+
+    Connection(Socket socket) throws IOException {
+      this.socket = socket;
+      this.writer = new BufferedWriter(
+          new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    void read() {
+      try (BufferedReader in = new BufferedReader(
+          new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+        String line;
+        while ((line = in.readLine()) != null) {
+          if (!line.isEmpty()) {
+            onReply(line);
+          }
+        }
+        lose(new EOFException("RpcTransport connection closed by the node"));
+      } catch (IOException e) {
+        lose(e);
+      }
+    }
+
+    @Override
+    protected void release() {
+      try {
+        socket.close();
+      } catch (IOException ignored) {
+        // already failing
+      }
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package org.nervos.ckb.service;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates executors that run every task on its own virtual thread on Java 21 and later, such as
+ * the dispatcher of an {@link RpcService}:
+ *
+ * <pre>{@code
+ * rpcService.setDispatcherExecutor(VirtualThreads.newExecutor("ckb-rpc-dispatcher"));
+ * }</pre>
+ *
+ * <p>The blocking calls of the SDK hold no monitor while they wait for the network, so a virtual
+ * thread blocked in {@code post} or an iterator gives its carrier thread back. The multi-release
+ * jar replaces this class on Java 21; on older versions it finds virtual threads through
+ * reflection when the JVM lets them be created, and falls back to a cached pool of daemon
+ * platform threads.
+ */
+public final class VirtualThreads {
+  private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findVirtualExecutor();
+
+  private VirtualThreads() {
+  }
+
+  /**
+   * Finds the factory of virtual thread executors and checks that it works, as on Java 19 and 20
+   * it only does with {@code --enable-preview}.
+   */
+  private static Method findVirtualExecutor() {
+    try {
+      Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      ((ExecutorService) method.invoke(null)).shutdown();
+      return method;
+    } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return whether {@link #newExecutor(String)} returns virtual threads on this JVM
+   */
+  public static boolean isSupported() {
+    return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+  }
+
+  /**
+   * @param name the prefix of the names of the threads, where the JVM lets them be named
+   * @return an executor that starts a virtual thread per task, or a cached pool of daemon threads
+   *     before Java 21
+   */
+  public static ExecutorService newExecutor(String name) {
+    if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null) {
+      try {
+        return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+      } catch (IllegalAccessException | InvocationTargetException e) {
+        // fall back to platform threads
+      }
+    }
+    AtomicInteger count = new AtomicInteger();
+    return Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, name + "-" + count.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+}
@@ -0,0 +1,96 @@
+package org.nervos.ckb.service;
+
+import okhttp3.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends JSON-RPC requests over one persistent WebSocket, one request or reply per text message, as
+ * served by the {@code ws_listen_address} of a CKB node.
+ *
+ * <pre>{@code
+ * RpcService rpcService = new RpcService(new WebSocketRpcTransport("ws://127.0.0.1:28114"));
+ * }</pre>
+ */
+public class WebSocketRpcTransport extends PipelinedRpcTransport {
+  private final OkHttpClient client;
+  private final String url;
+  private final Request request;
+  private Connection connection;
+
+  public WebSocketRpcTransport(String url) {
+    this(new OkHttpClient.Builder()
+             .connectTimeout(180, TimeUnit.SECONDS)
+             .readTimeout(0, TimeUnit.SECONDS)
+             .build(),
+         url);
+  }
+
+  public WebSocketRpcTransport(OkHttpClient client, String url) {
+    this.client = client;
+    this.url = url;
+    this.request = new Request.Builder().url(url).build();
+  }
+
+  @Override
+  protected synchronized Connection write(String json) throws IOException {
+    Connection current = connection;
+    if (current == null || current.isLost()) {
+      current = new Connection();
+      current.webSocket = client.newWebSocket(request, current.listener);
+      connection = current;
+    }
+    // queued until the socket is open, and fails the connection if it cannot be sent
+    if (!current.webSocket.send(json)) {
+      throw new IOException("RpcTransport WebSocket is closed");
+    }
+    return current;
+  }
+
+  @Override
+  protected synchronized void disconnect() {
+    if (connection != null) {
+      connection.lose(new IOException("RpcTransport is closed"));
+      connection = null;
+    }
+  }
+
+  @Override
+  public String toString() {
+    // the request url has the scheme rewritten to http
+    return url;
+  }
+
+  private class Connection extends PipelinedRpcTransport.Connection {
+    final WebSocketListener listener = new Listener();
+    WebSocket webSocket;
+
+    @Override
+    protected void release() {
+      // null when the socket failed before newWebSocket returned
+      if (webSocket != null) {
+        webSocket.close(1000, null);
+      }
+    }
+
+    private class Listener extends WebSocketListener {
+      @Override
+      public void onMessage(@NotNull WebSocket webSocket, @NotNull String text) {
+        onReply(text);
+      }
+
+      @Override
+      public void onClosing(@NotNull WebSocket webSocket, int code, @NotNull String reason) {
+        lose(new EOFException("RpcTransport WebSocket closed by the node: " + code + " " + reason));
+      }
+
+      @Override
+      public void onFailure(@NotNull WebSocket webSocket, @NotNull Throwable t, Response response) {
+        lose(t instanceof IOException ? (IOException) t : new IOException(t));
+      }
+    }
+  }
+}
@@ -1,25 +1,45 @@
 package org.nervos.ckb.service.adapter;
 
-import com.google.gson.*;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.nervos.ckb.utils.Hex;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 import java.math.BigInteger;
 
-public class BigIntegerTypeAdapter
-    implements JsonSerializer<BigInteger>, JsonDeserializer<BigInteger> {
+public class BigIntegerTypeAdapter extends TypeAdapter<BigInteger> {
 
   @Override
-  public JsonElement serialize(BigInteger src, Type typeOfSrc, JsonSerializationContext context) {
-    if (src == null) {
-      return null;
+  public void write(JsonWriter out, BigInteger value) throws IOException {
+    if (value == null) {
+      out.nullValue();
+      return;
+    }
+    if (value.signum() >= 0 && value.bitLength() <= 63) {
+      out.value(Hex.encodeQuantity(value.longValue()));
+    } else {
+      out.value("0x" + value.toString(16));
     }
-    return new JsonPrimitive("0x" + src.toString(16));
   }
 
   @Override
-  public BigInteger deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
-      throws JsonParseException {
-    String hexValue = json.getAsString().substring(2);
-    return new BigInteger(hexValue, 16);
+  public BigInteger read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    String hex = in.nextString();
+    try {
+      // quantities of up to 15 digits fit in a long, so skip BigInteger's string parser
+      if (hex.length() <= 17) {
+        return BigInteger.valueOf(Hex.parseUnsignedLong(hex, 2));
+      }
+      return new BigInteger(hex.substring(2), 16);
+    } catch (NumberFormatException e) {
+      throw new JsonSyntaxException(e);
+    }
   }
 }
@@ -1,24 +1,39 @@
 package org.nervos.ckb.service.adapter;
 
-import com.google.gson.*;
-import org.nervos.ckb.utils.Numeric;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.nervos.ckb.utils.Hex;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 
-public class ByteArrayTypeAdapter implements JsonSerializer<byte[]>, JsonDeserializer<byte[]> {
+public class ByteArrayTypeAdapter extends TypeAdapter<byte[]> {
 
   @Override
-  public JsonElement serialize(byte[] src, Type typeOfSrc, JsonSerializationContext context) {
-    if (src == null) {
-      return null;
+  public void write(JsonWriter out, byte[] value) throws IOException {
+    if (value == null) {
+      out.nullValue();
+      return;
+    }
+    if (out instanceof SinkJsonWriter) {
+      ((SinkJsonWriter) out).hexValue(value);
+      return;
     }
-    String value = Numeric.toHexString(src);
-    return new JsonPrimitive(value);
+    out.value(Hex.encode(value));
   }
 
   @Override
-  public byte[] deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
-      throws JsonParseException {
-    return Numeric.hexStringToByteArray(json.getAsString());
+  public byte[] read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    try {
+      return Hex.decode(in.nextString());
+    } catch (NumberFormatException e) {
+      throw new JsonSyntaxException(e);
+    }
   }
 }
@@ -7,6 +7,8 @@ import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class CheckedEnumTypeAdapterFactory implements TypeAdapterFactory {
 
@@ -17,6 +19,8 @@ public class CheckedEnumTypeAdapterFactory implements TypeAdapterFactory {
     }
 
     TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+    // names resolved through the delegate, so repeated values skip building a JsonPrimitive
+    Map<String, T> constants = new ConcurrentHashMap<>();
 
     return new TypeAdapter<T>() {
       @Override
@@ -32,12 +36,17 @@ public class CheckedEnumTypeAdapterFactory implements TypeAdapterFactory {
         }
 
         String rawValue = in.nextString();
-        T value = delegate.fromJsonTree(new JsonPrimitive(rawValue));
+        T value = constants.get(rawValue);
+        if (value != null) {
+          return value;
+        }
+        value = delegate.fromJsonTree(new JsonPrimitive(rawValue));
         // By default, Gson return null for enum from unknown string.
         // Here we only return null when json is null.
         if (value == null) {
           throw new JsonParseException(String.format("Undefined value '%s' for enum '%s'", rawValue, type));
         }
+        constants.put(rawValue, value);
         return value;
       }
     };
@@ -1,23 +1,44 @@
 package org.nervos.ckb.service.adapter;
 
-import com.google.gson.*;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.nervos.ckb.utils.Hex;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 
-public class IntegerTypeAdapter implements JsonSerializer<Integer>, JsonDeserializer<Integer> {
+public class IntegerTypeAdapter extends TypeAdapter<Integer> {
 
   @Override
-  public JsonElement serialize(Integer src, Type typeOfSrc, JsonSerializationContext context) {
-    return new JsonPrimitive("0x" + Integer.toHexString(src));
+  public void write(JsonWriter out, Integer value) throws IOException {
+    if (value == null) {
+      out.nullValue();
+      return;
+    }
+    out.value(Hex.encodeQuantity(value & 0xFFFFFFFFL));
   }
 
   @Override
-  public Integer deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
-      throws JsonParseException {
-    if (json.getAsJsonPrimitive().isNumber()) {
-      return json.getAsInt();
+  public Integer read(JsonReader in) throws IOException {
+    JsonToken token = in.peek();
+    if (token == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    if (token == JsonToken.NUMBER) {
+      return in.nextInt();
+    }
+    String hex = in.nextString();
+    try {
+      long value = Hex.parseUnsignedLong(hex, 2);
+      if (value >>> 32 != 0) {
+        throw new NumberFormatException("Hex quantity \"" + hex + "\" exceeds 32 bits");
+      }
+      return (int) value;
+    } catch (NumberFormatException e) {
+      throw new JsonSyntaxException(e);
     }
-    String hexValue = json.getAsString().substring(2);
-    return Integer.parseUnsignedInt(hexValue, 16);
   }
 }
@@ -1,23 +1,39 @@
 package org.nervos.ckb.service.adapter;
 
-import com.google.gson.*;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.nervos.ckb.utils.Hex;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 
-public class LongTypeAdapter implements JsonDeserializer<Long>, JsonSerializer<Long> {
+public class LongTypeAdapter extends TypeAdapter<Long> {
 
   @Override
-  public JsonElement serialize(Long src, Type typeOfSrc, JsonSerializationContext context) {
-    return new JsonPrimitive("0x" + Long.toHexString(src));
+  public void write(JsonWriter out, Long value) throws IOException {
+    if (value == null) {
+      out.nullValue();
+      return;
+    }
+    out.value(Hex.encodeQuantity(value));
   }
 
   @Override
-  public Long deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
-      throws JsonParseException {
-    if (json.getAsJsonPrimitive().isNumber()) {
-      return json.getAsLong();
+  public Long read(JsonReader in) throws IOException {
+    JsonToken token = in.peek();
+    if (token == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    if (token == JsonToken.NUMBER) {
+      return in.nextLong();
+    }
+    try {
+      return Hex.parseUnsignedLong(in.nextString(), 2);
+    } catch (NumberFormatException e) {
+      throw new JsonSyntaxException(e);
     }
-    String hexValue = json.getAsString().substring(2);
-    return Long.parseUnsignedLong(hexValue, 16);
   }
 }
@@ -0,0 +1,117 @@
+package org.nervos.ckb.service.adapter;
+
+import com.google.gson.stream.JsonWriter;
+import okio.BufferedSink;
+import org.nervos.ckb.utils.Hex;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A {@link JsonWriter} that encodes straight into an Okio sink as UTF-8, without building the JSON
+ * as a string first. {@link ByteArrayTypeAdapter} writes byte arrays through
+ * {@link #hexValue(byte[])}, so the hex of large witnesses and cell data is never held as a string
+ * either.
+ */
+public class SinkJsonWriter extends JsonWriter {
+  private final BufferedSink sink;
+  private byte[] chunk;
+
+  public SinkJsonWriter(BufferedSink sink) {
+    super(new Utf8Writer(sink));
+    this.sink = sink;
+  }
+
+  /**
+   * Writes {@code value} as a 0x-prefixed hex string.
+   */
+  public JsonWriter hexValue(byte[] value) throws IOException {
+    // writes the separator and the opening quote, the digits go to the sink directly
+    jsonValue("\"0x");
+    if (chunk == null) {
+      chunk = new byte[8192];
+    }
+    int step = chunk.length / 2;
+    for (int offset = 0; offset < value.length; offset += step) {
+      int length = Math.min(step, value.length - offset);
+      sink.write(chunk, 0, Hex.encodeAscii(value, offset, length, chunk, 0));
+    }
+    sink.writeByte('"');
+    return this;
+  }
+
+  /**
+   * Encodes characters to a sink as UTF-8. {@link JsonWriter} passes runs of string content to
+   * {@link #write(String, int, int)} and only punctuation and escapes one char at a time.
+   */
+  private static class Utf8Writer extends Writer {
+    private final BufferedSink sink;
+    private char highSurrogate;
+
+    Utf8Writer(BufferedSink sink) {
+      this.sink = sink;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+      write((char) c);
+    }
+
+    private void write(char c) throws IOException {
+      if (highSurrogate != 0) {
+        char high = highSurrogate;
+        highSurrogate = 0;
+        if (Character.isLowSurrogate(c)) {
+          sink.writeUtf8CodePoint(Character.toCodePoint(high, c));
+          return;
+        }
+        sink.writeByte('?');
+      }
+      if (c < 0x80) {
+        sink.writeByte(c);
+      } else if (Character.isHighSurrogate(c)) {
+        highSurrogate = c;
+      } else {
+        // a lone low surrogate is written as '?' like String.getBytes does
+        sink.writeUtf8CodePoint(Character.isLowSurrogate(c) ? '?' : c);
+      }
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+      for (int i = offset; i < offset + length; i++) {
+        write(buffer[i]);
+      }
+    }
+
+    @Override
+    public void write(String str, int offset, int length) throws IOException {
+      if (highSurrogate != 0 && length > 0) {
+        write(str.charAt(offset));
+        offset++;
+        length--;
+      }
+      if (length > 0 && Character.isHighSurrogate(str.charAt(offset + length - 1))) {
+        // the low surrogate may follow in the next write
+        sink.writeUtf8(str, offset, offset + length - 1);
+        highSurrogate = str.charAt(offset + length - 1);
+      } else {
+        sink.writeUtf8(str, offset, offset + length);
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      sink.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (highSurrogate != 0) {
+        highSurrogate = 0;
+        sink.writeByte('?');
+      }
+      sink.close();
+    }
+  }
+}
@@ -1,6 +1,7 @@
 package org.nervos.ckb.sign;
 
 import org.nervos.ckb.Network;
+import org.nervos.ckb.jfr.TransactionSignEvent;
 import org.nervos.ckb.sign.signer.*;
 import org.nervos.ckb.type.Script;
 import org.nervos.ckb.type.ScriptType;
@@ -112,6 +113,8 @@ public class TransactionSigner {
     if (contexts == null) {
       return signedGroupsIndices;
     }
+    TransactionSignEvent event = new TransactionSignEvent();
+    event.begin();
     Transaction tx = transaction.getTxView();
     List<ScriptGroup> scriptGroups = transaction.getScriptGroups();
     for (int i = 0; i < scriptGroups.size(); i++) {
@@ -132,6 +135,12 @@ public class TransactionSigner {
         }
       }
     }
+    event.end();
+    if (event.shouldCommit()) {
+      event.groups = scriptGroups.size();
+      event.signatures = signedGroupsIndices.size();
+      event.commit();
+    }
     return signedGroupsIndices;
   }
 
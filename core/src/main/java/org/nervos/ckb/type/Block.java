@@ -48,4 +48,12 @@ public class Block {
           .build();
     }
   }
+
+  /**
+   * Unpacks a molecule packed block, such as the one returned by {@code get_block} with
+   * verbosity 0, and computes the hashes of its header, uncles and transactions.
+   */
+  public static Block unpack(byte[] in) {
+    return MoleculeConverter.unpackBlock(in);
+  }
 }
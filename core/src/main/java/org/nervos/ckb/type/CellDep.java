@@ -69,5 +69,16 @@ public class CellDep {
     public byte pack() {
       return value;
     }
+
+    public static DepType unpack(byte value) {
+      switch (value) {
+        case 0x00:
+          return CODE;
+        case 0x01:
+          return DEP_GROUP;
+        default:
+          throw new IllegalArgumentException("Unknown dep type " + value);
+      }
+    }
   }
 }
@@ -1,5 +1,7 @@
 package org.nervos.ckb.type;
 
+import org.nervos.ckb.utils.MoleculeConverter;
+
 import java.math.BigInteger;
 
 import static org.nervos.ckb.utils.MoleculeConverter.packUint128;
@@ -40,4 +42,12 @@ public class Header {
         .setNonce(packUint128(nonce))
         .build();
   }
+
+  /**
+   * Unpacks a molecule packed header, such as the one returned by {@code get_header} with
+   * verbosity 0, and computes its hash.
+   */
+  public static Header unpack(byte[] in) {
+    return MoleculeConverter.unpackHeader(in);
+  }
 }
@@ -22,4 +22,14 @@ public class PackedBlockWithCycles {
     public byte[] getBlockBytes() {
         return this.block == null ? null : Numeric.hexStringToByteArray(this.block);
     }
+
+    /**
+     * @return the block with its hashes computed locally, and the cycles
+     */
+    public BlockWithCycles unpack() {
+        BlockWithCycles ret = new BlockWithCycles();
+        ret.block = this.block == null ? null : Block.unpack(this.getBlockBytes());
+        ret.cycles = this.cycles;
+        return ret;
+    }
 }
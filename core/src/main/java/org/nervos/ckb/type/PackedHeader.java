@@ -16,4 +16,11 @@ public class PackedHeader {
   public byte[] calculateHash() {
     return header == null ? null : Blake2b.digest(this.getHeaderBytes());
   }
+
+  /**
+   * @return the header with its hash computed locally
+   */
+  public Header unpack() {
+    return header == null ? null : Header.unpack(this.getHeaderBytes());
+  }
 }
@@ -13,4 +13,15 @@ public class PackedTransactionWithStatus {
   public byte[] getTransactionBytes() {
     return this.transaction == null ? null : Numeric.hexStringToByteArray(this.transaction);
   }
+
+  /**
+   * @return the transaction with its hash computed locally, its status and cycles
+   */
+  public TransactionWithStatus unpack() {
+    TransactionWithStatus ret = new TransactionWithStatus();
+    ret.txStatus = this.txStatus;
+    ret.transaction = this.transaction == null ? null : Transaction.unpack(this.getTransactionBytes());
+    ret.cycles = this.cycles;
+    return ret;
+  }
 }
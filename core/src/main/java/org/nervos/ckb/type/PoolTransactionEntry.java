@@ -0,0 +1,13 @@
+package org.nervos.ckb.type;
+
+/**
+ * A transaction entering the pool or proposed, as published by the {@code new_transaction} and
+ * {@code proposed_transaction} subscription topics.
+ */
+public class PoolTransactionEntry {
+  public Transaction transaction;
+  public long cycles;
+  public long size;
+  public long fee;
+  public long timestamp;
+}
@@ -0,0 +1,20 @@
+package org.nervos.ckb.type;
+
+/**
+ * A transaction rejected by the pool, as published by the {@code rejected_transaction}
+ * subscription topic.
+ */
+public class PoolTransactionReject {
+  public PoolTransactionEntry entry;
+  public Reason reason;
+
+  public static class Reason {
+    /**
+     * The kind of rejection, such as {@code LowFeeRate}, {@code ExceededMaximumAncestorsCount},
+     * {@code Full}, {@code Duplicated}, {@code Malformed}, {@code DeclaredWrongCycles},
+     * {@code Resolve}, {@code Verification} or {@code Expiry}.
+     */
+    public String type;
+    public String description;
+  }
+}
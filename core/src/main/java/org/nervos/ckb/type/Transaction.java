@@ -1,6 +1,7 @@
 package org.nervos.ckb.type;
 
 import org.nervos.ckb.crypto.Blake2b;
+import org.nervos.ckb.utils.MoleculeConverter;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -61,6 +62,14 @@ public class Transaction {
         .build();
   }
 
+  /**
+   * Unpacks a molecule packed transaction, such as the one returned by {@code get_transaction}
+   * with verbosity 0, and computes its hash.
+   */
+  public static Transaction unpack(byte[] in) {
+    return MoleculeConverter.unpackTransaction(in);
+  }
+
   public static Builder builder() {
     return new Builder();
   }
@@ -0,0 +1,7 @@
+/**
+ * Types of the CKB node RPC.
+ */
+@GenerateTypeAdapters
+package org.nervos.ckb.type;
+
+import org.nervos.ckb.codegen.GenerateTypeAdapters;
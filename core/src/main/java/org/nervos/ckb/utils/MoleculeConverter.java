@@ -1,8 +1,11 @@
 package org.nervos.ckb.utils;
 
+import org.nervos.ckb.crypto.Blake2b;
+import org.nervos.ckb.type.base.MoleculeUtils;
 import org.nervos.ckb.type.concrete.*;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.List;
 
 public class MoleculeConverter {
@@ -124,4 +127,190 @@ public class MoleculeConverter {
     builder.add(packed_uncles);
     return builder.build();
   }
+
+  public static int unpackUint32(Uint32 in) {
+    return MoleculeUtils.littleEndianBytes4ToInt(in.getItems(), 0);
+  }
+
+  public static long unpackUint64(Uint64 in) {
+    byte[] arr = in.getItems();
+    long value = 0;
+    for (int i = arr.length - 1; i >= 0; i--) {
+      value = (value << Byte.SIZE) | (arr[i] & 0xFF);
+    }
+    return value;
+  }
+
+  public static BigInteger unpackUint128(Uint128 in) {
+    byte[] arr = in.getItems();
+    byte[] out = new byte[arr.length];
+    for (int i = 0; i < arr.length; i++) {
+      out[i] = arr[arr.length - i - 1];
+    }
+    return new BigInteger(1, out);
+  }
+
+  public static List<byte[]> unpackBytesVec(BytesVec in) {
+    List<byte[]> out = new ArrayList<>(in.getItemCount());
+    for (Bytes item : in.getItems()) {
+      out.add(item.getItems());
+    }
+    return out;
+  }
+
+  public static List<byte[]> unpackByte32Vec(Byte32Vec in) {
+    List<byte[]> out = new ArrayList<>(in.getItemCount());
+    for (Byte32 item : in.getItems()) {
+      out.add(item.getItems());
+    }
+    return out;
+  }
+
+  public static List<byte[]> unpackProposalShortIdVec(ProposalShortIdVec in) {
+    List<byte[]> out = new ArrayList<>(in.getItemCount());
+    for (ProposalShortId item : in.getItems()) {
+      out.add(item.getItems());
+    }
+    return out;
+  }
+
+  public static org.nervos.ckb.type.OutPoint unpackOutPoint(OutPoint in) {
+    org.nervos.ckb.type.OutPoint out = new org.nervos.ckb.type.OutPoint();
+    out.txHash = in.getTxHash().getItems();
+    out.index = unpackUint32(in.getIndex());
+    return out;
+  }
+
+  public static org.nervos.ckb.type.Script unpackScript(Script in) {
+    if (in == null) {
+      return null;
+    }
+    org.nervos.ckb.type.Script out = new org.nervos.ckb.type.Script();
+    out.codeHash = in.getCodeHash().getItems();
+    out.hashType = org.nervos.ckb.type.Script.HashType.unpack(in.getHashType());
+    out.args = in.getArgs().getItems();
+    return out;
+  }
+
+  public static org.nervos.ckb.type.CellDep unpackCellDep(CellDep in) {
+    org.nervos.ckb.type.CellDep out = new org.nervos.ckb.type.CellDep();
+    out.outPoint = unpackOutPoint(in.getOutPoint());
+    out.depType = org.nervos.ckb.type.CellDep.DepType.unpack(in.getDepType());
+    return out;
+  }
+
+  public static org.nervos.ckb.type.CellInput unpackCellInput(CellInput in) {
+    org.nervos.ckb.type.CellInput out = new org.nervos.ckb.type.CellInput();
+    out.since = unpackUint64(in.getSince());
+    out.previousOutput = unpackOutPoint(in.getPreviousOutput());
+    return out;
+  }
+
+  public static org.nervos.ckb.type.CellOutput unpackCellOutput(CellOutput in) {
+    org.nervos.ckb.type.CellOutput out = new org.nervos.ckb.type.CellOutput();
+    out.capacity = unpackUint64(in.getCapacity());
+    out.lock = unpackScript(in.getLock());
+    out.type = unpackScript(in.getType());
+    return out;
+  }
+
+  /**
+   * Unpacks a molecule {@code Header} and computes its hash.
+   */
+  public static org.nervos.ckb.type.Header unpackHeader(byte[] in) {
+    return unpackHeader(Header.builder(in).build(), new Blake2b());
+  }
+
+  /**
+   * Unpacks a molecule {@code Transaction} and computes its hash.
+   */
+  public static org.nervos.ckb.type.Transaction unpackTransaction(byte[] in) {
+    return unpackTransaction(Transaction.builder(in).build(), new Blake2b());
+  }
+
+  /**
+   * Unpacks a molecule {@code Block} or {@code BlockV1} and computes the hashes of its header,
+   * uncles and transactions.
+   */
+  public static org.nervos.ckb.type.Block unpackBlock(byte[] in) {
+    org.nervos.ckb.type.Block out;
+    // one digest for all the hashes of the block, doFinal resets it
+    Blake2b blake2b = new Blake2b();
+    if (MoleculeUtils.getOffsets(in).length - 1 > Block.FIELD_COUNT) {
+      BlockV1 block = BlockV1.builder(in).build();
+      out = unpackBlock(
+          block.getHeader(), block.getUncles(), block.getTransactions(), block.getProposals(),
+          blake2b);
+      out.extension = Numeric.toHexString(block.getExtension().getItems());
+    } else {
+      Block block = Block.builder(in).build();
+      out = unpackBlock(
+          block.getHeader(), block.getUncles(), block.getTransactions(), block.getProposals(),
+          blake2b);
+    }
+    return out;
+  }
+
+  private static org.nervos.ckb.type.Block unpackBlock(
+      Header header, UncleBlockVec uncles, TransactionVec transactions,
+      ProposalShortIdVec proposals, Blake2b blake2b) {
+    org.nervos.ckb.type.Block out = new org.nervos.ckb.type.Block();
+    out.header = unpackHeader(header, blake2b);
+    out.uncles = new ArrayList<>(uncles.getItemCount());
+    for (UncleBlock uncle : uncles.getItems()) {
+      org.nervos.ckb.type.Block.Uncle unpacked = new org.nervos.ckb.type.Block.Uncle();
+      unpacked.header = unpackHeader(uncle.getHeader(), blake2b);
+      unpacked.proposals = unpackProposalShortIdVec(uncle.getProposals());
+      out.uncles.add(unpacked);
+    }
+    out.transactions = new ArrayList<>(transactions.getItemCount());
+    for (Transaction transaction : transactions.getItems()) {
+      out.transactions.add(unpackTransaction(transaction, blake2b));
+    }
+    out.proposals = unpackProposalShortIdVec(proposals);
+    return out;
+  }
+
+  private static org.nervos.ckb.type.Header unpackHeader(Header in, Blake2b blake2b) {
+    RawHeader raw = in.getRaw();
+    org.nervos.ckb.type.Header out = new org.nervos.ckb.type.Header();
+    out.version = unpackUint32(raw.getVersion());
+    out.compactTarget = unpackUint32(raw.getCompactTarget());
+    out.timestamp = unpackUint64(raw.getTimestamp());
+    out.number = unpackUint64(raw.getNumber());
+    out.epoch = unpackUint64(raw.getEpoch());
+    out.parentHash = raw.getParentHash().getItems();
+    out.transactionsRoot = raw.getTransactionsRoot().getItems();
+    out.proposalsHash = raw.getProposalsHash().getItems();
+    out.extraHash = raw.getExtraHash().getItems();
+    out.dao = raw.getDao().getItems();
+    out.nonce = unpackUint128(in.getNonce());
+    blake2b.update(in.toByteArray());
+    out.hash = blake2b.doFinal();
+    return out;
+  }
+
+  private static org.nervos.ckb.type.Transaction unpackTransaction(Transaction in, Blake2b blake2b) {
+    RawTransaction raw = in.getRaw();
+    org.nervos.ckb.type.Transaction out = new org.nervos.ckb.type.Transaction();
+    out.version = unpackUint32(raw.getVersion());
+    out.cellDeps = new ArrayList<>(raw.getCellDeps().getItemCount());
+    for (CellDep cellDep : raw.getCellDeps().getItems()) {
+      out.cellDeps.add(unpackCellDep(cellDep));
+    }
+    out.headerDeps = unpackByte32Vec(raw.getHeaderDeps());
+    out.inputs = new ArrayList<>(raw.getInputs().getItemCount());
+    for (CellInput input : raw.getInputs().getItems()) {
+      out.inputs.add(unpackCellInput(input));
+    }
+    out.outputs = new ArrayList<>(raw.getOutputs().getItemCount());
+    for (CellOutput output : raw.getOutputs().getItems()) {
+      out.outputs.add(unpackCellOutput(output));
+    }
+    out.outputsData = unpackBytesVec(raw.getOutputsData());
+    out.witnesses = unpackBytesVec(in.getWitnesses());
+    blake2b.update(raw.toByteArray());
+    out.hash = blake2b.doFinal();
+    return out;
+  }
 }
@@ -0,0 +1,23 @@
+package org.nervos.ckb.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * A page of live cells fetched by an input iterator.
+ */
+@Name("org.nervos.ckb.InputFetch")
+@Label("Input Page")
+@Category({"CKB SDK", "Transaction"})
+@Description("A page of live cells fetched by an input iterator")
+public class InputFetchEvent extends Event {
+  @Label("Page Size")
+  public int limit;
+
+  @Label("Cells")
+  @Description("The number of cells returned")
+  public int cells;
+
+  @Label("Cursor")
+  @Description("The cursor the page was fetched after, or null for the first page")
+  public String cursor;
+}
@@ -0,0 +1,36 @@
+package org.nervos.ckb.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * A request sent by an {@code RpcService}, from the end of its serialization until its reply is
+ * decoded.
+ */
+@Name("org.nervos.ckb.Rpc")
+@Label("RPC Request")
+@Category({"CKB SDK", "RPC"})
+@Description("A request sent by an RpcService")
+// committed on HTTP client threads, where the stack says nothing about the caller
+@StackTrace(false)
+public class RpcEvent extends Event {
+  @Label("Method")
+  public String method;
+
+  @Label("Calls")
+  @Description("The number of calls in a batch request")
+  public int calls;
+
+  @Label("Endpoint")
+  public String endpoint;
+
+  @Label("Request Bytes")
+  @DataAmount
+  public long requestBytes;
+
+  @Label("Response Bytes")
+  @DataAmount
+  public long responseBytes;
+
+  @Label("Outcome")
+  public String outcome;
+}
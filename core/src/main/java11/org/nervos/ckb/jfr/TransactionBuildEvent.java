@@ -0,0 +1,25 @@
+package org.nervos.ckb.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * A transaction built by a transaction builder.
+ */
+@Name("org.nervos.ckb.TransactionBuild")
+@Label("Build Transaction")
+@Category({"CKB SDK", "Transaction"})
+@Description("A transaction built by a transaction builder")
+public class TransactionBuildEvent extends Event {
+  @Label("Inputs Scanned")
+  public int inputsScanned;
+
+  @Label("Fee Calculations")
+  @Description("The number of times the fee was computed while inputs were added")
+  public int feeCalculations;
+
+  @Label("Outputs")
+  public int outputs;
+
+  @Label("Script Groups")
+  public int scriptGroups;
+}
@@ -0,0 +1,19 @@
+package org.nervos.ckb.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * A transaction signed by a {@code TransactionSigner}.
+ */
+@Name("org.nervos.ckb.TransactionSign")
+@Label("Sign Transaction")
+@Category({"CKB SDK", "Transaction"})
+@Description("A transaction signed by a TransactionSigner")
+public class TransactionSignEvent extends Event {
+  @Label("Script Groups")
+  public int groups;
+
+  @Label("Signatures")
+  @Description("The number of script groups that were signed")
+  public int signatures;
+}
@@ -0,0 +1,35 @@
+package org.nervos.ckb.service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates executors that run every task on its own virtual thread, such as the dispatcher of an
+ * {@link RpcService}:
+ *
+ * <pre>{@code
+ * rpcService.setDispatcherExecutor(VirtualThreads.newExecutor("ckb-rpc-dispatcher"));
+ * }</pre>
+ *
+ * <p>The blocking calls of the SDK hold no monitor while they wait for the network, so a virtual
+ * thread blocked in {@code post} or an iterator gives its carrier thread back.
+ */
+public final class VirtualThreads {
+  private VirtualThreads() {
+  }
+
+  /**
+   * @return whether {@link #newExecutor(String)} returns virtual threads on this JVM
+   */
+  public static boolean isSupported() {
+    return true;
+  }
+
+  /**
+   * @param name the prefix of the names of the threads
+   * @return an executor that starts a virtual thread per task
+   */
+  public static ExecutorService newExecutor(String name) {
+    return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+  }
+}
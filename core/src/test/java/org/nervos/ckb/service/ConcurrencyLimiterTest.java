@@ -0,0 +1,143 @@
+package org.nervos.ckb.service;
+
+import com.google.gson.JsonPrimitive;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+class ConcurrencyLimiterTest {
+  private StubRpcServer server;
+  private final List<String> arrivals = new CopyOnWriteArrayList<>();
+  // the first call blocks until this is released
+  private final CountDownLatch gate = new CountDownLatch(1);
+  private final CountDownLatch firstArrived = new CountDownLatch(1);
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = StubRpcServer.start();
+    for (String method : Arrays.asList("get_cells", "get_live_cell", "send_transaction")) {
+      server.on(method, params -> {
+        arrivals.add(method);
+        if (arrivals.size() == 1) {
+          firstArrived.countDown();
+          await(gate);
+        }
+        return new JsonPrimitive(method);
+      });
+    }
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.close();
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Test
+  void testUrgentCallsSkipBulkQueue() throws Exception {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter().setLimits(1, 1, 1);
+    RpcService rpcService = new RpcService(server.url(), false);
+    rpcService.setConcurrencyLimiter(limiter);
+
+    List<CompletableFuture<String>> futures = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      futures.add(rpcService.postAsync("get_cells", Collections.emptyList(), String.class));
+    }
+    Assertions.assertTrue(firstArrived.await(10, TimeUnit.SECONDS));
+    futures.add(rpcService.postAsync("get_live_cell", Collections.emptyList(), String.class));
+    futures.add(rpcService.postAsync("send_transaction", Collections.emptyList(), String.class));
+
+    ConcurrencyLimiter.Metrics metrics = limiter.getMetrics(server.url());
+    Assertions.assertEquals(1, metrics.limit);
+    Assertions.assertEquals(1, metrics.inFlight);
+    Assertions.assertEquals(5, metrics.getQueueDepth());
+    Assertions.assertEquals(3, metrics.getQueueDepth(RpcPriority.BULK));
+    Assertions.assertEquals(1, metrics.getQueueDepth(RpcPriority.SUBMIT));
+
+    gate.countDown();
+    for (CompletableFuture<String> future : futures) {
+      future.get(10, TimeUnit.SECONDS);
+    }
+    Assertions.assertEquals(Arrays.asList("get_cells", "send_transaction", "get_live_cell",
+                                          "get_cells", "get_cells", "get_cells"), arrivals);
+    Assertions.assertEquals(0, limiter.getMetrics(server.url()).getQueueDepth());
+    Assertions.assertEquals(0, limiter.getMetrics(server.url()).inFlight);
+  }
+
+  @Test
+  void testCancelledCallLeavesQueue() throws Exception {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter().setLimits(1, 1, 1);
+    RpcService rpcService = new RpcService(server.url(), false);
+    rpcService.setConcurrencyLimiter(limiter);
+
+    CompletableFuture<String> first =
+        rpcService.postAsync("get_cells", Collections.emptyList(), String.class);
+    Assertions.assertTrue(firstArrived.await(10, TimeUnit.SECONDS));
+    CompletableFuture<String> queued =
+        rpcService.postAsync("get_cells", Collections.emptyList(), String.class);
+    Assertions.assertEquals(1, limiter.getMetrics(server.url()).getQueueDepth());
+    queued.cancel(true);
+    Assertions.assertEquals(0, limiter.getMetrics(server.url()).getQueueDepth());
+
+    gate.countDown();
+    Assertions.assertEquals("get_cells", first.get(10, TimeUnit.SECONDS));
+    // a sync call still gets the freed permit
+    Assertions.assertEquals("get_live_cell",
+        rpcService.post("get_live_cell", Collections.emptyList(), String.class));
+    Assertions.assertEquals(Arrays.asList("get_cells", "get_live_cell"), arrivals);
+  }
+
+  @Test
+  void testLimitFollowsLatency() throws Exception {
+    gate.countDown();
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter().setLimits(4, 1, 16);
+    RpcService rpcService = new RpcService(server.url(), false);
+    rpcService.setConcurrencyLimiter(limiter);
+
+    server.setDelayMillis(10);
+    callConcurrently(rpcService, 8, 25);
+    int grown = limiter.getMetrics(server.url()).limit;
+    Assertions.assertTrue(grown > 4, "limit should grow while latency is steady, was " + grown);
+
+    server.setDelayMillis(100);
+    callConcurrently(rpcService, 8, 3);
+    int cut = limiter.getMetrics(server.url()).limit;
+    Assertions.assertTrue(cut < grown, "limit should shrink when latency grows, was " + cut);
+  }
+
+  private static void callConcurrently(RpcService rpcService, int threads, int calls)
+      throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(() -> {
+          for (int j = 0; j < calls; j++) {
+            rpcService.post("get_live_cell", Collections.emptyList(), String.class);
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
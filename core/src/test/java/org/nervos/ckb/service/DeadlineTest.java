@@ -0,0 +1,120 @@
+package org.nervos.ckb.service;
+
+import com.google.gson.JsonPrimitive;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.concurrent.*;
+
+class DeadlineTest {
+  private StubRpcServer server;
+  private RpcService rpcService;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = StubRpcServer.start();
+    server.on("get_tip_block_number", params -> new JsonPrimitive("0x1"));
+    rpcService = new RpcService(server.url(), false);
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.close();
+  }
+
+  private long tip() throws IOException {
+    return rpcService.post("get_tip_block_number", Collections.emptyList(), Long.class);
+  }
+
+  @Test
+  void testMethodTimeout() throws IOException {
+    server.setDelayMillis(500);
+    rpcService.setMethodTimeout("get_tip_block_number", 100);
+    long start = System.nanoTime();
+    Assertions.assertThrows(InterruptedIOException.class, this::tip);
+    Assertions.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(400));
+
+    rpcService.setMethodTimeout("get_tip_block_number", 0);
+    Assertions.assertEquals(1, tip());
+  }
+
+  @Test
+  void testDeadlineSpansCalls() throws IOException {
+    server.setDelayMillis(150);
+    Deadline deadline = Deadline.afterMillis(400);
+    deadline.run(() -> {
+      Assertions.assertSame(deadline, Deadline.current());
+      Assertions.assertEquals(1, tip());
+      Assertions.assertEquals(1, tip());
+      // the third call only gets the time that is left
+      Assertions.assertThrows(InterruptedIOException.class, this::tip);
+      // and the fourth fails without being sent
+      int sent = server.rpcRequestCount();
+      Assertions.assertThrows(InterruptedIOException.class, this::tip);
+      Assertions.assertEquals(sent, server.rpcRequestCount());
+    });
+    Assertions.assertNull(Deadline.current());
+    Assertions.assertEquals(1, tip());
+  }
+
+  @Test
+  void testNestedDeadlineNeverExtends() {
+    Deadline outer = Deadline.afterMillis(100);
+    outer.run(() -> {
+      Deadline.after(1, TimeUnit.HOURS).run(() -> {
+        Assertions.assertTrue(Deadline.current().remaining(TimeUnit.MILLISECONDS) <= 100);
+        outer.cancel();
+        Assertions.assertTrue(Deadline.current().isCancelled());
+      });
+      Assertions.assertSame(outer, Deadline.current());
+    });
+    Assertions.assertNull(Deadline.current());
+  }
+
+  @Test
+  void testCancelAbortsCall() throws Exception {
+    server.setDelayMillis(5000);
+    Deadline deadline = Deadline.after(1, TimeUnit.MINUTES);
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    try {
+      executor.schedule(deadline::cancel, 100, TimeUnit.MILLISECONDS);
+      long start = System.nanoTime();
+      InterruptedIOException e = Assertions.assertThrows(
+          InterruptedIOException.class, () -> deadline.call(this::tip));
+      Assertions.assertEquals("Deadline cancelled", e.getMessage());
+      Assertions.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void testAsyncCallKeepsDeadline() throws Exception {
+    server.setDelayMillis(500);
+    CompletableFuture<Long> future = Deadline.afterMillis(100).call(
+        () -> rpcService.postAsync("get_tip_block_number", Collections.emptyList(), Long.class));
+    ExecutionException e = Assertions.assertThrows(
+        ExecutionException.class, () -> future.get(400, TimeUnit.MILLISECONDS));
+    Assertions.assertTrue(e.getCause() instanceof InterruptedIOException);
+
+    // a call that waits for a permit is bounded as well
+    server.setDelayMillis(300);
+    rpcService.setConcurrencyLimiter(new ConcurrencyLimiter().setLimits(1, 1, 1));
+    CompletableFuture<Long> first =
+        rpcService.postAsync("get_tip_block_number", Collections.emptyList(), Long.class);
+    rpcService.setMethodTimeout("get_tip_block_number", 100);
+    CompletableFuture<Long> queued =
+        rpcService.postAsync("get_tip_block_number", Collections.emptyList(), Long.class);
+    e = Assertions.assertThrows(
+        ExecutionException.class, () -> queued.get(250, TimeUnit.MILLISECONDS));
+    Assertions.assertTrue(e.getCause() instanceof InterruptedIOException);
+    Assertions.assertEquals(1, first.get(5, TimeUnit.SECONDS));
+    Assertions.assertEquals(0, rpcService.getConcurrencyLimiter()
+        .getMetrics(server.url()).getQueueDepth());
+  }
+}
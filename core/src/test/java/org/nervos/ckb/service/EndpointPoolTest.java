@@ -0,0 +1,140 @@
+package org.nervos.ckb.service;
+
+import com.google.gson.JsonPrimitive;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+class EndpointPoolTest {
+  private StubRpcServer slow;
+  private StubRpcServer fast;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    slow = stubNode("slow", 100);
+    fast = stubNode("fast", 200);
+    slow.setDelayMillis(30);
+  }
+
+  @AfterEach
+  void tearDown() {
+    slow.close();
+    fast.close();
+  }
+
+  private static StubRpcServer stubNode(String name, long tip) throws IOException {
+    return StubRpcServer.start()
+        .on("node_name", params -> new JsonPrimitive(name))
+        .on("send_transaction", params -> new JsonPrimitive(name))
+        .on("get_tip_block_number", params -> new JsonPrimitive("0x" + Long.toHexString(tip)));
+  }
+
+  private RpcService newService(EndpointPool pool) {
+    return new RpcService(pool.setHealthCheckIntervalMillis(0), false);
+  }
+
+  private static String call(RpcService rpcService, String method) throws IOException {
+    return rpcService.post(method, Collections.emptyList(), String.class);
+  }
+
+  @Test
+  void testReadsGoToFastestEndpoint() throws IOException {
+    EndpointPool pool = new EndpointPool(Arrays.asList(slow.url(), fast.url()));
+    RpcService rpcService = newService(pool);
+    for (int i = 0; i < 10; i++) {
+      call(rpcService, "node_name");
+    }
+    // each endpoint is measured once, the rest go to the fast one
+    Assertions.assertEquals(1, slow.httpRequestCount());
+    Assertions.assertEquals(9, fast.httpRequestCount());
+    Assertions.assertTrue(
+        pool.getEndpoints().get(0).getLatencyMillis() > pool.getEndpoints().get(1).getLatencyMillis());
+  }
+
+  @Test
+  void testReadsFailOverToNextEndpoint() throws IOException {
+    slow.setDelayMillis(0);
+    slow.close();
+    EndpointPool pool = new EndpointPool(Arrays.asList(slow.url(), fast.url()));
+    RpcService rpcService = newService(pool);
+    Assertions.assertEquals("fast", call(rpcService, "node_name"));
+    Assertions.assertTrue(pool.getEndpoints().get(0).getErrorRate() > 0);
+    Assertions.assertEquals(0, pool.getEndpoints().get(1).getErrorRate());
+  }
+
+  @Test
+  void testWritesArePinnedToWriteEndpoint() throws IOException {
+    EndpointPool pool = new EndpointPool(Arrays.asList(fast.url(), slow.url()))
+        .setWriteEndpoint(slow.url());
+    RpcService rpcService = newService(pool);
+    for (int i = 0; i < 5; i++) {
+      call(rpcService, "node_name");
+      Assertions.assertEquals("slow", call(rpcService, "send_transaction"));
+    }
+    Assertions.assertEquals(5, slow.rpcRequestCount());
+  }
+
+  @Test
+  void testLaggingEndpointIsEjected() throws IOException {
+    slow.setDelayMillis(0);
+    EndpointPool pool = new EndpointPool(Arrays.asList(slow.url(), fast.url()));
+    RpcService rpcService = newService(pool);
+    rpcService.checkEndpoints();
+
+    Endpoint behind = pool.getEndpoints().get(0);
+    Assertions.assertEquals(100, behind.getTipBlockNumber());
+    Assertions.assertTrue(behind.isLagging());
+    Assertions.assertFalse(pool.isHealthy(behind));
+    Assertions.assertEquals(200, pool.getEndpoints().get(1).getTipBlockNumber());
+    for (int i = 0; i < 5; i++) {
+      Assertions.assertEquals("fast", call(rpcService, "node_name"));
+    }
+    // the preferred write endpoint is lagging too, so writes move to a healthy one
+    Assertions.assertEquals("fast", call(rpcService, "send_transaction"));
+
+    pool.setMaxTipLag(100);
+    rpcService.checkEndpoints();
+    Assertions.assertFalse(behind.isLagging());
+    Assertions.assertEquals("slow", call(rpcService, "send_transaction"));
+  }
+
+  @Test
+  void testHealthChecksStopOnClose() throws IOException, InterruptedException {
+    EndpointPool pool = new EndpointPool(Arrays.asList(slow.url(), fast.url()))
+        .setHealthCheckIntervalMillis(20);
+    RpcService rpcService = new RpcService(pool, false);
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (fast.rpcRequestCount() < 3) {
+      Assertions.assertTrue(System.nanoTime() < deadline, "no periodic health checks");
+      Thread.sleep(10);
+    }
+    Assertions.assertTrue(pool.getEndpoints().get(0).isLagging());
+
+    rpcService.close();
+    // a check in flight may still finish
+    Thread.sleep(100);
+    int checks = fast.rpcRequestCount();
+    Thread.sleep(200);
+    Assertions.assertEquals(checks, fast.rpcRequestCount());
+  }
+
+  @Test
+  void testBatchWithWriteIsPinned() throws IOException {
+    EndpointPool pool = new EndpointPool(Arrays.asList(fast.url(), slow.url()))
+        .setWriteEndpoint(slow.url());
+    RpcService rpcService = newService(pool);
+    RpcBatch batch = rpcService.newBatch();
+    RpcBatch.Handle<String> read = batch.add("node_name", Collections.emptyList(), String.class);
+    RpcBatch.Handle<String> write =
+        batch.add("send_transaction", Collections.emptyList(), String.class);
+    batch.execute();
+    Assertions.assertEquals("slow", read.get());
+    Assertions.assertEquals("slow", write.get());
+  }
+}
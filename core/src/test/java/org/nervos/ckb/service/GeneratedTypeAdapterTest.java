@@ -0,0 +1,82 @@
+package org.nervos.ckb.service;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.nervos.ckb.type.Block;
+import org.nervos.ckb.type.CellWithStatus;
+import org.nervos.ckb.type.Header;
+import org.nervos.ckb.type.MerkleProof;
+import org.nervos.ckb.type.Script;
+
+class GeneratedTypeAdapterTest {
+  private static final String BLOCK = "{"
+      + "\"header\":{\"compact_target\":\"0x1e015555\",\"dao\":\"0x8874337e541ea12e0000c16ff286230029bfa3320800000000710b00c0fefe06\","
+      + "\"epoch\":\"0x0\",\"extra_hash\":\"0x0000000000000000000000000000000000000000000000000000000000000000\","
+      + "\"hash\":\"0x10639e0895502b5688a6be8cf69460d76541bfa4821629d86d62ba0aae3f9606\",\"nonce\":\"0x0\",\"number\":\"0x0\","
+      + "\"parent_hash\":\"0x0000000000000000000000000000000000000000000000000000000000000000\","
+      + "\"proposals_hash\":\"0x0000000000000000000000000000000000000000000000000000000000000000\","
+      + "\"timestamp\":\"0x16e70e6985c\",\"transactions_root\":\"0x8ad0468383d0085e26d9c3b9b648623e4194efc53a03b7cd1a79e92700687f1e\","
+      + "\"version\":\"0x0\"},"
+      + "\"proposals\":[\"0x12345678901234567890\"],"
+      + "\"transactions\":[{\"cell_deps\":[{\"dep_type\":\"dep_group\",\"out_point\":{"
+      + "\"index\":\"0x0\",\"tx_hash\":\"0xf8de3bb47d055cdf460d93a2a6e1b05f7432f9777c8c474abf4eec1d4aee5d37\"}}],"
+      + "\"hash\":\"0x8f8c79eb6671709633fe6a46de93c0fedc9c1b8a6527a18d3983879542635c9f\",\"header_deps\":[],"
+      + "\"inputs\":[{\"previous_output\":{\"index\":\"0xffffffff\","
+      + "\"tx_hash\":\"0x0000000000000000000000000000000000000000000000000000000000000000\"},\"since\":\"0x0\"}],"
+      + "\"outputs\":[{\"capacity\":\"0x174876e800\",\"lock\":{\"args\":\"0x\","
+      + "\"code_hash\":\"0x9bd7e06f3ecf4be0f2fcd2188b23f1b9fcc88e5d4b65a8637b17723bbda3cce8\",\"hash_type\":\"type\"},"
+      + "\"type\":null}],\"outputs_data\":[\"0x\"],\"version\":\"0x0\",\"witnesses\":[\"0x\"]}],"
+      + "\"uncles\":[]}";
+
+  private final Gson generated = GsonFactory.create();
+  private final Gson reflective = GsonFactory.create(false);
+
+  @Test
+  void testGeneratedAdaptersAreRegistered() {
+    Assertions.assertTrue(isGenerated(generated, Block.class));
+    Assertions.assertTrue(isGenerated(generated, Block.Uncle.class));
+    Assertions.assertTrue(isGenerated(generated, Script.class));
+    Assertions.assertFalse(isGenerated(reflective, Block.class));
+    // no no-arg constructor, left to reflection
+    Assertions.assertFalse(isGenerated(generated, MerkleProof.class));
+    // generated adapters only apply to the naming policy they were generated for
+    Gson identity = generated.newBuilder().setFieldNamingPolicy(FieldNamingPolicy.IDENTITY).create();
+    Assertions.assertFalse(isGenerated(identity, Block.class));
+  }
+
+  @Test
+  void testMatchesReflection() {
+    Block block = generated.fromJson(BLOCK, Block.class);
+    Assertions.assertEquals(1, block.transactions.size());
+    Assertions.assertEquals(Script.HashType.TYPE, block.transactions.get(0).outputs.get(0).lock.hashType);
+    Assertions.assertEquals(0x16e70e6985cL, block.header.timestamp);
+
+    String json = generated.toJson(block);
+    Assertions.assertEquals(JsonParser.parseString(reflective.toJson(reflective.fromJson(BLOCK, Block.class))),
+                            JsonParser.parseString(json));
+    Assertions.assertEquals(json, generated.toJson(generated.fromJson(json, Block.class)));
+  }
+
+  @Test
+  void testReadsLikeReflection() {
+    // unknown names are skipped and a null primitive keeps its default
+    Header header = generated.fromJson("{\"number\":null,\"unknown\":{\"a\":[1]},\"version\":\"0x1\"}", Header.class);
+    Assertions.assertEquals(0, header.number);
+    Assertions.assertEquals(1, header.version);
+    Assertions.assertNull(generated.fromJson("null", Header.class));
+
+    CellWithStatus cell = generated.fromJson("{\"status\":\"live\"}", CellWithStatus.class);
+    Assertions.assertEquals(CellWithStatus.Status.LIVE, cell.status);
+
+    Assertions.assertThrows(JsonSyntaxException.class, () -> generated.fromJson("[]", Header.class));
+    Assertions.assertThrows(JsonSyntaxException.class, () -> reflective.fromJson("[]", Header.class));
+  }
+
+  private static boolean isGenerated(Gson gson, Class<?> type) {
+    return gson.getAdapter(type).getClass().getName().contains("GeneratedTypeAdapterFactory$");
+  }
+}
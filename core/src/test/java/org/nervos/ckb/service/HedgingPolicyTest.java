@@ -0,0 +1,112 @@
+package org.nervos.ckb.service;
+
+import com.google.gson.JsonPrimitive;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class HedgingPolicyTest {
+  private StubRpcServer server;
+  private final AtomicInteger calls = new AtomicInteger();
+
+  @BeforeEach
+  void setUp() throws IOException {
+    // the first get_block call stalls, every later one answers at once
+    server = StubRpcServer.start()
+        .on("get_block", params -> {
+          if (calls.getAndIncrement() == 0) {
+            sleep(2000);
+          }
+          return new JsonPrimitive("block");
+        })
+        .on("send_transaction", params -> {
+          sleep(100);
+          return new JsonPrimitive("hash");
+        });
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.close();
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Test
+  void testSlowCallIsHedged() throws IOException {
+    HedgingPolicy policy = new HedgingPolicy().hedge("get_block", 20).setBudgetRatio(1);
+    RpcService rpcService = new RpcService(server.url(), false);
+    rpcService.setHedgingPolicy(policy);
+
+    long start = System.nanoTime();
+    String block = rpcService.post("get_block", Collections.emptyList(), String.class);
+    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+    Assertions.assertEquals("block", block);
+    Assertions.assertTrue(elapsedMillis < 1000, "hedge should answer first, took " + elapsedMillis);
+    Assertions.assertEquals(2, server.rpcRequestCount());
+    HedgingPolicy.Metrics metrics = policy.getMetrics();
+    Assertions.assertEquals(1, metrics.calls);
+    Assertions.assertEquals(1, metrics.hedges);
+    Assertions.assertEquals(1, metrics.hedgeWins);
+    Assertions.assertEquals(1.0, metrics.getWinRate());
+  }
+
+  @Test
+  void testBudgetCapsHedges() throws IOException {
+    calls.set(1);
+    HedgingPolicy policy = new HedgingPolicy().hedge("get_block", 0).setBudgetRatio(0.25);
+    RpcService rpcService = new RpcService(server.url(), false);
+    rpcService.setHedgingPolicy(policy);
+    for (int i = 0; i < 20; i++) {
+      rpcService.post("get_block", Collections.emptyList(), String.class);
+    }
+    HedgingPolicy.Metrics metrics = policy.getMetrics();
+    Assertions.assertEquals(20, metrics.calls);
+    Assertions.assertTrue(metrics.hedges <= 5, "hedges " + metrics.hedges);
+    Assertions.assertTrue(metrics.getHedgeRate() <= 0.25);
+    // a losing duplicate may be cancelled before the server reads it
+    Assertions.assertTrue(server.rpcRequestCount() <= 20 + metrics.hedges);
+  }
+
+  @Test
+  void testHedgeGoesToAnotherEndpoint() throws IOException {
+    StubRpcServer other = StubRpcServer.start()
+        .on("get_block", params -> new JsonPrimitive("other"));
+    try {
+      EndpointPool pool = new EndpointPool(Arrays.asList(server.url(), other.url()))
+          .setHealthCheckIntervalMillis(0);
+      RpcService rpcService = new RpcService(pool, false);
+      rpcService.setHedgingPolicy(new HedgingPolicy().hedge("get_block", 20).setBudgetRatio(1));
+      Assertions.assertEquals("other",
+                              rpcService.post("get_block", Collections.emptyList(), String.class));
+      Assertions.assertEquals(1, other.rpcRequestCount());
+    } finally {
+      other.close();
+    }
+  }
+
+  @Test
+  void testWritesAreNotHedged() throws IOException {
+    EndpointPool pool = new EndpointPool(Collections.singletonList(server.url()))
+        .setHealthCheckIntervalMillis(0);
+    HedgingPolicy policy = new HedgingPolicy().hedge("send_transaction", 0).setBudgetRatio(1);
+    RpcService rpcService = new RpcService(pool, false);
+    rpcService.setHedgingPolicy(policy);
+    rpcService.post("send_transaction", Collections.emptyList(), String.class);
+    Assertions.assertEquals(0, policy.getMetrics().calls);
+    Assertions.assertEquals(1, server.rpcRequestCount());
+  }
+}
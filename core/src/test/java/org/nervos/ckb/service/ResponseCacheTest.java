@@ -0,0 +1,178 @@
+package org.nervos.ckb.service;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.reflect.TypeToken;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+class ResponseCacheTest {
+  private StubRpcServer server;
+  private RpcService rpcService;
+  private ResponseCache cache;
+  private volatile String txStatus = "pending";
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = StubRpcServer.start()
+        .on("get_block", params -> {
+          JsonObject block = new JsonObject();
+          block.add("hash", params.get(0));
+          block.add("extra", JsonParser.parseString("[1,{\"a\":2.50},null,true]"));
+          return block;
+        })
+        .on("get_block_hash", params -> params.get(0))
+        .on("get_tip_block_number", params -> new JsonPrimitive("0x100"))
+        .on("get_transaction", params -> {
+          JsonObject status = new JsonObject();
+          status.addProperty("status", txStatus);
+          JsonObject tx = new JsonObject();
+          tx.add("tx_status", status);
+          return tx;
+        });
+    rpcService = new RpcService(server.url(), false);
+    cache = new ResponseCache(1024 * 1024);
+    rpcService.setResponseCache(cache);
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.close();
+  }
+
+  private JsonObject getBlock(String hash) throws IOException {
+    return rpcService.post("get_block", Collections.singletonList(hash), JsonObject.class);
+  }
+
+  @Test
+  void testBlockByHashIsCached() throws Exception {
+    Assertions.assertEquals("0x01", getBlock("0x01").get("hash").getAsString());
+    Assertions.assertEquals("0x01", getBlock("0x01").get("hash").getAsString());
+    JsonObject async = rpcService.<JsonObject>postAsync(
+        "get_block", Collections.singletonList("0x01"), JsonObject.class).get(10, TimeUnit.SECONDS);
+    Assertions.assertEquals("0x01", async.get("hash").getAsString());
+
+    Assertions.assertEquals(1, server.rpcRequestCount());
+    ResponseCache.Metrics metrics = cache.getMetrics();
+    Assertions.assertEquals(2, metrics.hits);
+    Assertions.assertEquals(1, metrics.misses);
+    Assertions.assertEquals(1, metrics.entries);
+  }
+
+  @Test
+  void testBlockHashIsCachedOnceFinalized() throws IOException {
+    rpcService.post("get_block_hash", Collections.singletonList(1L), Long.class);
+    rpcService.post("get_block_hash", Collections.singletonList(1L), Long.class);
+    Assertions.assertEquals(2, server.rpcRequestCount());
+
+    Assertions.assertEquals(0x100L,
+                            (long) rpcService.post("get_tip_block_number", Collections.emptyList(), Long.class));
+    Assertions.assertEquals(0x100, cache.getTipBlockNumber());
+    Assertions.assertTrue(cache.isFinalized(0x100 - 24));
+    Assertions.assertFalse(cache.isFinalized(0x100 - 23));
+
+    rpcService.post("get_block_hash", Collections.singletonList(1L), Long.class);
+    long hash = rpcService.post("get_block_hash", Collections.singletonList(1L), Long.class);
+    Assertions.assertEquals(1L, hash);
+    Assertions.assertEquals(4, server.rpcRequestCount());
+
+    // close to the tip results stay uncached
+    rpcService.post("get_block_hash", Collections.singletonList(0xffL), Long.class);
+    rpcService.post("get_block_hash", Collections.singletonList(0xffL), Long.class);
+    Assertions.assertEquals(6, server.rpcRequestCount());
+  }
+
+  @Test
+  void testOnlyCommittedTransactionIsCached() throws IOException {
+    rpcService.post("get_transaction", Collections.singletonList("0x02"), JsonObject.class);
+    rpcService.post("get_transaction", Collections.singletonList("0x02"), JsonObject.class);
+    Assertions.assertEquals(2, server.rpcRequestCount());
+
+    txStatus = "committed";
+    rpcService.post("get_transaction", Collections.singletonList("0x02"), JsonObject.class);
+    JsonObject tx =
+        rpcService.post("get_transaction", Collections.singletonList("0x02"), JsonObject.class);
+    Assertions.assertEquals("committed", tx.getAsJsonObject("tx_status").get("status").getAsString());
+    Assertions.assertEquals(3, server.rpcRequestCount());
+  }
+
+  @Test
+  void testEvictsLeastRecentlyUsedBySize() throws IOException {
+    cache = new ResponseCache(1024);
+    rpcService.setResponseCache(cache);
+    for (int i = 0; i < 20; i++) {
+      getBlock("0x" + Integer.toHexString(i));
+    }
+    ResponseCache.Metrics metrics = cache.getMetrics();
+    Assertions.assertTrue(metrics.evictions > 0);
+    Assertions.assertTrue(metrics.bytes <= 1024);
+    Assertions.assertEquals(20 - metrics.evictions, metrics.entries);
+
+    // the most recent block is still cached, the first one was evicted
+    getBlock("0x13");
+    Assertions.assertEquals(20, server.rpcRequestCount());
+    getBlock("0x0");
+    Assertions.assertEquals(21, server.rpcRequestCount());
+  }
+
+  @Test
+  void testCachesTheWholeResult() throws Exception {
+    BlockHash block = rpcService.post("get_block", Collections.singletonList("0x01"), BlockHash.class);
+    Assertions.assertEquals("0x01", block.hash);
+    // the members the type skips are cached too
+    Assertions.assertEquals("{\"hash\":\"0x01\",\"extra\":[1,{\"a\":2.50},null,true]}",
+                            getBlock("0x01").toString());
+    block = rpcService.<BlockHash>postAsync(
+        "get_block", Collections.singletonList("0x01"), BlockHash.class).get(10, TimeUnit.SECONDS);
+    Assertions.assertEquals("0x01", block.hash);
+    Assertions.assertEquals(1, server.rpcRequestCount());
+  }
+
+  @Test
+  void testCachesMapResult() throws Exception {
+    // Gson reads map keys by promoting them to values, which the copy of the result must allow
+    cache.setPolicy("get_block", ResponseCache.Policy.NON_NULL);
+    Type type = new TypeToken<Map<String, JsonElement>>() {}.getType();
+    Map<String, JsonElement> block =
+        rpcService.post("get_block", Collections.singletonList("0x01"), type);
+    Assertions.assertEquals("0x01", block.get("hash").getAsString());
+    block = rpcService.<Map<String, JsonElement>>postAsync(
+        "get_block", Collections.singletonList("0x01"), type).get(10, TimeUnit.SECONDS);
+    Assertions.assertEquals("[1,{\"a\":2.50},null,true]", block.get("extra").toString());
+    Assertions.assertEquals(1, server.rpcRequestCount());
+  }
+
+  @Test
+  void testWritesCapturedJson() {
+    ResponseCache.Captured<BlockHash> captured =
+        new ResponseCache.Captured<>(new BlockHash(), "{\"hash\":\"0x01\",\"extra\":1.0}");
+    Assertions.assertEquals("[{\"hash\":\"0x01\",\"extra\":1.0}]",
+                            GsonFactory.create().toJson(Collections.singletonList(captured)));
+  }
+
+  @Test
+  void testFind() {
+    String params = "[{\"block_hash\":null,\"block_number\":\"0x10\"},[true]]";
+    Assertions.assertEquals("0x10", ResponseCache.Policy.find(params, "0", "block_number"));
+    Assertions.assertNull(ResponseCache.Policy.find(params, "0", "block_hash"));
+    Assertions.assertEquals("true", ResponseCache.Policy.find(params, "1", "0"));
+    Assertions.assertNull(ResponseCache.Policy.find(params, "2"));
+    Assertions.assertNull(ResponseCache.Policy.find(params, "0"));
+    Assertions.assertNull(ResponseCache.Policy.find(params, "x"));
+    Assertions.assertEquals("0x100", ResponseCache.Policy.find("\"0x100\""));
+  }
+
+  static class BlockHash {
+    String hash;
+  }
+}
@@ -0,0 +1,98 @@
+package org.nervos.ckb.service;
+
+import com.google.gson.JsonPrimitive;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+class RpcBatchTest {
+  private StubRpcServer server;
+  private RpcService rpcService;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = StubRpcServer.start()
+        .on("get_block_hash", params -> params.get(0))
+        .on("get_tip_block_number", params -> new JsonPrimitive("0x400"))
+        .on("get_header", params -> {
+          throw new StubRpcServer.RpcError(-32602, "Invalid params");
+        });
+    rpcService = new RpcService(server.url(), false);
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.close();
+  }
+
+  @Test
+  void testCallsAreSentInOneRequest() throws IOException {
+    RpcBatch batch = rpcService.newBatch();
+    List<RpcBatch.Handle<Long>> handles = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      handles.add(batch.add("get_block_hash", Collections.singletonList(i), Long.class));
+    }
+    RpcBatch.Handle<Long> tip =
+        batch.add("get_tip_block_number", Collections.emptyList(), Long.class);
+    batch.execute();
+
+    Assertions.assertEquals(1, server.httpRequestCount());
+    Assertions.assertEquals(11, server.rpcRequestCount());
+    for (int i = 0; i < 10; i++) {
+      Assertions.assertEquals(i, handles.get(i).get());
+    }
+    Assertions.assertEquals(0x400L, tip.get());
+    Assertions.assertEquals("1024", tip.map(String::valueOf).get());
+  }
+
+  @Test
+  void testErrorsAreReportedPerCall() throws IOException {
+    RpcBatch batch = rpcService.newBatch();
+    RpcBatch.Handle<Long> success =
+        batch.add("get_block_hash", Collections.singletonList(1), Long.class);
+    RpcBatch.Handle<Object> failure =
+        batch.add("get_header", Collections.emptyList(), Object.class);
+    RpcBatch.Handle<Object> unknown =
+        batch.add("no_such_method", Collections.emptyList(), Object.class);
+    batch.execute();
+
+    Assertions.assertTrue(success.isSuccess());
+    Assertions.assertNull(success.getError());
+    Assertions.assertEquals(1L, success.get());
+    Assertions.assertFalse(failure.isSuccess());
+    IOException e = Assertions.assertThrows(IOException.class, failure::get);
+    Assertions.assertTrue(e.getMessage().contains("Invalid params"));
+    Assertions.assertTrue(unknown.getError().getMessage().contains("Method not found"));
+  }
+
+  @Test
+  void testBatchCanOnlyBeExecutedOnce() throws IOException {
+    RpcBatch batch = rpcService.newBatch();
+    RpcBatch.Handle<Long> handle =
+        batch.add("get_block_hash", Collections.singletonList(1), Long.class);
+    Assertions.assertThrows(IllegalStateException.class, handle::get);
+    batch.execute();
+    Assertions.assertThrows(IllegalStateException.class, batch::execute);
+    Assertions.assertThrows(IllegalStateException.class,
+                            () -> batch.add("get_block_hash", Collections.singletonList(2), Long.class));
+  }
+
+  @Test
+  void testTransportErrorFailsAllCalls() {
+    server.close();
+    RpcBatch batch = rpcService.newBatch();
+    RpcBatch.Handle<Long> first =
+        batch.add("get_block_hash", Collections.singletonList(1), Long.class);
+    RpcBatch.Handle<Long> second =
+        batch.add("get_block_hash", Collections.singletonList(2), Long.class);
+    Assertions.assertThrows(IOException.class, batch::execute);
+    Assertions.assertThrows(IOException.class, first::get);
+    Assertions.assertThrows(IOException.class, second::get);
+  }
+}
@@ -0,0 +1,115 @@
+package org.nervos.ckb.service;
+
+import com.google.gson.JsonPrimitive;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+class RpcBatcherTest {
+  private StubRpcServer server;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = StubRpcServer.start(4)
+        .on("get_block_hash", params -> params.get(0))
+        .on("get_header", params -> {
+          throw new StubRpcServer.RpcError(-32602, "Invalid params");
+        });
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.close();
+  }
+
+  @Test
+  void testConcurrentCallsAreCoalesced() throws Exception {
+    RpcService rpcService = new RpcService(server.url(), false);
+    rpcService.enableBatching(50, 16);
+    int callers = 16;
+    ExecutorService executor = Executors.newFixedThreadPool(callers);
+    try {
+      List<Future<Long>> results = new ArrayList<>();
+      for (int i = 0; i < callers; i++) {
+        long number = i;
+        results.add(executor.submit(() -> rpcService.<Long>post(
+            "get_block_hash", Collections.singletonList(number), Long.class)));
+      }
+      for (int i = 0; i < callers; i++) {
+        Assertions.assertEquals(i, results.get(i).get(10, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+      rpcService.disableBatching();
+    }
+    Assertions.assertEquals(callers, server.rpcRequestCount());
+    Assertions.assertTrue(server.httpRequestCount() < callers);
+  }
+
+  @Test
+  void testErrorsAreRoutedToTheirCaller() throws Exception {
+    RpcService rpcService = new RpcService(server.url(), false);
+    rpcService.enableBatching(50, 2);
+    CompletableFuture<Long> success =
+        rpcService.postAsync("get_block_hash", Collections.singletonList(7), Long.class);
+    CompletableFuture<Long> failure =
+        rpcService.postAsync("get_header", Collections.emptyList(), Long.class);
+    Assertions.assertEquals(7, success.get(10, TimeUnit.SECONDS));
+    ExecutionException e =
+        Assertions.assertThrows(ExecutionException.class, () -> failure.get(10, TimeUnit.SECONDS));
+    Assertions.assertTrue(e.getCause().getMessage().contains("Invalid params"));
+    Assertions.assertEquals(1, server.httpRequestCount());
+    rpcService.disableBatching();
+  }
+
+  @Test
+  void testBatchingSavesHttpRequests() throws Exception {
+    server.setDelayMillis(10);
+    int threads = 32;
+    int callsPerThread = 20;
+
+    RpcService plain = new RpcService(server.url(), false);
+    callConcurrently(plain, threads, callsPerThread);
+    int plainHttpRequests = server.httpRequestCount();
+    Assertions.assertEquals(threads * callsPerThread, plainHttpRequests);
+
+    RpcService batched = new RpcService(server.url(), false);
+    batched.enableBatching(2, 64);
+    callConcurrently(batched, threads, callsPerThread);
+    int batchedHttpRequests = server.httpRequestCount() - plainHttpRequests;
+    batched.disableBatching();
+
+    // the throughput gain is measured by RpcBatcherBenchmark
+    Assertions.assertEquals(2 * threads * callsPerThread, server.rpcRequestCount());
+    Assertions.assertTrue(batchedHttpRequests < plainHttpRequests);
+  }
+
+  private static void callConcurrently(RpcService rpcService, int threads, int callsPerThread)
+      throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(() -> {
+          for (int j = 0; j < callsPerThread; j++) {
+            Assertions.assertEquals(j, rpcService.<Long>post(
+                "get_block_hash", Collections.singletonList(j), Long.class));
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(60, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
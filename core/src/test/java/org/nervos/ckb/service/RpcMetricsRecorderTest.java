@@ -0,0 +1,121 @@
+package org.nervos.ckb.service;
+
+import com.google.gson.JsonPrimitive;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+class RpcMetricsRecorderTest {
+  private StubRpcServer server;
+  private RpcService rpcService;
+  private final RpcMetricsRecorder recorder = new RpcMetricsRecorder();
+  private final List<RpcCallEvent> events = new CopyOnWriteArrayList<>();
+
+  @BeforeEach
+  void setUp() throws IOException {
+    char[] page = new char[1000];
+    Arrays.fill(page, 'a');
+    server = StubRpcServer.start()
+        .on("get_cells", params -> new JsonPrimitive(new String(page)))
+        .on("get_tip_block_number", params -> new JsonPrimitive("0x10"))
+        .on("send_transaction", params -> {
+          throw new StubRpcServer.RpcError(-301, "rejected");
+        });
+    rpcService = new RpcService(server.url(), false);
+    rpcService.setMetricsListener(event -> {
+      events.add(event);
+      recorder.onCall(event);
+    });
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.close();
+  }
+
+  @Test
+  void testRecordsCalls() throws Exception {
+    for (int i = 0; i < 10; i++) {
+      rpcService.post("get_cells", Collections.singletonList("0x" + i), String.class);
+    }
+    rpcService.postAsync("get_tip_block_number", Collections.emptyList(), Long.class).get();
+    Assertions.assertThrows(IOException.class,
+        () -> rpcService.post("send_transaction", Collections.emptyList(), String.class));
+
+    Map<String, RpcMetricsRecorder.MethodMetrics> snapshot = recorder.snapshot();
+    Assertions.assertEquals(
+        Arrays.asList("get_cells", "get_tip_block_number", "send_transaction"),
+        new ArrayList<>(snapshot.keySet()));
+    RpcMetricsRecorder.MethodMetrics cells = snapshot.get("get_cells");
+    Assertions.assertEquals(10, cells.getCalls());
+    Assertions.assertEquals(10, cells.getCount(RpcCallEvent.Outcome.SUCCESS));
+    Assertions.assertTrue(cells.responseBytes > 10 * 1000, "received " + cells.responseBytes);
+    Assertions.assertTrue(cells.requestBytes > 10 * 50, "sent " + cells.requestBytes);
+    Assertions.assertTrue(cells.networkNanos > 0 && cells.decodeNanos > 0);
+    Assertions.assertEquals(cells.serializeNanos + cells.networkNanos + cells.decodeNanos,
+                            cells.getTotalNanos());
+    Assertions.assertTrue(cells.latency.getValueAtPercentile(50) <= cells.latency.max);
+    Assertions.assertEquals(1,
+        snapshot.get("send_transaction").getCount(RpcCallEvent.Outcome.RPC_ERROR));
+
+    for (RpcCallEvent event : events) {
+      Assertions.assertEquals(server.url(), event.endpoint);
+      Assertions.assertEquals(1, event.calls);
+    }
+
+    recorder.reset();
+    Assertions.assertTrue(recorder.snapshot().isEmpty());
+  }
+
+  @Test
+  void testRecordsBatchOnce() throws IOException {
+    RpcBatch batch = rpcService.newBatch();
+    batch.add("get_tip_block_number", Collections.emptyList(), Long.class);
+    batch.add("get_cells", Collections.emptyList(), String.class);
+    batch.execute();
+
+    Assertions.assertEquals(1, events.size());
+    RpcCallEvent event = events.get(0);
+    Assertions.assertEquals("batch", event.method);
+    Assertions.assertEquals(2, event.calls);
+    Assertions.assertEquals(RpcCallEvent.Outcome.SUCCESS, event.outcome);
+  }
+
+  @Test
+  void testRecordsNetworkErrors() {
+    server.close();
+    Assertions.assertThrows(IOException.class,
+        () -> rpcService.post("get_cells", Collections.emptyList(), String.class));
+    Assertions.assertEquals(1, recorder.snapshot().get("get_cells")
+        .getCount(RpcCallEvent.Outcome.NETWORK_ERROR));
+  }
+
+  @Test
+  void testHistogramPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long value = 1; value <= 100_000; value++) {
+      histogram.record(value * 1000);
+    }
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+    Assertions.assertEquals(100_000, snapshot.count);
+    Assertions.assertEquals(100_000_000, snapshot.max);
+    for (double percentile : new double[] {1, 50, 90, 99, 99.9}) {
+      double expected = percentile * 1_000_000;
+      long actual = snapshot.getValueAtPercentile(percentile);
+      Assertions.assertEquals(expected, actual, expected * 0.04, "p" + percentile);
+    }
+    Assertions.assertEquals(100_000_000, snapshot.getValueAtPercentile(100));
+    Assertions.assertEquals(0, new LatencyHistogram().snapshot().getValueAtPercentile(99));
+
+    for (long value : new long[] {0, 1, 63, 64, 65, 1L << 40, Long.MAX_VALUE}) {
+      int index = LatencyHistogram.indexOf(value);
+      Assertions.assertTrue(LatencyHistogram.highestValueAt(index) >= value);
+      Assertions.assertTrue(index == 0 || LatencyHistogram.highestValueAt(index - 1) < value);
+    }
+  }
+}
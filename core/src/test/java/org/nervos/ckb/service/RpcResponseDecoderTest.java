@@ -0,0 +1,73 @@
+package org.nervos.ckb.service;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.nervos.ckb.type.Header;
+import org.nervos.ckb.utils.Numeric;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+class RpcResponseDecoderTest {
+  private final Gson gson = GsonFactory.create();
+
+  @Test
+  void testDecodeObjectResult() throws IOException {
+    String json = "{\"jsonrpc\":\"2.0\",\"result\":{\"compact_target\":\"0x1e083126\","
+        + "\"dao\":\"0xb5a3e047474401001bc476b9ee573000c0c387962a38000000febffacf030000\","
+        + "\"epoch\":\"0x7080018000001\",\"extra_hash\":\"0x0000000000000000000000000000000000000000000000000000000000000000\","
+        + "\"hash\":\"0xa5f5c85987a15de25661e5a214f2c1449cd803f071acc7999820f25246471f40\","
+        + "\"nonce\":\"0x97b4b0cec26d4deafdb4a4500beea00\",\"number\":\"0x400\","
+        + "\"parent_hash\":\"0xae003585fa15309b30b31aed3dcf385e9472c3c3e93746a6c4540629a6a1ed2d\","
+        + "\"proposals_hash\":\"0x0000000000000000000000000000000000000000000000000000000000000000\","
+        + "\"timestamp\":\"0x5cd2b117219\","
+        + "\"transactions_root\":\"0xc47d5b78b3c4c4c853e2a32810818940d0ee403423bea9ec7b8e566d9595206c\","
+        + "\"version\":\"0x0\"},\"id\":\"0x1\"}";
+    Header header = RpcResponseDecoder.decode(new StringReader(json), "get_header", Header.class, gson);
+    Assertions.assertEquals(0x400, header.number);
+    Assertions.assertEquals(0x1e083126, header.compactTarget);
+    Assertions.assertArrayEquals(
+        Numeric.hexStringToByteArray("0xa5f5c85987a15de25661e5a214f2c1449cd803f071acc7999820f25246471f40"),
+        header.hash);
+  }
+
+  @Test
+  void testDecodePrimitiveResult() throws IOException {
+    String json = "{\"id\":\"0x2\",\"jsonrpc\":\"2.0\",\"result\":\"0x1a2b\"}";
+    Long number = RpcResponseDecoder.decode(new StringReader(json), "get_tip_block_number", Long.class, gson);
+    Assertions.assertEquals(0x1a2b, number);
+  }
+
+  @Test
+  void testDecodeNullResult() throws IOException {
+    String json = "{\"jsonrpc\":\"2.0\",\"result\":null,\"id\":\"0x3\"}";
+    Header header = RpcResponseDecoder.decode(new StringReader(json), "get_header", Header.class, gson);
+    Assertions.assertNull(header);
+  }
+
+  @Test
+  void testDecodeError() {
+    String json = "{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32602,\"message\":\"Invalid params\",\"data\":{\"a\":[1]}},\"id\":\"0x4\"}";
+    IOException e = Assertions.assertThrows(
+        IOException.class,
+        () -> RpcResponseDecoder.decode(new StringReader(json), "get_header", Header.class, gson));
+    Assertions.assertTrue(e.getMessage().startsWith("RpcService method get_header error "));
+    Assertions.assertTrue(e.getMessage().contains("Invalid params"));
+  }
+
+  @Test
+  void testCopy() throws IOException {
+    String json = "{\"a\":[1,-2.50,1e3,true,null],\"b\":\"x\\\"\\u00e9\",\"c\":{}}";
+    StringWriter out = new StringWriter();
+    JsonReader in = gson.newJsonReader(new StringReader("[" + json + ",\"next\"]"));
+    in.beginArray();
+    RpcResponseDecoder.copy(in, new JsonWriter(out));
+    Assertions.assertEquals("{\"a\":[1,-2.50,1e3,true,null],\"b\":\"x\\\"\u00e9\",\"c\":{}}",
+                            out.toString());
+    Assertions.assertEquals("next", in.nextString());
+  }
+}
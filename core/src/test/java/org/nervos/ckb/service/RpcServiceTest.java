@@ -0,0 +1,149 @@
+package org.nervos.ckb.service;
+
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.nervos.ckb.type.Epoch;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+class RpcServiceTest {
+  private StubRpcServer server;
+  private RpcService rpcService;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = StubRpcServer.start()
+        .on("get_tip_block_number", params -> new JsonPrimitive("0x400"))
+        .on("get_current_epoch", params -> JsonParser.parseString(
+            "{\"compact_target\":\"0x1e083126\",\"length\":\"0x708\","
+                + "\"number\":\"0x1\",\"start_number\":\"0x3e8\"}"))
+        .on("get_header", params -> {
+          throw new StubRpcServer.RpcError(-32602, "Invalid params");
+        });
+    rpcService = new RpcService(server.url(), false);
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.close();
+  }
+
+  @Test
+  void testPost() throws IOException {
+    long number = rpcService.post("get_tip_block_number", Collections.emptyList(), Long.class);
+    Assertions.assertEquals(0x400, number);
+  }
+
+  @Test
+  void testPostAsync() throws Exception {
+    CompletableFuture<Long> future =
+        rpcService.postAsync("get_tip_block_number", Collections.emptyList(), Long.class);
+    Assertions.assertEquals(0x400, future.get(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void testDispatcherExecutor() throws Exception {
+    // OkHttp renames the thread while it runs a call, so the threads are told apart by identity
+    Set<Thread> dispatcherThreads = ConcurrentHashMap.newKeySet();
+    ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable);
+      thread.setDaemon(true);
+      dispatcherThreads.add(thread);
+      return thread;
+    });
+    try {
+      rpcService.setDispatcherExecutor(executor);
+      // the response is read and reported on a dispatcher thread
+      CompletableFuture<Thread> callbackThread = new CompletableFuture<>();
+      rpcService.setMetricsListener(event -> callbackThread.complete(Thread.currentThread()));
+      rpcService.postAsync("get_tip_block_number", Collections.emptyList(), Long.class)
+          .get(10, TimeUnit.SECONDS);
+      Assertions.assertTrue(
+          dispatcherThreads.contains(callbackThread.get(10, TimeUnit.SECONDS)));
+      Assertions.assertEquals(0x400, (long) rpcService.post(
+          "get_tip_block_number", Collections.emptyList(), Long.class));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void testVirtualThreads() throws Exception {
+    ExecutorService executor = VirtualThreads.newExecutor("test-dispatcher");
+    try {
+      Thread thread = executor.submit(Thread::currentThread).get(10, TimeUnit.SECONDS);
+      if (VirtualThreads.isSupported()) {
+        // Thread.isVirtual() only exists on Java 19 and later
+        Assertions.assertEquals(true, Thread.class.getMethod("isVirtual").invoke(thread));
+      } else {
+        Assertions.assertTrue(thread.getName().startsWith("test-dispatcher-"), thread.getName());
+        Assertions.assertTrue(thread.isDaemon());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void testPostAsyncRpcError() {
+    CompletableFuture<Long> future =
+        rpcService.postAsync("get_header", Collections.emptyList(), Long.class);
+    ExecutionException e =
+        Assertions.assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+    Assertions.assertTrue(e.getCause() instanceof IOException);
+    Assertions.assertTrue(e.getCause().getMessage().contains("Invalid params"));
+  }
+
+  @Test
+  void testPostAsyncCancel() throws Exception {
+    server.setDelayMillis(2000);
+    CompletableFuture<RpcCallEvent> reported = new CompletableFuture<>();
+    rpcService.setMetricsListener(reported::complete);
+    CompletableFuture<Long> future =
+        rpcService.postAsync("get_tip_block_number", Collections.emptyList(), Long.class);
+    Assertions.assertTrue(future.cancel(true));
+    Assertions.assertTrue(future.isCancelled());
+    Assertions.assertThrows(CancellationException.class, future::get);
+    // only reported as cancelled when the HTTP call was cancelled before the reply
+    RpcCallEvent event = reported.get(10, TimeUnit.SECONDS);
+    Assertions.assertEquals(RpcCallEvent.Outcome.CANCELLED, event.outcome);
+  }
+
+  @Test
+  void testPostAsyncCallbackInvokedOnce() throws Exception {
+    List<Epoch> responses = new CopyOnWriteArrayList<>();
+    List<String> failures = new CopyOnWriteArrayList<>();
+    // one more than the callbacks expected, so a repeated callback would release it
+    CountDownLatch callbacks = new CountDownLatch(3);
+    RpcCallback<Epoch> callback = new RpcCallback<Epoch>() {
+      @Override
+      public void onFailure(String errorMessage) {
+        failures.add(errorMessage);
+        callbacks.countDown();
+      }
+
+      @Override
+      public void onResponse(Epoch response) {
+        responses.add(response);
+        callbacks.countDown();
+      }
+    };
+    rpcService.postAsync("get_current_epoch", Collections.emptyList(), Epoch.class, callback);
+    rpcService.postAsync("get_header", Collections.emptyList(), Epoch.class, callback);
+    Assertions.assertFalse(callbacks.await(500, TimeUnit.MILLISECONDS));
+    Assertions.assertEquals(1, callbacks.getCount());
+    Assertions.assertEquals(1, responses.size());
+    Assertions.assertEquals(1, responses.get(0).number);
+    Assertions.assertEquals(0x3e8, responses.get(0).startNumber);
+    Assertions.assertEquals(1, failures.size());
+    Assertions.assertTrue(failures.get(0).contains("Invalid params"), failures.get(0));
+  }
+}
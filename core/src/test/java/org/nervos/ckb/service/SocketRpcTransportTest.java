@@ -0,0 +1,255 @@
+package org.nervos.ckb.service;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class SocketRpcTransportTest {
+  private ServerSocket server;
+  private final AtomicInteger connections = new AtomicInteger();
+  // replies are held until this many requests arrived on a connection, then sent in reverse order
+  private volatile int holdReplies = 1;
+  private volatile boolean dropConnection;
+  private SocketRpcTransport transport;
+  private RpcService rpcService;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    Thread acceptor = new Thread(() -> {
+      while (!server.isClosed()) {
+        try {
+          Socket socket = server.accept();
+          connections.incrementAndGet();
+          Thread handler = new Thread(() -> serve(socket));
+          handler.setDaemon(true);
+          handler.start();
+        } catch (IOException e) {
+          return;
+        }
+      }
+    });
+    acceptor.setDaemon(true);
+    acceptor.start();
+    transport = new SocketRpcTransport("127.0.0.1", server.getLocalPort());
+    rpcService = new RpcService(transport);
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    transport.close();
+    server.close();
+  }
+
+  @Test
+  void testPost() throws IOException {
+    Long number = rpcService.post("echo", Collections.singletonList(42L), Long.class);
+    Assertions.assertEquals(42L, number);
+    IOException e = Assertions.assertThrows(IOException.class,
+        () -> rpcService.post("fail", Collections.emptyList(), Long.class));
+    Assertions.assertTrue(e.getMessage().contains("injected failure"), e.getMessage());
+    Assertions.assertEquals(1, connections.get());
+  }
+
+  @Test
+  void testPipelinesRequestsOverOneConnection() throws Exception {
+    int count = 64;
+    holdReplies = count;
+    List<CompletableFuture<Long>> futures = new ArrayList<>();
+    for (long i = 0; i < count; i++) {
+      futures.add(rpcService.postAsync("echo", Collections.singletonList(i), Long.class));
+    }
+    for (int i = 0; i < count; i++) {
+      Assertions.assertEquals(i, futures.get(i).get(10, TimeUnit.SECONDS));
+    }
+    Assertions.assertEquals(1, connections.get());
+    Assertions.assertEquals(0, transport.getPendingCount());
+  }
+
+  @Test
+  void testBatch() throws IOException {
+    RpcBatch batch = rpcService.newBatch();
+    RpcBatch.Handle<Long> first = batch.add("echo", Collections.singletonList(1L), Long.class);
+    RpcBatch.Handle<Long> failed = batch.add("fail", Collections.emptyList(), Long.class);
+    RpcBatch.Handle<Long> second = batch.add("echo", Collections.singletonList(2L), Long.class);
+    batch.execute();
+    Assertions.assertEquals(1L, first.get());
+    Assertions.assertEquals(2L, second.get());
+    Assertions.assertThrows(IOException.class, failed::get);
+
+    List<RpcResponse> responses = rpcService.batchPost(Arrays.asList(
+        Arrays.asList("echo", "0x3"), Arrays.asList("echo", "0x4")));
+    Assertions.assertEquals(2, responses.size());
+  }
+
+  @Test
+  void testReconnectsAfterConnectionLoss() throws Exception {
+    dropConnection = true;
+    CompletableFuture<Long> lost =
+        rpcService.postAsync("echo", Collections.singletonList(1L), Long.class);
+    ExecutionException e =
+        Assertions.assertThrows(ExecutionException.class, () -> lost.get(10, TimeUnit.SECONDS));
+    Assertions.assertTrue(e.getCause() instanceof IOException);
+
+    dropConnection = false;
+    Long number = rpcService.post("echo", Collections.singletonList(2L), Long.class);
+    Assertions.assertEquals(2L, number);
+    Assertions.assertEquals(2, connections.get());
+  }
+
+  @Test
+  void testLostConnectionOnlyFailsItsRequests() {
+    RecordingTransport transport = new RecordingTransport();
+    AtomicInteger losses = new AtomicInteger();
+    transport.setMessageListener(new PipelinedRpcTransport.MessageListener() {
+      @Override
+      public void onMessage(String message) {
+        Assertions.fail("unexpected message " + message);
+      }
+
+      @Override
+      public void onConnectionLost(IOException e) {
+        losses.incrementAndGet();
+      }
+    });
+    CompletableFuture<Reader> first = transport.send("{}", new long[] {1});
+    RecordingTransport.Connection lost = transport.connection;
+    // another thread writes a request to a new connection while the old one is being lost
+    List<CompletableFuture<Reader>> second = new ArrayList<>();
+    lost.onRelease = () -> second.add(transport.send("{}", new long[] {2}));
+    lost.lose(new IOException("lost"));
+    lost.lose(new IOException("lost again"));
+
+    Assertions.assertTrue(first.isCompletedExceptionally());
+    Assertions.assertFalse(second.get(0).isDone());
+    Assertions.assertNotSame(lost, transport.connection);
+    Assertions.assertEquals(1, losses.get());
+    transport.onReply("{\"jsonrpc\":\"2.0\",\"result\":\"0x2\",\"id\":2}");
+    Assertions.assertTrue(second.get(0).isDone() && !second.get(0).isCompletedExceptionally());
+  }
+
+  @Test
+  void testTimeout() {
+    holdReplies = 2;
+    transport.setTimeoutMillis(50);
+    Assertions.assertThrows(InterruptedIOException.class,
+        () -> rpcService.post("echo", Collections.singletonList(1L), Long.class));
+  }
+
+  @Test
+  void testReportsMetrics() throws IOException {
+    RpcMetricsRecorder recorder = new RpcMetricsRecorder();
+    rpcService.setMetricsListener(recorder);
+    rpcService.post("echo", Collections.singletonList(42L), Long.class);
+    Assertions.assertThrows(IOException.class,
+        () -> rpcService.post("fail", Collections.emptyList(), Long.class));
+
+    RpcMetricsRecorder.MethodMetrics echo = recorder.snapshot().get("echo");
+    Assertions.assertEquals(1, echo.getCount(RpcCallEvent.Outcome.SUCCESS));
+    Assertions.assertTrue(echo.requestBytes > 0 && echo.responseBytes > 0);
+    Assertions.assertEquals(1,
+        recorder.snapshot().get("fail").getCount(RpcCallEvent.Outcome.RPC_ERROR));
+  }
+
+  private void serve(Socket socket) {
+    try (Socket s = socket;
+         BufferedReader in = new BufferedReader(
+             new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+         Writer out = new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8)) {
+      List<String> held = new ArrayList<>();
+      String line;
+      while ((line = in.readLine()) != null) {
+        if (dropConnection) {
+          return;
+        }
+        held.add(reply(JsonParser.parseString(line)).toString());
+        if (held.size() >= holdReplies) {
+          Collections.reverse(held);
+          for (String reply : held) {
+            out.write(reply);
+            out.write('\n');
+          }
+          out.flush();
+          held.clear();
+        }
+      }
+    } catch (IOException e) {
+      // connection closed by the client
+    }
+  }
+
+  private static JsonElement reply(JsonElement request) {
+    if (request.isJsonArray()) {
+      JsonArray replies = new JsonArray();
+      for (JsonElement element : request.getAsJsonArray()) {
+        replies.add(reply(element));
+      }
+      return replies;
+    }
+    JsonObject call = request.getAsJsonObject();
+    JsonObject reply = new JsonObject();
+    reply.addProperty("jsonrpc", "2.0");
+    if (call.get("method").getAsString().equals("fail")) {
+      JsonObject error = new JsonObject();
+      error.addProperty("code", -1);
+      error.addProperty("message", "injected failure");
+      reply.add("error", error);
+    } else {
+      reply.add("result", call.getAsJsonArray("params").get(0));
+    }
+    // CKB puts the id last, after the result
+    reply.add("id", call.get("id"));
+    return reply;
+  }
+
+  /**
+   * Writes nowhere, and opens a new connection when the last one is lost.
+   */
+  static class RecordingTransport extends PipelinedRpcTransport {
+    Connection connection;
+
+    @Override
+    protected Connection write(String json) {
+      if (connection == null || connection.isLost()) {
+        connection = new Connection();
+      }
+      return connection;
+    }
+
+    @Override
+    protected void disconnect() {
+      if (connection != null) {
+        connection.lose(new IOException("RpcTransport is closed"));
+      }
+    }
+
+    class Connection extends PipelinedRpcTransport.Connection {
+      Runnable onRelease = () -> {
+      };
+
+      @Override
+      protected void release() {
+        onRelease.run();
+      }
+    }
+  }
+}
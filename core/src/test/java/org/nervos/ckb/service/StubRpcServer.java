@@ -0,0 +1,147 @@
+package org.nervos.ckb.service;
+
+import com.google.gson.*;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal in-process JSON-RPC server for tests. Handlers are registered per method and return
+ * the {@code result} member; single requests and batches are both supported.
+ */
+class StubRpcServer implements AutoCloseable {
+  interface Handler {
+    JsonElement handle(JsonArray params) throws RpcError;
+  }
+
+  static class RpcError extends Exception {
+    final int code;
+
+    RpcError(int code, String message) {
+      super(message);
+      this.code = code;
+    }
+  }
+
+  static {
+    // avoid Nagle + delayed ACK stalls of ~40ms per exchange
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+  }
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final Map<String, Handler> handlers = new ConcurrentHashMap<>();
+  private final AtomicInteger httpRequestCount = new AtomicInteger();
+  private final AtomicInteger rpcRequestCount = new AtomicInteger();
+  private volatile long delayMillis;
+
+  private StubRpcServer(ExecutorService executor) throws IOException {
+    this.executor = executor;
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", this::handle);
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  static StubRpcServer start() throws IOException {
+    return new StubRpcServer(Executors.newCachedThreadPool());
+  }
+
+  /** Starts a server that handles at most {@code workers} HTTP requests at a time. */
+  static StubRpcServer start(int workers) throws IOException {
+    return new StubRpcServer(Executors.newFixedThreadPool(workers));
+  }
+
+  StubRpcServer on(String method, Handler handler) {
+    handlers.put(method, handler);
+    return this;
+  }
+
+  String url() {
+    return "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  void setDelayMillis(long delayMillis) {
+    this.delayMillis = delayMillis;
+  }
+
+  int httpRequestCount() {
+    return httpRequestCount.get();
+  }
+
+  int rpcRequestCount() {
+    return rpcRequestCount.get();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    httpRequestCount.incrementAndGet();
+    JsonElement request =
+        JsonParser.parseReader(
+            new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+    if (delayMillis > 0) {
+      try {
+        Thread.sleep(delayMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    JsonElement response;
+    if (request.isJsonArray()) {
+      JsonArray responses = new JsonArray();
+      for (JsonElement element : request.getAsJsonArray()) {
+        responses.add(dispatch(element.getAsJsonObject()));
+      }
+      response = responses;
+    } else {
+      response = dispatch(request.getAsJsonObject());
+    }
+    byte[] bytes = response.toString().getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(200, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    } catch (IOException e) {
+      // client went away, e.g. the call was cancelled
+    }
+  }
+
+  private JsonObject dispatch(JsonObject request) {
+    rpcRequestCount.incrementAndGet();
+    JsonObject response = new JsonObject();
+    response.addProperty("jsonrpc", "2.0");
+    String method = request.get("method").getAsString();
+    Handler handler = handlers.get(method);
+    try {
+      if (handler == null) {
+        throw new RpcError(-32601, "Method not found");
+      }
+      JsonArray params =
+          request.has("params") ? request.getAsJsonArray("params") : new JsonArray();
+      JsonElement result = handler.handle(params);
+      response.add("result", result == null ? JsonNull.INSTANCE : result);
+    } catch (RpcError e) {
+      JsonObject error = new JsonObject();
+      error.addProperty("code", e.code);
+      error.addProperty("message", e.getMessage());
+      response.add("error", error);
+    }
+    response.add("id", request.get("id"));
+    return response;
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+}
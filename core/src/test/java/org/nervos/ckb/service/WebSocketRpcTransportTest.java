@@ -0,0 +1,162 @@
+package org.nervos.ckb.service;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+class WebSocketRpcTransportTest {
+  private MockWebServer server;
+  // the node side of every connection, in the order they were opened
+  private final BlockingQueue<WebSocket> sockets = new LinkedBlockingQueue<>();
+  private final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+  // replies are held until this many requests arrived on a connection, then sent in reverse order
+  private volatile int holdReplies = 1;
+  private final BlockingQueue<IOException> losses = new LinkedBlockingQueue<>();
+  private WebSocketRpcTransport transport;
+  private RpcService rpcService;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = new MockWebServer();
+    server.setDispatcher(new Dispatcher() {
+      @NotNull
+      @Override
+      public MockResponse dispatch(@NotNull RecordedRequest request) {
+        return new MockResponse().withWebSocketUpgrade(new Node());
+      }
+    });
+    server.start();
+    transport = new WebSocketRpcTransport(
+        server.url("/").toString().replaceFirst("^http", "ws"));
+    transport.setMessageListener(new PipelinedRpcTransport.MessageListener() {
+      @Override
+      public void onMessage(String message) {
+        Assertions.fail("unexpected message " + message);
+      }
+
+      @Override
+      public void onConnectionLost(IOException e) {
+        losses.add(e);
+      }
+    });
+    rpcService = new RpcService(transport);
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    transport.close();
+    server.shutdown();
+  }
+
+  @Test
+  void testPipelinesRepliesOutOfOrder() throws Exception {
+    int count = 64;
+    holdReplies = count;
+    List<CompletableFuture<Long>> futures = new ArrayList<>();
+    for (long i = 0; i < count; i++) {
+      futures.add(rpcService.postAsync("echo", Collections.singletonList(i), Long.class));
+    }
+    for (int i = 0; i < count; i++) {
+      Assertions.assertEquals(i, futures.get(i).get(10, TimeUnit.SECONDS));
+    }
+    Assertions.assertEquals(1, server.getRequestCount());
+    Assertions.assertEquals(0, transport.getPendingCount());
+  }
+
+  @Test
+  void testLostConnectionOnlyFailsItsRequests() throws Exception {
+    holdReplies = 3;
+    CompletableFuture<Long> first =
+        rpcService.postAsync("echo", Collections.singletonList(1L), Long.class);
+    CompletableFuture<Long> second =
+        rpcService.postAsync("echo", Collections.singletonList(2L), Long.class);
+    Assertions.assertNotNull(received.poll(10, TimeUnit.SECONDS));
+    Assertions.assertNotNull(received.poll(10, TimeUnit.SECONDS));
+    sockets.take().close(1011, "node restarting");
+
+    for (CompletableFuture<Long> lost : Arrays.asList(first, second)) {
+      ExecutionException e =
+          Assertions.assertThrows(ExecutionException.class, () -> lost.get(10, TimeUnit.SECONDS));
+      Assertions.assertTrue(e.getCause() instanceof IOException, e.getCause().toString());
+    }
+    Assertions.assertEquals(0, transport.getPendingCount());
+    Assertions.assertNotNull(losses.poll(10, TimeUnit.SECONDS));
+
+    // the requests of the next connection are not failed with the lost one
+    holdReplies = 2;
+    CompletableFuture<Long> third =
+        rpcService.postAsync("echo", Collections.singletonList(3L), Long.class);
+    CompletableFuture<Long> fourth =
+        rpcService.postAsync("echo", Collections.singletonList(4L), Long.class);
+    Assertions.assertEquals(3L, third.get(10, TimeUnit.SECONDS));
+    Assertions.assertEquals(4L, fourth.get(10, TimeUnit.SECONDS));
+    Assertions.assertTrue(losses.isEmpty());
+  }
+
+  @Test
+  void testReconnectsOnNextWrite() throws Exception {
+    Long number = rpcService.post("echo", Collections.singletonList(1L), Long.class);
+    Assertions.assertEquals(1L, number);
+    sockets.take().close(1001, "going away");
+    Assertions.assertNotNull(losses.poll(10, TimeUnit.SECONDS));
+    // nothing reconnects until there is a request to send
+    Assertions.assertEquals(1, server.getRequestCount());
+
+    number = rpcService.post("echo", Collections.singletonList(2L), Long.class);
+    Assertions.assertEquals(2L, number);
+    Assertions.assertEquals(2, server.getRequestCount());
+  }
+
+  /**
+   * The node side of one connection, which echoes the first param of every request.
+   */
+  private class Node extends WebSocketListener {
+    private final List<String> held = new ArrayList<>();
+
+    @Override
+    public void onOpen(@NotNull WebSocket webSocket, @NotNull Response response) {
+      sockets.add(webSocket);
+    }
+
+    @Override
+    public void onClosing(@NotNull WebSocket webSocket, int code, @NotNull String reason) {
+      webSocket.close(code, null);
+    }
+
+    @Override
+    public synchronized void onMessage(@NotNull WebSocket webSocket, @NotNull String text) {
+      JsonObject call = JsonParser.parseString(text).getAsJsonObject();
+      JsonObject reply = new JsonObject();
+      reply.addProperty("jsonrpc", "2.0");
+      reply.add("result", call.getAsJsonArray("params").get(0));
+      reply.add("id", call.get("id"));
+      held.add(reply.toString());
+      received.add(text);
+      if (held.size() >= holdReplies) {
+        Collections.reverse(held);
+        for (String message : held) {
+          webSocket.send(message);
+        }
+        held.clear();
+      }
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package org.nervos.ckb.service.adapter;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.nervos.ckb.service.GsonFactory;
+
+import okio.Buffer;
+import org.nervos.ckb.type.Transaction;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+public class TypeAdapterTest {
+  private final Gson gson = GsonFactory.create();
+
+  static class Quantities {
+    byte[] data;
+    long number;
+    Long optionalNumber;
+    int index;
+    Integer optionalIndex;
+    BigInteger capacity;
+  }
+
+  @Test
+  public void testRoundTrip() {
+    Quantities quantities = new Quantities();
+    quantities.data = new byte[]{0x12, (byte) 0xab};
+    quantities.number = -1;
+    quantities.index = -1;
+    quantities.optionalIndex = 7;
+    quantities.capacity = new BigInteger("123456789abcdef0123456789", 16);
+
+    String json = gson.toJson(quantities);
+    Assertions.assertEquals(
+        "{\"data\":\"0x12ab\",\"number\":\"0xffffffffffffffff\",\"index\":\"0xffffffff\","
+            + "\"optional_index\":\"0x7\",\"capacity\":\"0x123456789abcdef0123456789\"}",
+        json);
+
+    Quantities decoded = gson.fromJson(json, Quantities.class);
+    Assertions.assertArrayEquals(quantities.data, decoded.data);
+    Assertions.assertEquals(-1, decoded.number);
+    Assertions.assertNull(decoded.optionalNumber);
+    Assertions.assertEquals(-1, decoded.index);
+    Assertions.assertEquals(7, decoded.optionalIndex);
+    Assertions.assertEquals(quantities.capacity, decoded.capacity);
+  }
+
+  @Test
+  public void testSinkJsonWriter() throws Exception {
+    Transaction transaction = new Transaction();
+    byte[] witness = new byte[20000];
+    for (int i = 0; i < witness.length; i++) {
+      witness[i] = (byte) i;
+    }
+    transaction.witnesses = Arrays.asList(new byte[0], witness);
+    transaction.outputsData = Arrays.asList(new byte[]{(byte) 0xff});
+
+    Buffer buffer = new Buffer();
+    gson.toJson(transaction, Transaction.class, new SinkJsonWriter(buffer));
+    Assertions.assertEquals(gson.toJson(transaction), buffer.readUtf8());
+
+    // text is encoded as UTF-8, including surrogate pairs
+    Object[] strings = {"caf\u00e9 \ud83d\ude00", "\u2028<>"};
+    gson.toJson(strings, Object[].class, new SinkJsonWriter(buffer));
+    Assertions.assertEquals(gson.toJson(strings), buffer.readUtf8());
+  }
+
+  @Test
+  public void testRead() {
+    Quantities decoded = gson.fromJson(
+        "{\"data\":null,\"number\":16,\"optional_number\":\"0x10\",\"index\":null,"
+            + "\"capacity\":\"0xff\"}",
+        Quantities.class);
+    Assertions.assertNull(decoded.data);
+    Assertions.assertEquals(16, decoded.number);
+    Assertions.assertEquals(16L, decoded.optionalNumber);
+    Assertions.assertEquals(0, decoded.index);
+    Assertions.assertEquals(BigInteger.valueOf(255), decoded.capacity);
+    Assertions.assertThrows(JsonSyntaxException.class,
+                            () -> gson.fromJson("{\"optional_index\":\"0x100000000\"}", Quantities.class));
+    Assertions.assertThrows(JsonSyntaxException.class,
+                            () -> gson.fromJson("{\"data\":\"0xzz\"}", Quantities.class));
+  }
+}
@@ -3,7 +3,9 @@ package utils;
 import com.google.gson.Gson;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.nervos.ckb.crypto.Blake2b;
 import org.nervos.ckb.service.GsonFactory;
+import org.nervos.ckb.type.Block;
 import org.nervos.ckb.type.Header;
 import org.nervos.ckb.type.Transaction;
 import org.nervos.ckb.type.WitnessArgs;
@@ -13,6 +15,9 @@ import java.io.IOException;
 import java.io.Reader;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 
 public class MoleculeSerializationTest {
   @Test
@@ -56,6 +61,53 @@ public class MoleculeSerializationTest {
         header.pack().toByteArray());
   }
 
+  @Test
+  public void testUnpackTransaction() {
+    Transaction transaction = readData("transaction.json", Transaction.class);
+    byte[] packed = transaction.pack().toByteArray();
+    Transaction unpacked = Transaction.unpack(packed);
+    Assertions.assertArrayEquals(transaction.computeHash(), unpacked.hash);
+    Assertions.assertArrayEquals(packed, unpacked.pack().toByteArray());
+    Assertions.assertEquals(toJson(transaction), toJson(unpacked));
+  }
+
+  @Test
+  public void testUnpackHeader() {
+    Header header = readData("header.json", Header.class);
+    byte[] packed = header.pack().toByteArray();
+    Header unpacked = Header.unpack(packed);
+    Assertions.assertArrayEquals(Blake2b.digest(packed), unpacked.hash);
+    Assertions.assertArrayEquals(packed, unpacked.pack().toByteArray());
+    Assertions.assertEquals(toJson(header), toJson(unpacked));
+  }
+
+  @Test
+  public void testUnpackBlock() {
+    Block block = new Block();
+    block.header = readData("header.json", Header.class);
+    block.header.hash = Blake2b.digest(block.header.pack().toByteArray());
+    Transaction transaction = readData("transaction.json", Transaction.class);
+    transaction.hash = transaction.computeHash();
+    block.transactions = Arrays.asList(transaction, transaction);
+    block.proposals = Collections.singletonList(Numeric.hexStringToByteArray("0x12345678901234567890"));
+    Block.Uncle uncle = new Block.Uncle();
+    uncle.header = block.header;
+    uncle.proposals = new ArrayList<>();
+    block.uncles = Collections.singletonList(uncle);
+
+    Block unpacked = Block.unpack(block.pack().toByteArray());
+    Assertions.assertNull(unpacked.extension);
+    Assertions.assertEquals(toJson(block), toJson(unpacked));
+
+    block.extension = "0x0102";
+    unpacked = Block.unpack(block.pack().toByteArray());
+    Assertions.assertEquals("0x0102", unpacked.extension);
+    Assertions.assertEquals(toJson(block), toJson(unpacked));
+
+    byte[] truncated = Arrays.copyOf(block.pack().toByteArray(), 100);
+    Assertions.assertThrows(IllegalArgumentException.class, () -> Block.unpack(truncated));
+  }
+
   @Test
   public void testWitnessArgs() {
     byte[] bytes =
@@ -73,6 +125,10 @@ public class MoleculeSerializationTest {
     Assertions.assertArrayEquals(Numeric.hexStringToByteArray(expected), actual, message);
   }
 
+  private static String toJson(Object object) {
+    return GsonFactory.create().toJson(object);
+  }
+
   private static <T> T readData(String fileName, Class<T> clazz) {
     String filePath = "src/test/resources/serialization/" + fileName;
     try (Reader reader = Files.newBufferedReader(Paths.get(filePath))) {
@@ -0,0 +1,46 @@
+package com.nervos.lightclient;
+
+import com.nervos.lightclient.type.*;
+import org.nervos.ckb.type.Block;
+import org.nervos.ckb.type.Header;
+import org.nervos.ckb.type.Transaction;
+import org.nervos.indexer.model.Order;
+import org.nervos.indexer.model.SearchKey;
+import org.nervos.indexer.model.resp.CellCapacityResponse;
+import org.nervos.indexer.model.resp.CellsResponse;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link LightClientApi}. Returned futures complete exceptionally on
+ * request or RPC errors, and cancelling a future aborts its HTTP call.
+ */
+public interface AsyncLightClientApi {
+
+  CompletableFuture<Void> setScripts(List<ScriptDetail> scriptDetails);
+
+  CompletableFuture<List<ScriptDetail>> getScripts();
+
+  CompletableFuture<byte[]> sendTransaction(Transaction transaction);
+
+  CompletableFuture<Header> getTipHeader();
+
+  CompletableFuture<Block> getGenesisBlock();
+
+  CompletableFuture<Header> getHeader(byte[] blockHash);
+
+  CompletableFuture<TransactionWithHeader> getTransaction(byte[] transactionHash);
+
+  CompletableFuture<FetchedHeader> fetchHeader(byte[] blockHash);
+
+  CompletableFuture<FetchedTransaction> fetchTransaction(byte[] transactionHash);
+
+  CompletableFuture<CellsResponse> getCells(SearchKey searchKey, Order order, int limit, byte[] afterCursor);
+
+  CompletableFuture<TxsWithCell> getTransactions(SearchKey searchKey, Order order, int limit, byte[] afterCursor);
+
+  CompletableFuture<TxsWithCells> getTransactionsGrouped(SearchKey searchKey, Order order, int limit, byte[] afterCursor);
+
+  CompletableFuture<CellCapacityResponse> getCellsCapacity(SearchKey searchKey);
+}
@@ -0,0 +1,137 @@
+package com.nervos.lightclient;
+
+import com.google.gson.reflect.TypeToken;
+import com.nervos.lightclient.type.*;
+import org.nervos.ckb.service.RpcService;
+import org.nervos.ckb.type.Block;
+import org.nervos.ckb.type.Header;
+import org.nervos.ckb.type.Transaction;
+import org.nervos.ckb.utils.Convert;
+import org.nervos.indexer.model.Order;
+import org.nervos.indexer.model.SearchKey;
+import org.nervos.indexer.model.resp.CellCapacityResponse;
+import org.nervos.indexer.model.resp.CellsResponse;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class DefaultAsyncLightClientApi implements AsyncLightClientApi {
+
+  private RpcService rpcService;
+
+  public DefaultAsyncLightClientApi(String nodeUrl) {
+    this(nodeUrl, false);
+  }
+
+  public DefaultAsyncLightClientApi(String nodeUrl, boolean isDebug) {
+    rpcService = new RpcService(nodeUrl, isDebug);
+  }
+
+  public DefaultAsyncLightClientApi(RpcService rpcService) {
+    this.rpcService = rpcService;
+  }
+
+  @Override
+  public CompletableFuture<Void> setScripts(List<ScriptDetail> scriptDetails) {
+    CompletableFuture<Object> future = rpcService.postAsync(
+        "set_scripts",
+        Collections.singletonList(scriptDetails), Object.class);
+    CompletableFuture<Void> mapped = future.thenApply(result -> null);
+    mapped.whenComplete((result, e) -> {
+      if (mapped.isCancelled()) {
+        future.cancel(true);
+      }
+    });
+    return mapped;
+  }
+
+  @Override
+  public CompletableFuture<List<ScriptDetail>> getScripts() {
+    return rpcService.postAsync(
+        "get_scripts",
+        Collections.<String>emptyList(),
+        new TypeToken<List<ScriptDetail>>() {}.getType());
+  }
+
+  @Override
+  public CompletableFuture<byte[]> sendTransaction(Transaction transaction) {
+    return rpcService.postAsync(
+        "send_transaction",
+        Arrays.asList(Convert.parseTransaction(transaction)),
+        byte[].class);
+  }
+
+  @Override
+  public CompletableFuture<Header> getTipHeader() {
+    return rpcService.postAsync("get_tip_header", Collections.<String>emptyList(), Header.class);
+  }
+
+  @Override
+  public CompletableFuture<Block> getGenesisBlock() {
+    return rpcService.postAsync("get_genesis_block", Collections.<String>emptyList(), Block.class);
+  }
+
+  @Override
+  public CompletableFuture<Header> getHeader(byte[] blockHash) {
+    return rpcService.postAsync(
+        "get_header",
+        Collections.singletonList(blockHash), Header.class);
+  }
+
+  @Override
+  public CompletableFuture<TransactionWithHeader> getTransaction(byte[] transactionHash) {
+    return rpcService.postAsync(
+        "get_transaction",
+        Collections.singletonList(transactionHash), TransactionWithHeader.class);
+  }
+
+  @Override
+  public CompletableFuture<FetchedHeader> fetchHeader(byte[] blockHash) {
+    return rpcService.postAsync(
+        "fetch_header",
+        Collections.singletonList(blockHash), FetchedHeader.class);
+  }
+
+  @Override
+  public CompletableFuture<FetchedTransaction> fetchTransaction(byte[] transactionHash) {
+    return rpcService.postAsync(
+        "fetch_transaction",
+        Collections.singletonList(transactionHash), FetchedTransaction.class);
+  }
+
+  @Override
+  public CompletableFuture<CellsResponse> getCells(SearchKey searchKey, Order order, int limit, byte[] afterCursor) {
+    return this.rpcService.postAsync(
+        "get_cells",
+        Arrays.asList(searchKey, order, limit, afterCursor),
+        CellsResponse.class);
+  }
+
+  @Override
+  public CompletableFuture<TxsWithCell> getTransactions(SearchKey searchKey, Order order, int limit, byte[] afterCursor) {
+    searchKey.groupByTransaction = false;
+    return this.rpcService.postAsync(
+        "get_transactions",
+        Arrays.asList(searchKey, order, limit, afterCursor),
+        TxsWithCell.class);
+  }
+
+  @Override
+  public CompletableFuture<TxsWithCells> getTransactionsGrouped(SearchKey searchKey, Order order, int limit, byte[] afterCursor) {
+    searchKey.groupByTransaction = true;
+    return this.rpcService.postAsync(
+        "get_transactions",
+        Arrays.asList(searchKey, order, limit, afterCursor),
+        TxsWithCells.class);
+  }
+
+  @Override
+  public CompletableFuture<CellCapacityResponse> getCellsCapacity(SearchKey searchKey) {
+    return this.rpcService.postAsync(
+        "get_cells_capacity",
+        Arrays.asList(searchKey),
+        CellCapacityResponse.class);
+  }
+}
@@ -0,0 +1,7 @@
+/**
+ * Types of the CKB light client RPC.
+ */
+@GenerateTypeAdapters
+package com.nervos.lightclient.type;
+
+import org.nervos.ckb.codegen.GenerateTypeAdapters;
@@ -0,0 +1,269 @@
+package org.nervos.ckb.testsupport;
+
+import org.nervos.ckb.Network;
+import org.nervos.ckb.service.Api;
+import org.nervos.ckb.service.LatencyHistogram;
+import org.nervos.ckb.sign.TransactionSigner;
+import org.nervos.ckb.sign.TransactionWithScriptGroups;
+import org.nervos.ckb.transaction.CkbTransactionBuilder;
+import org.nervos.ckb.transaction.InputIterator;
+import org.nervos.ckb.transaction.TransactionBuilderConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs an operation on several threads at once for a while, and reports its throughput and the
+ * percentiles of its latency.
+ *
+ * <pre>{@code
+ * LoadHarness harness = new LoadHarness().setThreads(16).setDuration(10, TimeUnit.SECONDS);
+ * LoadHarness.Report report = harness.run("get_tip_block_number", api::getTipBlockNumber);
+ * System.out.println(report);
+ * }</pre>
+ *
+ * <p>{@link #main(String[])} drives {@link Api}, {@link InputIterator},
+ * {@link CkbTransactionBuilder} and {@link TransactionSigner} end to end against a
+ * {@link StubCkbNode}, or against the node given with {@code --url}:
+ *
+ * <pre>
+ * ./gradlew :test-support:loadTest --args="--threads 32 --seconds 10 --latency 2"
+ * </pre>
+ */
+public class LoadHarness {
+  static final String SENDER =
+      "ckt1qzda0cr08m85hc8jlnfp3zer7xulejywt49kt2rr0vthywaa50xwsq2qf8keemy2p5uu0g0gn8cd4ju23s5269qk8rg4r";
+  static final String SENDER_KEY =
+      "0x6c9ed03816e3111e49384b8d180174ad08e29feb1393ea1b51cef1c505d4e36a";
+
+  private int threads = Runtime.getRuntime().availableProcessors();
+  private long durationNanos = TimeUnit.SECONDS.toNanos(5);
+  private long warmupNanos = TimeUnit.SECONDS.toNanos(1);
+  private long iterations;
+
+  /**
+   * An operation under load.
+   */
+  public interface Operation {
+    void run() throws Exception;
+  }
+
+  public LoadHarness setThreads(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be positive");
+    }
+    this.threads = threads;
+    return this;
+  }
+
+  /**
+   * Sets how long the operation is measured for, after the warmup. Defaults to 5 seconds.
+   */
+  public LoadHarness setDuration(long duration, TimeUnit unit) {
+    this.durationNanos = unit.toNanos(duration);
+    return this;
+  }
+
+  /**
+   * Sets how long the operation runs unmeasured first. Defaults to 1 second.
+   */
+  public LoadHarness setWarmup(long warmup, TimeUnit unit) {
+    this.warmupNanos = unit.toNanos(warmup);
+    return this;
+  }
+
+  /**
+   * Stops the measurement after {@code iterations} operations across all threads, if that comes
+   * before the end of the duration. 0, the default, only stops at the end of the duration.
+   */
+  public LoadHarness setIterations(long iterations) {
+    this.iterations = iterations;
+    return this;
+  }
+
+  /**
+   * Runs {@code operation} on every thread in a loop until the end of the duration. An operation
+   * that throws counts as an error, and its latency is not recorded.
+   */
+  public Report run(String name, Operation operation) throws InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "load-" + name);
+      thread.setDaemon(true);
+      return thread;
+    });
+    LatencyHistogram latency = new LatencyHistogram();
+    LongAdder errors = new LongAdder();
+    AtomicLong remaining = new AtomicLong(iterations > 0 ? iterations : Long.MAX_VALUE);
+    long start = System.nanoTime();
+    long measureFrom = start + warmupNanos;
+    long end = measureFrom + durationNanos;
+    List<Future<?>> workers = new ArrayList<>(threads);
+    try {
+      for (int i = 0; i < threads; i++) {
+        workers.add(executor.submit(() -> {
+          long now;
+          while ((now = System.nanoTime()) < end) {
+            boolean measured = now >= measureFrom;
+            if (measured && remaining.getAndDecrement() <= 0) {
+              return;
+            }
+            try {
+              operation.run();
+              if (measured) {
+                latency.record(System.nanoTime() - now);
+              }
+            } catch (Exception e) {
+              if (measured) {
+                errors.increment();
+              }
+            }
+          }
+        }));
+      }
+      for (Future<?> worker : workers) {
+        try {
+          worker.get();
+        } catch (java.util.concurrent.ExecutionException e) {
+          throw new IllegalStateException(e.getCause());
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    long elapsed = Math.max(1, Math.min(System.nanoTime(), end) - measureFrom);
+    return new Report(name, threads, latency.snapshot(), errors.sum(), elapsed);
+  }
+
+  /**
+   * The outcome of {@link #run(String, Operation)}.
+   */
+  public static class Report {
+    public final String name;
+    public final int threads;
+    /**
+     * The latencies of the successful operations in nanoseconds.
+     */
+    public final LatencyHistogram.Snapshot latency;
+    public final long errors;
+    public final long elapsedNanos;
+
+    Report(String name, int threads, LatencyHistogram.Snapshot latency, long errors,
+           long elapsedNanos) {
+      this.name = name;
+      this.threads = threads;
+      this.latency = latency;
+      this.errors = errors;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getOperations() {
+      return latency.count + errors;
+    }
+
+    /**
+     * @return the successful operations per second
+     */
+    public double getThroughput() {
+      return latency.count * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%-24s %3d threads %10.1f ops/s %8d ops %6d errors  p50 %7dus p90 %7dus p99 %7dus"
+              + " max %7dus",
+          name, threads, getThroughput(), getOperations(), errors,
+          latency.getValueAtPercentile(50) / 1000, latency.getValueAtPercentile(90) / 1000,
+          latency.getValueAtPercentile(99) / 1000, latency.max / 1000);
+    }
+  }
+
+  /**
+   * Runs the scenarios. Options: {@code --url <node>} to load a running node instead of a
+   * {@link StubCkbNode}, {@code --threads <n>}, {@code --seconds <n>}, and for the stub node
+   * {@code --latency <ms>} and {@code --cells <cells per lock>}.
+   */
+  public static void main(String[] args) throws Exception {
+    String url = null;
+    int threads = Runtime.getRuntime().availableProcessors() * 4;
+    long seconds = 5;
+    long latencyMillis = 1;
+    int cells = 250;
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      switch (args[i]) {
+        case "--url":
+          url = args[i + 1];
+          break;
+        case "--threads":
+          threads = Integer.parseInt(args[i + 1]);
+          break;
+        case "--seconds":
+          seconds = Long.parseLong(args[i + 1]);
+          break;
+        case "--latency":
+          latencyMillis = Long.parseLong(args[i + 1]);
+          break;
+        case "--cells":
+          cells = Integer.parseInt(args[i + 1]);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option " + args[i]);
+      }
+    }
+    StubCkbNode node = null;
+    if (url == null) {
+      node = StubCkbNode.start()
+          .setLatencyMillis(latencyMillis, latencyMillis / 2)
+          .setCellsPerLock(cells, 100_000_000_000L);
+      url = node.getUrl();
+    }
+    try {
+      Api api = new Api(url, false);
+      LoadHarness harness = new LoadHarness()
+          .setThreads(threads)
+          .setDuration(seconds, TimeUnit.SECONDS);
+      long tip = api.getTipBlockNumber();
+      System.out.println(url + ", tip " + tip);
+      System.out.println(harness.run("get_tip_block_number", api::getTipBlockNumber));
+      System.out.println(harness.run(
+          "get_block_by_number",
+          () -> api.getBlockByNumber(ThreadLocalRandom.current().nextLong(tip + 1))));
+      System.out.println(harness.run("input_iterator", () -> {
+        InputIterator iterator = new InputIterator(api);
+        iterator.addSearchKey(SENDER);
+        while (iterator.hasNext()) {
+          iterator.next();
+        }
+      }));
+      System.out.println(harness.run("build", () -> build(api)));
+      System.out.println(harness.run("build_sign_send", () -> {
+        TransactionWithScriptGroups transaction = build(api);
+        TransactionSigner.getInstance(Network.TESTNET).signTransaction(transaction, SENDER_KEY);
+        api.sendTransaction(transaction.getTxView());
+      }));
+      if (node != null) {
+        System.out.println("calls: " + node.getCallCounts());
+      }
+    } finally {
+      if (node != null) {
+        node.close();
+      }
+    }
+  }
+
+  static TransactionWithScriptGroups build(Api api) {
+    InputIterator iterator = new InputIterator(api);
+    iterator.addSearchKey(SENDER);
+    return new CkbTransactionBuilder(new TransactionBuilderConfiguration(Network.TESTNET), iterator)
+        .addOutput(SENDER, 50_100_000_000L)
+        .setChangeOutput(SENDER)
+        .build();
+  }
+}
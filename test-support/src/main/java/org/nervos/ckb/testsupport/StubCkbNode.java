@@ -0,0 +1,495 @@
+package org.nervos.ckb.testsupport;
+
+import com.google.gson.*;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.nervos.ckb.service.GsonFactory;
+import org.nervos.ckb.type.*;
+import org.nervos.ckb.utils.Hex;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-process JSON-RPC server that simulates a CKB node and its indexer, for testing and
+ * benchmarking the SDK without a real node.
+ *
+ * <p>The chain is synthetic and computed on demand: block {@code n} has a hash that encodes
+ * {@code n}, its parent's hash, and {@link #setTransactionsPerBlock(int) a few} transactions. Every
+ * lock script owns {@link #setCellsPerLock(int, long) the same number} of live cells, and
+ * {@link #setSudtCellsPerPlainCell(int) optionally sUDT cells} among them, which {@code get_cells}
+ * pages through by cursor in either order. It honours the type script filter,
+ * {@code script_len_range}, {@code output_capacity_range} and {@code with_data}, and assumes a
+ * lock search key. {@code send_transaction} accepts
+ * every transaction and returns its hash. Each method can be slowed down, and a share of the calls
+ * can fail with an RPC error or the whole request with HTTP 503.
+ *
+ * <p>Served methods: {@code get_tip_block_number}, {@code get_tip_header},
+ * {@code get_header}, {@code get_header_by_number}, {@code get_block},
+ * {@code get_block_by_number}, {@code get_block_hash}, {@code get_cells},
+ * {@code get_cells_capacity} and {@code send_transaction}, with JSON verbosity only. Batches are
+ * supported.
+ *
+ * <pre>{@code
+ * try (StubCkbNode node = StubCkbNode.start()) {
+ *   node.setLatencyMillis(2, 1);
+ *   Api api = new Api(node.getUrl());
+ *   ...
+ * }
+ * }</pre>
+ */
+public class StubCkbNode implements AutoCloseable {
+  private static final int RPC_ERROR = -32000;
+  private static final int METHOD_NOT_FOUND = -32601;
+  private static final int INVALID_PARAMS = -32602;
+  private static final byte[] HASH_PREFIX = Hex.decode("0x5a4b1e1ac4a3a7f21b3fbb3e3d1e9bbe3d6e3a3f1e1b4a7c");
+  private static final long GENESIS_TIMESTAMP = 1_589_276_230_000L;
+  private static final long EPOCH_LENGTH = 1800;
+  // 1,000,000 as a little-endian uint128
+  private static final String SUDT_AMOUNT = "0x40420f00000000000000000000000000";
+  private static final long SUDT_CELL_CAPACITY = 14_200_000_000L;
+
+  static {
+    // avoid Nagle + delayed ACK stalls of ~40ms per exchange
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+  }
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final Gson gson = GsonFactory.create();
+  private final Script minerLock = new Script(
+      Script.SECP256K1_BLAKE160_SIGNHASH_ALL_CODE_HASH, new byte[20], Script.HashType.TYPE);
+  private final JsonElement sudtType = gson.toJsonTree(new Script(
+      Script.SUDT_CODE_HASH_TESTNET, new byte[32], Script.HashType.TYPE));
+  private final Map<String, long[]> methodLatencies = new ConcurrentHashMap<>();
+  private final Map<String, LongAdder> callCounts = new ConcurrentHashMap<>();
+  private final LongAdder sentTransactions = new LongAdder();
+  private final LongAdder responseBytes = new LongAdder();
+  private volatile long tipBlockNumber = 1_000_000;
+  private volatile int transactionsPerBlock = 2;
+  private volatile int cellsPerLock = 100;
+  private volatile long cellCapacity = 100_000_000_000L;
+  private volatile int sudtCellsPerPlainCell;
+  private volatile long[] latency = {0, 0};
+  private volatile double rpcErrorRate;
+  private volatile double httpErrorRate;
+
+  private StubCkbNode(int port) throws IOException {
+    executor = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "stub-ckb-node");
+      thread.setDaemon(true);
+      return thread;
+    });
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+    server.createContext("/", this::handle);
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  public static StubCkbNode start() throws IOException {
+    return new StubCkbNode(0);
+  }
+
+  public static StubCkbNode start(int port) throws IOException {
+    return new StubCkbNode(port);
+  }
+
+  public String getUrl() {
+    return "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  /**
+   * Sets the number of the tip block. Defaults to 1,000,000.
+   */
+  public StubCkbNode setTipBlockNumber(long tipBlockNumber) {
+    this.tipBlockNumber = tipBlockNumber;
+    return this;
+  }
+
+  public long getTipBlockNumber() {
+    return tipBlockNumber;
+  }
+
+  /**
+   * Sets the number of transactions in every block, including the cellbase. Defaults to 2.
+   */
+  public StubCkbNode setTransactionsPerBlock(int transactionsPerBlock) {
+    if (transactionsPerBlock < 1) {
+      throw new IllegalArgumentException("A block has at least the cellbase transaction");
+    }
+    this.transactionsPerBlock = transactionsPerBlock;
+    return this;
+  }
+
+  /**
+   * Sets how many live cells every lock script owns, and the capacity of each in shannons.
+   * Defaults to 100 cells of 1,000 CKB.
+   */
+  public StubCkbNode setCellsPerLock(int cellsPerLock, long cellCapacity) {
+    this.cellsPerLock = cellsPerLock;
+    this.cellCapacity = cellCapacity;
+    return this;
+  }
+
+  /**
+   * Gives every lock script {@code sudtCellsPerPlainCell} sUDT cells of 142 CKB before each of its
+   * plain cells, like a wallet full of tokens. Defaults to 0.
+   */
+  public StubCkbNode setSudtCellsPerPlainCell(int sudtCellsPerPlainCell) {
+    this.sudtCellsPerPlainCell = sudtCellsPerPlainCell;
+    return this;
+  }
+
+  /**
+   * Delays every answer by {@code baseMillis} plus a uniformly random share of
+   * {@code jitterMillis}.
+   */
+  public StubCkbNode setLatencyMillis(long baseMillis, long jitterMillis) {
+    this.latency = new long[] {baseMillis, jitterMillis};
+    return this;
+  }
+
+  /**
+   * Delays the calls of {@code method} instead of by the latency of all methods. In a batch, the
+   * slowest call delays the whole answer.
+   */
+  public StubCkbNode setLatencyMillis(String method, long baseMillis, long jitterMillis) {
+    methodLatencies.put(method, new long[] {baseMillis, jitterMillis});
+    return this;
+  }
+
+  /**
+   * Sets the share of calls, between 0 and 1, answered with an RPC error instead of their result.
+   */
+  public StubCkbNode setRpcErrorRate(double rpcErrorRate) {
+    this.rpcErrorRate = rpcErrorRate;
+    return this;
+  }
+
+  /**
+   * Sets the share of HTTP requests, between 0 and 1, rejected with HTTP 503.
+   */
+  public StubCkbNode setHttpErrorRate(double httpErrorRate) {
+    this.httpErrorRate = httpErrorRate;
+    return this;
+  }
+
+  /**
+   * @return the number of calls of {@code method} received, including the failed ones
+   */
+  public long getCallCount(String method) {
+    LongAdder count = callCounts.get(method);
+    return count == null ? 0 : count.sum();
+  }
+
+  /**
+   * @return the calls received so far by method
+   */
+  public Map<String, Long> getCallCounts() {
+    Map<String, Long> counts = new TreeMap<>();
+    for (Map.Entry<String, LongAdder> entry : callCounts.entrySet()) {
+      counts.put(entry.getKey(), entry.getValue().sum());
+    }
+    return counts;
+  }
+
+  public long getSentTransactionCount() {
+    return sentTransactions.sum();
+  }
+
+  /**
+   * @return the bytes of the response bodies sent so far
+   */
+  public long getResponseBytes() {
+    return responseBytes.sum();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      JsonElement request;
+      try (InputStreamReader reader =
+               new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+        request = JsonParser.parseReader(reader);
+      }
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      if (httpErrorRate > 0 && random.nextDouble() < httpErrorRate) {
+        exchange.sendResponseHeaders(503, -1);
+        return;
+      }
+      long delayMillis = 0;
+      JsonElement reply;
+      if (request.isJsonArray()) {
+        JsonArray replies = new JsonArray();
+        for (JsonElement call : request.getAsJsonArray()) {
+          replies.add(answer(call.getAsJsonObject()));
+          delayMillis = Math.max(delayMillis, delayMillis(call.getAsJsonObject()));
+        }
+        reply = replies;
+      } else {
+        reply = answer(request.getAsJsonObject());
+        delayMillis = delayMillis(request.getAsJsonObject());
+      }
+      if (delayMillis > 0) {
+        TimeUnit.MILLISECONDS.sleep(delayMillis);
+      }
+      byte[] body = reply.toString().getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      responseBytes.add(body.length);
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (RuntimeException e) {
+      exchange.sendResponseHeaders(400, -1);
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private long delayMillis(JsonObject call) {
+    long[] delay = methodLatencies.getOrDefault(call.get("method").getAsString(), latency);
+    return delay[0] + (delay[1] > 0 ? ThreadLocalRandom.current().nextLong(delay[1] + 1) : 0);
+  }
+
+  private JsonObject answer(JsonObject call) {
+    String method = call.get("method").getAsString();
+    callCounts.computeIfAbsent(method, key -> new LongAdder()).increment();
+    JsonObject reply = new JsonObject();
+    reply.addProperty("jsonrpc", "2.0");
+    reply.add("id", call.get("id"));
+    if (rpcErrorRate > 0 && ThreadLocalRandom.current().nextDouble() < rpcErrorRate) {
+      reply.add("error", error(RPC_ERROR, "Injected error"));
+      return reply;
+    }
+    JsonArray params = call.has("params") && call.get("params").isJsonArray()
+        ? call.getAsJsonArray("params") : new JsonArray();
+    try {
+      JsonElement result = call(method, params);
+      if (result == null) {
+        reply.add("error", error(METHOD_NOT_FOUND, "Method not found"));
+      } else {
+        reply.add("result", result);
+      }
+    } catch (RuntimeException e) {
+      reply.add("error", error(INVALID_PARAMS, "Invalid params: " + e.getMessage()));
+    }
+    return reply;
+  }
+
+  private static JsonObject error(int code, String message) {
+    JsonObject error = new JsonObject();
+    error.addProperty("code", code);
+    error.addProperty("message", message);
+    return error;
+  }
+
+  /**
+   * @return the result of the call, {@link JsonNull} for a missing block, or null if the method
+   *     is not served
+   */
+  private JsonElement call(String method, JsonArray params) {
+    switch (method) {
+      case "get_tip_block_number":
+        return new JsonPrimitive(Hex.encodeQuantity(tipBlockNumber));
+      case "get_tip_header":
+        return gson.toJsonTree(header(tipBlockNumber));
+      case "get_header":
+        return orNull(header(numberOf(params.get(0))));
+      case "get_header_by_number":
+        return orNull(header(quantity(params.get(0))));
+      case "get_block":
+        return orNull(block(numberOf(params.get(0))));
+      case "get_block_by_number":
+        return orNull(block(quantity(params.get(0))));
+      case "get_block_hash": {
+        long number = quantity(params.get(0));
+        return number > tipBlockNumber
+            ? JsonNull.INSTANCE : new JsonPrimitive(Hex.encode(blockHash(number)));
+      }
+      case "get_cells":
+        return cells(params.get(0).getAsJsonObject(), params.get(1).getAsString(),
+                     (int) quantity(params.get(2)),
+                     params.size() > 3 && !params.get(3).isJsonNull()
+                         ? Hex.decode(params.get(3).getAsString()) : null);
+      case "get_cells_capacity": {
+        JsonObject capacity = new JsonObject();
+        capacity.addProperty("capacity", Hex.encodeQuantity(cellsPerLock * cellCapacity));
+        capacity.addProperty("block_hash", Hex.encode(blockHash(tipBlockNumber)));
+        capacity.addProperty("block_number", Hex.encodeQuantity(tipBlockNumber));
+        return capacity;
+      }
+      case "send_transaction": {
+        Transaction transaction = gson.fromJson(params.get(0), Transaction.class);
+        byte[] hash = transaction.computeHash();
+        sentTransactions.increment();
+        return new JsonPrimitive(Hex.encode(hash));
+      }
+      default:
+        return null;
+    }
+  }
+
+  private JsonElement orNull(Object value) {
+    return value == null ? JsonNull.INSTANCE : gson.toJsonTree(value);
+  }
+
+  private static long quantity(JsonElement value) {
+    return Hex.parseUnsignedLong(value.getAsString(), 2);
+  }
+
+  private static byte[] blockHash(long number) {
+    return ByteBuffer.allocate(32).put(HASH_PREFIX).putLong(number).array();
+  }
+
+  /**
+   * @return the number of the block with the hash in {@code value}, or -1 if it is not a block
+   */
+  private static long numberOf(JsonElement value) {
+    byte[] hash = Hex.decode(value.getAsString());
+    if (hash.length != 32) {
+      return -1;
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(hash);
+    for (byte b : HASH_PREFIX) {
+      if (buffer.get() != b) {
+        return -1;
+      }
+    }
+    return buffer.getLong();
+  }
+
+  private Header header(long number) {
+    if (number < 0 || number > tipBlockNumber) {
+      return null;
+    }
+    Header header = new Header();
+    header.number = number;
+    header.hash = blockHash(number);
+    header.parentHash = number == 0 ? new byte[32] : blockHash(number - 1);
+    header.timestamp = GENESIS_TIMESTAMP + number * 8_000;
+    header.epoch = (number / EPOCH_LENGTH) | (number % EPOCH_LENGTH) << 24 | EPOCH_LENGTH << 40;
+    header.compactTarget = 0x1d08_0000;
+    header.nonce = BigInteger.valueOf(number);
+    header.dao = new byte[32];
+    header.transactionsRoot = new byte[32];
+    header.proposalsHash = new byte[32];
+    header.extraHash = new byte[32];
+    return header;
+  }
+
+  private Block block(long number) {
+    Header header = header(number);
+    if (header == null) {
+      return null;
+    }
+    Block block = new Block();
+    block.header = header;
+    block.transactions = new ArrayList<>();
+    for (int i = 0; i < transactionsPerBlock; i++) {
+      Transaction transaction = new Transaction();
+      // the cellbase spends nothing, the others spend an output of the previous block
+      byte[] previous = i == 0 ? new byte[32] : blockHash(number - 1);
+      transaction.inputs.add(new CellInput(new OutPoint(previous, i == 0 ? -1 : i), number));
+      transaction.outputs.add(new CellOutput(cellCapacity, minerLock));
+      transaction.outputsData.add(new byte[0]);
+      transaction.witnesses.add(new byte[85]);
+      transaction.hash = transaction.computeHash();
+      block.transactions.add(transaction);
+    }
+    block.proposals = Collections.emptyList();
+    block.uncles = Collections.emptyList();
+    return block;
+  }
+
+  /**
+   * Pages through the cells of the script of {@code searchKey}, skipping those its filter does not
+   * match. The cursor is the position after the last cell looked at.
+   */
+  private JsonObject cells(JsonObject searchKey, String order, int limit, byte[] cursor) {
+    JsonObject script = searchKey.getAsJsonObject("script");
+    JsonObject filter = searchKey.has("filter") && searchKey.get("filter").isJsonObject()
+        ? searchKey.getAsJsonObject("filter") : new JsonObject();
+    boolean withData = !searchKey.has("with_data") || searchKey.get("with_data").isJsonNull()
+        || searchKey.get("with_data").getAsBoolean();
+    byte[] scriptHash = gson.fromJson(script, Script.class).computeHash();
+    // with a type filter the cells of that type, otherwise plain and sUDT cells mixed
+    JsonElement typeFilter = filter.has("script") ? filter.get("script") : JsonNull.INSTANCE;
+    int period = typeFilter.isJsonNull() ? sudtCellsPerPlainCell + 1 : 1;
+    int count = cellsPerLock * period;
+    long[] scriptLenRange = range(filter, "script_len_range");
+    long[] capacityRange = range(filter, "output_capacity_range");
+    int position = cursor == null || cursor.length == 0 ? 0 : ByteBuffer.wrap(cursor).getInt();
+    JsonArray objects = new JsonArray();
+    for (; position < count && objects.size() < limit; position++) {
+      int index = "desc".equals(order) ? count - 1 - position : position;
+      // the last cell of every period is a plain cell
+      JsonElement type = typeFilter.isJsonNull() && index % period != period - 1
+          ? sudtType : typeFilter;
+      long capacity = type.isJsonNull() ? cellCapacity : SUDT_CELL_CAPACITY;
+      int scriptLen = type.isJsonNull() ? 0 : 65;
+      if (scriptLen < scriptLenRange[0] || scriptLen >= scriptLenRange[1]
+          || capacity < capacityRange[0] || capacity >= capacityRange[1]) {
+        continue;
+      }
+      objects.add(cell(scriptHash, index, script, type, capacity, withData));
+    }
+    JsonObject page = new JsonObject();
+    page.addProperty("last_cursor", Hex.encode(ByteBuffer.allocate(4).putInt(position).array()));
+    page.add("objects", objects);
+    return page;
+  }
+
+  private static long[] range(JsonObject filter, String name) {
+    if (!filter.has(name) || filter.get(name).isJsonNull()) {
+      return new long[] {0, Long.MAX_VALUE};
+    }
+    JsonArray range = filter.getAsJsonArray(name);
+    return new long[] {quantity(range.get(0)), quantity(range.get(1))};
+  }
+
+  private JsonObject cell(byte[] scriptHash, int index, JsonObject lock, JsonElement type,
+                          long capacity, boolean withData) {
+    byte[] txHash = scriptHash.clone();
+    ByteBuffer.wrap(txHash).putInt(28, index);
+    JsonObject outPoint = new JsonObject();
+    outPoint.addProperty("tx_hash", Hex.encode(txHash));
+    outPoint.addProperty("index", "0x0");
+    JsonObject output = new JsonObject();
+    output.addProperty("capacity", Hex.encodeQuantity(capacity));
+    output.add("lock", lock);
+    output.add("type", type);
+    JsonObject cell = new JsonObject();
+    cell.addProperty("block_number", Hex.encodeQuantity(Math.max(0, tipBlockNumber - index)));
+    cell.add("out_point", outPoint);
+    cell.add("output", output);
+    if (withData) {
+      // cells with a type script hold an amount, like sUDT cells
+      cell.addProperty("output_data", type.isJsonNull() ? "0x" : SUDT_AMOUNT);
+    }
+    cell.addProperty("tx_index", "0x1");
+    return cell;
+  }
+}
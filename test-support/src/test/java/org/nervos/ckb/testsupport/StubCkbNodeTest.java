@@ -0,0 +1,139 @@
+package org.nervos.ckb.testsupport;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.nervos.ckb.Network;
+import org.nervos.ckb.service.Api;
+import org.nervos.ckb.sign.TransactionSigner;
+import org.nervos.ckb.sign.TransactionWithScriptGroups;
+import org.nervos.ckb.transaction.InputIterator;
+import org.nervos.ckb.type.Block;
+import org.nervos.ckb.type.Header;
+import org.nervos.ckb.type.TransactionInput;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+public class StubCkbNodeTest {
+  private StubCkbNode node;
+  private Api api;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    node = StubCkbNode.start().setTipBlockNumber(500).setCellsPerLock(250, 100_000_000_000L);
+    api = new Api(node.getUrl(), false);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    node.close();
+  }
+
+  @Test
+  public void testChain() throws IOException {
+    Assertions.assertEquals(500, api.getTipBlockNumber());
+    Block block = api.getBlockByNumber(42);
+    Assertions.assertEquals(42, block.header.number);
+    Assertions.assertEquals(2, block.transactions.size());
+    Assertions.assertArrayEquals(api.getBlockByNumber(41).header.hash, block.header.parentHash);
+    Assertions.assertArrayEquals(block.transactions.get(1).computeHash(),
+                                 block.transactions.get(1).hash);
+
+    Header header = api.getHeader(block.header.hash);
+    Assertions.assertEquals(42, header.number);
+    Assertions.assertNull(api.getBlockByNumber(501));
+    Assertions.assertEquals(3, node.getCallCount("get_block_by_number"));
+  }
+
+  @Test
+  public void testCells() {
+    InputIterator iterator = new InputIterator(api);
+    iterator.addSearchKey(LoadHarness.SENDER);
+    int cells = 0;
+    TransactionInput first = null;
+    while (iterator.hasNext()) {
+      TransactionInput input = iterator.next();
+      first = first == null ? input : first;
+      cells++;
+    }
+    Assertions.assertEquals(250, cells);
+    Assertions.assertEquals(100_000_000_000L, first.output.capacity);
+    // 100 cells per page and the empty page after the last one
+    Assertions.assertEquals(4, node.getCallCount("get_cells"));
+  }
+
+  @Test
+  public void testLeanQueries() {
+    node.setSudtCellsPerPlainCell(9);
+    InputIterator iterator = new InputIterator(api);
+    iterator.addSearchKey(LoadHarness.SENDER);
+    long bytes = node.getResponseBytes();
+    int usable = 0;
+    while (iterator.hasNext()) {
+      usable += iterator.next().output.type == null ? 1 : 0;
+    }
+    long bytesPerInput = (node.getResponseBytes() - bytes) / usable;
+
+    InputIterator lean = new InputIterator(api);
+    lean.setLeanQueries(true);
+    lean.addSearchKey(LoadHarness.SENDER);
+    bytes = node.getResponseBytes();
+    int leanUsable = 0;
+    while (lean.hasNext()) {
+      TransactionInput input = lean.next();
+      Assertions.assertNull(input.output.type);
+      Assertions.assertNull(input.outputData);
+      leanUsable++;
+    }
+    long leanBytesPerInput = (node.getResponseBytes() - bytes) / leanUsable;
+    Assertions.assertEquals(250, usable);
+    Assertions.assertEquals(250, leanUsable);
+    Assertions.assertTrue(bytesPerInput > 10 * leanBytesPerInput,
+                          bytesPerInput + " vs " + leanBytesPerInput + " bytes per input");
+  }
+
+  @Test
+  public void testSendTransaction() throws IOException {
+    TransactionWithScriptGroups transaction = LoadHarness.build(api);
+    TransactionSigner.getInstance(Network.TESTNET)
+        .signTransaction(transaction, LoadHarness.SENDER_KEY);
+    byte[] hash = api.sendTransaction(transaction.getTxView());
+    Assertions.assertArrayEquals(transaction.getTxView().computeHash(), hash);
+    Assertions.assertEquals(1, node.getSentTransactionCount());
+  }
+
+  @Test
+  public void testErrorInjection() {
+    node.setRpcErrorRate(1);
+    IOException e = Assertions.assertThrows(IOException.class, () -> api.getTipBlockNumber());
+    Assertions.assertTrue(e.getMessage().contains("Injected error"), e.getMessage());
+
+    node.setRpcErrorRate(0).setHttpErrorRate(1);
+    Assertions.assertThrows(IOException.class, () -> api.getTipBlockNumber());
+  }
+
+  @Test
+  public void testLatency() throws IOException {
+    node.setLatencyMillis("get_tip_block_number", 50, 0);
+    long start = System.nanoTime();
+    api.getTipBlockNumber();
+    Assertions.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+  }
+
+  @Test
+  public void testLoadHarness() throws InterruptedException {
+    node.setRpcErrorRate(0.5);
+    LoadHarness.Report report = new LoadHarness()
+        .setThreads(4)
+        .setWarmup(0, TimeUnit.SECONDS)
+        .setDuration(10, TimeUnit.SECONDS)
+        .setIterations(200)
+        .run("get_tip_block_number", api::getTipBlockNumber);
+    Assertions.assertEquals(200, report.getOperations());
+    Assertions.assertTrue(report.errors > 0 && report.errors < 200, report.toString());
+    Assertions.assertEquals(200 - report.errors, report.latency.count);
+    Assertions.assertTrue(report.getThroughput() > 0);
+  }
+}
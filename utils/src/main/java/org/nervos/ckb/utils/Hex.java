@@ -0,0 +1,140 @@
+package org.nervos.ckb.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Table driven hex encoding and decoding. Used on the JSON hot path, so it works on characters
+ * directly and allocates nothing but its result.
+ */
+public final class Hex {
+  private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+  private static final byte[] ASCII_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] VALUES = new byte[128];
+
+  static {
+    Arrays.fill(VALUES, (byte) -1);
+    for (int i = 0; i < 10; i++) {
+      VALUES['0' + i] = (byte) i;
+    }
+    for (int i = 0; i < 6; i++) {
+      VALUES['a' + i] = (byte) (10 + i);
+      VALUES['A' + i] = (byte) (10 + i);
+    }
+  }
+
+  private Hex() {
+  }
+
+  public static String encode(byte[] input, int offset, int length, boolean withPrefix) {
+    int start = withPrefix ? 2 : 0;
+    char[] out = new char[start + 2 * length];
+    if (withPrefix) {
+      out[0] = '0';
+      out[1] = 'x';
+    }
+    for (int i = 0; i < length; i++) {
+      int b = input[offset + i] & 0xFF;
+      out[start + 2 * i] = DIGITS[b >>> 4];
+      out[start + 2 * i + 1] = DIGITS[b & 0x0F];
+    }
+    return new String(out);
+  }
+
+  public static String encode(byte[] input) {
+    return encode(input, 0, input.length, true);
+  }
+
+  /**
+   * Writes the hex digits of {@code length} bytes of {@code input} as ASCII into {@code out}, for
+   * encoders that write bytes rather than strings.
+   *
+   * @return the number of bytes written, {@code 2 * length}
+   */
+  public static int encodeAscii(byte[] input, int offset, int length, byte[] out, int outOffset) {
+    for (int i = 0; i < length; i++) {
+      int b = input[offset + i] & 0xFF;
+      out[outOffset + 2 * i] = ASCII_DIGITS[b >>> 4];
+      out[outOffset + 2 * i + 1] = ASCII_DIGITS[b & 0x0F];
+    }
+    return 2 * length;
+  }
+
+  /**
+   * Encodes {@code value} as an unsigned hex quantity with a 0x prefix and no leading zeros.
+   */
+  public static String encodeQuantity(long value) {
+    if (value == 0) {
+      return "0x0";
+    }
+    int digits = (67 - Long.numberOfLeadingZeros(value)) >>> 2;
+    char[] out = new char[2 + digits];
+    out[0] = '0';
+    out[1] = 'x';
+    for (int i = out.length - 1; i >= 2; i--) {
+      out[i] = DIGITS[(int) (value & 0x0F)];
+      value >>>= 4;
+    }
+    return new String(out);
+  }
+
+  /**
+   * Decodes hex with an optional 0x prefix. An odd number of digits is read as if padded with a
+   * leading zero.
+   *
+   * @throws NumberFormatException if the input contains a character that is not a hex digit
+   */
+  public static byte[] decode(CharSequence input) {
+    int start = hasPrefix(input) ? 2 : 0;
+    int len = input.length() - start;
+    byte[] data = new byte[(len + 1) / 2];
+    int i = start;
+    int j = 0;
+    if (len % 2 != 0) {
+      data[j++] = (byte) digit(input, i++);
+    }
+    while (j < data.length) {
+      data[j++] = (byte) ((digit(input, i) << 4) | digit(input, i + 1));
+      i += 2;
+    }
+    return data;
+  }
+
+  /**
+   * Parses the unsigned hex number that starts at {@code start}, typically 2 to skip a 0x prefix.
+   *
+   * @throws NumberFormatException if there are no digits, a character is not a hex digit or the
+   *                               value does not fit in 64 bits
+   */
+  public static long parseUnsignedLong(CharSequence input, int start) {
+    int end = input.length();
+    if (start >= end) {
+      throw new NumberFormatException("Empty hex quantity \"" + input + "\"");
+    }
+    while (start < end - 1 && input.charAt(start) == '0') {
+      start++;
+    }
+    if (end - start > 16) {
+      throw new NumberFormatException("Hex quantity \"" + input + "\" exceeds 64 bits");
+    }
+    long value = 0;
+    for (int i = start; i < end; i++) {
+      value = (value << 4) | digit(input, i);
+    }
+    return value;
+  }
+
+  public static boolean hasPrefix(CharSequence input) {
+    return input.length() > 1 && input.charAt(0) == '0'
+        && (input.charAt(1) == 'x' || input.charAt(1) == 'X');
+  }
+
+  private static int digit(CharSequence input, int index) {
+    char c = input.charAt(index);
+    int value = c < 128 ? VALUES[c] : -1;
+    if (value < 0) {
+      throw new NumberFormatException("Invalid hex character '" + c + "' in \"" + input + "\"");
+    }
+    return value;
+  }
+}
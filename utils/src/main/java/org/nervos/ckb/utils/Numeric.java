@@ -169,44 +169,11 @@ public final class Numeric {
   }
 
   public static byte[] hexStringToByteArray(String input) {
-    String cleanInput = cleanHexPrefix(input);
-
-    int len = cleanInput.length();
-
-    if (len == 0) {
-      return new byte[]{};
-    }
-
-    byte[] data;
-    int startIdx;
-    if (len % 2 != 0) {
-      data = new byte[(len / 2) + 1];
-      data[0] = (byte) Character.digit(cleanInput.charAt(0), 16);
-      startIdx = 1;
-    } else {
-      data = new byte[len / 2];
-      startIdx = 0;
-    }
-
-    for (int i = startIdx; i < len; i += 2) {
-      data[(i + 1) / 2] =
-          (byte)
-              ((Character.digit(cleanInput.charAt(i), 16) << 4)
-                  + Character.digit(cleanInput.charAt(i + 1), 16));
-    }
-    return data;
+    return Hex.decode(input);
   }
 
   public static String toHexString(byte[] input, int offset, int length, boolean withPrefix) {
-    StringBuilder stringBuilder = new StringBuilder();
-    if (withPrefix) {
-      stringBuilder.append("0x");
-    }
-    for (int i = offset; i < offset + length; i++) {
-      stringBuilder.append(String.format("%02x", input[i] & 0xFF));
-    }
-
-    return stringBuilder.toString();
+    return Hex.encode(input, offset, length, withPrefix);
   }
 
   public static String toHexString(byte[] input) {
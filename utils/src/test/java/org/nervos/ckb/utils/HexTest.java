@@ -0,0 +1,38 @@
+package org.nervos.ckb.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class HexTest {
+
+  @Test
+  public void testEncode() {
+    Assertions.assertEquals("0x", Hex.encode(new byte[]{}));
+    Assertions.assertEquals("0x00ff7f80", Hex.encode(new byte[]{0, -1, 0x7f, -128}));
+    Assertions.assertEquals("ff7f", Hex.encode(new byte[]{0, -1, 0x7f, -128}, 1, 2, false));
+    byte[] ascii = new byte[6];
+    Assertions.assertEquals(4, Hex.encodeAscii(new byte[]{0, -1, 0x7f, -128}, 1, 2, ascii, 1));
+    Assertions.assertEquals("\0ff7f\0", new String(ascii, java.nio.charset.StandardCharsets.US_ASCII));
+  }
+
+  @Test
+  public void testDecode() {
+    Assertions.assertArrayEquals(new byte[]{}, Hex.decode("0x"));
+    Assertions.assertArrayEquals(new byte[]{0, -1, 0x7f, -128}, Hex.decode("0x00FF7f80"));
+    Assertions.assertArrayEquals(new byte[]{0x1, 0x23}, Hex.decode("123"));
+    Assertions.assertThrows(NumberFormatException.class, () -> Hex.decode("0x0g"));
+  }
+
+  @Test
+  public void testQuantity() {
+    Assertions.assertEquals("0x0", Hex.encodeQuantity(0));
+    Assertions.assertEquals("0x1a", Hex.encodeQuantity(26));
+    Assertions.assertEquals("0xffffffffffffffff", Hex.encodeQuantity(-1));
+    Assertions.assertEquals(26, Hex.parseUnsignedLong("0x1a", 2));
+    Assertions.assertEquals(26, Hex.parseUnsignedLong("0x00000000000000000001A", 2));
+    Assertions.assertEquals(-1, Hex.parseUnsignedLong("0xffffffffffffffff", 2));
+    Assertions.assertThrows(NumberFormatException.class, () -> Hex.parseUnsignedLong("0x", 2));
+    Assertions.assertThrows(NumberFormatException.class,
+                            () -> Hex.parseUnsignedLong("0x10000000000000000", 2));
+  }
+}